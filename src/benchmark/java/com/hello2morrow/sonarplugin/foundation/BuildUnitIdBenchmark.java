@@ -0,0 +1,109 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The build unit filtering loop over the records of a synthetic report with one million records: once by normalizing and comparing the
+ * names of every record like before, once by comparing the {@link BuildUnitId}s interned while parsing, and once including the interning
+ * of the record names in a {@link BuildUnitIdTable}. Every record holds its own copy of the fully qualified build unit name, as the records
+ * unmarshalled from a report do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class BuildUnitIdBenchmark {
+
+  private static final int RECORDS = 1000000;
+
+  @Param({ "10", "500" })
+  private int buildUnits;
+
+  private String[] fqNames;
+  private BuildUnitId[] ids;
+  private String analysedFqName;
+  private BuildUnitId analysedId;
+
+  @Setup
+  public void setUp() {
+    fqNames = new String[RECORDS];
+    ids = new BuildUnitId[RECORDS];
+    final BuildUnitIdTable table = new BuildUnitIdTable();
+    for (int i = 0; i < RECORDS; i++) {
+      fqNames[i] = "Synthetic::Module" + i % buildUnits;
+      ids[i] = table.internFqName(fqNames[i]);
+    }
+    analysedFqName = "Synthetic::Module" + buildUnits / 2;
+    analysedId = table.findFqName(analysedFqName);
+  }
+
+  @Benchmark
+  public int nameMatching() {
+    final String analysedName = SonargraphUtilities.getBuildUnitName(analysedFqName);
+    int matches = 0;
+    for (final String next : fqNames) {
+      if (SonargraphUtilities.getBuildUnitName(next).equals(analysedName)) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  @Benchmark
+  public int idMatching() {
+    int matches = 0;
+    for (final BuildUnitId next : ids) {
+      if (next == analysedId) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Includes the interning of every record name into a new table, which the index pays once while the report is read.
+   */
+  @Benchmark
+  public int internAndIdMatching() {
+    final BuildUnitIdTable table = new BuildUnitIdTable();
+    final BuildUnitId analysed = table.internFqName(analysedFqName);
+    int matches = 0;
+    for (final String next : fqNames) {
+      if (table.internFqName(next) == analysed) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+}
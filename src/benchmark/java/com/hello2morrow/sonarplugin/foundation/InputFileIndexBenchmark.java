@@ -0,0 +1,121 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lookup of a report path in the {@link InputFileIndex} with the scan of all input files by the <code>endsWith</code>
+ * predicate that was used before, for modules of different sizes. The input files are real {@link DefaultInputFile}s, only the file
+ * system providing them to the index is mocked.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class InputFileIndexBenchmark {
+
+  private static final int LOOKUPS = 1024;
+  private static final String SOURCE_ROOT = "/src/main/java/";
+
+  @Param({ "1000", "10000", "50000" })
+  private int files;
+
+  private List<InputFile> inputFiles;
+  private FileSystem fileSystem;
+  private InputFileIndex index;
+  private String[] paths;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    final Random random = new Random(4711);
+    inputFiles = new ArrayList<>(files);
+    for (int i = 0; i < files; i++) {
+      final String relativePath = "Module" + i % 10 + SOURCE_ROOT + "com/h2m/p" + random.nextInt(100) + "/s" + random.nextInt(10) + "/Class" + i
+        + ".java";
+      inputFiles.add(new DefaultInputFile("module", relativePath));
+    }
+
+    // Report paths are relative to the source roots of the workspace
+    paths = new String[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      final String relativePath = inputFiles.get(random.nextInt(files)).relativePath();
+      paths[i] = relativePath.substring(relativePath.indexOf(SOURCE_ROOT) + SOURCE_ROOT.length());
+    }
+
+    fileSystem = TestHelper.initFileSystemWithInputFiles(inputFiles);
+    index = new InputFileIndex(fileSystem);
+    index.find(paths[0], false);
+  }
+
+  private String nextPath() {
+    return paths[next++ & (LOOKUPS - 1)];
+  }
+
+  @Benchmark
+  public InputFile indexLookup() {
+    return index.find(nextPath(), false);
+  }
+
+  /**
+   * Like <code>FileSystem.inputFile(predicate)</code>, which tests every input file to make sure that only one matches.
+   */
+  @Benchmark
+  public InputFile predicateScan() {
+    final String path = nextPath();
+    InputFile match = null;
+    int matches = 0;
+    for (final InputFile inputFile : inputFiles) {
+      if (inputFile.relativePath().endsWith(path)) {
+        match = inputFile;
+        matches++;
+      }
+    }
+    return matches == 1 ? match : null;
+  }
+
+  /**
+   * Cost of building the index, which is paid once per module.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public InputFile indexCreation() {
+    return new InputFileIndex(fileSystem).find(nextPath(), false);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unmarshal latency of the bundled test reports with a cold and a warm {@link JaxbUnmarshallerPool}. The cold pool creates the JAXB
+ * context and an unmarshaller for every report, which is what every module paid before the pool was shared; the warm pool reuses both.
+ * The reports are read into memory first, so the file system is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class JaxbUnmarshallerPoolBenchmark {
+
+  @Param({ "sonargraph-sonar-report.xml", "sonargraph-sonar-report2.xml", "infoglue21-report.xml" })
+  private String report;
+
+  private byte[] content;
+  private JaxbUnmarshallerPool warmPool;
+
+  @Setup
+  public void setUp() throws IOException, JAXBException {
+    content = Files.readAllBytes(new File("src/test/resources", report).toPath());
+    warmPool = new JaxbUnmarshallerPool(JaxbUnmarshallerPool.class.getClassLoader());
+    warmPool.unmarshal(new ByteArrayInputStream(content));
+  }
+
+  @Benchmark
+  public ReportContext coldUnmarshal() throws JAXBException {
+    return new JaxbUnmarshallerPool(JaxbUnmarshallerPool.class.getClassLoader()).unmarshal(new ByteArrayInputStream(content));
+  }
+
+  @Benchmark
+  public ReportContext warmUnmarshal() throws JAXBException {
+    return warmPool.unmarshal(new ByteArrayInputStream(content));
+  }
+
+  /**
+   * Context creation alone, the part of the cold unmarshal the pool saves.
+   */
+  @Benchmark
+  public JAXBContext contextCreation() throws JAXBException {
+    return new JaxbUnmarshallerPool(JaxbUnmarshallerPool.class.getClassLoader()).getContext();
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.config.Settings;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the {@link ParallelReportFileReader} with the configured parallelism on a synthetic report. The section index of the report
+ * is created during the setup, as it is persisted next to the report and only created once per report.
+ * <p>
+ * The report has six sections, so no speedup is to be expected beyond six threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ParallelReportFileReaderBenchmark {
+
+  @Param({ "1", "2", "4", "8", "16" })
+  private int parallelism;
+
+  @Param({ "20" })
+  private int buildUnits;
+
+  @Param({ "1000" })
+  private int recordsPerSection;
+
+  private File reportFile;
+  private Settings settings;
+
+  @Setup
+  public void setUp() throws IOException, XMLStreamException {
+    reportFile = new SyntheticReportWriter(buildUnits, recordsPerSection).writeTemporary();
+    ReportSectionIndex.getOrCreate(reportFile);
+    settings = new Settings();
+    settings.setProperty(SonargraphPluginBase.REPORT_PARALLELISM, parallelism);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    SyntheticReportWriter.deleteDirectory(reportFile);
+  }
+
+  @Benchmark
+  public ReportContext read() throws IOException, XMLStreamException {
+    return new ParallelReportFileReader().readReport(reportFile, settings, ReportSectionFilter.ALL);
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdTask;
+import com.hello2morrow.sonarplugin.xsd.XsdTypeRelation;
+import com.hello2morrow.sonarplugin.xsd.XsdWarning;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.xml.bind.JAXBException;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading the attributes the processors use from every task, warning and type relation of a bundled test report, once by
+ * scanning the attribute lists with {@link PersistenceUtilities#getAttribute(List, String)} and once through the slots of
+ * {@link RecordAttributes}. The slots are measured with and without resolving them, since the index resolves every record once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class RecordAttributesBenchmark {
+
+  private static final WellKnownAttribute[] USED = { WellKnownAttribute.BUILD_UNIT, WellKnownAttribute.ATTRIBUTE_VALUE,
+    WellKnownAttribute.ELEMENT_TYPE, WellKnownAttribute.ELEMENT, WellKnownAttribute.PRIORITY, WellKnownAttribute.DESCRIPTION };
+
+  @Param({ "sonargraph-sonar-report2.xml", "infoglue21-report.xml" })
+  private String report;
+
+  private List<List<XsdAttribute>> records;
+  private List<RecordAttributes> resolved;
+
+  @Setup
+  public void setUp() throws IOException, JAXBException {
+    final ReportContext context;
+    try (InputStream input = new FileInputStream("src/test/resources/" + report)) {
+      context = JaxbUnmarshallerPool.getInstance().unmarshal(input);
+    }
+    records = collectRecords(context);
+    resolved = new ArrayList<>(records.size());
+    for (final List<XsdAttribute> next : records) {
+      resolved.add(RecordAttributes.resolve(next));
+    }
+  }
+
+  private static List<List<XsdAttribute>> collectRecords(final ReportContext report) {
+    final List<List<XsdAttribute>> records = new ArrayList<>();
+    for (final XsdTask task : report.getTasks().getTask()) {
+      records.add(task.getAttribute());
+    }
+    for (final XsdArchitectureViolation violation : report.getViolations().getArchitectureViolations()) {
+      for (final XsdTypeRelation relation : violation.getTypeRelation()) {
+        records.add(relation.getAttribute());
+      }
+    }
+    for (final XsdWarningsByAttributeGroup group : report.getWarnings().getWarningsByAttributeGroup()) {
+      for (final XsdWarningsByAttribute warningsByAttribute : group.getWarningsByAttribute()) {
+        for (final XsdWarning warning : warningsByAttribute.getWarning()) {
+          records.add(warning.getAttribute());
+        }
+      }
+    }
+    return records;
+  }
+
+  @Benchmark
+  public void listScan(final Blackhole blackhole) {
+    for (final List<XsdAttribute> record : records) {
+      for (final WellKnownAttribute next : USED) {
+        blackhole.consume(PersistenceUtilities.getAttribute(record, next.getName()));
+      }
+    }
+  }
+
+  @Benchmark
+  public void resolvedSlots(final Blackhole blackhole) {
+    for (final RecordAttributes record : resolved) {
+      for (final WellKnownAttribute next : USED) {
+        blackhole.consume(record.get(next));
+      }
+    }
+  }
+
+  @Benchmark
+  public void resolveAndSlots(final Blackhole blackhole) {
+    for (final List<XsdAttribute> record : records) {
+      final RecordAttributes attributes = RecordAttributes.resolve(record);
+      for (final WellKnownAttribute next : USED) {
+        blackhole.consume(attributes.get(next));
+      }
+    }
+  }
+}
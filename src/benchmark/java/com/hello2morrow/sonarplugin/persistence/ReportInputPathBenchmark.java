@@ -0,0 +1,104 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read time of a synthetic multi-GB report through the memory-mapped and the stream input path; the throughput is the report size divided
+ * by the time. Reports larger than {@link ByteBufferInputStream#MAX_MAPPED_SIZE} cannot be mapped and fall back to the stream path. A
+ * complete report of this size does not fit into the heap, so the report is either only read or parsed with all record sections
+ * skipped.
+ * <p>
+ * The reports are written into the temporary directory, which needs space for the largest of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class ReportInputPathBenchmark {
+
+  private static final ReportSectionFilter NO_RECORDS = ReportSectionFilter.forActiveRules(Collections.<String> emptyList());
+
+  @Param({ "1536", "3072" })
+  private int sizeInMegabytes;
+
+  @Param({ "true", "false" })
+  private boolean memoryMapped;
+
+  private File reportFile;
+
+  @Setup
+  public void setUp() throws IOException, XMLStreamException {
+    reportFile = SyntheticReportWriter.ofSize(100, sizeInMegabytes * 1024L * 1024L).writeTemporary();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    SyntheticReportWriter.deleteDirectory(reportFile);
+  }
+
+  /**
+   * @return number of bytes read
+   */
+  @Benchmark
+  public long read() throws IOException {
+    final byte[] buffer = new byte[1 << 16];
+    long bytes = 0;
+    try (InputStream input = ReportInputStreams.open(reportFile, memoryMapped)) {
+      int count;
+      while ((count = input.read(buffer)) >= 0) {
+        bytes += count;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * @return number of skipped elements
+   */
+  @Benchmark
+  public int parse() throws IOException, XMLStreamException {
+    final StaxReportParser parser = new StaxReportParser(NO_RECORDS);
+    try (InputStream input = ReportInputStreams.open(reportFile, memoryMapped)) {
+      parser.parse(input);
+    }
+    return parser.getSkippedElements();
+  }
+}
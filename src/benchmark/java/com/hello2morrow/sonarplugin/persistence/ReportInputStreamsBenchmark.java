@@ -0,0 +1,109 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * End-to-end read time of a synthetic report that is stored raw, gzip compressed or in a zip archive, from opening the file until the index
+ * of the report is created. The compressed reports are decompressed while they are parsed, see {@link ReportInputStreams}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReportInputStreamsBenchmark {
+
+  @Param({ "xml", "gz", "zip" })
+  private String format;
+
+  @Param({ SonargraphPluginBase.REPORT_READER_JAXB, SonargraphPluginBase.REPORT_READER_STAX })
+  private String reader;
+
+  @Param({ "20" })
+  private int buildUnits;
+
+  @Param({ "1000" })
+  private int recordsPerSection;
+
+  private File reportFile;
+  private Settings settings;
+
+  @Setup
+  public void setUp() throws IOException, XMLStreamException {
+    final File raw = new SyntheticReportWriter(buildUnits, recordsPerSection).writeTemporary();
+    if ("gz".equals(format)) {
+      reportFile = new File(raw.getParentFile(), raw.getName() + ".gz");
+      try (OutputStream output = new GZIPOutputStream(new FileOutputStream(reportFile))) {
+        Files.copy(raw.toPath(), output);
+      }
+    } else if ("zip".equals(format)) {
+      reportFile = new File(raw.getParentFile(), "sonargraph-sonar-report.zip");
+      try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(reportFile))) {
+        output.putNextEntry(new ZipEntry(raw.getName()));
+        Files.copy(raw.toPath(), output);
+      }
+    } else {
+      reportFile = raw;
+    }
+
+    settings = new Settings();
+    settings.setProperty(SonargraphPluginBase.REPORT_PATH, reportFile.getPath());
+    settings.setProperty(SonargraphPluginBase.REPORT_READER, reader);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    SyntheticReportWriter.deleteDirectory(reportFile);
+  }
+
+  @Benchmark
+  public ReportIndex read() {
+    final ReportFileReader reportReader = ReportFileReader.createReader(settings, null);
+    reportReader.readSonargraphReport(new Project("synthetic:" + SyntheticReportWriter.getProjectName(0)), null, settings);
+    return reportReader.getReportIndex();
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Total time of a reactor that reads the report of a synthetic system with 500 build units once per module, like the modules of a multi
+ * module build do. Without shards every module reads the complete report. With shards the first module reads the complete report and
+ * writes the shards, every other module only reads its own shard. The shared {@link ReportCache} of a single analysis is measured as a
+ * reference. The shards are removed before every run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class ReportShardsBenchmark {
+
+  @Param({ "500" })
+  private int buildUnits;
+
+  @Param({ "10" })
+  private int recordsPerSection;
+
+  private File reportFile;
+
+  @Setup
+  public void setUp() throws IOException, XMLStreamException {
+    reportFile = new SyntheticReportWriter(buildUnits, recordsPerSection).writeTemporary();
+  }
+
+  @Setup(Level.Iteration)
+  public void deleteShards() {
+    final File[] shards = ReportShards.getShardDirectory(reportFile).listFiles();
+    if (shards != null) {
+      for (final File next : shards) {
+        if (!next.delete()) {
+          throw new IllegalStateException("Cannot delete shard " + next.getPath());
+        }
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    SyntheticReportWriter.deleteDirectory(reportFile);
+  }
+
+  @Benchmark
+  public int withoutShards() {
+    return readReactor(createSettings(false), null);
+  }
+
+  @Benchmark
+  public int withShards() {
+    return readReactor(createSettings(true), null);
+  }
+
+  @Benchmark
+  public int sharedCache() {
+    return readReactor(createSettings(false), new ReportCache());
+  }
+
+  private Settings createSettings(final boolean shards) {
+    final Settings settings = new Settings();
+    settings.setProperty(SonargraphPluginBase.REPORT_PATH, reportFile.getPath());
+    settings.setProperty(SonargraphPluginBase.REPORT_SHARDS, shards);
+    return settings;
+  }
+
+  /**
+   * @return number of tasks read by all modules
+   */
+  private int readReactor(final Settings settings, final ReportCache cache) {
+    int tasks = 0;
+    for (int i = 0; i < buildUnits; i++) {
+      final String projectName = SyntheticReportWriter.getProjectName(i);
+      final ReportFileReader reader = ReportFileReader.createReader(settings, cache);
+      reader.readSonargraphReport(new Project("synthetic:" + projectName), null, settings);
+      tasks += reader.getReportIndex().getTasks(projectName).size();
+    }
+    return tasks;
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Writes synthetic Sonargraph reports for the benchmarks. Every build unit "Synthetic::Module&lt;n&gt;" gets the same number of tasks,
+ * warnings, violating type relations and cycle groups. The report is written element by element, so reports larger than the heap can be
+ * created as well.
+ */
+final class SyntheticReportWriter {
+
+  static final String SYSTEM_NAME = "Synthetic";
+  static final String ENCODING = "UTF-8";
+
+  private final int buildUnits;
+  private final int recordsPerSection;
+
+  /**
+   * @param recordsPerSection number of tasks, warnings, type relations and cycle groups of each build unit
+   */
+  SyntheticReportWriter(final int buildUnits, final int recordsPerSection) {
+    this.buildUnits = buildUnits;
+    this.recordsPerSection = recordsPerSection;
+  }
+
+  /**
+   * @return the number of records of the report
+   */
+  long getRecords() {
+    return 4L * buildUnits * recordsPerSection;
+  }
+
+  static String getBuildUnitName(final int buildUnit) {
+    return SYSTEM_NAME + "::" + getProjectName(buildUnit);
+  }
+
+  /**
+   * @return the name of the build unit without the system name, which is also the name of the analysed module
+   */
+  static String getProjectName(final int buildUnit) {
+    return "Module" + buildUnit;
+  }
+
+  /**
+   * @param size approximate size of the report in bytes
+   * @return writer of a report with the given number of build units and about the given size
+   */
+  static SyntheticReportWriter ofSize(final int buildUnits, final long size) throws XMLStreamException {
+    final long empty = new SyntheticReportWriter(buildUnits, 0).getSize();
+    final long perRecordSet = (new SyntheticReportWriter(buildUnits, 10).getSize() - empty) / 10;
+    return new SyntheticReportWriter(buildUnits, (int) Math.max(1, (size - empty) / perRecordSet));
+  }
+
+  /**
+   * @return size of the written report in bytes
+   */
+  long getSize() throws XMLStreamException {
+    final CountingOutputStream output = new CountingOutputStream();
+    write(output);
+    return output.count;
+  }
+
+  void write(final File reportFile) throws IOException, XMLStreamException {
+    try (OutputStream output = new BufferedOutputStream(new FileOutputStream(reportFile), 1 << 16)) {
+      write(output);
+    }
+  }
+
+  void write(final OutputStream output) throws XMLStreamException {
+    final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, ENCODING);
+    try {
+      writer.writeStartDocument(ENCODING, "1.0");
+      writer.writeStartElement("reportContext");
+      writer.writeAttribute("name", SYSTEM_NAME);
+      writer.writeAttribute("productFamily", "Sonargraph-Architect");
+      writer.writeStartElement("general");
+      writeAttribute(writer, "Base Path", ".");
+      writer.writeEndElement();
+      writeBuildUnits(writer);
+      writeViolations(writer);
+      writeCycleGroups(writer);
+      writeWarnings(writer);
+      writeTasks(writer);
+      writer.writeEndElement();
+      writer.writeEndDocument();
+      writer.flush();
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes the report into a new temporary directory, which is removed by {@link #deleteDirectory(File)}.
+   *
+   * @return the written report
+   */
+  File writeTemporary() throws IOException, XMLStreamException {
+    final File reportFile = new File(Files.createTempDirectory("sonargraph-benchmark").toFile(), "sonargraph-sonar-report.xml");
+    write(reportFile);
+    return reportFile;
+  }
+
+  /**
+   * Deletes the directory of the report together with the files written next to the report, e.g. its section index or shards.
+   */
+  static void deleteDirectory(final File reportFile) throws IOException {
+    Files.walkFileTree(reportFile.getParentFile().toPath(), new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(final Path directory, final IOException exception) throws IOException {
+        if (exception != null) {
+          throw exception;
+        }
+        Files.delete(directory);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private void writeBuildUnits(final XMLStreamWriter writer) throws XMLStreamException {
+    writer.writeStartElement("buildUnits");
+    for (int i = 0; i < buildUnits; i++) {
+      writer.writeEmptyElement("buildUnit");
+      writer.writeAttribute("description", "");
+      writer.writeAttribute("name", getBuildUnitName(i));
+    }
+    writer.writeEndElement();
+  }
+
+  private void writeViolations(final XMLStreamWriter writer) throws XMLStreamException {
+    final String typeRelations = String.valueOf((long) buildUnits * recordsPerSection);
+    writer.writeStartElement("violations");
+    writer.writeAttribute("numberOf", String.valueOf(buildUnits));
+    writer.writeAttribute("numberOfTypeRelations", typeRelations);
+    writer.writeAttribute("numberOfViolatingTypeRelations", typeRelations);
+    writer.writeAttribute("percentageOfViolatingTypeRelations", "100.0");
+    for (int i = 0; i < buildUnits; i++) {
+      writer.writeStartElement("architectureViolations");
+      writer.writeAttribute("dimension", "Logical");
+      writer.writeAttribute("numberOfViolatingTypeRelations", String.valueOf(recordsPerSection));
+      writer.writeAttribute("explanation", "No allowing definitions");
+      writer.writeStartElement("architectureViolation");
+      writeAttribute(writer, "From", getProjectName(i));
+      writeAttribute(writer, "To", getProjectName((i + 1) % buildUnits));
+      writer.writeEndElement();
+      for (int j = 0; j < recordsPerSection; j++) {
+        writer.writeStartElement("typeRelation");
+        writeAttribute(writer, "From build unit", getBuildUnitName(i));
+        writeAttribute(writer, "From", "com.h2m.module" + i + ".Class" + j);
+        writeAttribute(writer, "To", "com.h2m.module" + (i + 1) % buildUnits + ".Class" + j);
+        writeAttribute(writer, "Explanation", "Layer 'Module" + i + "' may not access layer 'Module" + (i + 1) % buildUnits + "'");
+        writePosition(writer, i, j);
+        writer.writeEndElement();
+      }
+      writer.writeEndElement();
+    }
+    writer.writeEndElement();
+  }
+
+  private void writeCycleGroups(final XMLStreamWriter writer) throws XMLStreamException {
+    writer.writeStartElement("cycleGroups");
+    writer.writeAttribute("numberOf", String.valueOf((long) buildUnits * recordsPerSection));
+    for (int i = 0; i < buildUnits; i++) {
+      for (int j = 0; j < recordsPerSection; j++) {
+        writer.writeStartElement("cycleGroup");
+        writer.writeAttribute("namedElementGroup", "Physical package");
+        writer.writeAttribute("description", "2 cyclic elements of type 'Physical package'");
+        writer.writeAttribute("parent", getProjectName(i));
+        writer.writeAttribute("elementScope", getProjectName(i));
+        for (int k = 0; k < 2; k++) {
+          writer.writeEmptyElement("cyclePath");
+          writer.writeAttribute("parent", "com.h2m.module" + i + ".cycle" + j + ".p" + k);
+          writer.writeAttribute("description", "1 type relation in cycle group");
+          writer.writeAttribute("numberOfEfferentTypeRelationsInCycleGroup", "1");
+        }
+        writer.writeEndElement();
+      }
+    }
+    writer.writeEndElement();
+  }
+
+  private void writeWarnings(final XMLStreamWriter writer) throws XMLStreamException {
+    final String records = String.valueOf((long) buildUnits * recordsPerSection);
+    writer.writeStartElement("warnings");
+    writer.writeAttribute("numberOf", records);
+    writer.writeStartElement("warningsByAttributeGroup");
+    writer.writeAttribute("attributeGroup", "Threshold");
+    writer.writeAttribute("numberOf", records);
+    writer.writeStartElement("warningsByAttribute");
+    writer.writeAttribute("attributeName", "Number of statements");
+    writer.writeAttribute("attributeDescription", "Number of statements of the method");
+    writer.writeAttribute("numberOf", records);
+    for (int i = 0; i < buildUnits; i++) {
+      for (int j = 0; j < recordsPerSection; j++) {
+        writer.writeStartElement("warning");
+        writeAttribute(writer, "Project", getProjectName(i));
+        writeAttribute(writer, "Build unit", getBuildUnitName(i));
+        writeAttribute(writer, "Element type", "Method");
+        writeAttribute(writer, "Element", "com.h2m.module" + i + ".Class" + j + ".run()");
+        writeAttribute(writer, "Attribute value", String.valueOf(100 + j % 50));
+        writePosition(writer, i, j);
+        writer.writeEndElement();
+      }
+    }
+    writer.writeEndElement();
+    writer.writeEndElement();
+    writer.writeEndElement();
+  }
+
+  private void writeTasks(final XMLStreamWriter writer) throws XMLStreamException {
+    writer.writeStartElement("tasks");
+    writer.writeAttribute("numberOf", String.valueOf((long) buildUnits * recordsPerSection));
+    for (int i = 0; i < buildUnits; i++) {
+      for (int j = 0; j < recordsPerSection; j++) {
+        writer.writeStartElement("task");
+        writeAttribute(writer, "Project", getProjectName(i));
+        writeAttribute(writer, "Build unit", getBuildUnitName(i));
+        writeAttribute(writer, "Element type", "Class");
+        writeAttribute(writer, "Element", "com.h2m.module" + i + ".Class" + j);
+        writeAttribute(writer, "Description", "Task " + j + " of module " + i);
+        writeAttribute(writer, "Priority", "Medium");
+        writePosition(writer, i, j);
+        writer.writeEndElement();
+      }
+    }
+    writer.writeEndElement();
+  }
+
+  private static void writeAttribute(final XMLStreamWriter writer, final String name, final String value) throws XMLStreamException {
+    writer.writeEmptyElement("attribute");
+    writer.writeAttribute("name", name);
+    writer.writeAttribute("value", value);
+  }
+
+  private static void writePosition(final XMLStreamWriter writer, final int buildUnit, final int record) throws XMLStreamException {
+    writer.writeEmptyElement("position");
+    writer.writeAttribute("line", String.valueOf(1 + record % 500));
+    writer.writeAttribute("file", "com/h2m/module" + buildUnit + "/Class" + record + ".java");
+    writer.writeAttribute("dir", "./" + getProjectName(buildUnit) + "/src/main/java");
+  }
+
+  private static final class CountingOutputStream extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(final int b) {
+      count++;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) {
+      count += length;
+    }
+  }
+}
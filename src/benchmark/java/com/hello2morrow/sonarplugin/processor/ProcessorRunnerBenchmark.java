@@ -0,0 +1,153 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.processor;
+
+import com.hello2morrow.sonarplugin.foundation.AlertThreshold;
+import com.hello2morrow.sonarplugin.foundation.InputFileIndex;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.persistence.ReportFileReader;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputDir;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.Severity;
+import org.sonar.api.batch.sensor.internal.SensorStorage;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the task, cycle group, architecture violation and warning processors on the first build unit of each bundled test report, once
+ * sequentially and once concurrently, the way the sensor does for a module. The issues go to a counting sink, so that the measurement
+ * covers the processors, the path resolution and the issue queues but not the mocked sensor context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ProcessorRunnerBenchmark {
+
+  private static final int NUMBER_OF_TASKS = 2;
+
+  @Param({ "sonargraph-sonar-report.xml", "sonargraph-sonar-report2.xml", "infoglue21-report.xml" })
+  private String report;
+
+  @Param({ "1", "4" })
+  private int parallelism;
+
+  private Project project;
+  private FileSystem fileSystem;
+  private SensorContext sensorContext;
+  private ReportIndex index;
+  private XsdAttributeRoot buildUnit;
+
+  @Setup
+  public void setUp() throws IOException {
+    final File baseDir = new File("src/test/AlarmClockMain").getCanonicalFile();
+    fileSystem = TestHelper.initFileSystemWithInputFiles(collectFiles(baseDir, baseDir, new ArrayList<InputFile>()));
+    when(fileSystem.baseDir()).thenReturn(baseDir);
+    sensorContext = TestHelper.initSensorContext(fileSystem, mock(SensorStorage.class));
+
+    project = new Project("hello2morrow:AlarmClock", null, "AlarmClock");
+    final ReportFileReader reader = new ReportFileReader();
+    reader.readSonargraphReport(project, fileSystem, TestHelper.initSettings("src/test/resources/" + report));
+    index = reader.getReportIndex();
+    buildUnit = reader.getReport().getBuildUnits().getBuildUnit().get(0);
+  }
+
+  /**
+   * A new session and runner for each invocation, as for each module analysed by the sensor, so that no resolved path is reused.
+   */
+  @Benchmark
+  public int runProcessors() {
+    final CountingSink counter = new CountingSink();
+    final ProcessorRunner runner = new ProcessorRunner(counter, parallelism);
+    final AnalysisSession session = new AnalysisSession(sensorContext, new InputFileIndex(fileSystem), buildUnit, Collections.<String> emptyList());
+
+    final IIssueSink taskSink = runner.createSink();
+    runner.add(new TaskProcessor(project, session, NUMBER_OF_TASKS, taskSink), taskSink);
+    final IIssueSink cycleGroupSink = runner.createSink();
+    runner.add(new CycleGroupProcessor(session, cycleGroupSink), cycleGroupSink);
+    final IIssueSink architectureSink = runner.createSink();
+    runner.add(new ArchitectureViolationProcessor(session, architectureSink), architectureSink);
+    final IIssueSink warningSink = runner.createSink();
+    runner.add(new WarningProcessor(session, warningSink), warningSink);
+    runner.run(index, buildUnit);
+    return counter.saved;
+  }
+
+  private static List<InputFile> collectFiles(final File baseDir, final File currentDir, final List<InputFile> files) {
+    for (final File next : currentDir.listFiles()) {
+      if (next.isDirectory()) {
+        collectFiles(baseDir, next, files);
+        continue;
+      }
+      final String relativePath = baseDir.toPath().relativize(next.toPath()).toString().replace('\\', '/');
+      files.add(new DefaultInputFile("hello2morrow:AlarmClock", relativePath).setModuleBaseDir(baseDir.toPath()));
+    }
+    return files;
+  }
+
+  private static final class CountingSink implements IIssueSink {
+    private int saved;
+
+    @Override
+    public void saveIssue(final InputFile file, final ActiveRule rule, final Severity severity, final int line, final String message) {
+      saved++;
+    }
+
+    @Override
+    public void saveIssue(final InputDir dir, final ActiveRule rule, final Severity severity, final String message) {
+      saved++;
+    }
+
+    @Override
+    public void saveMeasure(final Resource resource, final Metric<Serializable> metric, final double value, final AlertThreshold threshold,
+      final double thresholdMetricValue) {
+      saved++;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.api;
+
+import com.hello2morrow.sonarplugin.foundation.AlertThreshold;
+import com.hello2morrow.sonarplugin.foundation.MetricValues;
+import com.hello2morrow.sonarplugin.foundation.SonargraphMetricKey;
+import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
+import com.hello2morrow.sonarplugin.metric.SonargraphAlertThresholds;
+import org.sonar.api.measures.Metric;
+
+import java.io.Serializable;
+
+/**
+ * Row of a measure table: the SonarQube metric to be saved, the Sonargraph metric(s) it is derived from and the alert threshold of the
+ * SonarQube metric. The threshold is looked up once when the row is created.
+ */
+final class MeasureMapping {
+
+  private static final double HUNDRET_PERCENT = 100.0;
+
+  enum Derivation {
+    /** The value of the Sonargraph metric */
+    VALUE,
+    /** The value of the Sonargraph metric in percent of the value of the base metric, 0 if the base value is not positive */
+    PERCENT_OF_BASE
+  }
+
+  private final Derivation derivation;
+  private final SonargraphMetricKey source;
+  private final SonargraphMetricKey base;
+  private final Metric<Serializable> target;
+  private final AlertThreshold threshold;
+
+  private MeasureMapping(final Derivation derivation, final SonargraphMetricKey source, final SonargraphMetricKey base, final Metric<Serializable> target) {
+    this.derivation = derivation;
+    this.source = source;
+    this.base = base;
+    this.target = target;
+    this.threshold = SonargraphAlertThresholds.getThreshold(target);
+  }
+
+  static MeasureMapping value(final SonargraphMetricKey source, final Metric<Serializable> target) {
+    return new MeasureMapping(Derivation.VALUE, source, null, target);
+  }
+
+  static MeasureMapping percent(final SonargraphMetricKey source, final SonargraphMetricKey base, final Metric<Serializable> target) {
+    return new MeasureMapping(Derivation.PERCENT_OF_BASE, source, base, target);
+  }
+
+  Metric<Serializable> getTarget() {
+    return target;
+  }
+
+  /**
+   * @return the threshold of the target metric, null if there is none
+   */
+  AlertThreshold getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * @param values metric values of the report, missing source metrics are logged as error
+   */
+  double derive(final MetricValues values) {
+    final double value = SonargraphUtilities.getBuildUnitMetricValue(values, source, true);
+    switch (derivation) {
+      case PERCENT_OF_BASE:
+        final double baseValue = SonargraphUtilities.getBuildUnitMetricValue(values, base, true);
+        return baseValue > 0 ? HUNDRET_PERCENT * value / baseValue : 0.0;
+      case VALUE:
+      default:
+        return value;
+    }
+  }
+}
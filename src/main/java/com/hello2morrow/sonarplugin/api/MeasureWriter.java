@@ -0,0 +1,60 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.api;
+
+import com.hello2morrow.sonarplugin.foundation.AlertThreshold;
+import com.hello2morrow.sonarplugin.foundation.MetricValues;
+import com.hello2morrow.sonarplugin.foundation.SonarQubeUtilities;
+import com.hello2morrow.sonarplugin.metric.SonargraphAlertThresholds;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Resource;
+
+import java.io.Serializable;
+
+/**
+ * Saves the measures of a table of {@link MeasureMapping}s for a resource. Measures of metrics with an alert threshold are saved together
+ * with their alert level; all other measures are saved as plain values.
+ */
+final class MeasureWriter {
+
+  private final Resource resource;
+  private final SensorContext context;
+
+  MeasureWriter(final Resource resource, final SensorContext context) {
+    this.resource = resource;
+    this.context = context;
+  }
+
+  void write(final MeasureMapping[] table, final MetricValues values) {
+    for (final MeasureMapping mapping : table) {
+      save(mapping.getTarget(), mapping.derive(values), mapping.getThreshold());
+    }
+  }
+
+  /**
+   * Saves a value that is not taken from the report, e.g. a value calculated by a processor.
+   */
+  void write(final Metric<Serializable> metric, final double value) {
+    save(metric, value, SonargraphAlertThresholds.getThreshold(metric));
+  }
+
+  private void save(final Metric<Serializable> metric, final double value, final AlertThreshold threshold) {
+    SonarQubeUtilities.saveMeasure(resource, context, metric, value, threshold, value);
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.api;
+
+import com.hello2morrow.sonarplugin.foundation.InputFileIndex;
+import com.hello2morrow.sonarplugin.foundation.MetricValues;
+import com.hello2morrow.sonarplugin.foundation.SonarQubeUtilities;
+import com.hello2morrow.sonarplugin.foundation.SonargraphMetricKey;
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
+import com.hello2morrow.sonarplugin.metric.SonargraphDerivedMetrics;
+import com.hello2morrow.sonarplugin.metric.SonargraphSimpleMetrics;
+import com.hello2morrow.sonarplugin.metric.internal.SonargraphInternalMetrics;
+import com.hello2morrow.sonarplugin.persistence.PersistenceUtilities;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex;
+import com.hello2morrow.sonarplugin.processor.AnalysisSession;
+import com.hello2morrow.sonarplugin.processor.ArchitectureViolationProcessor;
+import com.hello2morrow.sonarplugin.processor.CycleGroupProcessor;
+import com.hello2morrow.sonarplugin.processor.IIssueSink;
+import com.hello2morrow.sonarplugin.processor.ProcessorRunner;
+import com.hello2morrow.sonarplugin.processor.TaskProcessor;
+import com.hello2morrow.sonarplugin.processor.WarningProcessor;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+
+/**
+ * Analysis of the build unit of a single module. All state of the analysis lives in this object, which is created for each invocation of
+ * the sensor, so that modules can be analysed concurrently by the same sensor instance.
+ */
+final class ModuleAnalysis {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ModuleAnalysis.class);
+  private static final String NOT_PROCESSED_MESSAGE = "Module will not be processed by Sonargraph!";
+  private static final double HUNDRET_PERCENT = 100.0;
+  /** Maximum number of unresolved paths listed after the analysis of a module */
+  private static final int UNRESOLVED_PATHS_IN_SUMMARY = 10;
+
+  private static final MeasureMapping[] BASIC_MEASURES = {
+    MeasureMapping.value(SonargraphMetricKey.JAVA_FILES, SonargraphSimpleMetrics.JAVA_FILES),
+    MeasureMapping.value(SonargraphMetricKey.TYPE_DEPENDENCIES, SonargraphSimpleMetrics.TYPE_DEPENDENCIES) };
+
+  private static final MeasureMapping[] STRUCTURAL_DEBT_MEASURES = {
+    MeasureMapping.value(SonargraphMetricKey.STUCTURAL_DEBT_INDEX, SonargraphSimpleMetrics.STRUCTURAL_DEBT_INDEX),
+    MeasureMapping.value(SonargraphMetricKey.TASKS, SonargraphSimpleMetrics.TASKS) };
+
+  private static final MeasureMapping[] STRUCTURE_MEASURES = {
+    MeasureMapping.value(SonargraphMetricKey.INTERNAL_PACKAGES, SonargraphSimpleMetrics.INTERNAL_PACKAGES),
+    MeasureMapping.value(SonargraphMetricKey.EROSION_REFS, SonargraphSimpleMetrics.REFERENCES_TO_REMOVE),
+    MeasureMapping.value(SonargraphMetricKey.EROSION_TYPES, SonargraphSimpleMetrics.TYPE_DEPENDENCIES_TO_CUT),
+    MeasureMapping.value(SonargraphMetricKey.ACD, SonargraphSimpleMetrics.ACD),
+    MeasureMapping.value(SonargraphMetricKey.NCCD, SonargraphSimpleMetrics.NCCD),
+    /* rACD is not displayed on the dashbox but fits well into this category */
+    MeasureMapping.value(SonargraphMetricKey.RELATIVE_ACD, SonargraphSimpleMetrics.RELATIVE_ACD),
+    MeasureMapping.value(SonargraphMetricKey.INSTRUCTIONS, SonargraphSimpleMetrics.INSTRUCTIONS) };
+
+  private static final MeasureMapping[] ARCHITECTURE_MEASURES = {
+    MeasureMapping.value(SonargraphMetricKey.INTERNAL_TYPES, SonargraphSimpleMetrics.INTERNAL_TYPES),
+    MeasureMapping.value(SonargraphMetricKey.VIOLATING_DEPENDENCIES, SonargraphSimpleMetrics.VIOLATING_TYPE_DEPENDENCIES),
+    MeasureMapping.value(SonargraphMetricKey.VIOLATING_TYPES, SonargraphSimpleMetrics.VIOLATING_TYPES),
+    MeasureMapping.percent(SonargraphMetricKey.VIOLATING_TYPES, SonargraphMetricKey.INTERNAL_TYPES, SonargraphDerivedMetrics.VIOLATING_TYPES_PERCENT),
+    MeasureMapping.value(SonargraphMetricKey.VIOLATING_REFERENCES, SonargraphSimpleMetrics.VIOLATING_REFERENCES),
+    MeasureMapping.value(SonargraphMetricKey.IGNORED_VIOLATIONS, SonargraphSimpleMetrics.IGNORED_VIOLATONS),
+    MeasureMapping.value(SonargraphMetricKey.UNASSIGNED_TYPES, SonargraphSimpleMetrics.UNASSIGNED_TYPES),
+    MeasureMapping.percent(SonargraphMetricKey.UNASSIGNED_TYPES, SonargraphMetricKey.INTERNAL_TYPES, SonargraphDerivedMetrics.UNASSIGNED_TYPES_PERCENT) };
+
+  private static final MeasureMapping[] WARNING_MEASURES = {
+    MeasureMapping.value(SonargraphMetricKey.ALL_WARNINGS, SonargraphSimpleMetrics.ALL_WARNINGS),
+    MeasureMapping.value(SonargraphMetricKey.CYCLE_WARNINGS, SonargraphSimpleMetrics.CYCLE_WARNINGS),
+    MeasureMapping.value(SonargraphMetricKey.DUPLICATE_WARNINGS, SonargraphSimpleMetrics.DUPLICATE_WARNINGS),
+    MeasureMapping.value(SonargraphMetricKey.WORKSPACE_WARNINGS, SonargraphSimpleMetrics.WORKSPACE_WARNINGS),
+    MeasureMapping.value(SonargraphMetricKey.THRESHOLD_WARNINGS, SonargraphSimpleMetrics.THRESHOLD_WARNINGS),
+    MeasureMapping.value(SonargraphMetricKey.IGNORED_WARNINGS, SonargraphSimpleMetrics.IGNORED_WARNINGS) };
+
+  /* Saved to internal metrics, since the system metrics cannot be aggregated from the modules */
+  private static final MeasureMapping[] INTERNAL_SYSTEM_MEASURES = {
+    MeasureMapping.value(SonargraphMetricKey.ALL_WARNINGS, SonargraphInternalMetrics.SYSTEM_ALL_WARNINGS),
+    MeasureMapping.value(SonargraphMetricKey.CYCLE_WARNINGS, SonargraphInternalMetrics.SYSTEM_CYCLE_WARNINGS),
+    MeasureMapping.value(SonargraphMetricKey.THRESHOLD_WARNINGS, SonargraphInternalMetrics.SYSTEM_THRESHOLD_WARNINGS),
+    MeasureMapping.value(SonargraphMetricKey.WORKSPACE_WARNINGS, SonargraphInternalMetrics.SYSTEM_WORKSPACE_WARNINGS),
+    MeasureMapping.value(SonargraphMetricKey.IGNORED_WARNINGS, SonargraphInternalMetrics.SYSTEM_IGNORED_WARNINGS),
+    MeasureMapping.value(SonargraphMetricKey.TASKS, SonargraphInternalMetrics.SYSTEM_ALL_TASKS) };
+
+  private final Project project;
+  private final SensorContext sensorContext;
+  private final Settings settings;
+  private final MeasureWriter writer;
+  private final MetricValues buildUnitMetrics = new MetricValues();
+  private final MetricValues systemMetrics = new MetricValues();
+
+  ModuleAnalysis(final Project project, final SensorContext sensorContext, final Settings settings) {
+    this.project = project;
+    this.sensorContext = sensorContext;
+    this.settings = settings;
+    this.writer = new MeasureWriter(project, sensorContext);
+  }
+
+  void analyse(final ReportIndex index, final XsdAttributeRoot buildUnit) {
+    LOG.debug("Analysing buildUnit: " + buildUnit.getName());
+
+    PersistenceUtilities.readMetricValues(buildUnit, buildUnitMetrics);
+
+    if (!buildUnitMetrics.contains(SonargraphMetricKey.INSTRUCTIONS) || (int) buildUnitMetrics.get(SonargraphMetricKey.INSTRUCTIONS) < 1) {
+      LOG.warn("No code to be analysed in [" + project.getName() + "]. " + NOT_PROCESSED_MESSAGE);
+      sensorContext.saveMeasure(SonargraphInternalMetrics.MODULE_PROCESSED_BY_SENSOR, SonarQubeUtilities.FALSE);
+      return;
+    }
+
+    sensorContext.saveMeasure(SonargraphInternalMetrics.MODULE_PROCESSED_BY_SENSOR, SonarQubeUtilities.TRUE);
+
+    writer.write(BASIC_MEASURES, buildUnitMetrics);
+    final int numberOfTasks = analyseMetricsForStructuralDebtDashbox();
+
+    final AnalysisSession session = new AnalysisSession(sensorContext, new InputFileIndex(sensorContext.fileSystem()), buildUnit,
+      index.getWorkspacePaths(index.getBuildUnitId(buildUnit)));
+    final ProcessorRunner runner = new ProcessorRunner(sensorContext, SonargraphUtilities.isConcurrentProcessingEnabled(settings)
+      ? SonargraphUtilities.getConfiguredParallelism(settings) : 1);
+
+    final IIssueSink taskSink = runner.createSink();
+    runner.add(new TaskProcessor(project, session, numberOfTasks, taskSink), taskSink);
+    final IIssueSink cycleGroupSink = runner.createSink();
+    final CycleGroupProcessor cycleGroupProcessor = new CycleGroupProcessor(session, cycleGroupSink);
+    runner.add(cycleGroupProcessor, cycleGroupSink);
+    final IIssueSink architectureSink = runner.createSink();
+    runner.add(new ArchitectureViolationProcessor(session, architectureSink), architectureSink);
+    final IIssueSink warningSink = runner.createSink();
+    runner.add(new WarningProcessor(session, warningSink), warningSink);
+    runner.run(index, buildUnit);
+    LOG.debug(session.toString());
+    final String unresolvedPaths = session.getUnresolvedPathSummary(UNRESOLVED_PATHS_IN_SUMMARY);
+    if (unresolvedPaths != null) {
+      LOG.warn(unresolvedPaths + ". Issues have not been created for them.");
+    }
+
+    analyseMetricsForArchitectureDashbox();
+    analyseMetricsForStructureDashbox(cycleGroupProcessor.getStatistics());
+
+    final XsdAttributeRoot attributesPart = index.getReport().getAttributes();
+    if (attributesPart != null) {
+      PersistenceUtilities.readMetricValues(attributesPart, systemMetrics);
+    }
+    writer.write(INTERNAL_SYSTEM_MEASURES, systemMetrics);
+  }
+
+  private int analyseMetricsForStructuralDebtDashbox() {
+    writer.write(STRUCTURAL_DEBT_MEASURES, buildUnitMetrics);
+
+    final double indexCost = this.determineCostPerIndexPoint();
+    if (indexCost > 0) {
+      final double structuralDebtIndex = buildUnitMetrics.get(SonargraphMetricKey.STUCTURAL_DEBT_INDEX);
+      double structuralDebtCost = 0;
+      if (structuralDebtIndex > 0) {
+        structuralDebtCost = structuralDebtIndex * indexCost;
+      }
+
+      writer.write(SonargraphSimpleMetrics.STRUCTURAL_DEBT_COST, structuralDebtCost);
+    }
+
+    return (int) buildUnitMetrics.get(SonargraphMetricKey.TASKS);
+  }
+
+  private double determineCostPerIndexPoint() {
+    final String indexCostString = this.settings.getString(SonargraphPluginBase.COST_PER_INDEX_POINT);
+    double indexCost = SonargraphPluginBase.COST_PER_INDEX_POINT_DEFAULT;
+    if (indexCostString != null && indexCostString.trim().length() > 0) {
+      try {
+        indexCost = Double.parseDouble(indexCostString.trim());
+      } catch (final NumberFormatException e) {
+        LOG.error("Property " + SonargraphPluginBase.COST_PER_INDEX_POINT + " must be a double value." + " Ignoring value '" + indexCostString + "' and using default value '"
+          + indexCost + "'.", e);
+      }
+    }
+    return indexCost;
+  }
+
+  private void analyseMetricsForStructureDashbox(final CycleGroupProcessor.Statistics cycles) {
+    writer.write(STRUCTURE_MEASURES, buildUnitMetrics);
+
+    final double packages = buildUnitMetrics.get(SonargraphMetricKey.INTERNAL_PACKAGES);
+    final double cyclicity = cycles.getCyclicity();
+    final double cyclicPackages = cycles.getCyclicPackages();
+    writer.write(SonargraphDerivedMetrics.BIGGEST_CYCLE_GROUP, cycles.getBiggestCycleGroupSize());
+    writer.write(SonargraphSimpleMetrics.CYCLICITY, cyclicity);
+    writer.write(SonargraphSimpleMetrics.CYCLIC_PACKAGES, cyclicPackages);
+
+    if (packages > 0) {
+      writer.write(SonargraphDerivedMetrics.RELATIVE_CYCLICITY, HUNDRET_PERCENT * Math.sqrt(cyclicity) / packages);
+      writer.write(SonargraphDerivedMetrics.CYCLIC_PACKAGES_PERCENT, HUNDRET_PERCENT * cyclicPackages / packages);
+    } else {
+      writer.write(SonargraphDerivedMetrics.RELATIVE_CYCLICITY, 0);
+      writer.write(SonargraphDerivedMetrics.CYCLIC_PACKAGES_PERCENT, 0);
+    }
+  }
+
+  private void analyseMetricsForArchitectureDashbox() {
+    if (buildUnitMetrics.contains(SonargraphMetricKey.UNASSIGNED_TYPES)) {
+      assert buildUnitMetrics.get(SonargraphMetricKey.INTERNAL_TYPES) >= 1.0 : "Project must not be empty !";
+      writer.write(ARCHITECTURE_MEASURES, buildUnitMetrics);
+    } else {
+      LOG.info("No architecture measures found");
+    }
+    writer.write(WARNING_MEASURES, buildUnitMetrics);
+  }
+}
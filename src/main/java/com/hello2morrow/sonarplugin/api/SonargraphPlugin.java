@@ -26,6 +26,7 @@ import com.hello2morrow.sonarplugin.measurecomputer.SonargraphTransferInternalMe
 import com.hello2morrow.sonarplugin.metric.SonargraphDerivedMetrics;
 import com.hello2morrow.sonarplugin.metric.SonargraphSimpleMetrics;
 import com.hello2morrow.sonarplugin.metric.internal.SonargraphInternalMetrics;
+import com.hello2morrow.sonarplugin.persistence.ReportCache;
 import com.hello2morrow.sonarplugin.view.SonargraphArchitectureDashboard;
 import com.hello2morrow.sonarplugin.view.SonargraphCyclicityDashboard;
 import com.hello2morrow.sonarplugin.view.SonargraphStructuralDebtDashboard;
@@ -46,7 +47,34 @@ import java.util.List;
     name = "Cost per metric point of 'Structural debt index' (0 means not displayed)", project = false, module = false, global = true),
 
   @Property(key = SonargraphPluginBase.REPORT_PATH, defaultValue = "", name = "Path of the Sonargraph report (empty means default value)", project = true, module = false,
-    global = false)})
+    global = false),
+
+  @Property(key = SonargraphPluginBase.REPORT_READER, defaultValue = SonargraphPluginBase.REPORT_READER_DEFAULT,
+    name = "Reader used for the Sonargraph report ('jaxb', 'stax' or 'parallel')", project = true, module = false, global = true),
+
+  @Property(key = SonargraphPluginBase.REPORT_BINARY, defaultValue = "" + SonargraphPluginBase.REPORT_BINARY_DEFAULT,
+    name = "Store the parsed Sonargraph report in a binary file next to the XML report and reuse it while the XML report is unchanged",
+    project = true, module = false, global = true),
+
+  @Property(key = SonargraphPluginBase.REPORT_SHARDS, defaultValue = "" + SonargraphPluginBase.REPORT_SHARDS_DEFAULT,
+    name = "Store the part of the Sonargraph report of each build unit in a binary file next to the XML report and let a module read only "
+      + "its own part while the XML report is unchanged", project = true, module = false, global = true),
+
+  @Property(key = SonargraphPluginBase.REPORT_MEMORY_MAPPED, defaultValue = "" + SonargraphPluginBase.REPORT_MEMORY_MAPPED_DEFAULT,
+    name = "Memory-map the Sonargraph report instead of reading it through a stream (reports larger than 2 GB are always streamed)",
+    project = true, module = false, global = true),
+
+  @Property(key = SonargraphPluginBase.REPORT_SECTION_INDEX, defaultValue = "" + SonargraphPluginBase.REPORT_SECTION_INDEX_DEFAULT,
+    name = "Store the byte offsets of the sections of the Sonargraph report next to the XML report and read the sections directly "
+      + "(only used by the 'stax' reader)", project = true, module = false, global = true),
+
+  @Property(key = SonargraphPluginBase.REPORT_PARALLELISM, defaultValue = "",
+    name = "Number of threads used by the 'parallel' reader for the Sonargraph report and by the concurrent processing of a module "
+      + "(empty means number of processors)", project = true, module = false, global = true),
+
+  @Property(key = SonargraphPluginBase.PROCESSORS_CONCURRENT, defaultValue = "" + SonargraphPluginBase.PROCESSORS_CONCURRENT_DEFAULT,
+    name = "Create the issues of tasks, cycle groups, architecture violations and warnings of a module concurrently", project = true, module = false,
+    global = true)})
 public final class SonargraphPlugin extends SonarPlugin {
 
   @SuppressWarnings("rawtypes")
@@ -58,6 +86,7 @@ public final class SonargraphPlugin extends SonarPlugin {
     list.add(SonargraphSimpleMetrics.class);
     list.add(SonargraphDerivedMetrics.class);
     list.add(SonargraphInternalMetrics.class);
+    list.add(ReportCache.class);
     list.add(SonargraphSensor.class);
 
     list.add(SonargraphTransferInternalMeasureComputer.class);
@@ -0,0 +1,90 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns the {@link BuildUnitId}s of a single report. The table is created together with the index of the report and dropped with it;
+ * the fully qualified names found in the report are normalized only once per distinct name.
+ * <p>
+ * Only the names of the report are to be interned. Names coming from elsewhere, e.g. from the analysed project, must be looked up with
+ * {@link #find(String)} or {@link #findFqName(String)}, so that they do not grow the table.
+ */
+public final class BuildUnitIdTable {
+
+  private final ConcurrentMap<String, BuildUnitId> byName = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, BuildUnitId> byFqName = new ConcurrentHashMap<>();
+
+  /**
+   * @param name normalized build unit name
+   */
+  public BuildUnitId intern(final String name) {
+    final BuildUnitId id = byName.get(name);
+    if (id != null) {
+      return id;
+    }
+    final BuildUnitId created = new BuildUnitId(name);
+    final BuildUnitId previous = byName.putIfAbsent(name, created);
+    return previous != null ? previous : created;
+  }
+
+  /**
+   * @param fqName fully qualified build unit name as found in the report, e.g. "Project::BuildUnit"
+   */
+  public BuildUnitId internFqName(final String fqName) {
+    if (fqName == null) {
+      return intern(SonargraphUtilities.getBuildUnitName(null));
+    }
+    final BuildUnitId id = byFqName.get(fqName);
+    if (id != null) {
+      return id;
+    }
+    final BuildUnitId normalized = intern(SonargraphUtilities.getBuildUnitName(fqName));
+    byFqName.putIfAbsent(fqName, normalized);
+    return normalized;
+  }
+
+  /**
+   * @param name normalized build unit name
+   * @return the id or null if the name is not part of the report
+   */
+  public BuildUnitId find(final String name) {
+    return name != null ? byName.get(name) : null;
+  }
+
+  /**
+   * @param fqName fully qualified build unit name, e.g. "Project::BuildUnit"
+   * @return the id or null if the build unit is not part of the report
+   */
+  public BuildUnitId findFqName(final String fqName) {
+    if (fqName == null) {
+      return find(SonargraphUtilities.getBuildUnitName(null));
+    }
+    final BuildUnitId id = byFqName.get(fqName);
+    return id != null ? id : find(SonargraphUtilities.getBuildUnitName(fqName));
+  }
+
+  /**
+   * @return number of interned build unit names
+   */
+  public int size() {
+    return byName.size();
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the directories found in the Sonargraph report for the analysis of a module. Paths are normalized as strings, only the base
+ * path they are relative to is made canonical once. Whether a directory exists is answered from a walk of the module base directory that
+ * is done on demand: each directory is read at most once, and a directory below the base directory is only read if it is listed in its
+ * parent directory. Directories outside of the module base directory are read directly, but also only once.
+ * <p>
+ * The names of the parent directory are compared case-sensitively. If only a name differing in case is listed, the directory is read
+ * directly, so that the file system decides whether it exists.
+ */
+public final class DirectoryResolver {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DirectoryResolver.class);
+  private static final char SEPARATOR = '/';
+  /** Marks a path that has been read, but is not a directory */
+  private static final Set<String> NO_DIRECTORY = Collections.unmodifiableSet(new HashSet<String>());
+
+  private final String baseDir;
+  /** Names of the entries by normalized directory path */
+  private final Map<String, Set<String>> directories = new HashMap<>();
+  private final Map<String, String> canonicalPaths = new HashMap<>();
+  private int lookups;
+  private int cachedLookups;
+  private int fileSystemAccesses;
+
+  /**
+   * @param baseDir base directory of the module, may be null
+   */
+  public DirectoryResolver(final File baseDir) {
+    this.baseDir = baseDir != null ? normalize(baseDir.getAbsolutePath()) : null;
+  }
+
+  /**
+   * Replaces '\' by '/', removes "." segments, empty segments and a trailing separator, and resolves ".." segments. The file system is
+   * not accessed, so symbolic links are not resolved.
+   *
+   * @return the normalized path, empty for an empty path
+   */
+  public static String normalize(final String path) {
+    if (path.isEmpty()) {
+      return path;
+    }
+
+    final String[] segments = path.replace('\\', SEPARATOR).split(String.valueOf(SEPARATOR));
+    final List<String> normalized = new ArrayList<>(segments.length);
+    for (final String next : segments) {
+      if (next.isEmpty() || ".".equals(next)) {
+        continue;
+      }
+      if ("..".equals(next)) {
+        if (!normalized.isEmpty() && !"..".equals(normalized.get(normalized.size() - 1))) {
+          normalized.remove(normalized.size() - 1);
+        } else if (!isAbsolute(path)) {
+          normalized.add(next);
+        }
+        continue;
+      }
+      normalized.add(next);
+    }
+
+    final StringBuilder builder = new StringBuilder(path.length());
+    if (path.charAt(0) == SEPARATOR || path.charAt(0) == '\\') {
+      builder.append(SEPARATOR);
+    }
+    for (final String next : normalized) {
+      if (builder.length() > 0 && builder.charAt(builder.length() - 1) != SEPARATOR) {
+        builder.append(SEPARATOR);
+      }
+      builder.append(next);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * @return true if the path starts with a separator or a drive letter
+   */
+  private static boolean isAbsolute(final String path) {
+    if (path.length() > 1 && path.charAt(1) == ':') {
+      return true;
+    }
+    return !path.isEmpty() && (path.charAt(0) == SEPARATOR || path.charAt(0) == '\\');
+  }
+
+  /**
+   * Like {@code new File(basePath, path).getCanonicalPath()} with '/' as separator, but the canonical path of the base path is only
+   * determined once and the given path is normalized as a string.
+   *
+   * @return the absolute path or null if the canonical path of the base path cannot be determined
+   */
+  public synchronized String getAbsolutePath(final String basePath, final String path) {
+    String canonicalBasePath = canonicalPaths.get(basePath);
+    if (canonicalBasePath == null) {
+      try {
+        fileSystemAccesses++;
+        canonicalBasePath = normalize(new File(basePath).getCanonicalPath());
+      } catch (final IOException e) {
+        LOG.error("Failed to determine canonical path of '" + basePath + "'", e);
+        return null;
+      }
+      canonicalPaths.put(basePath, canonicalBasePath);
+    }
+    return normalize(canonicalBasePath + SEPARATOR + path);
+  }
+
+  /**
+   * Like {@link File#isDirectory()}, but each directory is only read once.
+   */
+  public synchronized boolean isDirectory(final File dir) {
+    lookups++;
+    final int accesses = fileSystemAccesses;
+    final boolean isDirectory = read(normalize(dir.getAbsolutePath())) != NO_DIRECTORY;
+    if (accesses == fileSystemAccesses) {
+      cachedLookups++;
+    }
+    return isDirectory;
+  }
+
+  /**
+   * @return the names of the entries of the directory or {@link #NO_DIRECTORY}
+   */
+  private Set<String> read(final String directory) {
+    final Set<String> cached = directories.get(directory);
+    if (cached != null) {
+      return cached;
+    }
+
+    Set<String> entries = NO_DIRECTORY;
+    final int separator = directory.lastIndexOf(SEPARATOR);
+    if (baseDir != null && separator >= 0 && directory.startsWith(baseDir) && directory.length() > baseDir.length()
+      && directory.charAt(baseDir.length()) == SEPARATOR) {
+      final String parent = separator > 0 ? directory.substring(0, separator) : String.valueOf(SEPARATOR);
+      final Set<String> siblings = read(parent);
+      final String name = directory.substring(separator + 1);
+      if (siblings.contains(name) || containsIgnoreCase(siblings, name)) {
+        entries = list(directory);
+      }
+    } else {
+      entries = list(directory);
+    }
+    directories.put(directory, entries);
+    return entries;
+  }
+
+  private static boolean containsIgnoreCase(final Set<String> names, final String name) {
+    for (final String next : names) {
+      if (next.equalsIgnoreCase(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Set<String> list(final String directory) {
+    fileSystemAccesses++;
+    final String[] names = new File(directory).list();
+    return names != null ? new HashSet<>(Arrays.asList(names)) : NO_DIRECTORY;
+  }
+
+  public synchronized int getLookups() {
+    return lookups;
+  }
+
+  /**
+   * @return number of lookups answered without accessing the file system
+   */
+  public synchronized int getCachedLookups() {
+    return cachedLookups;
+  }
+
+  /**
+   * @return number of directory reads and canonical path resolutions
+   */
+  public synchronized int getFileSystemAccesses() {
+    return fileSystemAccesses;
+  }
+
+  @Override
+  public synchronized String toString() {
+    final int hitRatio = lookups > 0 ? cachedLookups * 100 / lookups : 0;
+    return "Directory resolver [lookups=" + lookups + ", hitRatio=" + hitRatio + "%, fileSystemAccesses=" + fileSystemAccesses + "]";
+  }
+}
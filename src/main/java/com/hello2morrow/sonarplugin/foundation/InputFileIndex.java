@@ -0,0 +1,281 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index over the input files of a module for resolving the file paths found in the Sonargraph report. The paths of all input files are
+ * stored in a trie of their reversed path segments, so that a lookup of a path suffix only needs to follow the segments of the looked up
+ * path instead of testing every input file. The index is built on first use; the index for absolute paths is only built if needed.
+ * <p>
+ * A lookup matches exactly the files whose relative (or absolute) path ends with the given string, i.e. the leftmost segment of the
+ * looked up path may be a suffix of a path segment of the input file. Together with the relative paths, a table of the relative paths of
+ * the input files and the set of their parent directories are built for exact lookups.
+ */
+public final class InputFileIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(InputFileIndex.class);
+  private static final char SEPARATOR = '/';
+
+  private final FileSystem fileSystem;
+  private Node relativePaths;
+  private Map<String, InputFile> filesByRelativePath;
+  private Set<String> directories;
+  private Node absolutePaths;
+  private DirectoryResolver directoryResolver;
+
+  public InputFileIndex(final FileSystem fileSystem) {
+    this.fileSystem = fileSystem;
+  }
+
+  public FileSystem getFileSystem() {
+    return fileSystem;
+  }
+
+  /**
+   * @return the resolver for the directories of the module, created on first use
+   */
+  public synchronized DirectoryResolver getDirectoryResolver() {
+    if (directoryResolver == null) {
+      directoryResolver = new DirectoryResolver(fileSystem.baseDir());
+    }
+    return directoryResolver;
+  }
+
+  /**
+   * @param path path of the file, separated by '/'
+   * @param useAbsolutePath true if the path is to be matched against the absolute paths of the input files
+   * @return the only input file whose path ends with the given path, null if there is no or more than one such file
+   */
+  public InputFile find(final String path, final boolean useAbsolutePath) {
+    final Node root = useAbsolutePath ? getAbsolutePaths() : getRelativePaths();
+    final String[] segments = split(path);
+
+    Node node = root;
+    for (int i = segments.length - 1; i > 0 && node != null; i--) {
+      node = node.getChild(segments[i]);
+    }
+    if (node == null) {
+      return null;
+    }
+
+    final Match match = new Match();
+    node.collectChildrenEndingWith(segments[0], match);
+    if (match.count > 1) {
+      LOG.warn("Path '" + path + "' is ambiguous, it matches " + match.count + " files, e.g. '" + pathOf(match.first, useAbsolutePath) + "' and '"
+        + pathOf(match.second, useAbsolutePath) + "'");
+      return null;
+    }
+    return match.first;
+  }
+
+  /**
+   * @param relativePath path of the file relative to the module base directory, separated by '/'
+   * @return the input file with exactly this relative path, null if there is none
+   */
+  public InputFile findExact(final String relativePath) {
+    getRelativePaths();
+    return filesByRelativePath.get(relativePath);
+  }
+
+  /**
+   * @param relativePath path relative to the module base directory, separated by '/'
+   * @return true if the path is a parent directory of at least one input file
+   */
+  public boolean isDirectory(final String relativePath) {
+    getRelativePaths();
+    return directories.contains(relativePath);
+  }
+
+  private synchronized Node getRelativePaths() {
+    if (relativePaths == null) {
+      filesByRelativePath = new HashMap<>();
+      directories = new HashSet<>();
+      relativePaths = createIndex(false);
+    }
+    return relativePaths;
+  }
+
+  private synchronized Node getAbsolutePaths() {
+    if (absolutePaths == null) {
+      absolutePaths = createIndex(true);
+    }
+    return absolutePaths;
+  }
+
+  private Node createIndex(final boolean useAbsolutePath) {
+    final Node root = new Node();
+    final Iterable<InputFile> inputFiles = fileSystem.inputFiles(fileSystem.predicates().all());
+    if (inputFiles == null) {
+      return root;
+    }
+
+    int files = 0;
+    for (final InputFile inputFile : inputFiles) {
+      final String path = pathOf(inputFile, useAbsolutePath);
+      if (path == null) {
+        continue;
+      }
+      final String[] segments = split(path);
+      Node node = root;
+      for (int i = segments.length - 1; i >= 0; i--) {
+        node = node.getOrCreateChild(segments[i]);
+        node.fileCount++;
+      }
+      node.addFile(inputFile);
+      if (!useAbsolutePath) {
+        addRelativePath(path, inputFile);
+      }
+      files++;
+    }
+    LOG.debug("Indexed " + (useAbsolutePath ? "absolute" : "relative") + " paths of " + files + " input files");
+    return root;
+  }
+
+  private void addRelativePath(final String relativePath, final InputFile inputFile) {
+    filesByRelativePath.put(relativePath, inputFile);
+    // The parents of a directory that is already known have been added as well
+    int separator = relativePath.lastIndexOf(SEPARATOR);
+    while (separator > 0 && directories.add(relativePath.substring(0, separator))) {
+      separator = relativePath.lastIndexOf(SEPARATOR, separator - 1);
+    }
+  }
+
+  private static String pathOf(final InputFile inputFile, final boolean useAbsolutePath) {
+    return useAbsolutePath ? inputFile.absolutePath() : inputFile.relativePath();
+  }
+
+  private static String[] split(final String path) {
+    int count = 1;
+    for (int i = 0; i < path.length(); i++) {
+      if (path.charAt(i) == SEPARATOR) {
+        count++;
+      }
+    }
+
+    final String[] segments = new String[count];
+    int start = 0;
+    int index = 0;
+    for (int i = 0; i < path.length(); i++) {
+      if (path.charAt(i) == SEPARATOR) {
+        segments[index++] = path.substring(start, i);
+        start = i + 1;
+      }
+    }
+    segments[index] = path.substring(start);
+    return segments;
+  }
+
+  private static final class Node {
+    private Map<String, Node> children;
+    /** Files whose path has no further segment to the left of this node */
+    private List<InputFile> files;
+    /** Number of files in this sub tree */
+    private int fileCount;
+
+    Node getChild(final String segment) {
+      return children != null ? children.get(segment) : null;
+    }
+
+    Node getOrCreateChild(final String segment) {
+      if (children == null) {
+        children = new HashMap<>();
+      }
+      Node child = children.get(segment);
+      if (child == null) {
+        child = new Node();
+        children.put(segment, child);
+      }
+      return child;
+    }
+
+    void addFile(final InputFile file) {
+      if (files == null) {
+        files = new ArrayList<>(1);
+      }
+      files.add(file);
+    }
+
+    void collectChildrenEndingWith(final String segment, final Match match) {
+      if (children == null) {
+        return;
+      }
+      final Node exact = children.get(segment);
+      if (exact != null) {
+        exact.collectFiles(match);
+      }
+      for (final Map.Entry<String, Node> entry : children.entrySet()) {
+        if (match.count > 1) {
+          return;
+        }
+        if (entry.getValue() != exact && entry.getKey().endsWith(segment)) {
+          entry.getValue().collectFiles(match);
+        }
+      }
+    }
+
+    /**
+     * Adds the number of files of this sub tree to the match and remembers the first two of them.
+     */
+    void collectFiles(final Match match) {
+      match.count += fileCount;
+      collectFirstFiles(match);
+    }
+
+    private void collectFirstFiles(final Match match) {
+      if (files != null) {
+        for (final InputFile file : files) {
+          match.offer(file);
+        }
+      }
+      if (children != null) {
+        for (final Node child : children.values()) {
+          if (match.second != null) {
+            return;
+          }
+          child.collectFirstFiles(match);
+        }
+      }
+    }
+  }
+
+  private static final class Match {
+    private int count;
+    private InputFile first;
+    private InputFile second;
+
+    void offer(final InputFile file) {
+      if (first == null) {
+        first = file;
+      } else if (second == null) {
+        second = file;
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import java.util.BitSet;
+
+/**
+ * Values of the {@link SonargraphMetricKey metrics} of a build unit or of the system. The values are stored in a primitive array indexed by
+ * the ordinal of the key, a bit set records which metrics are contained in the report.
+ */
+public final class MetricValues {
+
+  private static final int SIZE = SonargraphMetricKey.values().length;
+
+  private final double[] values = new double[SIZE];
+  private final BitSet present = new BitSet(SIZE);
+
+  public void clear() {
+    present.clear();
+  }
+
+  public void set(final SonargraphMetricKey key, final double value) {
+    values[key.ordinal()] = value;
+    present.set(key.ordinal());
+  }
+
+  public boolean contains(final SonargraphMetricKey key) {
+    return present.get(key.ordinal());
+  }
+
+  /**
+   * @return the value of the metric, 0 if the report does not contain it
+   */
+  public double get(final SonargraphMetricKey key) {
+    return contains(key) ? values[key.ordinal()] : 0.0;
+  }
+
+  public boolean isEmpty() {
+    return present.isEmpty();
+  }
+}
@@ -20,7 +20,6 @@ package com.hello2morrow.sonarplugin.foundation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.SensorContext;
-import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputDir;
 import org.sonar.api.batch.fs.InputFile;
@@ -32,7 +31,6 @@ import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.batch.sensor.issue.NewIssueLocation;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.Metric;
-import org.sonar.api.measures.Metric.ValueType;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 
@@ -40,8 +38,9 @@ import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 public class SonarQubeUtilities {
 
@@ -53,32 +52,32 @@ public class SonarQubeUtilities {
 
   public static final Double TRUE = 1.0;
   public static final Double FALSE = 0.0;
-  private static final int NO_DECIMAL = 0;
-  private static final int DECIMAL = 1;
+  public static final String ABBREVIATED_BUILD_UNIT_PREFIX = "...";
 
   private SonarQubeUtilities() {
     // do not instantiate
   }
 
-  public static double saveMeasure(final Resource resource, final SensorContext context, final Map<String, Number> metrics, final String sonargraphMetricName,
-    final Metric<Serializable> sonarQubeMetric) {
-    final double value = SonargraphUtilities.getBuildUnitMetricValue(metrics, sonargraphMetricName, true).doubleValue();
-    return saveMeasure(resource, context, sonarQubeMetric, value);
-  }
-
   public static double saveMeasure(final Resource resource, final SensorContext context, final Metric<Serializable> sonarQubeMetric, final double value) {
     return saveMeasure(resource, context, sonarQubeMetric, value, null, -1);
   }
 
+  /**
+   * Saves the value together with the alert level of the threshold for the given threshold metric value. If no threshold is given or the
+   * threshold metric value is negative, the plain value is saved.
+   */
   public static double saveMeasure(final Resource resource, final SensorContext context, final Metric<Serializable> sonarQubeMetric, final double value,
     final AlertThreshold threshold, final double thresholdMetricValue) {
-    final Measure<Serializable> measure = new Measure<>(sonarQubeMetric, value, sonarQubeMetric.getType() == ValueType.INT ? NO_DECIMAL : DECIMAL);
-
-    if (threshold != null && thresholdMetricValue >= 0) {
-      measure.setAlertStatus(threshold.getLevel(value));
-      measure.setAlertText(sonarQubeMetric.getKey());
+    if (threshold == null || thresholdMetricValue < 0) {
+      context.saveMeasure(resource, sonarQubeMetric, value);
+      return value;
     }
-    context.saveMeasure(resource, sonarQubeMetric, value);
+
+    final Measure<Serializable> measure = new Measure<>(sonarQubeMetric);
+    measure.setValue(value);
+    measure.setAlertStatus(threshold.getLevel(thresholdMetricValue));
+    measure.setAlertText(sonarQubeMetric.getKey());
+    context.saveMeasure(resource, measure);
     return value;
   }
 
@@ -121,40 +120,43 @@ public class SonarQubeUtilities {
     return null;
   }
 
-  public static InputPath getInputPath(final FileSystem fileSystem, final String fqName) {
-    return getInputPath(fileSystem, fqName, false);
+  public static InputPath getInputPath(final InputFileIndex inputFileIndex, final String fqName) {
+    return getInputPath(inputFileIndex, fqName, false);
   }
 
-  public static InputPath getInputPath(final FileSystem fileSystem, final String fqName, final boolean useAbsolutePath) {
-    final boolean isSourceFile = fqName.endsWith(".java");
+  public static InputPath getInputPath(final InputFileIndex inputFileIndex, final String fqName, final boolean useAbsolutePath) {
+    final boolean isSourceFile = isSourceFile(fqName);
     if (isSourceFile) {
-      return getSourceFile(fileSystem, fqName, useAbsolutePath, isSourceFile);
+      return getSourceFile(inputFileIndex, fqName, useAbsolutePath, isSourceFile);
     }
-    return getSourceDirectory(fileSystem, fqName, useAbsolutePath);
+    return getSourceDirectory(inputFileIndex, fqName, useAbsolutePath);
+  }
+
+  /**
+   * @return true if the path of the report denotes a source file, false if it denotes a directory
+   */
+  public static boolean isSourceFile(final String fqName) {
+    return fqName.endsWith(".java");
   }
 
-  private static InputPath getSourceDirectory(final FileSystem fileSystem, final String fqName, final boolean useAbsolutePath) {
+  private static InputPath getSourceDirectory(final InputFileIndex inputFileIndex, final String fqName, final boolean useAbsolutePath) {
+    final FileSystem fileSystem = inputFileIndex.getFileSystem();
     File dir;
     if (useAbsolutePath) {
       dir = new File(fqName);
     } else {
       dir = new File(fileSystem.baseDir(), fqName);
     }
-    if (!dir.exists()) {
+    if (!inputFileIndex.getDirectoryResolver().isDirectory(dir)) {
       return null;
     }
     return fileSystem.inputDir(dir);
   }
 
-  private static InputPath getSourceFile(final FileSystem fileSystem, final String fqName, final boolean useAbsolutePath, final boolean isSourceFile) {
-    final InputFile file = fileSystem.inputFile(new FilePredicate() {
-      @Override
-      public boolean apply(final InputFile file) {
-        return useAbsolutePath ? file.absolutePath().endsWith(fqName) : file.relativePath().endsWith(fqName);
-      }
-    });
+  private static InputPath getSourceFile(final InputFileIndex inputFileIndex, final String fqName, final boolean useAbsolutePath, final boolean isSourceFile) {
+    final InputFile file = inputFileIndex.find(fqName, useAbsolutePath);
     if (file == null) {
-      LOG.error((isSourceFile ? SOURCE_FILE_NOT_FOUND_MESSAGE : DIRECTORY_NOT_FOUND_MESSAGE) + fqName);
+      LOG.debug((isSourceFile ? SOURCE_FILE_NOT_FOUND_MESSAGE : DIRECTORY_NOT_FOUND_MESSAGE) + fqName);
       return null;
     }
     return file;
@@ -172,6 +174,17 @@ public class SonarQubeUtilities {
     return rule;
   }
 
+  /**
+   * @return the keys of all active Sonargraph rules, e.g. {@link SonargraphPluginBase#ARCH_RULE_KEY}
+   */
+  public static Set<String> getActiveSonargraphRuleKeys(final SensorContext sensorContext) {
+    final Set<String> ruleKeys = new HashSet<>();
+    for (final ActiveRule next : sensorContext.activeRules().findByRepository(SonargraphPluginBase.PLUGIN_KEY)) {
+      ruleKeys.add(next.ruleKey().rule());
+    }
+    return ruleKeys;
+  }
+
   public static boolean isAggregatingProject(final Project project) {
     if (project == null) {
       return false;
@@ -212,25 +225,13 @@ public class SonarQubeUtilities {
   }
 
   public static boolean buildUnitMatchesAnalyzedProject(final String buName, final Project project) {
-    final boolean isBranch = project.getBranch() != null && project.getBranch().length() > 0;
-    final String[] elements = project.key().split(GROUP_ARTIFACT_SEPARATOR);
-    assert elements.length >= 1 : "project.getKey() must not return an empty string";
+    final String[] names = getBuildUnitNamesOfProject(project);
+    final String artifactId = names[0];
+    final String longName = names[1];
+    final String longName2 = names[2];
 
     boolean result = false;
 
-    final String groupId = elements[0];
-    String artifactId = elements[elements.length - 1];
-    /**
-     * We need this check to support sonar.branch functionality. Branch tags are appended to the project key
-     * <group-id>:<artifact-id>:<branch-tag>
-     */
-    if (isBranch) {
-      artifactId = elements[elements.length - 2];
-    }
-
-    final String longName = artifactId + "[" + groupId + "]";
-    final String longName2 = groupId + ':' + artifactId;
-
     if (buName.equalsIgnoreCase(artifactId)) {
       result = true;
     }
@@ -241,13 +242,36 @@ public class SonarQubeUtilities {
       result = true;
     }
 
-    if (buName.startsWith("...") && longName2.endsWith(buName.substring(2))) {
+    if (buName.startsWith(ABBREVIATED_BUILD_UNIT_PREFIX) && longName2.endsWith(buName.substring(2))) {
       result = true;
     }
 
     return result;
   }
 
+  /**
+   * @return the names of a build unit that is mapped to the project (compared ignoring case): the artifact id, "artifactId[groupId]" and
+   *         "groupId:artifactId". The last one is also matched by build unit names starting with "..." and ending with a part of it that
+   *         starts with a '.'.
+   */
+  public static String[] getBuildUnitNamesOfProject(final Project project) {
+    final boolean isBranch = project.getBranch() != null && project.getBranch().length() > 0;
+    final String[] elements = project.key().split(GROUP_ARTIFACT_SEPARATOR);
+    assert elements.length >= 1 : "project.getKey() must not return an empty string";
+
+    final String groupId = elements[0];
+    String artifactId = elements[elements.length - 1];
+    /**
+     * We need this check to support sonar.branch functionality. Branch tags are appended to the project key
+     * <group-id>:<artifact-id>:<branch-tag>
+     */
+    if (isBranch) {
+      artifactId = elements[elements.length - 2];
+    }
+
+    return new String[] { artifactId, artifactId + "[" + groupId + "]", groupId + ':' + artifactId };
+  }
+
   public static List<String> convertMetricListToKeyList(final List<Metric<Serializable>> metrics) {
     final List<String> keys = new ArrayList<>();
     for (final Metric<Serializable> next : metrics) {
@@ -0,0 +1,79 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The metrics of the Sonargraph report that are read by the plugin, see {@link SonargraphStandaloneMetricNames}. The ordinal of a key is
+ * the index of its value in {@link MetricValues}.
+ */
+public enum SonargraphMetricKey {
+  ACD(SonargraphStandaloneMetricNames.ACD),
+  RELATIVE_ACD(SonargraphStandaloneMetricNames.RELATIVE_ACD),
+  NCCD(SonargraphStandaloneMetricNames.NCCD),
+  INTERNAL_PACKAGES(SonargraphStandaloneMetricNames.INTERNAL_PACKAGES),
+  INSTRUCTIONS(SonargraphStandaloneMetricNames.INSTRUCTIONS),
+  UNASSIGNED_TYPES(SonargraphStandaloneMetricNames.UNASSIGNED_TYPES),
+  VIOLATING_DEPENDENCIES(SonargraphStandaloneMetricNames.VIOLATING_DEPENDENCIES),
+  VIOLATING_REFERENCES(SonargraphStandaloneMetricNames.VIOLATING_REFERENCES),
+  VIOLATING_TYPES(SonargraphStandaloneMetricNames.VIOLATING_TYPES),
+  TYPE_DEPENDENCIES(SonargraphStandaloneMetricNames.TYPE_DEPENDENCIES),
+  JAVA_FILES(SonargraphStandaloneMetricNames.JAVA_FILES),
+  IGNORED_VIOLATIONS(SonargraphStandaloneMetricNames.IGNORED_VIOLATIONS),
+  IGNORED_WARNINGS(SonargraphStandaloneMetricNames.IGNORED_WARNINGS),
+  TASKS(SonargraphStandaloneMetricNames.TASKS),
+  ALL_WARNINGS(SonargraphStandaloneMetricNames.ALL_WARNINGS),
+  CYCLE_WARNINGS(SonargraphStandaloneMetricNames.CYCLE_WARNINGS),
+  THRESHOLD_WARNINGS(SonargraphStandaloneMetricNames.THRESHOLD_WARNINGS),
+  WORKSPACE_WARNINGS(SonargraphStandaloneMetricNames.WORKSPACE_WARNINGS),
+  DUPLICATE_WARNINGS(SonargraphStandaloneMetricNames.DUPLICATE_WARNINGS),
+  EROSION_REFS(SonargraphStandaloneMetricNames.EROSION_REFS),
+  EROSION_TYPES(SonargraphStandaloneMetricNames.EROSION_TYPES),
+  INTERNAL_TYPES(SonargraphStandaloneMetricNames.INTERNAL_TYPES),
+  STUCTURAL_DEBT_INDEX(SonargraphStandaloneMetricNames.STUCTURAL_DEBT_INDEX);
+
+  private static final Map<String, SonargraphMetricKey> BY_STANDARD_NAME = new HashMap<>();
+
+  static {
+    for (final SonargraphMetricKey next : values()) {
+      BY_STANDARD_NAME.put(next.getStandardName(), next);
+    }
+  }
+
+  private final String standardName;
+
+  private SonargraphMetricKey(final String standardName) {
+    this.standardName = standardName;
+  }
+
+  /**
+   * @return the standard name of the metric in the report
+   */
+  public String getStandardName() {
+    return standardName;
+  }
+
+  /**
+   * @return the key of the metric with the given standard name, null if the metric is not read by the plugin
+   */
+  public static SonargraphMetricKey forStandardName(final String standardName) {
+    return BY_STANDARD_NAME.get(standardName);
+  }
+}
@@ -18,15 +18,28 @@
 
 package com.hello2morrow.sonarplugin.foundation;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-
 public final class SonargraphPluginBase {
   public static final String COST_PER_INDEX_POINT = "sonargraph.index_point_cost";
   public static final double COST_PER_INDEX_POINT_DEFAULT = 11.0;
   public static final String CURRENCY = "sonargraph.currency";
   public static final String CURRENCY_DEFAULT = "USD";
   public static final String REPORT_PATH = "sonar.sonargraph.report.path";
+  public static final String REPORT_READER = "sonar.sonargraph.report.reader";
+  public static final String REPORT_READER_JAXB = "jaxb";
+  public static final String REPORT_READER_STAX = "stax";
+  public static final String REPORT_READER_PARALLEL = "parallel";
+  public static final String REPORT_READER_DEFAULT = REPORT_READER_JAXB;
+  public static final String REPORT_BINARY = "sonar.sonargraph.report.binary";
+  public static final boolean REPORT_BINARY_DEFAULT = false;
+  public static final String REPORT_SHARDS = "sonar.sonargraph.report.shards";
+  public static final boolean REPORT_SHARDS_DEFAULT = false;
+  public static final String REPORT_MEMORY_MAPPED = "sonar.sonargraph.report.mmap";
+  public static final boolean REPORT_MEMORY_MAPPED_DEFAULT = false;
+  public static final String REPORT_SECTION_INDEX = "sonar.sonargraph.report.sectionIndex";
+  public static final boolean REPORT_SECTION_INDEX_DEFAULT = false;
+  public static final String REPORT_PARALLELISM = "sonar.sonargraph.report.parallelism";
+  public static final String PROCESSORS_CONCURRENT = "sonar.sonargraph.processors.concurrent";
+  public static final boolean PROCESSORS_CONCURRENT_DEFAULT = false;
 
   public static final String PLUGIN_KEY = "Sonargraph";
 
@@ -37,19 +50,6 @@ public final class SonargraphPluginBase {
   public static final String WORKSPACE_RULE_KEY = "sonargraph.workspace";
   public static final String TASK_RULE_KEY = "sonargraph.open_task";
 
-  public static final DecimalFormat FLOAT_FORMAT = new DecimalFormat("###,##0.00");
-  public static final DecimalFormat INTEGER_FORMAT = new DecimalFormat("###,##0");
-
-  static {
-    DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-    symbols.setGroupingSeparator(',');
-    symbols.setDecimalSeparator('.');
-    FLOAT_FORMAT.setDecimalFormatSymbols(symbols);
-    FLOAT_FORMAT.setParseIntegerOnly(false);
-    INTEGER_FORMAT.setDecimalFormatSymbols(symbols);
-    INTEGER_FORMAT.setParseIntegerOnly(true);
-  }
-
   private SonargraphPluginBase() {
     // Don't instantiate
   }
@@ -22,7 +22,7 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.config.Settings;
 
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 
 public class SonargraphUtilities {
 
@@ -74,20 +74,14 @@ public class SonargraphUtilities {
    *          indicates if a logging statement should be generated if metric cannot be found
    * @return
    */
-  public static Number getBuildUnitMetricValue(final Map<String, Number> metrics, final String key, final boolean flagMissingMetric) {
-    final Number num = metrics.get(key);
-
-    if (flagMissingMetric && num == null) {
-      LOG.error("Cannot find metric <" + key + "> in generated report");
+  public static double getBuildUnitMetricValue(final MetricValues metrics, final SonargraphMetricKey key, final boolean flagMissingMetric) {
+    if (flagMissingMetric && !metrics.contains(key)) {
+      LOG.error("Cannot find metric <" + key.getStandardName() + "> in generated report");
       LOG.error("Make sure you set the prepareForSonar option to true (see documentation).");
       LOG.error("If you used Sonargraph Quality for report generation: " + "Check that your quality model used during snapshot generation contains the required Sonar metrics!");
     }
 
-    if (num == null) {
-      return 0.0;
-    }
-
-    return num;
+    return metrics.get(key);
   }
 
   public static String getSourceFilePath(final String groupParentPath, final String sourceFilePath) {
@@ -132,4 +126,70 @@ public class SonargraphUtilities {
   public static String getConfiguredReportPath(final Settings settings) {
     return settings.getString(SonargraphPluginBase.REPORT_PATH);
   }
+
+  public static String getConfiguredReportReader(final Settings settings) {
+    final String reader = settings.getString(SonargraphPluginBase.REPORT_READER);
+    if (reader == null || reader.trim().length() == 0) {
+      return SonargraphPluginBase.REPORT_READER_DEFAULT;
+    }
+    return reader.trim().toLowerCase(Locale.ENGLISH);
+  }
+
+  public static boolean isBinaryReportEnabled(final Settings settings) {
+    if (!settings.hasKey(SonargraphPluginBase.REPORT_BINARY)) {
+      return SonargraphPluginBase.REPORT_BINARY_DEFAULT;
+    }
+    return settings.getBoolean(SonargraphPluginBase.REPORT_BINARY);
+  }
+
+  public static boolean isReportShardingEnabled(final Settings settings) {
+    if (!settings.hasKey(SonargraphPluginBase.REPORT_SHARDS)) {
+      return SonargraphPluginBase.REPORT_SHARDS_DEFAULT;
+    }
+    return settings.getBoolean(SonargraphPluginBase.REPORT_SHARDS);
+  }
+
+  public static boolean isMemoryMappedReportEnabled(final Settings settings) {
+    if (!settings.hasKey(SonargraphPluginBase.REPORT_MEMORY_MAPPED)) {
+      return SonargraphPluginBase.REPORT_MEMORY_MAPPED_DEFAULT;
+    }
+    return settings.getBoolean(SonargraphPluginBase.REPORT_MEMORY_MAPPED);
+  }
+
+  /**
+   * @return the configured number of threads for reading the report and for running the processors concurrently, the number of processors
+   *         if none (or an invalid one) is configured
+   */
+  public static int getConfiguredParallelism(final Settings settings) {
+    final String parallelism = settings.getString(SonargraphPluginBase.REPORT_PARALLELISM);
+    final int processors = Runtime.getRuntime().availableProcessors();
+    if (parallelism == null || parallelism.trim().length() == 0) {
+      return processors;
+    }
+    try {
+      final int value = Integer.parseInt(parallelism.trim());
+      if (value > 0) {
+        return value;
+      }
+    } catch (final NumberFormatException e) {
+      LOG.debug("Invalid parallelism '" + parallelism + "'", e);
+    }
+    LOG.warn("Property " + SonargraphPluginBase.REPORT_PARALLELISM + " must be a positive number. Ignoring value '" + parallelism + "' and using "
+      + processors);
+    return processors;
+  }
+
+  public static boolean isSectionIndexEnabled(final Settings settings) {
+    if (!settings.hasKey(SonargraphPluginBase.REPORT_SECTION_INDEX)) {
+      return SonargraphPluginBase.REPORT_SECTION_INDEX_DEFAULT;
+    }
+    return settings.getBoolean(SonargraphPluginBase.REPORT_SECTION_INDEX);
+  }
+
+  public static boolean isConcurrentProcessingEnabled(final Settings settings) {
+    if (!settings.hasKey(SonargraphPluginBase.PROCESSORS_CONCURRENT)) {
+      return SonargraphPluginBase.PROCESSORS_CONCURRENT_DEFAULT;
+    }
+    return settings.getBoolean(SonargraphPluginBase.PROCESSORS_CONCURRENT);
+  }
 }
@@ -0,0 +1,146 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.fs.InputFile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves the file paths of the report, which are relative to a source root of the Sonargraph workspace, by the workspace paths of the
+ * analysed build unit. Every workspace path (relative to the Sonargraph system directory, e.g. "AlarmClock/src/main/java") is mapped once
+ * to the longest of its suffixes that is a directory of the input files of the module (e.g. "src/main/java"). A path is then resolved by
+ * prepending the mapped source roots and looking up the result by its exact relative path in the {@link InputFileIndex}.
+ * <p>
+ * Paths that cannot be resolved this way, e.g. because the workspace is not part of the report or the path is found below several source
+ * roots, are left to the suffix lookup of the {@link InputFileIndex}.
+ */
+public final class WorkspacePathResolver {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WorkspacePathResolver.class);
+  private static final char SEPARATOR = '/';
+
+  private final InputFileIndex inputFileIndex;
+  private final Collection<String> workspacePaths;
+  private List<String> sourceRoots;
+  private final AtomicInteger directLookups = new AtomicInteger();
+  private final AtomicInteger fallbackLookups = new AtomicInteger();
+
+  /**
+   * @param workspacePaths workspace paths of the analysed build unit, relative to the Sonargraph system directory
+   */
+  public WorkspacePathResolver(final InputFileIndex inputFileIndex, final Collection<String> workspacePaths) {
+    this.inputFileIndex = inputFileIndex;
+    this.workspacePaths = new ArrayList<>(workspacePaths);
+  }
+
+  /**
+   * @param path path of a file relative to a source root of the Sonargraph workspace, separated by '/'
+   * @return the only input file found below the mapped source roots, null if the path needs to be resolved by the suffix lookup
+   */
+  public InputFile find(final String path) {
+    InputFile match = null;
+    if (!workspacePaths.isEmpty()) {
+      for (final String next : getSourceRoots()) {
+        final InputFile inputFile = inputFileIndex.findExact(next + SEPARATOR + path);
+        if (inputFile != null) {
+          if (match != null) {
+            match = null;
+            break;
+          }
+          match = inputFile;
+        }
+      }
+    }
+
+    if (match != null) {
+      directLookups.incrementAndGet();
+    } else {
+      fallbackLookups.incrementAndGet();
+    }
+    return match;
+  }
+
+  /**
+   * @return number of paths resolved by the source roots of the workspace
+   */
+  public int getDirectLookups() {
+    return directLookups.get();
+  }
+
+  /**
+   * @return number of paths that are left to the suffix lookup
+   */
+  public int getFallbackLookups() {
+    return fallbackLookups.get();
+  }
+
+  /**
+   * @return the source roots of the module the workspace paths are mapped to, relative to the module base directory
+   */
+  public synchronized List<String> getSourceRoots() {
+    if (sourceRoots == null) {
+      final Set<String> roots = new LinkedHashSet<>();
+      for (final String next : workspacePaths) {
+        final String workspacePath = DirectoryResolver.normalize(next);
+        if (workspacePath.isEmpty()) {
+          // The system directory itself is no source root
+          continue;
+        }
+        final String root = mapToDirectory(workspacePath);
+        if (root != null) {
+          roots.add(root);
+        }
+      }
+      LOG.debug("Mapped workspace paths " + workspacePaths + " to source roots " + roots);
+      sourceRoots = Collections.unmodifiableList(new ArrayList<>(roots));
+    }
+    return sourceRoots;
+  }
+
+  /**
+   * @return the longest suffix of the workspace path that is a directory of the input files, null if there is none
+   */
+  private String mapToDirectory(final String workspacePath) {
+    int start = 0;
+    while (true) {
+      final String suffix = workspacePath.substring(start);
+      if (inputFileIndex.isDirectory(suffix)) {
+        return suffix;
+      }
+      final int separator = workspacePath.indexOf(SEPARATOR, start);
+      if (separator < 0) {
+        return null;
+      }
+      start = separator + 1;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Workspace path resolver [directLookups=" + getDirectLookups() + ", fallbackLookups=" + getFallbackLookups() + "]";
+  }
+}
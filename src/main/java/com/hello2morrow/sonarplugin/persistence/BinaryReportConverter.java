@@ -0,0 +1,84 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Command line converter that creates the binary form of one or more XML reports ahead of the analysis, e.g. right after Sonargraph has
+ * written the report. Usage: <code>BinaryReportConverter &lt;report.xml&gt;...</code>
+ * <p>
+ * Compressed reports are accepted as well, see {@link ReportInputStreams}.
+ */
+public final class BinaryReportConverter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BinaryReportConverter.class);
+
+  private BinaryReportConverter() {
+    super();
+  }
+
+  public static void main(final String[] args) {
+    if (args.length == 0) {
+      LOG.error("Usage: " + BinaryReportConverter.class.getName() + " <report.xml>...");
+      System.exit(1);
+    }
+    if (convert(args) > 0) {
+      System.exit(2);
+    }
+  }
+
+  /**
+   * Converts each report, a report that cannot be converted is logged and skipped.
+   *
+   * @param reportPaths paths of the XML reports
+   * @return number of reports that could not be converted
+   */
+  static int convert(final String... reportPaths) {
+    int failures = 0;
+    for (final String next : reportPaths) {
+      try {
+        final File sidecar = convert(new File(next));
+        LOG.info("Converted " + next + " -> " + sidecar.getPath());
+      } catch (final IOException | JAXBException e) {
+        LOG.error("Cannot convert " + next + ": " + e.getMessage(), e);
+        failures++;
+      }
+    }
+    return failures;
+  }
+
+  /**
+   * @return the written binary report
+   */
+  static File convert(final File reportFile) throws IOException, JAXBException {
+    final ReportContext report;
+    try (InputStream input = ReportInputStreams.open(reportFile, false)) {
+      report = JaxbUnmarshallerPool.getInstance().unmarshal(input);
+    }
+    return BinaryReportWriter.writeSidecar(reportFile, report);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import java.io.File;
+import java.nio.charset.Charset;
+
+/**
+ * Layout of the binary form of a parsed Sonargraph report, which is stored next to the XML report.
+ *
+ * <pre>
+ * int   magic number
+ * int   format version
+ * long  size of the XML report
+ * long  last modification time of the XML report
+ * int   length of the payload
+ * long  CRC32 checksum of the payload
+ * payload:
+ *   varint number of strings, followed by the strings as varint length and UTF-8 bytes
+ *   report elements, strings are written as varint index into the string table + 1 (0 means null),
+ *   lists as varint size followed by the elements, optional elements with a leading presence byte,
+ *   integers as presence byte followed by the zigzag encoded value as varint
+ * </pre>
+ *
+ * All fixed size values are big endian. The size and modification time of the XML report serve as fingerprint: the binary form is only
+ * used as long as they match the XML report.
+ */
+final class BinaryReportFormat {
+
+  static final int MAGIC = 0x53475242;
+  static final int VERSION = 2;
+  static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 8;
+  static final String FILE_EXTENSION = ".bin";
+  static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private BinaryReportFormat() {
+    // do not instantiate
+  }
+
+  /**
+   * @return the file the binary form of the given XML report is stored in
+   */
+  static File getSidecarFile(final File reportFile) {
+    return new File(reportFile.getParentFile(), reportFile.getName() + FILE_EXTENSION);
+  }
+}
@@ -0,0 +1,484 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeCategory;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import com.hello2morrow.sonarplugin.xsd.XsdBuildUnits;
+import com.hello2morrow.sonarplugin.xsd.XsdConfiguration;
+import com.hello2morrow.sonarplugin.xsd.XsdConfigurations;
+import com.hello2morrow.sonarplugin.xsd.XsdConsistencyProblems;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroups;
+import com.hello2morrow.sonarplugin.xsd.XsdCyclePath;
+import com.hello2morrow.sonarplugin.xsd.XsdDependencyProblem;
+import com.hello2morrow.sonarplugin.xsd.XsdElementProblem;
+import com.hello2morrow.sonarplugin.xsd.XsdExclusions;
+import com.hello2morrow.sonarplugin.xsd.XsdMetric;
+import com.hello2morrow.sonarplugin.xsd.XsdMetricSort;
+import com.hello2morrow.sonarplugin.xsd.XsdMetrics;
+import com.hello2morrow.sonarplugin.xsd.XsdPosition;
+import com.hello2morrow.sonarplugin.xsd.XsdProblemCategory;
+import com.hello2morrow.sonarplugin.xsd.XsdProjects;
+import com.hello2morrow.sonarplugin.xsd.XsdTask;
+import com.hello2morrow.sonarplugin.xsd.XsdTasks;
+import com.hello2morrow.sonarplugin.xsd.XsdTypeRelation;
+import com.hello2morrow.sonarplugin.xsd.XsdViolations;
+import com.hello2morrow.sonarplugin.xsd.XsdWarning;
+import com.hello2morrow.sonarplugin.xsd.XsdWarnings;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdWorkspace;
+import com.hello2morrow.sonarplugin.xsd.XsdWorkspacePath;
+import com.hello2morrow.sonarplugin.xsd.XsdWorkspaces;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the binary form of a parsed report as described in {@link BinaryReportFormat}. The file is memory-mapped and decoded directly
+ * from the mapped buffer.
+ */
+public final class BinaryReportReader {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BinaryReportReader.class);
+  private static final int CHECKSUM_CHUNK_SIZE = 8 * 1024;
+
+  private final ByteBuffer buffer;
+  private String[] strings;
+
+  private BinaryReportReader(final ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Reads the binary form stored next to the given XML report.
+   *
+   * @return the report or null if there is no binary form, it does not match the XML report or it is corrupt
+   */
+  public static ReportContext readSidecar(final File reportFile) {
+    return readFile(BinaryReportFormat.getSidecarFile(reportFile), reportFile);
+  }
+
+  /**
+   * Reads a binary report that has been written for the given XML report.
+   *
+   * @return the report or null if the file does not exist, it does not match the XML report or it is corrupt
+   */
+  static ReportContext readFile(final File binaryFile, final File reportFile) {
+    if (!binaryFile.isFile()) {
+      return null;
+    }
+
+    try (RandomAccessFile file = new RandomAccessFile(binaryFile, "r"); FileChannel channel = file.getChannel()) {
+      final ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return read(mapped, reportFile.length(), reportFile.lastModified());
+    } catch (final IOException e) {
+      LOG.warn("Cannot read binary report " + binaryFile.getPath() + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * @return the report or null if the fingerprint does not match the given size and modification time of the XML report
+   * @throws IOException if the content is corrupt
+   */
+  static ReportContext read(final ByteBuffer buffer, final long xmlSize, final long xmlLastModified) throws IOException {
+    if (buffer.remaining() < BinaryReportFormat.HEADER_SIZE) {
+      throw new IOException("File too short");
+    }
+    if (buffer.getInt() != BinaryReportFormat.MAGIC) {
+      throw new IOException("Not a binary Sonargraph report");
+    }
+    final int version = buffer.getInt();
+    if (version != BinaryReportFormat.VERSION) {
+      LOG.info("Ignoring binary report of version " + version + ", expected version " + BinaryReportFormat.VERSION);
+      return null;
+    }
+    final long size = buffer.getLong();
+    final long lastModified = buffer.getLong();
+    if (size != xmlSize || lastModified != xmlLastModified) {
+      LOG.info("Binary report is outdated, the XML report has been modified since it was written");
+      return null;
+    }
+
+    final int payloadLength = buffer.getInt();
+    final long checksum = buffer.getLong();
+    if (payloadLength != buffer.remaining()) {
+      throw new IOException("Payload length " + payloadLength + " does not match the file size");
+    }
+    if (computeChecksum(buffer.duplicate()) != checksum) {
+      throw new IOException("Checksum mismatch");
+    }
+
+    try {
+      return new BinaryReportReader(buffer).readReport();
+    } catch (final BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+      throw new IOException("Corrupt binary report", e);
+    }
+  }
+
+  private static long computeChecksum(final ByteBuffer payload) {
+    final CRC32 crc = new CRC32();
+    final byte[] chunk = new byte[CHECKSUM_CHUNK_SIZE];
+    while (payload.hasRemaining()) {
+      final int length = Math.min(chunk.length, payload.remaining());
+      payload.get(chunk, 0, length);
+      crc.update(chunk, 0, length);
+    }
+    return crc.getValue();
+  }
+
+  private ReportContext readReport() {
+    readStrings();
+
+    final ReportContext report = new ReportContext();
+    report.setProductFamily(readString());
+    report.setName(readString());
+    report.setGeneral(readOptionalAttributeRoot());
+    report.setAttributes(readOptionalAttributeRoot());
+    report.setProjects(readProjects());
+    report.setBuildUnits(readBuildUnits());
+    report.setConfigurations(readConfigurations());
+    report.setWorkspaces(readWorkspaces());
+    report.setViolations(readViolations());
+    report.setConsistencyProblems(readConsistencyProblems());
+    report.setCycleGroups(readCycleGroups());
+    report.setWarnings(readWarnings());
+    report.setTasks(readTasks());
+
+    for (int i = readSize(); i > 0; i--) {
+      final XsdExclusions exclusions = new XsdExclusions();
+      exclusions.setName(readString());
+      exclusions.setNumberOf(readInteger());
+      readAttributeRoots(exclusions.getExcludedType());
+      report.getExclusions().add(exclusions);
+    }
+
+    for (int i = readSize(); i > 0; i--) {
+      final XsdMetrics metrics = new XsdMetrics();
+      metrics.setName(readString());
+      for (int j = readSize(); j > 0; j--) {
+        final XsdMetric metric = new XsdMetric();
+        final String sort = readString();
+        if (sort != null) {
+          metric.setSort(XsdMetricSort.fromValue(sort));
+        }
+        metric.setProjectDescription(readString());
+        metric.setSystemDescription(readString());
+        metric.setName(readString());
+        metric.setStandardName(readString());
+        metrics.getMetric().add(metric);
+      }
+      report.getMetrics().add(metrics);
+    }
+    return report;
+  }
+
+  private void readStrings() {
+    strings = new String[readSize()];
+    for (int i = 0; i < strings.length; i++) {
+      final byte[] bytes = new byte[readSize()];
+      buffer.get(bytes);
+      strings[i] = new String(bytes, BinaryReportFormat.UTF8);
+    }
+  }
+
+  private boolean readPresence() {
+    return buffer.get() != 0;
+  }
+
+  private XsdAttributeRoot readOptionalAttributeRoot() {
+    return readPresence() ? readAttributeRoot() : null;
+  }
+
+  private void readAttributeRoots(final List<XsdAttributeRoot> roots) {
+    for (int i = readSize(); i > 0; i--) {
+      roots.add(readAttributeRoot());
+    }
+  }
+
+  private XsdAttributeRoot readAttributeRoot() {
+    final XsdAttributeRoot root = new XsdAttributeRoot();
+    root.setName(readString());
+    root.setDescription(readString());
+    readAttributes(root.getAttribute());
+    for (int i = readSize(); i > 0; i--) {
+      final XsdAttributeCategory category = new XsdAttributeCategory();
+      category.setName(readString());
+      readAttributes(category.getAttribute());
+      root.getAttributeCategory().add(category);
+    }
+    return root;
+  }
+
+  private void readAttributes(final List<XsdAttribute> attributes) {
+    for (int i = readSize(); i > 0; i--) {
+      final XsdAttribute attribute = new XsdAttribute();
+      attribute.setDescription(readString());
+      attribute.setValue(readString());
+      attribute.setName(readString());
+      attribute.setStandardName(readString());
+      attributes.add(attribute);
+    }
+  }
+
+  private void readPositions(final List<XsdPosition> positions) {
+    for (int i = readSize(); i > 0; i--) {
+      final XsdPosition position = new XsdPosition();
+      position.setDir(readString());
+      position.setFile(readString());
+      position.setLine(readInteger());
+      position.setOffset(readInteger());
+      position.setType(readString());
+      positions.add(position);
+    }
+  }
+
+  private XsdProjects readProjects() {
+    if (!readPresence()) {
+      return null;
+    }
+    final XsdProjects projects = new XsdProjects();
+    readAttributeRoots(projects.getProject());
+    return projects;
+  }
+
+  private XsdBuildUnits readBuildUnits() {
+    if (!readPresence()) {
+      return null;
+    }
+    final XsdBuildUnits buildUnits = new XsdBuildUnits();
+    readAttributeRoots(buildUnits.getBuildUnit());
+    return buildUnits;
+  }
+
+  private XsdConfigurations readConfigurations() {
+    if (!readPresence()) {
+      return null;
+    }
+    final XsdConfigurations configurations = new XsdConfigurations();
+    for (int i = readSize(); i > 0; i--) {
+      final XsdConfiguration configuration = new XsdConfiguration();
+      configuration.setProject(readString());
+      configuration.setParseSourceFiles(readString());
+      configuration.setAsymetricAnalysis(readString());
+      configuration.setNamespaceWarnings(readString());
+      configuration.setSourcefileWarnings(readString());
+      configurations.getConfiguration().add(configuration);
+    }
+    return configurations;
+  }
+
+  private XsdWorkspaces readWorkspaces() {
+    if (!readPresence()) {
+      return null;
+    }
+    final XsdWorkspaces workspaces = new XsdWorkspaces();
+    for (int i = readSize(); i > 0; i--) {
+      final XsdWorkspace workspace = new XsdWorkspace();
+      workspace.setProject(readString());
+      workspace.setBuildUnit(readString());
+      for (int j = readSize(); j > 0; j--) {
+        final XsdWorkspacePath path = new XsdWorkspacePath();
+        path.setPath(readString());
+        path.setDescription(readString());
+        workspace.getWorkspacePath().add(path);
+      }
+      workspaces.getWorkspace().add(workspace);
+    }
+    return workspaces;
+  }
+
+  private XsdViolations readViolations() {
+    if (!readPresence()) {
+      return null;
+    }
+    final XsdViolations violations = new XsdViolations();
+    violations.setNumberOf(readInteger());
+    violations.setNumberOfTypeRelations(readInteger());
+    violations.setNumberOfViolatingTypeRelations(readInteger());
+    violations.setPercentageOfViolatingTypeRelations(readString());
+    for (int i = readSize(); i > 0; i--) {
+      final XsdArchitectureViolation violation = new XsdArchitectureViolation();
+      violation.setExplanation(readString());
+      violation.setNumberOfViolatingTypeRelations(readInteger());
+      violation.setDimension(readString());
+      violation.setArchitectureViolation(readOptionalAttributeRoot());
+      for (int j = readSize(); j > 0; j--) {
+        final XsdTypeRelation relation = new XsdTypeRelation();
+        readAttributes(relation.getAttribute());
+        readPositions(relation.getPosition());
+        violation.getTypeRelation().add(relation);
+      }
+      violations.getArchitectureViolations().add(violation);
+    }
+    return violations;
+  }
+
+  private XsdConsistencyProblems readConsistencyProblems() {
+    if (!readPresence()) {
+      return null;
+    }
+    final XsdConsistencyProblems problems = new XsdConsistencyProblems();
+    problems.setNumberOf(readInteger());
+    for (int i = readSize(); i > 0; i--) {
+      final XsdProblemCategory category = new XsdProblemCategory();
+      category.setNumberOf(readInteger());
+      category.setName(readString());
+      for (int j = readSize(); j > 0; j--) {
+        final XsdElementProblem problem = new XsdElementProblem();
+        problem.setScope(readString());
+        problem.setElement(readString());
+        problem.setDescription(readString());
+        category.getElementProblems().add(problem);
+      }
+      for (int j = readSize(); j > 0; j--) {
+        final XsdDependencyProblem problem = new XsdDependencyProblem();
+        problem.setFromScope(readString());
+        problem.setFromElement(readString());
+        problem.setToScope(readString());
+        problem.setToElement(readString());
+        problem.setDescription(readString());
+        category.getDependencyProblems().add(problem);
+      }
+      problems.getCategories().add(category);
+    }
+    return problems;
+  }
+
+  private XsdCycleGroups readCycleGroups() {
+    if (!readPresence()) {
+      return null;
+    }
+    final XsdCycleGroups cycleGroups = new XsdCycleGroups();
+    cycleGroups.setNumberOf(readInteger());
+    for (int i = readSize(); i > 0; i--) {
+      final XsdCycleGroup group = new XsdCycleGroup();
+      group.setElementScope(readString());
+      group.setParent(readString());
+      group.setDescription(readString());
+      group.setNamedElementGroup(readString());
+      readCyclePaths(group.getCyclePath());
+      cycleGroups.getCycleGroup().add(group);
+    }
+    return cycleGroups;
+  }
+
+  private void readCyclePaths(final List<XsdCyclePath> paths) {
+    for (int i = readSize(); i > 0; i--) {
+      final XsdCyclePath path = new XsdCyclePath();
+      path.setNumberOfEfferentTypeRelationsInCycleGroup(readInteger());
+      path.setDescription(readString());
+      path.setParent(readString());
+      readCyclePaths(path.getChildren());
+      paths.add(path);
+    }
+  }
+
+  private XsdWarnings readWarnings() {
+    if (!readPresence()) {
+      return null;
+    }
+    final XsdWarnings warnings = new XsdWarnings();
+    warnings.setNumberOf(readInteger());
+    for (int i = readSize(); i > 0; i--) {
+      final XsdWarningsByAttributeGroup group = new XsdWarningsByAttributeGroup();
+      group.setNumberOf(readInteger());
+      group.setAttributeGroup(readString());
+      for (int j = readSize(); j > 0; j--) {
+        final XsdWarningsByAttribute warningsByAttribute = new XsdWarningsByAttribute();
+        warningsByAttribute.setNumberOf(readInteger());
+        warningsByAttribute.setAttributeName(readString());
+        warningsByAttribute.setAttributeDescription(readString());
+        warningsByAttribute.setWarningInfo(readString());
+        for (int k = readSize(); k > 0; k--) {
+          final XsdWarning warning = new XsdWarning();
+          readAttributes(warning.getAttribute());
+          readPositions(warning.getPosition());
+          warningsByAttribute.getWarning().add(warning);
+        }
+        group.getWarningsByAttribute().add(warningsByAttribute);
+      }
+      warnings.getWarningsByAttributeGroup().add(group);
+    }
+    return warnings;
+  }
+
+  private XsdTasks readTasks() {
+    if (!readPresence()) {
+      return null;
+    }
+    final XsdTasks tasks = new XsdTasks();
+    tasks.setNumberOf(readInteger());
+    for (int i = readSize(); i > 0; i--) {
+      final XsdTask task = new XsdTask();
+      readAttributes(task.getAttribute());
+      readPositions(task.getPosition());
+      tasks.getTask().add(task);
+    }
+    return tasks;
+  }
+
+  private int readSize() {
+    final int size = readVarInt();
+    if (size < 0 || size > buffer.capacity()) {
+      throw new IllegalArgumentException("Invalid size " + size);
+    }
+    return size;
+  }
+
+  private String readString() {
+    final int index = readVarInt();
+    return index == 0 ? null : strings[index - 1];
+  }
+
+  private Integer readInteger() {
+    if (buffer.get() == 0) {
+      return null;
+    }
+    final int zigZag = readVarInt();
+    return Integer.valueOf((zigZag >>> 1) ^ -(zigZag & 1));
+  }
+
+  private int readVarInt() {
+    int value = 0;
+    int shift = 0;
+    byte next;
+    do {
+      if (shift > 28) {
+        throw new IllegalArgumentException("Malformed varint");
+      }
+      next = buffer.get();
+      value |= (next & 0x7F) << shift;
+      shift += 7;
+    } while ((next & 0x80) != 0);
+    return value;
+  }
+}
@@ -0,0 +1,416 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeCategory;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import com.hello2morrow.sonarplugin.xsd.XsdBuildUnits;
+import com.hello2morrow.sonarplugin.xsd.XsdConfiguration;
+import com.hello2morrow.sonarplugin.xsd.XsdConfigurations;
+import com.hello2morrow.sonarplugin.xsd.XsdConsistencyProblems;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroups;
+import com.hello2morrow.sonarplugin.xsd.XsdCyclePath;
+import com.hello2morrow.sonarplugin.xsd.XsdDependencyProblem;
+import com.hello2morrow.sonarplugin.xsd.XsdElementProblem;
+import com.hello2morrow.sonarplugin.xsd.XsdExclusions;
+import com.hello2morrow.sonarplugin.xsd.XsdMetric;
+import com.hello2morrow.sonarplugin.xsd.XsdMetrics;
+import com.hello2morrow.sonarplugin.xsd.XsdPosition;
+import com.hello2morrow.sonarplugin.xsd.XsdProblemCategory;
+import com.hello2morrow.sonarplugin.xsd.XsdProjects;
+import com.hello2morrow.sonarplugin.xsd.XsdTask;
+import com.hello2morrow.sonarplugin.xsd.XsdTasks;
+import com.hello2morrow.sonarplugin.xsd.XsdTypeRelation;
+import com.hello2morrow.sonarplugin.xsd.XsdViolations;
+import com.hello2morrow.sonarplugin.xsd.XsdWarning;
+import com.hello2morrow.sonarplugin.xsd.XsdWarnings;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdWorkspace;
+import com.hello2morrow.sonarplugin.xsd.XsdWorkspacePath;
+import com.hello2morrow.sonarplugin.xsd.XsdWorkspaces;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the binary form of a parsed report as described in {@link BinaryReportFormat}.
+ */
+public final class BinaryReportWriter {
+
+  private final Map<String, Integer> stringIndex = new HashMap<>();
+  private final List<String> strings = new ArrayList<>();
+  private final ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+
+  private BinaryReportWriter() {
+    super();
+  }
+
+  /**
+   * Writes the binary form of the report to the sidecar file of the given XML report. The file is written to a temporary file first and
+   * renamed afterwards, so that readers never see a partially written file.
+   *
+   * @return the written file
+   */
+  public static File writeSidecar(final File reportFile, final ReportContext report) throws IOException {
+    final File sidecar = BinaryReportFormat.getSidecarFile(reportFile);
+    writeFile(sidecar, reportFile, report);
+    return sidecar;
+  }
+
+  /**
+   * Writes the binary form of a report that has been read from the given XML report to the target file, using a temporary file that is
+   * renamed afterwards.
+   */
+  static void writeFile(final File target, final File reportFile, final ReportContext report) throws IOException {
+    final File tempFile = File.createTempFile(target.getName(), ".tmp", target.getAbsoluteFile().getParentFile());
+    try {
+      try (OutputStream output = new FileOutputStream(tempFile)) {
+        write(report, reportFile.length(), reportFile.lastModified(), output);
+      }
+      if (!tempFile.renameTo(target) && !(target.delete() && tempFile.renameTo(target))) {
+        throw new IOException("Cannot rename " + tempFile.getPath() + " to " + target.getPath());
+      }
+    } finally {
+      if (tempFile.exists() && !tempFile.delete()) {
+        tempFile.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Writes the binary form of the report.
+   *
+   * @param xmlSize size of the XML report the report has been read from
+   * @param xmlLastModified modification time of the XML report the report has been read from
+   */
+  public static void write(final ReportContext report, final long xmlSize, final long xmlLastModified, final OutputStream output) throws IOException {
+    final BinaryReportWriter writer = new BinaryReportWriter();
+    writer.writeReport(report);
+
+    final ByteArrayOutputStream payload = new ByteArrayOutputStream(writer.body.size() + 16 * writer.strings.size());
+    writeVarInt(payload, writer.strings.size());
+    for (final String next : writer.strings) {
+      final byte[] bytes = next.getBytes(BinaryReportFormat.UTF8);
+      writeVarInt(payload, bytes.length);
+      payload.write(bytes);
+    }
+    writer.body.writeTo(payload);
+
+    final byte[] payloadBytes = payload.toByteArray();
+    final CRC32 checksum = new CRC32();
+    checksum.update(payloadBytes);
+
+    final DataOutputStream out = new DataOutputStream(output);
+    out.writeInt(BinaryReportFormat.MAGIC);
+    out.writeInt(BinaryReportFormat.VERSION);
+    out.writeLong(xmlSize);
+    out.writeLong(xmlLastModified);
+    out.writeInt(payloadBytes.length);
+    out.writeLong(checksum.getValue());
+    out.write(payloadBytes);
+    out.flush();
+  }
+
+  private void writeReport(final ReportContext report) {
+    writeString(report.getProductFamily());
+    writeString(report.getName());
+    writeOptionalAttributeRoot(report.getGeneral());
+    writeOptionalAttributeRoot(report.getAttributes());
+    writeProjects(report.getProjects());
+    writeBuildUnits(report.getBuildUnits());
+    writeConfigurations(report.getConfigurations());
+    writeWorkspaces(report.getWorkspaces());
+    writeViolations(report.getViolations());
+    writeConsistencyProblems(report.getConsistencyProblems());
+    writeCycleGroups(report.getCycleGroups());
+    writeWarnings(report.getWarnings());
+    writeTasks(report.getTasks());
+
+    writeSize(report.getExclusions().size());
+    for (final XsdExclusions exclusions : report.getExclusions()) {
+      writeString(exclusions.getName());
+      writeInteger(exclusions.getNumberOf());
+      writeAttributeRoots(exclusions.getExcludedType());
+    }
+
+    writeSize(report.getMetrics().size());
+    for (final XsdMetrics metrics : report.getMetrics()) {
+      writeString(metrics.getName());
+      writeSize(metrics.getMetric().size());
+      for (final XsdMetric metric : metrics.getMetric()) {
+        writeString(metric.getSort() != null ? metric.getSort().value() : null);
+        writeString(metric.getProjectDescription());
+        writeString(metric.getSystemDescription());
+        writeString(metric.getName());
+        writeString(metric.getStandardName());
+      }
+    }
+  }
+
+  private boolean writePresence(final Object element) {
+    body.write(element != null ? 1 : 0);
+    return element != null;
+  }
+
+  private void writeOptionalAttributeRoot(final XsdAttributeRoot root) {
+    if (writePresence(root)) {
+      writeAttributeRoot(root);
+    }
+  }
+
+  private void writeAttributeRoots(final List<XsdAttributeRoot> roots) {
+    writeSize(roots.size());
+    for (final XsdAttributeRoot root : roots) {
+      writeAttributeRoot(root);
+    }
+  }
+
+  private void writeAttributeRoot(final XsdAttributeRoot root) {
+    writeString(root.getName());
+    writeString(root.getDescription());
+    writeAttributes(root.getAttribute());
+    writeSize(root.getAttributeCategory().size());
+    for (final XsdAttributeCategory category : root.getAttributeCategory()) {
+      writeString(category.getName());
+      writeAttributes(category.getAttribute());
+    }
+  }
+
+  private void writeAttributes(final List<XsdAttribute> attributes) {
+    writeSize(attributes.size());
+    for (final XsdAttribute attribute : attributes) {
+      writeString(attribute.getDescription());
+      writeString(attribute.getValue());
+      writeString(attribute.getName());
+      writeString(attribute.getStandardName());
+    }
+  }
+
+  private void writePositions(final List<XsdPosition> positions) {
+    writeSize(positions.size());
+    for (final XsdPosition position : positions) {
+      writeString(position.getDir());
+      writeString(position.getFile());
+      writeInteger(position.getLine());
+      writeInteger(position.getOffset());
+      writeString(position.getType());
+    }
+  }
+
+  private void writeProjects(final XsdProjects projects) {
+    if (writePresence(projects)) {
+      writeAttributeRoots(projects.getProject());
+    }
+  }
+
+  private void writeBuildUnits(final XsdBuildUnits buildUnits) {
+    if (writePresence(buildUnits)) {
+      writeAttributeRoots(buildUnits.getBuildUnit());
+    }
+  }
+
+  private void writeConfigurations(final XsdConfigurations configurations) {
+    if (!writePresence(configurations)) {
+      return;
+    }
+    writeSize(configurations.getConfiguration().size());
+    for (final XsdConfiguration configuration : configurations.getConfiguration()) {
+      writeString(configuration.getProject());
+      writeString(configuration.getParseSourceFiles());
+      writeString(configuration.getAsymetricAnalysis());
+      writeString(configuration.getNamespaceWarnings());
+      writeString(configuration.getSourcefileWarnings());
+    }
+  }
+
+  private void writeWorkspaces(final XsdWorkspaces workspaces) {
+    if (!writePresence(workspaces)) {
+      return;
+    }
+    writeSize(workspaces.getWorkspace().size());
+    for (final XsdWorkspace workspace : workspaces.getWorkspace()) {
+      writeString(workspace.getProject());
+      writeString(workspace.getBuildUnit());
+      writeSize(workspace.getWorkspacePath().size());
+      for (final XsdWorkspacePath path : workspace.getWorkspacePath()) {
+        writeString(path.getPath());
+        writeString(path.getDescription());
+      }
+    }
+  }
+
+  private void writeViolations(final XsdViolations violations) {
+    if (!writePresence(violations)) {
+      return;
+    }
+    writeInteger(violations.getNumberOf());
+    writeInteger(violations.getNumberOfTypeRelations());
+    writeInteger(violations.getNumberOfViolatingTypeRelations());
+    writeString(violations.getPercentageOfViolatingTypeRelations());
+    writeSize(violations.getArchitectureViolations().size());
+    for (final XsdArchitectureViolation violation : violations.getArchitectureViolations()) {
+      writeString(violation.getExplanation());
+      writeInteger(violation.getNumberOfViolatingTypeRelations());
+      writeString(violation.getDimension());
+      writeOptionalAttributeRoot(violation.getArchitectureViolation());
+      writeSize(violation.getTypeRelation().size());
+      for (final XsdTypeRelation relation : violation.getTypeRelation()) {
+        writeAttributes(relation.getAttribute());
+        writePositions(relation.getPosition());
+      }
+    }
+  }
+
+  private void writeConsistencyProblems(final XsdConsistencyProblems problems) {
+    if (!writePresence(problems)) {
+      return;
+    }
+    writeInteger(problems.getNumberOf());
+    writeSize(problems.getCategories().size());
+    for (final XsdProblemCategory category : problems.getCategories()) {
+      writeInteger(category.getNumberOf());
+      writeString(category.getName());
+      writeSize(category.getElementProblems().size());
+      for (final XsdElementProblem problem : category.getElementProblems()) {
+        writeString(problem.getScope());
+        writeString(problem.getElement());
+        writeString(problem.getDescription());
+      }
+      writeSize(category.getDependencyProblems().size());
+      for (final XsdDependencyProblem problem : category.getDependencyProblems()) {
+        writeString(problem.getFromScope());
+        writeString(problem.getFromElement());
+        writeString(problem.getToScope());
+        writeString(problem.getToElement());
+        writeString(problem.getDescription());
+      }
+    }
+  }
+
+  private void writeCycleGroups(final XsdCycleGroups cycleGroups) {
+    if (!writePresence(cycleGroups)) {
+      return;
+    }
+    writeInteger(cycleGroups.getNumberOf());
+    writeSize(cycleGroups.getCycleGroup().size());
+    for (final XsdCycleGroup group : cycleGroups.getCycleGroup()) {
+      writeString(group.getElementScope());
+      writeString(group.getParent());
+      writeString(group.getDescription());
+      writeString(group.getNamedElementGroup());
+      writeCyclePaths(group.getCyclePath());
+    }
+  }
+
+  private void writeCyclePaths(final List<XsdCyclePath> paths) {
+    writeSize(paths.size());
+    for (final XsdCyclePath path : paths) {
+      writeInteger(path.getNumberOfEfferentTypeRelationsInCycleGroup());
+      writeString(path.getDescription());
+      writeString(path.getParent());
+      writeCyclePaths(path.getChildren());
+    }
+  }
+
+  private void writeWarnings(final XsdWarnings warnings) {
+    if (!writePresence(warnings)) {
+      return;
+    }
+    writeInteger(warnings.getNumberOf());
+    writeSize(warnings.getWarningsByAttributeGroup().size());
+    for (final XsdWarningsByAttributeGroup group : warnings.getWarningsByAttributeGroup()) {
+      writeInteger(group.getNumberOf());
+      writeString(group.getAttributeGroup());
+      writeSize(group.getWarningsByAttribute().size());
+      for (final XsdWarningsByAttribute warningsByAttribute : group.getWarningsByAttribute()) {
+        writeInteger(warningsByAttribute.getNumberOf());
+        writeString(warningsByAttribute.getAttributeName());
+        writeString(warningsByAttribute.getAttributeDescription());
+        writeString(warningsByAttribute.getWarningInfo());
+        writeSize(warningsByAttribute.getWarning().size());
+        for (final XsdWarning warning : warningsByAttribute.getWarning()) {
+          writeAttributes(warning.getAttribute());
+          writePositions(warning.getPosition());
+        }
+      }
+    }
+  }
+
+  private void writeTasks(final XsdTasks tasks) {
+    if (!writePresence(tasks)) {
+      return;
+    }
+    writeInteger(tasks.getNumberOf());
+    writeSize(tasks.getTask().size());
+    for (final XsdTask task : tasks.getTask()) {
+      writeAttributes(task.getAttribute());
+      writePositions(task.getPosition());
+    }
+  }
+
+  private void writeSize(final int size) {
+    writeVarInt(body, size);
+  }
+
+  private void writeString(final String value) {
+    if (value == null) {
+      writeVarInt(body, 0);
+      return;
+    }
+    Integer index = stringIndex.get(value);
+    if (index == null) {
+      index = Integer.valueOf(strings.size());
+      stringIndex.put(value, index);
+      strings.add(value);
+    }
+    writeVarInt(body, index.intValue() + 1);
+  }
+
+  private void writeInteger(final Integer value) {
+    if (value == null) {
+      body.write(0);
+      return;
+    }
+    body.write(1);
+    final int n = value.intValue();
+    writeVarInt(body, (n << 1) ^ (n >> 31));
+  }
+
+  private static void writeVarInt(final ByteArrayOutputStream output, final int value) {
+    int remaining = value;
+    while ((remaining & ~0x7F) != 0) {
+      output.write((remaining & 0x7F) | 0x80);
+      remaining >>>= 7;
+    }
+    output.write(remaining);
+  }
+}
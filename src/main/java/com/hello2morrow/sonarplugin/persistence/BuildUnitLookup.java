@@ -0,0 +1,133 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonarQubeUtilities;
+import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import org.sonar.api.resources.Project;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps projects to the build units of a report, accepting the same names as
+ * {@link SonarQubeUtilities#buildUnitMatchesAnalyzedProject(String, Project)}. The build units are indexed once by their lower case
+ * normalized name and, for names starting with "...", by the remaining suffix, so that a lookup only needs the names of the project
+ * instead of testing every build unit.
+ */
+public final class BuildUnitLookup {
+
+  private final List<XsdAttributeRoot> buildUnits;
+  /** Positions of the build units by lower case name */
+  private final Map<String, BitSet> byName = new HashMap<>();
+  /** Positions of the build units with abbreviated names by the suffix "groupId:artifactId" must end with */
+  private final Map<String, BitSet> bySuffix = new HashMap<>();
+
+  private BuildUnitLookup(final List<XsdAttributeRoot> buildUnits, final List<String> names) {
+    this.buildUnits = buildUnits;
+    for (int i = 0; i < names.size(); i++) {
+      final String name = names.get(i);
+      add(byName, name.toLowerCase(Locale.ENGLISH), i);
+      if (name.startsWith(SonarQubeUtilities.ABBREVIATED_BUILD_UNIT_PREFIX)) {
+        add(bySuffix, name.substring(2), i);
+      }
+    }
+  }
+
+  public static BuildUnitLookup create(final List<XsdAttributeRoot> buildUnits) {
+    final List<String> names = new ArrayList<>(buildUnits.size());
+    for (final XsdAttributeRoot next : buildUnits) {
+      names.add(SonargraphUtilities.getBuildUnitName(next.getName()));
+    }
+    return new BuildUnitLookup(new ArrayList<>(buildUnits), names);
+  }
+
+  /**
+   * Creates a lookup for build units that are only known by their names, e.g. the shards of a report. Such a lookup only answers
+   * {@link #findPositions(Project)}.
+   *
+   * @param names the build unit names without the project part, see {@link SonargraphUtilities#getBuildUnitName(String)}
+   */
+  static BuildUnitLookup createForNames(final List<String> names) {
+    return new BuildUnitLookup(Collections.<XsdAttributeRoot> emptyList(), new ArrayList<>(names));
+  }
+
+  private static void add(final Map<String, BitSet> map, final String key, final int position) {
+    BitSet positions = map.get(key);
+    if (positions == null) {
+      positions = new BitSet();
+      map.put(key, positions);
+    }
+    positions.set(position);
+  }
+
+  /**
+   * @return all build units that match the project, in the order of the report
+   */
+  public List<XsdAttributeRoot> findAll(final Project project) {
+    final BitSet matches = match(project);
+    if (matches.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<XsdAttributeRoot> result = new ArrayList<>(matches.cardinality());
+    for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+      result.add(buildUnits.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * @return the positions of all build units that match the project, in ascending order
+   */
+  List<Integer> findPositions(final Project project) {
+    final BitSet matches = match(project);
+    final List<Integer> result = new ArrayList<>(matches.cardinality());
+    for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+      result.add(i);
+    }
+    return result;
+  }
+
+  private BitSet match(final Project project) {
+    final String[] names = SonarQubeUtilities.getBuildUnitNamesOfProject(project);
+    final BitSet matches = new BitSet();
+    for (final String next : names) {
+      or(matches, byName.get(next.toLowerCase(Locale.ENGLISH)));
+    }
+
+    if (!bySuffix.isEmpty()) {
+      final String groupArtifact = names[2];
+      for (int i = groupArtifact.indexOf('.'); i >= 0; i = groupArtifact.indexOf('.', i + 1)) {
+        or(matches, bySuffix.get(groupArtifact.substring(i)));
+      }
+    }
+    return matches;
+  }
+
+  private static void or(final BitSet matches, final BitSet positions) {
+    if (positions != null) {
+      matches.or(positions);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Input stream reading from a byte buffer, used to feed the report parsers from a memory-mapped report file without copying the file
+ * through intermediate stream buffers.
+ */
+final class ByteBufferInputStream extends InputStream {
+
+  /** Largest file that can be mapped into a single buffer */
+  static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+
+  private final ByteBuffer buffer;
+
+  ByteBufferInputStream(final ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Maps the given file into memory. The mapping stays valid after the channel has been closed and is released by the garbage collector.
+   *
+   * @return stream reading the mapped file or null if the file is too large to be mapped
+   */
+  static InputStream map(final File file) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"); FileChannel channel = randomAccessFile.getChannel()) {
+      final long size = channel.size();
+      if (size > MAX_MAPPED_SIZE) {
+        return null;
+      }
+      return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
+  }
+
+  @Override
+  public int read() {
+    return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+  }
+
+  @Override
+  public int read(final byte[] bytes, final int offset, final int length) {
+    if (offset < 0 || length < 0 || length > bytes.length - offset) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (length == 0) {
+      return 0;
+    }
+    if (!buffer.hasRemaining()) {
+      return -1;
+    }
+    final int count = Math.min(length, buffer.remaining());
+    buffer.get(bytes, offset, count);
+    return count;
+  }
+
+  @Override
+  public long skip(final long count) {
+    if (count <= 0) {
+      return 0;
+    }
+    final int skipped = (int) Math.min(count, buffer.remaining());
+    buffer.position(buffer.position() + skipped);
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return buffer.remaining();
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(final int readLimit) {
+    buffer.mark();
+  }
+
+  @Override
+  public synchronized void reset() {
+    buffer.reset();
+  }
+}
@@ -35,10 +35,16 @@ public interface IReportReader {
   void readSonargraphReport(Project project, FileSystem moduleFileSystem, Settings settings);
 
   /**
-   * @return the complete unmarshalled XML report
+   * @return the unmarshalled XML report. Readers that pass the records directly to the index leave the task, warning, type relation and
+   *         cycle group lists empty; these records are available from {@link #getReportIndex()}.
    */
   ReportContext getReport();
 
+  /**
+   * @return the index over the report or null if no report has been read
+   */
+  ReportIndex getReportIndex();
+
   /**
    * Return the relevant part for this project of the Sonargraph XML report
    * @param project
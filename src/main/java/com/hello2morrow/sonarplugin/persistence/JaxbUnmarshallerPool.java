@@ -0,0 +1,131 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.ValidationEvent;
+import javax.xml.bind.ValidationEventHandler;
+import javax.xml.bind.ValidationEventLocator;
+
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Holds the JAXB context for the report classes and a pool of unmarshallers. The context is created on first use with the class loader of
+ * the plugin, so neither the expensive context creation nor a switch of the thread's context class loader is needed for every module.
+ * Since the pool is a static member, it is scoped to the class loader of the plugin. Unmarshallers are not thread-safe, therefore each one
+ * is used by one thread at a time and returned to the pool afterwards.
+ */
+final class JaxbUnmarshallerPool {
+
+  static final String XSD_PACKAGE = "com.hello2morrow.sonarplugin.xsd";
+
+  private static final Logger LOG = LoggerFactory.getLogger(JaxbUnmarshallerPool.class);
+  private static final JaxbUnmarshallerPool INSTANCE = new JaxbUnmarshallerPool(JaxbUnmarshallerPool.class.getClassLoader());
+
+  private final ClassLoader classLoader;
+  private final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<>();
+  private volatile JAXBContext context;
+
+  JaxbUnmarshallerPool(final ClassLoader classLoader) {
+    this.classLoader = classLoader;
+  }
+
+  static JaxbUnmarshallerPool getInstance() {
+    return INSTANCE;
+  }
+
+  JAXBContext getContext() throws JAXBException {
+    JAXBContext result = context;
+    if (result == null) {
+      synchronized (this) {
+        result = context;
+        if (result == null) {
+          final long start = System.currentTimeMillis();
+          result = JAXBContext.newInstance(XSD_PACKAGE, classLoader);
+          context = result;
+          LOG.debug("Created JAXB context for report in " + (System.currentTimeMillis() - start) + " ms");
+        }
+      }
+    }
+    return result;
+  }
+
+  ReportContext unmarshal(final InputStream input) throws JAXBException {
+    return unmarshal(input, new ReportDiagnostics());
+  }
+
+  /**
+   * @param diagnostics receives the recoverable problems, e.g. values the JAXB bindings cannot convert to integers
+   */
+  ReportContext unmarshal(final InputStream input, final ReportDiagnostics diagnostics) throws JAXBException {
+    final Unmarshaller unmarshaller = acquire();
+    try {
+      unmarshaller.setEventHandler(new DiagnosticsEventHandler(diagnostics));
+      return (ReportContext) unmarshaller.unmarshal(input);
+    } finally {
+      unmarshaller.setEventHandler(null);
+      release(unmarshaller);
+    }
+  }
+
+  Unmarshaller acquire() throws JAXBException {
+    final Unmarshaller unmarshaller = unmarshallers.poll();
+    if (unmarshaller != null) {
+      return unmarshaller;
+    }
+    return getContext().createUnmarshaller();
+  }
+
+  void release(final Unmarshaller unmarshaller) {
+    unmarshallers.offer(unmarshaller);
+  }
+
+  int getPoolSize() {
+    return unmarshallers.size();
+  }
+
+  /**
+   * Records recoverable events and continues unmarshalling, fatal errors still abort it.
+   */
+  private static final class DiagnosticsEventHandler implements ValidationEventHandler {
+    private final ReportDiagnostics diagnostics;
+
+    DiagnosticsEventHandler(final ReportDiagnostics diagnostics) {
+      this.diagnostics = diagnostics;
+    }
+
+    @Override
+    public boolean handleEvent(final ValidationEvent event) {
+      if (event.getSeverity() == ValidationEvent.FATAL_ERROR) {
+        return false;
+      }
+      final ValidationEventLocator locator = event.getLocator();
+      final int line = locator != null ? locator.getLineNumber() : -1;
+      diagnostics.add(event.getMessage() + (line > 0 ? " (line " + line + ")" : ""));
+      return true;
+    }
+  }
+}
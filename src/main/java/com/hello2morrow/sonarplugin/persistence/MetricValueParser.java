@@ -0,0 +1,143 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+/**
+ * Parser for the metric values of the Sonargraph report, e.g. "1,185", "0.75" or "< 0.01". The values use ',' as grouping and '.' as
+ * decimal separator regardless of the locale. The parser works directly on the characters of the value and yields a primitive double, so
+ * unlike a shared {@link java.text.DecimalFormat} it is thread-safe and allocates nothing for values with up to 15 significant digits.
+ * <p>
+ * The result is the same as the one of the decimal format "###,##0.00" with these symbols: the number at the beginning of the value is
+ * parsed and the remaining characters are ignored, grouping separators in the integer part are skipped. Only a negative zero is returned as
+ * 0.
+ */
+final class MetricValueParser {
+
+  /** Prefix of values that are too small to be displayed, they are read as 0 */
+  static final String LESS_THAN_MINIMUM = "< 0.01";
+
+  private static final char GROUPING_SEPARATOR = ',';
+  private static final char DECIMAL_SEPARATOR = '.';
+  private static final char MINUS = '-';
+  /** Every mantissa with at most 15 digits is exactly representable as double */
+  private static final int MAX_FAST_DIGITS = 15;
+  /** Powers of ten that are exactly representable as double */
+  private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+    1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  private MetricValueParser() {
+    // do not instantiate
+  }
+
+  /**
+   * @return the value, NaN if the value does not start with a number
+   */
+  static double parse(final CharSequence value) {
+    return parse(value, 0, value.length());
+  }
+
+  /**
+   * @param start index of the first character of the value
+   * @param end index after the last character of the value
+   * @return the value, NaN if the value does not start with a number
+   */
+  static double parse(final CharSequence value, final int start, final int end) {
+    if (startsWith(value, start, end, LESS_THAN_MINIMUM)) {
+      return 0.0;
+    }
+
+    int position = start;
+    final boolean negative = position < end && value.charAt(position) == MINUS;
+    if (negative) {
+      position++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = 0;
+    boolean sawDigit = false;
+    boolean sawDecimal = false;
+    for (; position < end; position++) {
+      final char next = value.charAt(position);
+      if (next >= '0' && next <= '9') {
+        sawDigit = true;
+        if (sawDecimal) {
+          fractionDigits++;
+        }
+        if (digits == 0 && next == '0') {
+          // leading zeros do not count as significant digits
+          continue;
+        }
+        if (digits == MAX_FAST_DIGITS) {
+          return parseSlow(value, start, end);
+        }
+        mantissa = mantissa * 10 + (next - '0');
+        digits++;
+      } else if (next == GROUPING_SEPARATOR && !sawDecimal) {
+        continue;
+      } else if (next == DECIMAL_SEPARATOR && !sawDecimal) {
+        sawDecimal = true;
+      } else {
+        break;
+      }
+    }
+
+    if (!sawDigit) {
+      return Double.NaN;
+    }
+    if (fractionDigits >= POWERS_OF_TEN.length) {
+      return parseSlow(value, start, end);
+    }
+    // Both operands are exact, so the division yields the correctly rounded value
+    final double result = mantissa / POWERS_OF_TEN[fractionDigits];
+    return negative && result != 0.0 ? -result : result;
+  }
+
+  /**
+   * Parses values with too many digits for an exact computation with doubles.
+   */
+  private static double parseSlow(final CharSequence value, final int start, final int end) {
+    final StringBuilder number = new StringBuilder(end - start);
+    boolean sawDecimal = false;
+    for (int position = start; position < end; position++) {
+      final char next = value.charAt(position);
+      if (next >= '0' && next <= '9' || position == start && next == MINUS) {
+        number.append(next);
+      } else if (next == DECIMAL_SEPARATOR && !sawDecimal) {
+        sawDecimal = true;
+        number.append(next);
+      } else if (next != GROUPING_SEPARATOR || sawDecimal) {
+        break;
+      }
+    }
+    // adding 0 turns a negative zero into 0
+    return Double.parseDouble(number.toString()) + 0.0;
+  }
+
+  private static boolean startsWith(final CharSequence value, final int start, final int end, final String prefix) {
+    if (end - start < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (value.charAt(start + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
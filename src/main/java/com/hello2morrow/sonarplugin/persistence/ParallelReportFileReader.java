@@ -0,0 +1,207 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Settings;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses the top-level sections of the report concurrently on a fork/join pool. The document is split at the section boundaries recorded
+ * in its {@link ReportSectionIndex}, each section is parsed into a report of its own, and the parts are merged in the order of the report
+ * afterwards, so the result is identical to the one of the sequential readers. The parallelism is configured with
+ * {@link SonargraphPluginBase#REPORT_PARALLELISM}.
+ * <p>
+ * Reports that cannot be indexed (e.g. compressed reports) are read sequentially.
+ */
+public class ParallelReportFileReader extends StaxReportFileReader {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelReportFileReader.class);
+
+  public ParallelReportFileReader() {
+    this(null, ReportSectionFilter.ALL);
+  }
+
+  /**
+   * @param reportCache cache shared by all modules of the analysis, may be null
+   * @param sectionFilter sections of the report that are needed, the others are skipped
+   */
+  public ParallelReportFileReader(final ReportCache reportCache, final ReportSectionFilter sectionFilter) {
+    super(reportCache, sectionFilter);
+  }
+
+  /**
+   * The sections are parsed into reports of their own that are merged afterwards, so the records cannot be passed to a single index while
+   * parsing. The index is created over the merged report instead.
+   */
+  @Override
+  protected ReportIndex readReportIndex(final File reportFile, final Settings settings, final ReportSectionFilter filter) throws XMLStreamException,
+    IOException {
+    return ReportIndex.create(readReport(reportFile, settings, filter));
+  }
+
+  @Override
+  protected ReportContext readReport(final File reportFile, final Settings settings, final ReportSectionFilter filter) throws XMLStreamException,
+    IOException {
+    final ReportSectionIndex index = ReportSectionIndex.getOrCreate(reportFile);
+    if (index == null || !canMapSections(index)) {
+      LOG.info("Sonargraph report " + reportFile.getPath() + " cannot be split into sections, reading it sequentially");
+      return super.readReport(reportFile, settings, filter);
+    }
+
+    final int parallelism = settings != null ? SonargraphUtilities.getConfiguredParallelism(settings) : Runtime.getRuntime().availableProcessors();
+    final long start = System.currentTimeMillis();
+    final List<SectionTask> tasks = new ArrayList<>();
+    try (RandomAccessFile file = new RandomAccessFile(reportFile, "r"); FileChannel channel = file.getChannel()) {
+      final ByteBuffer prolog = channel.map(FileChannel.MapMode.READ_ONLY, 0, index.getPrologEnd());
+      for (final ReportSectionIndex.Section section : index.getSections()) {
+        if (filter.includesSection(section.getName())) {
+          tasks.add(new SectionTask(filter, prolog.duplicate(), channel.map(FileChannel.MapMode.READ_ONLY, section.getStart(), section.getLength())));
+        }
+      }
+    }
+
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new RecursiveAction() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+          ForkJoinTask.invokeAll(tasks);
+        }
+      });
+    } finally {
+      pool.shutdown();
+    }
+
+    final ReportContext report = new ReportContext();
+    int skippedElements = 0;
+    long skippedCharacters = 0;
+    for (final SectionTask task : tasks) {
+      if (task.exception != null) {
+        throw task.exception;
+      }
+      merge(report, task.part);
+      skippedElements += task.parser.getSkippedElements();
+      skippedCharacters += task.parser.getSkippedCharacters();
+      getDiagnostics().addAll(task.parser.getDiagnostics());
+    }
+
+    final long duration = System.currentTimeMillis() - start;
+    LOG.info("Sonargraph: Parsed " + tasks.size() + " report sections with parallelism " + parallelism + " in " + duration + " ms");
+    if (!filter.isAll()) {
+      logSkipped(reportFile, skippedElements, skippedCharacters, getSkippedBytes(index, filter), duration);
+    }
+    return report;
+  }
+
+  /**
+   * Adds the section contained in the part to the report. Sections that may occur more than once are appended.
+   */
+  private static void merge(final ReportContext report, final ReportContext part) {
+    report.setProductFamily(part.getProductFamily());
+    report.setName(part.getName());
+    if (part.getGeneral() != null) {
+      report.setGeneral(part.getGeneral());
+    }
+    if (part.getAttributes() != null) {
+      report.setAttributes(part.getAttributes());
+    }
+    if (part.getProjects() != null) {
+      report.setProjects(part.getProjects());
+    }
+    if (part.getBuildUnits() != null) {
+      report.setBuildUnits(part.getBuildUnits());
+    }
+    if (part.getConfigurations() != null) {
+      report.setConfigurations(part.getConfigurations());
+    }
+    if (part.getWorkspaces() != null) {
+      report.setWorkspaces(part.getWorkspaces());
+    }
+    if (part.getViolations() != null) {
+      report.setViolations(part.getViolations());
+    }
+    if (part.getConsistencyProblems() != null) {
+      report.setConsistencyProblems(part.getConsistencyProblems());
+    }
+    if (part.getCycleGroups() != null) {
+      report.setCycleGroups(part.getCycleGroups());
+    }
+    if (part.getWarnings() != null) {
+      report.setWarnings(part.getWarnings());
+    }
+    if (part.getTasks() != null) {
+      report.setTasks(part.getTasks());
+    }
+    report.getExclusions().addAll(part.getExclusions());
+    report.getMetrics().addAll(part.getMetrics());
+  }
+
+  /**
+   * Parses a single section. Since fork/join tasks cannot throw checked exceptions, a parse error is kept and rethrown by the reading
+   * thread.
+   */
+  private static final class SectionTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final transient StaxReportParser parser;
+    private final transient ByteBuffer prolog;
+    private final transient ByteBuffer content;
+    private transient ReportContext part;
+    private transient XMLStreamException exception;
+
+    SectionTask(final ReportSectionFilter filter, final ByteBuffer prolog, final ByteBuffer content) {
+      this.parser = new StaxReportParser(filter);
+      this.prolog = prolog;
+      this.content = content;
+    }
+
+    @Override
+    protected void compute() {
+      final ReportContext result = new ReportContext();
+      try (InputStream fragment = new SequenceInputStream(new ByteBufferInputStream(prolog), new ByteBufferInputStream(content))) {
+        parser.parseSection(fragment, result);
+        part = result;
+      } catch (final XMLStreamException e) {
+        exception = e;
+      } catch (final IOException e) {
+        exception = new XMLStreamException(e);
+      }
+    }
+  }
+}
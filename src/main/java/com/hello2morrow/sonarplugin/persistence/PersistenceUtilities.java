@@ -18,20 +18,19 @@
 package com.hello2morrow.sonarplugin.persistence;
 
 import com.hello2morrow.sonarplugin.foundation.DuplicateCodeBlock;
-import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
-import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
+import com.hello2morrow.sonarplugin.foundation.MetricValues;
+import com.hello2morrow.sonarplugin.foundation.SonargraphMetricKey;
 import com.hello2morrow.sonarplugin.xsd.ReportContext;
 import com.hello2morrow.sonarplugin.xsd.XsdAttribute;
 import com.hello2morrow.sonarplugin.xsd.XsdAttributeCategory;
 import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
 import com.hello2morrow.sonarplugin.xsd.XsdCycleGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdPosition;
 import com.hello2morrow.sonarplugin.xsd.XsdWarning;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.ParseException;
 import java.util.List;
-import java.util.Map;
 
 public class PersistenceUtilities {
 
@@ -50,23 +49,27 @@ public class PersistenceUtilities {
   }
 
   public static DuplicateCodeBlock createDuplicateCodeBlock(final XsdWarning warning) {
+    return createDuplicateCodeBlock(RecordAttributes.resolve(warning.getAttribute()));
+  }
+
+  static DuplicateCodeBlock createDuplicateCodeBlock(final RecordAttributes attributes) {
     final DuplicateCodeBlock block = new DuplicateCodeBlock();
-    final String attribute = PersistenceUtilities.getAttribute(warning.getAttribute(), SonargraphUtilities.BLOCK_ID);
+    final String attribute = attributes.getBlockId();
     if (null == attribute) {
       LOG.error("Duplicate code block warning does not contain the required attribute \"Block id\"");
       return null;
     }
     block.setBlockId(Integer.parseInt(attribute));
-    block.setProjectName(PersistenceUtilities.getAttribute(warning.getAttribute(), SonargraphUtilities.PROJECT));
-    block.setBuildUnitName(PersistenceUtilities.getAttribute(warning.getAttribute(), SonargraphUtilities.BUILD_UNIT));
-    block.setElementType(PersistenceUtilities.getAttribute(warning.getAttribute(), SonargraphUtilities.ELEMENT_TYPE));
+    block.setProjectName(attributes.getProject());
+    block.setBuildUnitName(attributes.getBuildUnit());
+    block.setElementType(attributes.getElementType());
 
-    final String blockLength = PersistenceUtilities.getAttribute(warning.getAttribute(), SonargraphUtilities.ATTRIBUTE_VALUE);
+    final String blockLength = attributes.getAttributeValue();
     final int pos = blockLength.indexOf(" lines");
     block.setBlockLength(Integer.parseInt(blockLength.substring(0, pos)));
 
-    block.setElementName(PersistenceUtilities.getAttribute(warning.getAttribute(), SonargraphUtilities.ELEMENT));
-    block.setStartLine(Integer.parseInt(PersistenceUtilities.getAttribute(warning.getAttribute(), SonargraphUtilities.START_LINE)));
+    block.setElementName(attributes.getElement());
+    block.setStartLine(Integer.parseInt(attributes.getStartLine()));
     return block;
   }
 
@@ -82,32 +85,30 @@ public class PersistenceUtilities {
     return group.getElementScope();
   }
 
-  public static void readAttributesToMap(final XsdAttributeRoot root, final Map<String, Number> attributeMap) {
-    attributeMap.clear();
+  /**
+   * Reads the values of the {@link SonargraphMetricKey metrics} contained in the attribute categories of the given element. Other attributes
+   * are not parsed.
+   */
+  public static void readMetricValues(final XsdAttributeRoot root, final MetricValues metricValues) {
+    metricValues.clear();
     for (final XsdAttributeCategory cat : root.getAttributeCategory()) {
       for (final XsdAttribute attr : cat.getAttribute()) {
-        final String attrName = attr.getStandardName();
-        addValueToMap(attributeMap, attr, attrName);
+        final SonargraphMetricKey key = SonargraphMetricKey.forStandardName(attr.getStandardName());
+        if (key != null) {
+          addValue(metricValues, key, attr.getValue());
+        }
       }
     }
   }
 
-  private static void addValueToMap(final Map<String, Number> attributeMap, final XsdAttribute attr, final String attrName) {
-    String value = attr.getValue();
-
-    try {
-      if (value.startsWith("< 0.01")) {
-        value = "0.0";
-      }
-      if (value.contains(".")) {
-        attributeMap.put(attrName, SonargraphPluginBase.FLOAT_FORMAT.parse(value));
-      } else {
-        attributeMap.put(attrName, SonargraphPluginBase.INTEGER_FORMAT.parse(value));
-      }
-    } catch (final ParseException e) {
+  private static void addValue(final MetricValues metricValues, final SonargraphMetricKey key, final String value) {
+    final double parsed = MetricValueParser.parse(value);
+    if (Double.isNaN(parsed)) {
       // Ignore this value
-      LOG.error("Failed to parse value : " + value + ", " + e.getMessage());
+      LOG.error("Failed to parse value : " + value);
+      return;
     }
+    metricValues.set(key, parsed);
   }
 
   public static String getAttribute(final List<XsdAttribute> list, final String name) {
@@ -122,6 +123,23 @@ public class PersistenceUtilities {
     return value;
   }
 
+  /**
+   * Parses an integer value of the report, e.g. a line number. Used by the JAXB bindings of the report classes as well.
+   *
+   * @throws NumberFormatException if the value is not a valid integer
+   */
+  public static int parseInteger(final String value) {
+    return Integer.parseInt(value.trim());
+  }
+
+  /**
+   * @return the line of the position, 0 if the line is missing or has not been a valid integer in the report
+   */
+  public static int getLine(final XsdPosition position) {
+    final Integer line = position.getLine();
+    return line != null ? line.intValue() : 0;
+  }
+
   public static String getSonargraphBasePath(final ReportContext report) {
     if (report == null) {
       return null;
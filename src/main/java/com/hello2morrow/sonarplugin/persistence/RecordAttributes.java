@@ -0,0 +1,107 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.xsd.XsdAttribute;
+
+import java.util.List;
+
+/**
+ * The values of the {@link WellKnownAttribute}s of a single report record. The attribute list of the record is walked once and every value
+ * is stored in the slot of its attribute, so that reading a value no longer scans and string-compares the list as
+ * {@link PersistenceUtilities#getAttribute(List, String)} does. If an attribute occurs more than once, the first value is kept.
+ */
+public final class RecordAttributes {
+
+  private static final WellKnownAttribute[] ATTRIBUTES = WellKnownAttribute.values();
+
+  private final String[] values = new String[ATTRIBUTES.length];
+
+  private RecordAttributes() {
+  }
+
+  public static RecordAttributes resolve(final List<XsdAttribute> attributes) {
+    final RecordAttributes result = new RecordAttributes();
+    for (final XsdAttribute next : attributes) {
+      final WellKnownAttribute attribute = WellKnownAttribute.forName(next.getName());
+      if (attribute != null && result.values[attribute.ordinal()] == null) {
+        result.values[attribute.ordinal()] = next.getValue();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the value of the attribute, null if the record does not contain it
+   */
+  public String get(final WellKnownAttribute attribute) {
+    return values[attribute.ordinal()];
+  }
+
+  public String getBuildUnit() {
+    return get(WellKnownAttribute.BUILD_UNIT);
+  }
+
+  public String getFromBuildUnit() {
+    return get(WellKnownAttribute.FROM_BUILD_UNIT);
+  }
+
+  public String getProject() {
+    return get(WellKnownAttribute.PROJECT);
+  }
+
+  public String getElement() {
+    return get(WellKnownAttribute.ELEMENT);
+  }
+
+  public String getElementType() {
+    return get(WellKnownAttribute.ELEMENT_TYPE);
+  }
+
+  public String getAttributeValue() {
+    return get(WellKnownAttribute.ATTRIBUTE_VALUE);
+  }
+
+  public String getStartLine() {
+    return get(WellKnownAttribute.START_LINE);
+  }
+
+  public String getBlockId() {
+    return get(WellKnownAttribute.BLOCK_ID);
+  }
+
+  public String getTo() {
+    return get(WellKnownAttribute.TO);
+  }
+
+  public String getExplanation() {
+    return get(WellKnownAttribute.EXPLANATION);
+  }
+
+  public String getPriority() {
+    return get(WellKnownAttribute.PRIORITY);
+  }
+
+  public String getDescription() {
+    return get(WellKnownAttribute.DESCRIPTION);
+  }
+
+  public String getAssignedTo() {
+    return get(WellKnownAttribute.ASSIGNED_TO);
+  }
+}
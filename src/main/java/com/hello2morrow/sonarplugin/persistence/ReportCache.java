@@ -0,0 +1,184 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.BatchSide;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.resources.Project;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps the unmarshalled Sonargraph report together with its {@link ReportIndex} for the duration of one analysis, so that the report is parsed only once for all modules of a
+ * multi-module project. Entries are keyed by canonical path, size and modification time of the report file as well as by the
+ * {@link ReportSectionFilter} the report has been read with, and are evicted as soon as the last module of the analysed project tree has
+ * been processed.
+ */
+@BatchSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class ReportCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReportCache.class);
+
+  private final Map<ReportFileKey, ReportIndex> reports = new HashMap<>();
+  private int hits = 0;
+  private int misses = 0;
+  private int expectedModules = -1;
+  private int finishedModules = 0;
+
+  public synchronized ReportIndex get(final File reportFile, final ReportSectionFilter filter) {
+    final ReportFileKey key = ReportFileKey.create(reportFile, filter);
+    final ReportIndex report = key != null ? reports.get(key) : null;
+    if (report != null) {
+      hits++;
+      LOG.info("Sonargraph: Using already parsed report " + reportFile.getPath() + " (cache hits: " + hits + ", misses: " + misses + ")");
+    } else {
+      misses++;
+      LOG.debug("Sonargraph: Report " + reportFile.getPath() + " not yet parsed (cache hits: " + hits + ", misses: " + misses + ")");
+    }
+    return report;
+  }
+
+  public synchronized void put(final File reportFile, final ReportSectionFilter filter, final ReportIndex report) {
+    final ReportFileKey key = ReportFileKey.create(reportFile, filter);
+    if (key == null || report == null) {
+      return;
+    }
+
+    // A modified report replaces the previously parsed versions of the same file
+    final Iterator<ReportFileKey> iter = reports.keySet().iterator();
+    while (iter.hasNext()) {
+      final ReportFileKey next = iter.next();
+      if (next.canonicalPath.equals(key.canonicalPath) && (next.size != key.size || next.lastModified != key.lastModified)) {
+        iter.remove();
+      }
+    }
+    reports.put(key, report);
+  }
+
+  /**
+   * Must be called once for every module the sensor is executed on. The cached reports are evicted after the last module of the project
+   * tree has been processed.
+   */
+  public synchronized void moduleFinished(final Project project) {
+    if (project == null) {
+      return;
+    }
+
+    if (expectedModules < 0) {
+      expectedModules = countProjects(getRootProject(project));
+    }
+    finishedModules++;
+    if (finishedModules >= expectedModules) {
+      evict();
+    }
+  }
+
+  public synchronized void evict() {
+    if (!reports.isEmpty() || hits > 0 || misses > 0) {
+      LOG.info("Sonargraph: Evicting " + reports.size() + " cached report(s) after " + finishedModules + " module(s) (cache hits: " + hits + ", misses: " + misses + ")");
+    }
+    reports.clear();
+    hits = 0;
+    misses = 0;
+    expectedModules = -1;
+    finishedModules = 0;
+  }
+
+  synchronized int getHits() {
+    return hits;
+  }
+
+  synchronized int getMisses() {
+    return misses;
+  }
+
+  synchronized int size() {
+    return reports.size();
+  }
+
+  private static Project getRootProject(final Project project) {
+    Project root = project;
+    while (root.getParent() != null) {
+      root = root.getParent();
+    }
+    return root;
+  }
+
+  private static int countProjects(final Project project) {
+    int count = 1;
+    if (project.getModules() != null) {
+      for (final Project module : project.getModules()) {
+        count += countProjects(module);
+      }
+    }
+    return count;
+  }
+
+  private static final class ReportFileKey {
+    private final String canonicalPath;
+    private final long size;
+    private final long lastModified;
+    private final ReportSectionFilter filter;
+
+    private ReportFileKey(final String canonicalPath, final long size, final long lastModified, final ReportSectionFilter filter) {
+      this.canonicalPath = canonicalPath;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.filter = filter;
+    }
+
+    static ReportFileKey create(final File reportFile, final ReportSectionFilter filter) {
+      try {
+        return new ReportFileKey(reportFile.getCanonicalPath(), reportFile.length(), reportFile.lastModified(), filter);
+      } catch (final IOException e) {
+        LOG.debug("Cannot determine canonical path of " + reportFile.getPath(), e);
+        return null;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      final int prime = 31;
+      int result = 1;
+      result = prime * result + canonicalPath.hashCode();
+      result = prime * result + (int) (size ^ (size >>> 32));
+      result = prime * result + (int) (lastModified ^ (lastModified >>> 32));
+      result = prime * result + filter.hashCode();
+      return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      final ReportFileKey other = (ReportFileKey) obj;
+      return size == other.size && lastModified == other.lastModified && canonicalPath.equals(other.canonicalPath) && filter.equals(other.filter);
+    }
+  }
+}
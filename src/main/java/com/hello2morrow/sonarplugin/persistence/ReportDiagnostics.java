@@ -0,0 +1,77 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Problems found while reading a Sonargraph report that do not prevent reading it, e.g. a line number that is not a valid integer. The
+ * affected value is left null in the report model and the problem is recorded here, instead of failing later during the processing.
+ */
+public final class ReportDiagnostics {
+
+  /** Number of diagnostics that are logged as warning, the remaining ones are only logged on debug level */
+  static final int MAX_LOGGED = 10;
+
+  private final List<String> messages = new ArrayList<>();
+
+  /**
+   * @param element name of the element containing the attribute
+   * @param line line of the element in the report, -1 if unknown
+   */
+  void addMalformedNumber(final String element, final String attribute, final String value, final int line) {
+    add("Attribute \"" + attribute + "\" of element \"" + element + "\" is not a valid integer value: '" + value + "'" + (line > 0 ? " (line " + line + ")" : ""));
+  }
+
+  synchronized void add(final String message) {
+    messages.add(message);
+  }
+
+  void addAll(final ReportDiagnostics diagnostics) {
+    for (final String next : diagnostics.getMessages()) {
+      add(next);
+    }
+  }
+
+  public synchronized List<String> getMessages() {
+    return Collections.unmodifiableList(new ArrayList<>(messages));
+  }
+
+  public synchronized boolean isEmpty() {
+    return messages.isEmpty();
+  }
+
+  void log(final Logger log, final String reportFileName) {
+    final List<String> all = getMessages();
+    if (all.isEmpty()) {
+      return;
+    }
+    log.warn("Found " + all.size() + " malformed values in Sonargraph report " + reportFileName);
+    for (int i = 0; i < all.size(); i++) {
+      if (i < MAX_LOGGED) {
+        log.warn("  " + all.get(i));
+      } else {
+        log.debug("  " + all.get(i));
+      }
+    }
+  }
+}
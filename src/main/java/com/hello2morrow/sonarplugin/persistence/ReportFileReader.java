@@ -17,7 +17,9 @@
  */
 package com.hello2morrow.sonarplugin.persistence;
 
+import com.hello2morrow.sonarplugin.foundation.BuildUnitIdTable;
 import com.hello2morrow.sonarplugin.foundation.SonarQubeUtilities;
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
 import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
 import com.hello2morrow.sonarplugin.xsd.ReportContext;
 import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
@@ -28,12 +30,10 @@ import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamException;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -50,7 +50,62 @@ public class ReportFileReader implements IReportReader {
   private static final Logger LOG = LoggerFactory.getLogger(ReportFileReader.class);
   private static final String REPORT_DIR = "sonargraph-sonar-plugin";
   private static final String REPORT_NAME = "sonargraph-sonar-report.xml";
+  /** Names of the default report, in order of preference */
+  private static final String[] REPORT_NAMES = { REPORT_NAME, REPORT_NAME + ".gz", "sonargraph-sonar-report.zip" };
+  private final ReportCache reportCache;
+  private final ReportSectionFilter sectionFilter;
   private ReportContext report;
+  private ReportIndex reportIndex;
+  private ReportDiagnostics diagnostics = new ReportDiagnostics();
+
+  public ReportFileReader() {
+    this(null);
+  }
+
+  /**
+   * @param reportCache cache shared by all modules of the analysis, may be null
+   */
+  public ReportFileReader(final ReportCache reportCache) {
+    this(reportCache, ReportSectionFilter.ALL);
+  }
+
+  /**
+   * @param reportCache cache shared by all modules of the analysis, may be null
+   * @param sectionFilter sections of the report that are needed
+   */
+  public ReportFileReader(final ReportCache reportCache, final ReportSectionFilter sectionFilter) {
+    this.reportCache = reportCache;
+    this.sectionFilter = sectionFilter;
+  }
+
+  /**
+   * Creates the report reader configured with {@link SonargraphPluginBase#REPORT_READER}.
+   *
+   * @param reportCache cache shared by all modules of the analysis, may be null
+   */
+  public static ReportFileReader createReader(final Settings settings, final ReportCache reportCache) {
+    return createReader(settings, reportCache, ReportSectionFilter.ALL);
+  }
+
+  /**
+   * Creates the report reader configured with {@link SonargraphPluginBase#REPORT_READER}.
+   *
+   * @param reportCache cache shared by all modules of the analysis, may be null
+   * @param sectionFilter sections of the report that are needed
+   */
+  public static ReportFileReader createReader(final Settings settings, final ReportCache reportCache, final ReportSectionFilter sectionFilter) {
+    final String reader = SonargraphUtilities.getConfiguredReportReader(settings);
+    if (SonargraphPluginBase.REPORT_READER_STAX.equals(reader)) {
+      return new StaxReportFileReader(reportCache, sectionFilter);
+    }
+    if (SonargraphPluginBase.REPORT_READER_PARALLEL.equals(reader)) {
+      return new ParallelReportFileReader(reportCache, sectionFilter);
+    }
+    if (!SonargraphPluginBase.REPORT_READER_JAXB.equals(reader)) {
+      LOG.warn("Unknown Sonargraph report reader '" + reader + "', using '" + SonargraphPluginBase.REPORT_READER_JAXB + "' instead");
+    }
+    return new ReportFileReader(reportCache, sectionFilter);
+  }
 
   @Override
   public void readSonargraphReport(final Project project, final FileSystem fileSystem, final Settings settings) {
@@ -60,17 +115,53 @@ public class ReportFileReader implements IReportReader {
     }
 
     final String reportFileName = determineReportFileName(fileSystem, settings);
-    LOG.info("Reading Sonargraph metrics report from: " + reportFileName);
     report = null;
-    final ClassLoader defaultClassLoader = Thread.currentThread().getContextClassLoader();
+    reportIndex = null;
+    diagnostics = new ReportDiagnostics();
+    if (reportCache != null && reportFileName != null) {
+      reportIndex = reportCache.get(new File(reportFileName), sectionFilter);
+      if (reportIndex != null) {
+        report = reportIndex.getReport();
+        return;
+      }
+    }
+
+    final boolean useShards = reportFileName != null && settings != null && SonargraphUtilities.isReportShardingEnabled(settings);
+    if (useShards && readShard(new File(reportFileName), project)) {
+      return;
+    }
+
+    final boolean useBinaryReport = reportFileName != null && settings != null && SonargraphUtilities.isBinaryReportEnabled(settings);
+    if (useBinaryReport && readBinaryReport(new File(reportFileName))) {
+      return;
+    }
 
-    try (InputStream input = new FileInputStream(reportFileName)) {
-      Thread.currentThread().setContextClassLoader(ReportFileReader.class.getClassLoader());
-      final JAXBContext context = JAXBContext.newInstance("com.hello2morrow.sonarplugin.xsd");
-      final Unmarshaller u = context.createUnmarshaller();
-      report = (ReportContext) u.unmarshal(input);
+    LOG.info("Reading Sonargraph metrics report from: " + reportFileName);
+    try {
+      if (useBinaryReport || useShards) {
+        // The binary report and the shards must contain the complete report, so that they can be used regardless of the active rules
+        report = readReport(new File(reportFileName), settings, ReportSectionFilter.ALL);
+        final BuildUnitIdTable buildUnitIds = new BuildUnitIdTable();
+        if (useBinaryReport && report != null) {
+          writeBinaryReport(new File(reportFileName));
+        }
+        if (useShards && report != null) {
+          writeShards(new File(reportFileName), buildUnitIds);
+        }
+        report = sectionFilter.apply(report);
+        reportIndex = ReportIndex.create(report, buildUnitIds);
+      } else {
+        reportIndex = readReportIndex(new File(reportFileName), settings, sectionFilter);
+        report = reportIndex != null ? reportIndex.getReport() : null;
+      }
+      diagnostics.log(LOG, reportFileName);
+      if (reportCache != null) {
+        reportCache.put(new File(reportFileName), sectionFilter, reportIndex);
+      }
     } catch (final JAXBException e) {
       LOG.error("JAXB Problem in " + reportFileName, e);
+    } catch (final XMLStreamException e) {
+      LOG.error("StAX Problem in " + reportFileName, e);
     } catch (final FileNotFoundException e) {
       if (project.isRoot()) {
         LOG.error("Cannot open Sonargraph report: " + reportFileName + ".");
@@ -81,12 +172,110 @@ public class ReportFileReader implements IReportReader {
       }
       LOG.debug("No Sonargraph report found", e);
     } catch (final IOException e) {
-      LOG.error("Cannot close " + reportFileName, e);
-    } finally {
-      Thread.currentThread().setContextClassLoader(defaultClassLoader);
+      LOG.error("Cannot read " + reportFileName, e);
+    }
+  }
+
+  protected static InputStream openReport(final File reportFile, final Settings settings) throws IOException {
+    return ReportInputStreams.open(reportFile, settings != null && SonargraphUtilities.isMemoryMappedReportEnabled(settings));
+  }
+
+  private boolean readBinaryReport(final File reportFile) {
+    if (!reportFile.isFile()) {
+      return false;
+    }
+    final ReportContext binaryReport = BinaryReportReader.readSidecar(reportFile);
+    if (binaryReport == null) {
+      return false;
+    }
+
+    LOG.info("Reading Sonargraph metrics report from: " + BinaryReportFormat.getSidecarFile(reportFile).getPath());
+    report = sectionFilter.apply(binaryReport);
+    reportIndex = ReportIndex.create(report);
+    if (reportCache != null) {
+      reportCache.put(reportFile, sectionFilter, reportIndex);
+    }
+    return true;
+  }
+
+  /**
+   * Reads only the shard of the build unit of the project. The shard is not put into the report cache, since it does not contain the
+   * build units of the other modules.
+   */
+  private boolean readShard(final File reportFile, final Project project) {
+    if (!reportFile.isFile()) {
+      return false;
+    }
+    final ReportContext shard = ReportShards.read(reportFile, project);
+    if (shard == null) {
+      return false;
+    }
+
+    report = sectionFilter.apply(shard);
+    reportIndex = ReportIndex.create(report);
+    return true;
+  }
+
+  private void writeShards(final File reportFile, final BuildUnitIdTable buildUnitIds) {
+    try {
+      final int shards = ReportShards.write(reportFile, report, buildUnitIds);
+      if (shards > 0) {
+        LOG.info("Stored " + shards + " Sonargraph report shards in: " + ReportShards.getShardDirectory(reportFile).getPath());
+      }
+    } catch (final IOException e) {
+      LOG.warn("Cannot store Sonargraph report shards next to " + reportFile.getPath() + ": " + e.getMessage());
+    }
+  }
+
+  private void writeBinaryReport(final File reportFile) {
+    try {
+      final File sidecar = BinaryReportWriter.writeSidecar(reportFile, report);
+      LOG.info("Stored binary Sonargraph report in: " + sidecar.getPath());
+    } catch (final IOException e) {
+      LOG.warn("Cannot store binary Sonargraph report next to " + reportFile.getPath() + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Creates the report model from the given report file. The JAXB unmarshaller always reads the complete report, the sections that are
+   * not needed are dropped by {@link #readSonargraphReport(Project, FileSystem, Settings)} after the binary report and the shards have
+   * been written.
+   *
+   * @param filter sections of the report that are needed, readers may skip the other sections while parsing
+   */
+  protected ReportContext readReport(final File reportFile, final Settings settings, final ReportSectionFilter filter) throws JAXBException,
+    XMLStreamException, IOException {
+    try (InputStream input = openReport(reportFile, settings)) {
+      return unmarshal(input);
     }
   }
 
+  /**
+   * Reads the report and creates the index over it. Only used if neither the binary report nor the shards are written, which need the
+   * complete report model, so readers may pass the records of the report directly to the index instead of keeping them in the model.
+   *
+   * @param filter sections of the report that are needed
+   */
+  protected ReportIndex readReportIndex(final File reportFile, final Settings settings, final ReportSectionFilter filter) throws JAXBException,
+    XMLStreamException, IOException {
+    return ReportIndex.create(filter.apply(readReport(reportFile, settings, filter)));
+  }
+
+  /**
+   * Creates the report model from the given stream.
+   */
+  protected ReportContext unmarshal(final InputStream input) throws JAXBException, XMLStreamException {
+    return JaxbUnmarshallerPool.getInstance().unmarshal(input, diagnostics);
+  }
+
+  /**
+   * @return the malformed values found while reading the XML report, empty if the report has been taken from the cache or from its binary
+   *         form
+   */
+  public ReportDiagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -97,6 +286,11 @@ public class ReportFileReader implements IReportReader {
     return report;
   }
 
+  @Override
+  public ReportIndex getReportIndex() {
+    return reportIndex;
+  }
+
   private static String determineReportFileName(final FileSystem fileSystem, final Settings settings) {
     final String configuredReportPath = SonargraphUtilities.getConfiguredReportPath(settings);
 
@@ -105,7 +299,13 @@ public class ReportFileReader implements IReportReader {
     }
 
     if (configuredReportPath == null || configuredReportPath.length() == 0) {
-      return fileSystem.workDir().getParentFile().getPath() + '/' + REPORT_DIR + '/' + REPORT_NAME;
+      final String reportDir = fileSystem.workDir().getParentFile().getPath() + '/' + REPORT_DIR + '/';
+      for (final String reportName : REPORT_NAMES) {
+        if (new File(reportDir + reportName).exists()) {
+          return reportDir + reportName;
+        }
+      }
+      return reportDir + REPORT_NAME;
     }
 
     return configuredReportPath;
@@ -128,19 +328,25 @@ public class ReportFileReader implements IReportReader {
     if (buildUnitList.size() == 1) {
       return projectMatchesBuildUnit(project, buildUnitList.get(0));
     } else if (buildUnitList.size() > 1) {
-      return findBuildUnit(project, buildUnitList);
+      return findBuildUnit(project, reportIndex != null ? reportIndex.getBuildUnitLookup() : BuildUnitLookup.create(buildUnitList));
     } else {
       LOG.error("No build units fond in report");
     }
     return null;
   }
 
-  private static XsdAttributeRoot findBuildUnit(final Project project, final List<XsdAttributeRoot> buildUnitList) {
-    for (final XsdAttributeRoot sonarBuildUnit : buildUnitList) {
-      final String buName = SonargraphUtilities.getBuildUnitName(sonarBuildUnit.getName());
-      if (SonarQubeUtilities.buildUnitMatchesAnalyzedProject(buName, project)) {
-        return sonarBuildUnit;
+  private static XsdAttributeRoot findBuildUnit(final Project project, final BuildUnitLookup lookup) {
+    final List<XsdAttributeRoot> matches = lookup.findAll(project);
+    if (matches.size() > 1) {
+      final StringBuilder names = new StringBuilder();
+      for (final XsdAttributeRoot next : matches) {
+        names.append(names.length() > 0 ? ", " : "").append(next.getName());
       }
+      LOG.warn("Project with key [" + project.getKey() + "] matches " + matches.size() + " build units (" + names + "), using the first one. "
+        + "Check the build unit configuration of your Sonargraph system.");
+    }
+    if (!matches.isEmpty()) {
+      return matches.get(0);
     }
 
     LOG.warn("Project  with key [" + project.getKey() + "] could not be mapped to a build unit. "
@@ -0,0 +1,455 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.BuildUnitId;
+import com.hello2morrow.sonarplugin.foundation.BuildUnitIdTable;
+import com.hello2morrow.sonarplugin.foundation.DuplicateCodeBlock;
+import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdTask;
+import com.hello2morrow.sonarplugin.xsd.XsdTypeRelation;
+import com.hello2morrow.sonarplugin.xsd.XsdWarning;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdWorkspace;
+import com.hello2morrow.sonarplugin.xsd.XsdWorkspacePath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index over the Sonargraph report that is built in a single pass. Tasks, warnings, type relations of architecture violations and cycle
+ * groups are bucketed by their {@link BuildUnitId}, as well as the paths of the Sonargraph workspace, so that the processing of a module
+ * only touches the elements of its own build unit. The buckets are looked up by identity of the id, which is interned in the
+ * {@link BuildUnitIdTable} of the index. The getters taking a build unit name only look the name up in that table, so names that are not
+ * part of the report yield empty lists. The order of the elements within a bucket is the order of the report.
+ * <p>
+ * The {@link WellKnownAttribute}s of tasks, warnings and type relations are resolved once while indexing and are available from the
+ * indexed records via {@link RecordAttributes}.
+ * <p>
+ * The index is either created over a complete report model or filled by a {@link Builder} while the report is parsed. In the latter case
+ * the records are only kept by the buckets of the index, the lists of their sections in the report model stay empty.
+ */
+public final class ReportIndex {
+
+  public static final String DUPLICATE_CODE_GROUP = "Duplicate code";
+
+  private final ReportContext report;
+  private final BuildUnitIdTable buildUnitIds;
+  private BuildUnitLookup buildUnitLookup;
+  private final Map<BuildUnitId, List<IndexedTask>> tasks = new IdentityHashMap<>();
+  private final Map<BuildUnitId, Map<String, List<IndexedWarning>>> warnings = new IdentityHashMap<>();
+  private final Map<BuildUnitId, List<IndexedTypeRelation>> typeRelations = new IdentityHashMap<>();
+  private final Map<BuildUnitId, List<XsdCycleGroup>> cycleGroups = new IdentityHashMap<>();
+  private final Map<BuildUnitId, List<DuplicateCodeBlock>> duplicateCodeBlocks = new IdentityHashMap<>();
+  private final Map<Integer, List<DuplicateCodeBlock>> duplicateCodeBlockGroups = new LinkedHashMap<>();
+  private final Map<BuildUnitId, List<String>> workspacePaths = new IdentityHashMap<>();
+
+  private ReportIndex(final ReportContext report, final BuildUnitIdTable buildUnitIds) {
+    this.report = report;
+    this.buildUnitIds = buildUnitIds;
+  }
+
+  /**
+   * @return the index over the given report or null if no report is given
+   */
+  public static ReportIndex create(final ReportContext report) {
+    return create(report, new BuildUnitIdTable());
+  }
+
+  /**
+   * @param buildUnitIds table of the build unit ids of the report, e.g. already used for writing the shards of the report
+   * @return the index over the given report or null if no report is given
+   */
+  public static ReportIndex create(final ReportContext report, final BuildUnitIdTable buildUnitIds) {
+    if (report == null) {
+      return null;
+    }
+
+    final ReportIndex index = new ReportIndex(report, buildUnitIds);
+    index.indexBuildUnits();
+    index.indexTasks();
+    index.indexWarnings();
+    index.indexTypeRelations();
+    index.indexCycleGroups();
+    index.indexWorkspaces();
+    return index;
+  }
+
+  public ReportContext getReport() {
+    return report;
+  }
+
+  public BuildUnitIdTable getBuildUnitIds() {
+    return buildUnitIds;
+  }
+
+  /**
+   * @return the id of the build unit or null if it is not part of the report
+   */
+  public BuildUnitId getBuildUnitId(final XsdAttributeRoot buildUnit) {
+    return buildUnitIds.findFqName(buildUnit.getName());
+  }
+
+  /**
+   * @return the mapping of projects to the build units of the report
+   */
+  public BuildUnitLookup getBuildUnitLookup() {
+    return buildUnitLookup;
+  }
+
+  public List<IndexedTask> getTasks(final BuildUnitId buildUnit) {
+    return get(tasks, buildUnit);
+  }
+
+  /**
+   * @param buildUnitName normalized build unit name
+   */
+  public List<IndexedTask> getTasks(final String buildUnitName) {
+    return getTasks(buildUnitIds.find(buildUnitName));
+  }
+
+  /**
+   * @param attributeGroup attribute group of the warnings, e.g. "Thresholds"
+   */
+  public List<IndexedWarning> getWarnings(final BuildUnitId buildUnit, final String attributeGroup) {
+    final Map<String, List<IndexedWarning>> groups = warnings.get(buildUnit);
+    if (groups == null) {
+      return Collections.emptyList();
+    }
+    return get(groups, attributeGroup);
+  }
+
+  /**
+   * @param buildUnitName normalized build unit name
+   * @param attributeGroup attribute group of the warnings, e.g. "Thresholds"
+   */
+  public List<IndexedWarning> getWarnings(final String buildUnitName, final String attributeGroup) {
+    return getWarnings(buildUnitIds.find(buildUnitName), attributeGroup);
+  }
+
+  /**
+   * @return type relations of architecture violations originating from the build unit
+   */
+  public List<IndexedTypeRelation> getTypeRelations(final BuildUnitId buildUnit) {
+    return get(typeRelations, buildUnit);
+  }
+
+  /**
+   * @param buildUnitName normalized build unit name
+   * @return type relations of architecture violations originating from the build unit
+   */
+  public List<IndexedTypeRelation> getTypeRelations(final String buildUnitName) {
+    return getTypeRelations(buildUnitIds.find(buildUnitName));
+  }
+
+  public List<XsdCycleGroup> getCycleGroups(final BuildUnitId buildUnit) {
+    return get(cycleGroups, buildUnit);
+  }
+
+  /**
+   * @param buildUnitName normalized build unit name
+   */
+  public List<XsdCycleGroup> getCycleGroups(final String buildUnitName) {
+    return getCycleGroups(buildUnitIds.find(buildUnitName));
+  }
+
+  /**
+   * @return the duplicate code blocks located in the build unit
+   */
+  public List<DuplicateCodeBlock> getDuplicateCodeBlocks(final BuildUnitId buildUnit) {
+    return get(duplicateCodeBlocks, buildUnit);
+  }
+
+  /**
+   * @param buildUnitName normalized build unit name
+   * @return the duplicate code blocks located in the build unit
+   */
+  public List<DuplicateCodeBlock> getDuplicateCodeBlocks(final String buildUnitName) {
+    return getDuplicateCodeBlocks(buildUnitIds.find(buildUnitName));
+  }
+
+  /**
+   * @return the workspace paths of the build unit, relative to the Sonargraph system directory, e.g. "AlarmClock/src/main/java"
+   */
+  public List<String> getWorkspacePaths(final BuildUnitId buildUnit) {
+    return get(workspacePaths, buildUnit);
+  }
+
+  /**
+   * @return all duplicate code blocks of the system with the same block id, regardless of their build unit
+   */
+  public List<DuplicateCodeBlock> getDuplicateCodeBlockGroup(final int blockId) {
+    return get(duplicateCodeBlockGroups, Integer.valueOf(blockId));
+  }
+
+  private void indexBuildUnits() {
+    final List<XsdAttributeRoot> buildUnits = report.getBuildUnits() != null ? report.getBuildUnits().getBuildUnit() : Collections
+      .<XsdAttributeRoot> emptyList();
+    for (final XsdAttributeRoot next : buildUnits) {
+      buildUnitIds.internFqName(next.getName());
+    }
+    buildUnitLookup = BuildUnitLookup.create(buildUnits);
+  }
+
+  private void indexTasks() {
+    if (report.getTasks() == null) {
+      return;
+    }
+    for (final XsdTask task : report.getTasks().getTask()) {
+      addTask(task);
+    }
+  }
+
+  private void addTask(final XsdTask task) {
+    final RecordAttributes attributes = RecordAttributes.resolve(task.getAttribute());
+    add(tasks, buildUnitIds.internFqName(attributes.getBuildUnit()), new IndexedTask(task, attributes));
+  }
+
+  private void indexWarnings() {
+    if (report.getWarnings() == null) {
+      return;
+    }
+    for (final XsdWarningsByAttributeGroup warningGroup : report.getWarnings().getWarningsByAttributeGroup()) {
+      for (final XsdWarningsByAttribute warningByAttribute : warningGroup.getWarningsByAttribute()) {
+        for (final XsdWarning warning : warningByAttribute.getWarning()) {
+          addWarning(warningGroup.getAttributeGroup(), warningByAttribute.getAttributeName(), warning);
+        }
+      }
+    }
+  }
+
+  private void addWarning(final String attributeGroup, final String attributeName, final XsdWarning warning) {
+    final RecordAttributes attributes = RecordAttributes.resolve(warning.getAttribute());
+    final BuildUnitId buildUnit = buildUnitIds.internFqName(attributes.getBuildUnit());
+    Map<String, List<IndexedWarning>> groups = warnings.get(buildUnit);
+    if (groups == null) {
+      groups = new HashMap<>();
+      warnings.put(buildUnit, groups);
+    }
+    add(groups, attributeGroup, new IndexedWarning(attributeName, warning, attributes));
+    if (DUPLICATE_CODE_GROUP.equals(attributeGroup)) {
+      indexDuplicateCodeBlock(attributes);
+    }
+  }
+
+  private void indexDuplicateCodeBlock(final RecordAttributes attributes) {
+    final DuplicateCodeBlock block = PersistenceUtilities.createDuplicateCodeBlock(attributes);
+    if (block == null) {
+      return;
+    }
+    add(duplicateCodeBlocks, buildUnitIds.internFqName(block.getBuildUnitName()), block);
+    add(duplicateCodeBlockGroups, Integer.valueOf(block.getBlockId()), block);
+  }
+
+  private void indexTypeRelations() {
+    if (report.getViolations() == null) {
+      return;
+    }
+    for (final XsdArchitectureViolation violation : report.getViolations().getArchitectureViolations()) {
+      for (final XsdTypeRelation relation : violation.getTypeRelation()) {
+        addTypeRelation(violation, relation);
+      }
+    }
+  }
+
+  private void addTypeRelation(final XsdArchitectureViolation violation, final XsdTypeRelation relation) {
+    final RecordAttributes attributes = RecordAttributes.resolve(relation.getAttribute());
+    add(typeRelations, buildUnitIds.internFqName(attributes.getFromBuildUnit()), new IndexedTypeRelation(violation, relation, attributes));
+  }
+
+  private void indexCycleGroups() {
+    if (report.getCycleGroups() == null) {
+      return;
+    }
+    for (final XsdCycleGroup group : report.getCycleGroups().getCycleGroup()) {
+      addCycleGroup(group);
+    }
+  }
+
+  private void addCycleGroup(final XsdCycleGroup group) {
+    final String buildUnitName = PersistenceUtilities.getBuildUnitName(group);
+    if (buildUnitName != null) {
+      add(cycleGroups, buildUnitIds.intern(buildUnitName), group);
+    }
+  }
+
+  private void indexWorkspaces() {
+    if (report.getWorkspaces() == null) {
+      return;
+    }
+    for (final XsdWorkspace workspace : report.getWorkspaces().getWorkspace()) {
+      // Compatibility with old SonarJ versions, see SonargraphUtilities.getBuildUnitName()
+      final String buildUnitName = SonargraphUtilities.DEFAULT_BUILD_UNIT.equals(workspace.getBuildUnit()) ? workspace.getProject() : workspace
+        .getBuildUnit();
+      final BuildUnitId buildUnit = buildUnitIds.intern(buildUnitName);
+      for (final XsdWorkspacePath path : workspace.getWorkspacePath()) {
+        add(workspacePaths, buildUnit, path.getPath());
+      }
+    }
+  }
+
+  private static <K, V> void add(final Map<K, List<V>> map, final K key, final V value) {
+    List<V> values = map.get(key);
+    if (values == null) {
+      values = new ArrayList<>();
+      map.put(key, values);
+    }
+    values.add(value);
+  }
+
+  private static <K, V> List<V> get(final Map<K, List<V>> map, final K key) {
+    final List<V> values = map.get(key);
+    if (values == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(values);
+  }
+
+  /**
+   * Fills the index with the records passed by the {@link StaxReportParser} while it reads the report returned by {@link #getReport()}.
+   * The build units and workspaces are indexed by {@link #build()}, once the report has been read completely.
+   */
+  static final class Builder implements ReportRecordHandler {
+    private final ReportIndex index;
+
+    /**
+     * @param buildUnitIds table of the build unit ids of the report
+     */
+    Builder(final BuildUnitIdTable buildUnitIds) {
+      this.index = new ReportIndex(new ReportContext(), buildUnitIds);
+    }
+
+    /**
+     * @return the report to be read, its task, warning, type relation and cycle group lists are not filled
+     */
+    ReportContext getReport() {
+      return index.report;
+    }
+
+    @Override
+    public void task(final XsdTask task) {
+      index.addTask(task);
+    }
+
+    @Override
+    public void warning(final String attributeGroup, final String attributeName, final XsdWarning warning) {
+      index.addWarning(attributeGroup, attributeName, warning);
+    }
+
+    @Override
+    public void typeRelation(final XsdArchitectureViolation violation, final XsdTypeRelation relation) {
+      index.addTypeRelation(violation, relation);
+    }
+
+    @Override
+    public void cycleGroup(final XsdCycleGroup group) {
+      index.addCycleGroup(group);
+    }
+
+    ReportIndex build() {
+      index.indexBuildUnits();
+      index.indexWorkspaces();
+      return index;
+    }
+  }
+
+  /**
+   * A task together with its resolved attributes.
+   */
+  public static final class IndexedTask {
+    private final XsdTask task;
+    private final RecordAttributes attributes;
+
+    IndexedTask(final XsdTask task, final RecordAttributes attributes) {
+      this.task = task;
+      this.attributes = attributes;
+    }
+
+    public XsdTask getTask() {
+      return task;
+    }
+
+    public RecordAttributes getAttributes() {
+      return attributes;
+    }
+  }
+
+  /**
+   * A warning together with the name of the attribute it has been reported for.
+   */
+  public static final class IndexedWarning {
+    private final String attributeName;
+    private final XsdWarning warning;
+    private final RecordAttributes attributes;
+
+    IndexedWarning(final String attributeName, final XsdWarning warning, final RecordAttributes attributes) {
+      this.attributeName = attributeName;
+      this.warning = warning;
+      this.attributes = attributes;
+    }
+
+    public String getAttributeName() {
+      return attributeName;
+    }
+
+    public XsdWarning getWarning() {
+      return warning;
+    }
+
+    public RecordAttributes getAttributes() {
+      return attributes;
+    }
+  }
+
+  /**
+   * A type relation together with the architecture violation it belongs to.
+   */
+  public static final class IndexedTypeRelation {
+    private final XsdArchitectureViolation violation;
+    private final XsdTypeRelation typeRelation;
+    private final RecordAttributes attributes;
+
+    IndexedTypeRelation(final XsdArchitectureViolation violation, final XsdTypeRelation typeRelation, final RecordAttributes attributes) {
+      this.violation = violation;
+      this.typeRelation = typeRelation;
+      this.attributes = attributes;
+    }
+
+    public XsdArchitectureViolation getViolation() {
+      return violation;
+    }
+
+    public XsdTypeRelation getTypeRelation() {
+      return typeRelation;
+    }
+
+    public RecordAttributes getAttributes() {
+      return attributes;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens the report file for the parsers. Compressed reports are recognized by their magic bytes, independent of the file name, and are
+ * decompressed while they are parsed:
+ * <ul>
+ * <li>gzip: the compressed XML report, e.g. <code>sonargraph-sonar-report.xml.gz</code></li>
+ * <li>zip: an archive containing the XML report; the first entry ending with ".xml" is read</li>
+ * </ul>
+ */
+final class ReportInputStreams {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReportInputStreams.class);
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAGIC_LENGTH = 4;
+  private static final String XML_EXTENSION = ".xml";
+
+  private ReportInputStreams() {
+    super();
+  }
+
+  /**
+   * @param memoryMapped true if the file is to be memory-mapped, see {@link ByteBufferInputStream#map(File)}
+   * @return stream of the uncompressed XML report
+   */
+  static InputStream open(final File reportFile, final boolean memoryMapped) throws IOException {
+    InputStream raw = null;
+    if (memoryMapped) {
+      raw = ByteBufferInputStream.map(reportFile);
+      if (raw != null) {
+        LOG.debug("Memory-mapped Sonargraph report " + reportFile.getPath());
+      } else {
+        LOG.info("Sonargraph report " + reportFile.getPath() + " is too large to be memory-mapped, reading it as stream");
+      }
+    }
+    if (raw == null) {
+      raw = new FileInputStream(reportFile);
+    }
+
+    try {
+      return decompress(raw, reportFile.getPath());
+    } catch (final IOException e) {
+      raw.close();
+      throw e;
+    }
+  }
+
+  static InputStream decompress(final InputStream raw, final String reportFileName) throws IOException {
+    final InputStream input = raw.markSupported() ? raw : new BufferedInputStream(raw, BUFFER_SIZE);
+    final byte[] magic = new byte[MAGIC_LENGTH];
+    input.mark(MAGIC_LENGTH);
+    final int length = readFully(input, magic);
+    input.reset();
+
+    if (length >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+      LOG.debug("Sonargraph report " + reportFileName + " is gzip compressed");
+      return new GZIPInputStream(input, BUFFER_SIZE);
+    }
+    if (length == MAGIC_LENGTH && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+      return openZipEntry(new ZipInputStream(input), reportFileName);
+    }
+    return input;
+  }
+
+  private static InputStream openZipEntry(final ZipInputStream zip, final String reportFileName) throws IOException {
+    ZipEntry entry;
+    String firstFile = null;
+    while ((entry = zip.getNextEntry()) != null) {
+      if (entry.isDirectory()) {
+        continue;
+      }
+      if (entry.getName().toLowerCase(Locale.ENGLISH).endsWith(XML_EXTENSION)) {
+        LOG.debug("Reading Sonargraph report " + entry.getName() + " from archive " + reportFileName);
+        return zip;
+      }
+      if (firstFile == null) {
+        firstFile = entry.getName();
+      }
+    }
+    zip.close();
+    throw new IOException("Archive " + reportFileName + " does not contain an XML report"
+      + (firstFile != null ? ", first entry is '" + firstFile + "'" : ""));
+  }
+
+  private static int readFully(final InputStream input, final byte[] bytes) throws IOException {
+    int length = 0;
+    while (length < bytes.length) {
+      final int read = input.read(bytes, length, bytes.length - length);
+      if (read == -1) {
+        break;
+      }
+      length += read;
+    }
+    return length;
+  }
+}
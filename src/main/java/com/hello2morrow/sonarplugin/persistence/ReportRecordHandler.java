@@ -0,0 +1,46 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdTask;
+import com.hello2morrow.sonarplugin.xsd.XsdTypeRelation;
+import com.hello2morrow.sonarplugin.xsd.XsdWarning;
+
+/**
+ * Receives the records of the report while it is parsed. If the {@link StaxReportParser} is given a handler, the records are passed to it
+ * instead of being added to the lists of their sections, so the report model only contains the section elements themselves.
+ */
+interface ReportRecordHandler {
+
+  void task(XsdTask task);
+
+  /**
+   * @param attributeGroup attribute group of the warning, e.g. "Thresholds"
+   * @param attributeName name of the attribute the warning has been reported for
+   */
+  void warning(String attributeGroup, String attributeName, XsdWarning warning);
+
+  /**
+   * @param violation architecture violation the type relation belongs to, its type relation list is not filled
+   */
+  void typeRelation(XsdArchitectureViolation violation, XsdTypeRelation relation);
+
+  void cycleGroup(XsdCycleGroup group);
+}
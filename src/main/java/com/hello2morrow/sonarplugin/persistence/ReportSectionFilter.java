@@ -0,0 +1,168 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdWarnings;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Determines which top-level sections of the report (and which attribute groups of the "warnings" section) are needed for the active
+ * Sonargraph rules. The sections with general information, attributes, projects, build units, configurations and workspaces are always
+ * needed; the sections "consistencyProblems", "exclusions" and "metrics" are never used by the plugin.
+ */
+public final class ReportSectionFilter {
+
+  /** Filter that keeps the complete report */
+  public static final ReportSectionFilter ALL = new ReportSectionFilter(null);
+
+  static final String VIOLATIONS = "violations";
+  static final String WARNINGS = "warnings";
+  static final String TASKS = "tasks";
+  static final String CYCLE_GROUPS = "cycleGroups";
+
+  private static final Set<String> ALWAYS_NEEDED = new HashSet<>(Arrays.asList("general", "attributes", "projects", "buildUnits", "configurations",
+    "workspaces"));
+
+  /** Active rule keys, null if all sections are needed */
+  private final Set<String> ruleKeys;
+
+  private ReportSectionFilter(final Set<String> ruleKeys) {
+    this.ruleKeys = ruleKeys;
+  }
+
+  /**
+   * @param activeRuleKeys keys of the active Sonargraph rules, e.g. {@link SonargraphPluginBase#ARCH_RULE_KEY}
+   */
+  public static ReportSectionFilter forActiveRules(final Collection<String> activeRuleKeys) {
+    return new ReportSectionFilter(Collections.unmodifiableSet(new TreeSet<>(activeRuleKeys)));
+  }
+
+  public boolean isAll() {
+    return ruleKeys == null;
+  }
+
+  /**
+   * @param section local name of a child element of "reportContext"
+   */
+  public boolean includesSection(final String section) {
+    if (ruleKeys == null || ALWAYS_NEEDED.contains(section)) {
+      return true;
+    }
+    if (VIOLATIONS.equals(section)) {
+      return ruleKeys.contains(SonargraphPluginBase.ARCH_RULE_KEY);
+    }
+    if (WARNINGS.equals(section)) {
+      return ruleKeys.contains(SonargraphPluginBase.DUPLICATE_RULE_KEY) || ruleKeys.contains(SonargraphPluginBase.THRESHOLD_RULE_KEY)
+        || ruleKeys.contains(SonargraphPluginBase.WORKSPACE_RULE_KEY);
+    }
+    if (TASKS.equals(section)) {
+      return ruleKeys.contains(SonargraphPluginBase.TASK_RULE_KEY);
+    }
+    if (CYCLE_GROUPS.equals(section)) {
+      return ruleKeys.contains(SonargraphPluginBase.CYCLE_GROUP_RULE_KEY);
+    }
+    return false;
+  }
+
+  /**
+   * @param attributeGroup attribute group of a "warningsByAttributeGroup" element, e.g. "Threshold"
+   */
+  public boolean includesWarnings(final String attributeGroup) {
+    if (ruleKeys == null) {
+      return true;
+    }
+    final String ruleKey = SonargraphPluginBase.getRuleKey(attributeGroup);
+    return ruleKey != null && ruleKeys.contains(ruleKey);
+  }
+
+  /**
+   * Removes the sections and warning groups that are not needed from a completely read report. The given report is modified, so it must
+   * not be shared with a reader that needs other sections, e.g. a report that is still to be written as binary report or shards.
+   *
+   * @return the given report
+   */
+  public ReportContext apply(final ReportContext report) {
+    if (ruleKeys == null || report == null) {
+      return report;
+    }
+
+    if (!includesSection(VIOLATIONS)) {
+      report.setViolations(null);
+    }
+    if (!includesSection("consistencyProblems")) {
+      report.setConsistencyProblems(null);
+    }
+    if (!includesSection(CYCLE_GROUPS)) {
+      report.setCycleGroups(null);
+    }
+    if (!includesSection(TASKS)) {
+      report.setTasks(null);
+    }
+    if (!includesSection("exclusions")) {
+      report.getExclusions().clear();
+    }
+    if (!includesSection("metrics")) {
+      report.getMetrics().clear();
+    }
+
+    final XsdWarnings warnings = report.getWarnings();
+    if (!includesSection(WARNINGS)) {
+      report.setWarnings(null);
+    } else if (warnings != null) {
+      final Iterator<XsdWarningsByAttributeGroup> iter = warnings.getWarningsByAttributeGroup().iterator();
+      while (iter.hasNext()) {
+        if (!includesWarnings(iter.next().getAttributeGroup())) {
+          iter.remove();
+        }
+      }
+    }
+    return report;
+  }
+
+  @Override
+  public int hashCode() {
+    return ruleKeys == null ? 0 : ruleKeys.hashCode();
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    final ReportSectionFilter other = (ReportSectionFilter) obj;
+    return ruleKeys == null ? other.ruleKeys == null : ruleKeys.equals(other.ruleKeys);
+  }
+
+  @Override
+  public String toString() {
+    return ruleKeys == null ? "all sections" : "sections for rules " + ruleKeys;
+  }
+}
@@ -0,0 +1,384 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Byte offsets of the top-level sections of an XML report (the children of "reportContext", e.g. "general", "violations" or "tasks"), so
+ * that a reader can seek directly to the sections it needs. The index is created by a first pass over the raw bytes of the report, which
+ * only tracks the nesting of the elements and does not decode them. It is persisted next to the report as <code>&lt;report&gt;.idx</code>
+ * together with the size and modification time of the report, and is only used while they match.
+ * <p>
+ * Only uncompressed reports can be indexed.
+ */
+final class ReportSectionIndex {
+
+  static final String FILE_EXTENSION = ".idx";
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReportSectionIndex.class);
+  private static final int MAGIC = 0x53475349;
+  private static final int VERSION = 1;
+  private static final String REPORT_CONTEXT = "reportContext";
+
+  private final long reportSize;
+  private final long reportLastModified;
+  private final long prologEnd;
+  private final List<Section> sections;
+
+  ReportSectionIndex(final long reportSize, final long reportLastModified, final long prologEnd, final List<Section> sections) {
+    this.reportSize = reportSize;
+    this.reportLastModified = reportLastModified;
+    this.prologEnd = prologEnd;
+    this.sections = Collections.unmodifiableList(sections);
+  }
+
+  /**
+   * @return end offset of the start tag of the root element, i.e. the XML declaration and the root element without its content
+   */
+  long getPrologEnd() {
+    return prologEnd;
+  }
+
+  /**
+   * @return the sections in the order of the report
+   */
+  List<Section> getSections() {
+    return sections;
+  }
+
+  static File getIndexFile(final File reportFile) {
+    return new File(reportFile.getParentFile(), reportFile.getName() + FILE_EXTENSION);
+  }
+
+  /**
+   * Loads the persisted index of the given report or creates and persists it if there is none or it does not match the report.
+   *
+   * @return the index or null if the report cannot be indexed
+   */
+  static ReportSectionIndex getOrCreate(final File reportFile) throws IOException {
+    final ReportSectionIndex loaded = load(reportFile);
+    if (loaded != null) {
+      return loaded;
+    }
+
+    final long start = System.currentTimeMillis();
+    final ReportSectionIndex created = create(reportFile);
+    if (created == null) {
+      return null;
+    }
+    LOG.info("Indexed " + created.sections.size() + " sections of Sonargraph report " + reportFile.getPath() + " in "
+      + (System.currentTimeMillis() - start) + " ms");
+    try {
+      created.write(getIndexFile(reportFile));
+    } catch (final IOException e) {
+      LOG.warn("Cannot store section index of " + reportFile.getPath() + ": " + e.getMessage());
+    }
+    return created;
+  }
+
+  /**
+   * @return the persisted index of the report or null if there is none or it does not match the report
+   */
+  static ReportSectionIndex load(final File reportFile) {
+    final File indexFile = getIndexFile(reportFile);
+    if (!indexFile.isFile()) {
+      return null;
+    }
+
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+        LOG.info("Ignoring section index " + indexFile.getPath() + " of unknown format");
+        return null;
+      }
+      final long size = input.readLong();
+      final long lastModified = input.readLong();
+      if (size != reportFile.length() || lastModified != reportFile.lastModified()) {
+        LOG.debug("Section index " + indexFile.getPath() + " is outdated");
+        return null;
+      }
+      final long prologEnd = input.readLong();
+      final int count = input.readInt();
+      final List<Section> sections = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        sections.add(new Section(input.readUTF(), input.readLong(), input.readLong()));
+      }
+      return new ReportSectionIndex(size, lastModified, prologEnd, sections);
+    } catch (final IOException e) {
+      LOG.warn("Cannot read section index " + indexFile.getPath() + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  void write(final File indexFile) throws IOException {
+    final File tempFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getAbsoluteFile().getParentFile());
+    try {
+      try (DataOutputStream output = new DataOutputStream(new FileOutputStream(tempFile))) {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(reportSize);
+        output.writeLong(reportLastModified);
+        output.writeLong(prologEnd);
+        output.writeInt(sections.size());
+        for (final Section section : sections) {
+          output.writeUTF(section.getName());
+          output.writeLong(section.getStart());
+          output.writeLong(section.getEnd());
+        }
+      }
+      if (!tempFile.renameTo(indexFile) && !(indexFile.delete() && tempFile.renameTo(indexFile))) {
+        throw new IOException("Cannot rename " + tempFile.getPath() + " to " + indexFile.getPath());
+      }
+    } finally {
+      if (tempFile.exists() && !tempFile.delete()) {
+        tempFile.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Creates the index by scanning the report.
+   *
+   * @return the index or null if the report is no uncompressed Sonargraph report
+   */
+  static ReportSectionIndex create(final File reportFile) throws IOException {
+    final long size = reportFile.length();
+    final long lastModified = reportFile.lastModified();
+    try (InputStream input = new BufferedInputStream(new FileInputStream(reportFile), 64 * 1024)) {
+      return new Scanner(input).scan(size, lastModified);
+    } catch (final EOFException e) {
+      LOG.warn("Cannot index incomplete Sonargraph report " + reportFile.getPath());
+      return null;
+    }
+  }
+
+  /**
+   * Byte range of a top-level section, from the '&lt;' of its start tag to the '&gt;' of its end tag (exclusive).
+   */
+  static final class Section {
+    private final String name;
+    private final long start;
+    private final long end;
+
+    Section(final String name, final long start, final long end) {
+      this.name = name;
+      this.start = start;
+      this.end = end;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    long getStart() {
+      return start;
+    }
+
+    long getEnd() {
+      return end;
+    }
+
+    long getLength() {
+      return end - start;
+    }
+  }
+
+  /**
+   * Tracks the element nesting of the report byte by byte. Since all markup characters are ASCII, this works for UTF-8 and all other ASCII
+   * compatible encodings without decoding the content.
+   */
+  private static final class Scanner {
+    private final InputStream input;
+    private long position;
+    /** Character following the last read name */
+    private int pending = -1;
+
+    Scanner(final InputStream input) {
+      this.input = input;
+    }
+
+    ReportSectionIndex scan(final long size, final long lastModified) throws IOException {
+      final List<Section> sections = new ArrayList<>();
+      long prologEnd = -1;
+      int depth = 0;
+      String sectionName = null;
+      long sectionStart = 0;
+
+      int next;
+      while ((next = input.read()) != -1) {
+        position++;
+        if (next != '<') {
+          if (prologEnd < 0 && !isWhitespace(next) && !isByteOrderMark(next)) {
+            // content before the root element, e.g. a compressed report
+            return null;
+          }
+          continue;
+        }
+
+        final long tagStart = position - 1;
+        final int first = read();
+        if (first == '?') {
+          skipTo("?>");
+        } else if (first == '!') {
+          skipDeclaration();
+        } else if (first == '/') {
+          readName(read());
+          skipTag();
+          depth--;
+          if (depth == 1 && sectionName != null) {
+            sections.add(new Section(sectionName, sectionStart, position));
+            sectionName = null;
+          } else if (depth == 0) {
+            return new ReportSectionIndex(size, lastModified, prologEnd, sections);
+          }
+        } else {
+          final String name = readName(first);
+          final boolean empty = skipTag();
+          if (depth == 0) {
+            if (!REPORT_CONTEXT.equals(localName(name)) || empty) {
+              return null;
+            }
+            prologEnd = position;
+            depth = 1;
+          } else if (depth == 1 && empty) {
+            sections.add(new Section(localName(name), tagStart, position));
+          } else if (!empty) {
+            if (depth == 1) {
+              sectionName = localName(name);
+              sectionStart = tagStart;
+            }
+            depth++;
+          }
+        }
+      }
+      return null;
+    }
+
+    private int read() throws IOException {
+      final int next = input.read();
+      if (next == -1) {
+        throw new EOFException();
+      }
+      position++;
+      return next;
+    }
+
+    /**
+     * Reads the element name starting with the given character. The character following the name is kept for {@link #skipTag()}.
+     */
+    private String readName(final int first) throws IOException {
+      final StringBuilder name = new StringBuilder();
+      int next = first;
+      while (!isWhitespace(next) && next != '>' && next != '/') {
+        name.append((char) next);
+        next = read();
+      }
+      pending = next;
+      return name.toString();
+    }
+
+    /**
+     * Skips the rest of the tag, including the attribute values.
+     *
+     * @return true if it is an empty element tag
+     */
+    private boolean skipTag() throws IOException {
+      int previous = -1;
+      int next = pending;
+      pending = -1;
+      int quote = -1;
+      while (true) {
+        if (quote != -1) {
+          if (next == quote) {
+            quote = -1;
+          }
+        } else if (next == '"' || next == '\'') {
+          quote = next;
+        } else if (next == '>') {
+          return previous == '/';
+        }
+        previous = next;
+        next = read();
+      }
+    }
+
+    private void skipDeclaration() throws IOException {
+      final int first = read();
+      if (first == '-') {
+        read();
+        skipTo("-->");
+      } else if (first == '[') {
+        skipTo("]]>");
+      } else {
+        // DOCTYPE, possibly with an internal subset
+        int brackets = 0;
+        int next = first;
+        while (next != '>' || brackets > 0) {
+          if (next == '[') {
+            brackets++;
+          } else if (next == ']') {
+            brackets--;
+          }
+          next = read();
+        }
+      }
+    }
+
+    private void skipTo(final String terminator) throws IOException {
+      int matched = 0;
+      while (matched < terminator.length()) {
+        final int next = read();
+        if (next == terminator.charAt(matched)) {
+          matched++;
+        } else if (next != terminator.charAt(0)) {
+          matched = 0;
+        } else if (matched < 2 || terminator.charAt(1) != terminator.charAt(0)) {
+          // "--->" still ends a comment, "]]]>" a CDATA section
+          matched = 1;
+        }
+      }
+    }
+
+    private static String localName(final String name) {
+      final int colon = name.indexOf(':');
+      return colon >= 0 ? name.substring(colon + 1) : name;
+    }
+
+    private boolean isByteOrderMark(final int next) {
+      return position <= 3 && (next == 0xEF || next == 0xBB || next == 0xBF);
+    }
+
+    private static boolean isWhitespace(final int next) {
+      return next == ' ' || next == '\t' || next == '\r' || next == '\n';
+    }
+  }
+}
@@ -0,0 +1,381 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.BuildUnitId;
+import com.hello2morrow.sonarplugin.foundation.BuildUnitIdTable;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import com.hello2morrow.sonarplugin.xsd.XsdBuildUnits;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroups;
+import com.hello2morrow.sonarplugin.xsd.XsdTask;
+import com.hello2morrow.sonarplugin.xsd.XsdTasks;
+import com.hello2morrow.sonarplugin.xsd.XsdTypeRelation;
+import com.hello2morrow.sonarplugin.xsd.XsdViolations;
+import com.hello2morrow.sonarplugin.xsd.XsdWarning;
+import com.hello2morrow.sonarplugin.xsd.XsdWarnings;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.resources.Project;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits a report into one shard per build unit and stores the shards in their binary form (see {@link BinaryReportFormat}) in a
+ * directory next to the XML report. A shard contains the general sections of the report, its build unit and the tasks, warnings, type
+ * relations of architecture violations and cycle groups of that build unit. Duplicate code warnings of other build units are kept if they
+ * belong to a duplicate code block of the build unit, so that the messages of the duplicate code issues are complete.
+ * <p>
+ * The shards carry the fingerprint of the XML report and are ignored as soon as the XML report is modified.
+ */
+public final class ReportShards {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReportShards.class);
+  private static final String DIRECTORY_EXTENSION = ".shards";
+  private static final String ENCODING = "UTF-8";
+
+  private ReportShards() {
+    // do not instantiate
+  }
+
+  /**
+   * @return the directory the shards of the given XML report are stored in
+   */
+  static File getShardDirectory(final File reportFile) {
+    return new File(reportFile.getAbsoluteFile().getParentFile(), reportFile.getName() + DIRECTORY_EXTENSION);
+  }
+
+  /**
+   * Writes a shard for every build unit of the complete report that has been read from the given XML report. Nothing is written for
+   * reports with a single build unit, since the shard would be as large as the report.
+   *
+   * @param buildUnitIds table of the build unit ids of the report, which is kept by the index of the report
+   * @return number of written shards
+   */
+  public static int write(final File reportFile, final ReportContext report, final BuildUnitIdTable buildUnitIds) throws IOException {
+    if (report == null || report.getBuildUnits() == null || report.getBuildUnits().getBuildUnit().size() < 2) {
+      return 0;
+    }
+
+    final File directory = getShardDirectory(reportFile);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create directory " + directory.getPath());
+    }
+    final File[] existing = directory.listFiles();
+    if (existing != null) {
+      for (final File next : existing) {
+        if (next.getName().endsWith(BinaryReportFormat.FILE_EXTENSION) && !next.delete()) {
+          LOG.debug("Cannot delete outdated shard " + next.getPath());
+        }
+      }
+    }
+
+    final Map<BuildUnitId, ReportContext> shards = partition(report, buildUnitIds);
+    for (final Map.Entry<BuildUnitId, ReportContext> next : shards.entrySet()) {
+      BinaryReportWriter.writeFile(new File(directory, encode(next.getKey().getName())), reportFile, next.getValue());
+    }
+    return shards.size();
+  }
+
+  /**
+   * @return the shard of the build unit of the given project or null if there is none, more than one build unit matches the project or the
+   *         shard does not match the XML report
+   */
+  public static ReportContext read(final File reportFile, final Project project) {
+    final File[] files = getShardDirectory(reportFile).listFiles();
+    if (files == null) {
+      return null;
+    }
+
+    final List<File> shards = new ArrayList<>(files.length);
+    final List<String> buildUnitNames = new ArrayList<>(files.length);
+    for (final File next : files) {
+      final String buildUnitName = decode(next.getName());
+      if (buildUnitName != null) {
+        shards.add(next);
+        buildUnitNames.add(buildUnitName);
+      }
+    }
+
+    final List<Integer> matches = BuildUnitLookup.createForNames(buildUnitNames).findPositions(project);
+    if (matches.size() != 1) {
+      if (matches.size() > 1) {
+        LOG.info("More than one report shard matches project [" + project.getKey() + "], reading the complete report");
+      }
+      return null;
+    }
+    final File shard = shards.get(matches.get(0));
+    LOG.info("Reading Sonargraph report shard from: " + shard.getPath());
+    return BinaryReportReader.readFile(shard, reportFile);
+  }
+
+  /**
+   * @return the shards of the report by build unit, in the order of the build units of the report
+   */
+  static Map<BuildUnitId, ReportContext> partition(final ReportContext report, final BuildUnitIdTable buildUnitIds) {
+    final Map<BuildUnitId, ReportContext> shards = new LinkedHashMap<>();
+    for (final XsdAttributeRoot buildUnit : report.getBuildUnits().getBuildUnit()) {
+      final BuildUnitId id = buildUnitIds.internFqName(buildUnit.getName());
+      if (!shards.containsKey(id)) {
+        shards.put(id, createShard(report, buildUnit));
+      }
+    }
+
+    partitionTasks(report, shards, buildUnitIds);
+    partitionWarnings(report, shards, buildUnitIds);
+    partitionViolations(report, shards, buildUnitIds);
+    partitionCycleGroups(report, shards, buildUnitIds);
+    return shards;
+  }
+
+  private static ReportContext createShard(final ReportContext report, final XsdAttributeRoot buildUnit) {
+    final ReportContext shard = new ReportContext();
+    shard.setName(report.getName());
+    shard.setProductFamily(report.getProductFamily());
+    shard.setGeneral(report.getGeneral());
+    shard.setAttributes(report.getAttributes());
+    shard.setProjects(report.getProjects());
+    shard.setConfigurations(report.getConfigurations());
+    shard.setWorkspaces(report.getWorkspaces());
+    final XsdBuildUnits buildUnits = new XsdBuildUnits();
+    buildUnits.getBuildUnit().add(buildUnit);
+    shard.setBuildUnits(buildUnits);
+
+    if (report.getTasks() != null) {
+      final XsdTasks tasks = new XsdTasks();
+      tasks.setNumberOf(report.getTasks().getNumberOf());
+      shard.setTasks(tasks);
+    }
+    if (report.getWarnings() != null) {
+      final XsdWarnings warnings = new XsdWarnings();
+      warnings.setNumberOf(report.getWarnings().getNumberOf());
+      shard.setWarnings(warnings);
+    }
+    if (report.getViolations() != null) {
+      final XsdViolations violations = new XsdViolations();
+      violations.setNumberOf(report.getViolations().getNumberOf());
+      violations.setNumberOfTypeRelations(report.getViolations().getNumberOfTypeRelations());
+      violations.setNumberOfViolatingTypeRelations(report.getViolations().getNumberOfViolatingTypeRelations());
+      violations.setPercentageOfViolatingTypeRelations(report.getViolations().getPercentageOfViolatingTypeRelations());
+      shard.setViolations(violations);
+    }
+    if (report.getCycleGroups() != null) {
+      final XsdCycleGroups cycleGroups = new XsdCycleGroups();
+      cycleGroups.setNumberOf(report.getCycleGroups().getNumberOf());
+      shard.setCycleGroups(cycleGroups);
+    }
+    return shard;
+  }
+
+  private static void partitionTasks(final ReportContext report, final Map<BuildUnitId, ReportContext> shards,
+    final BuildUnitIdTable buildUnitIds) {
+    if (report.getTasks() == null) {
+      return;
+    }
+    for (final XsdTask task : report.getTasks().getTask()) {
+      final ReportContext shard = shards.get(buildUnitIds.findFqName(RecordAttributes.resolve(task.getAttribute()).getBuildUnit()));
+      if (shard != null) {
+        shard.getTasks().getTask().add(task);
+      }
+    }
+  }
+
+  private static void partitionWarnings(final ReportContext report, final Map<BuildUnitId, ReportContext> shards,
+    final BuildUnitIdTable buildUnitIds) {
+    if (report.getWarnings() == null) {
+      return;
+    }
+    for (final XsdWarningsByAttributeGroup group : report.getWarnings().getWarningsByAttributeGroup()) {
+      final boolean duplicateCode = ReportIndex.DUPLICATE_CODE_GROUP.equals(group.getAttributeGroup());
+      final Map<ReportContext, XsdWarningsByAttributeGroup> shardGroups = new IdentityHashMap<>();
+      for (final ReportContext shard : shards.values()) {
+        shardGroups.put(shard, copy(group));
+        shard.getWarnings().getWarningsByAttributeGroup().add(shardGroups.get(shard));
+      }
+
+      for (final XsdWarningsByAttribute byAttribute : group.getWarningsByAttribute()) {
+        final Map<ReportContext, List<XsdWarning>> shardWarnings = duplicateCode ? partitionDuplicateCode(byAttribute, shards, buildUnitIds)
+          : partitionWarnings(byAttribute, shards, buildUnitIds);
+        for (final Map.Entry<ReportContext, List<XsdWarning>> next : shardWarnings.entrySet()) {
+          final XsdWarningsByAttribute shardByAttribute = copy(byAttribute);
+          shardByAttribute.getWarning().addAll(next.getValue());
+          shardGroups.get(next.getKey()).getWarningsByAttribute().add(shardByAttribute);
+        }
+      }
+    }
+  }
+
+  private static Map<ReportContext, List<XsdWarning>> partitionWarnings(final XsdWarningsByAttribute byAttribute,
+    final Map<BuildUnitId, ReportContext> shards, final BuildUnitIdTable buildUnitIds) {
+    final Map<ReportContext, List<XsdWarning>> shardWarnings = new IdentityHashMap<>();
+    for (final XsdWarning warning : byAttribute.getWarning()) {
+      final ReportContext shard = shards.get(buildUnitIds.findFqName(RecordAttributes.resolve(warning.getAttribute()).getBuildUnit()));
+      if (shard != null) {
+        add(shardWarnings, shard, warning);
+      }
+    }
+    return shardWarnings;
+  }
+
+  /**
+   * A duplicate code warning is added to the shards of all build units that contain a block of the same duplicate.
+   */
+  private static Map<ReportContext, List<XsdWarning>> partitionDuplicateCode(final XsdWarningsByAttribute byAttribute,
+    final Map<BuildUnitId, ReportContext> shards, final BuildUnitIdTable buildUnitIds) {
+    final Map<String, Set<ReportContext>> shardsByBlockId = new HashMap<>();
+    for (final XsdWarning warning : byAttribute.getWarning()) {
+      final RecordAttributes attributes = RecordAttributes.resolve(warning.getAttribute());
+      final ReportContext shard = shards.get(buildUnitIds.findFqName(attributes.getBuildUnit()));
+      if (shard != null && attributes.getBlockId() != null) {
+        Set<ReportContext> blockShards = shardsByBlockId.get(attributes.getBlockId());
+        if (blockShards == null) {
+          blockShards = new HashSet<>();
+          shardsByBlockId.put(attributes.getBlockId(), blockShards);
+        }
+        blockShards.add(shard);
+      }
+    }
+
+    final Map<ReportContext, List<XsdWarning>> shardWarnings = new IdentityHashMap<>();
+    for (final XsdWarning warning : byAttribute.getWarning()) {
+      final RecordAttributes attributes = RecordAttributes.resolve(warning.getAttribute());
+      final Set<ReportContext> blockShards = attributes.getBlockId() != null ? shardsByBlockId.get(attributes.getBlockId()) : null;
+      if (blockShards != null) {
+        for (final ReportContext shard : blockShards) {
+          add(shardWarnings, shard, warning);
+        }
+      } else {
+        final ReportContext shard = shards.get(buildUnitIds.findFqName(attributes.getBuildUnit()));
+        if (shard != null) {
+          add(shardWarnings, shard, warning);
+        }
+      }
+    }
+    return shardWarnings;
+  }
+
+  private static void partitionViolations(final ReportContext report, final Map<BuildUnitId, ReportContext> shards,
+    final BuildUnitIdTable buildUnitIds) {
+    if (report.getViolations() == null) {
+      return;
+    }
+    for (final XsdArchitectureViolation violation : report.getViolations().getArchitectureViolations()) {
+      final Map<ReportContext, XsdArchitectureViolation> shardViolations = new IdentityHashMap<>();
+      for (final XsdTypeRelation relation : violation.getTypeRelation()) {
+        final ReportContext shard = shards.get(buildUnitIds.findFqName(RecordAttributes.resolve(relation.getAttribute()).getFromBuildUnit()));
+        if (shard == null) {
+          continue;
+        }
+        XsdArchitectureViolation shardViolation = shardViolations.get(shard);
+        if (shardViolation == null) {
+          shardViolation = copy(violation);
+          shardViolations.put(shard, shardViolation);
+          shard.getViolations().getArchitectureViolations().add(shardViolation);
+        }
+        shardViolation.getTypeRelation().add(relation);
+      }
+    }
+  }
+
+  private static void partitionCycleGroups(final ReportContext report, final Map<BuildUnitId, ReportContext> shards,
+    final BuildUnitIdTable buildUnitIds) {
+    if (report.getCycleGroups() == null) {
+      return;
+    }
+    for (final XsdCycleGroup group : report.getCycleGroups().getCycleGroup()) {
+      final String buildUnitName = PersistenceUtilities.getBuildUnitName(group);
+      final ReportContext shard = buildUnitName != null ? shards.get(buildUnitIds.find(buildUnitName)) : null;
+      if (shard != null) {
+        shard.getCycleGroups().getCycleGroup().add(group);
+      }
+    }
+  }
+
+  private static XsdWarningsByAttributeGroup copy(final XsdWarningsByAttributeGroup group) {
+    final XsdWarningsByAttributeGroup copy = new XsdWarningsByAttributeGroup();
+    copy.setAttributeGroup(group.getAttributeGroup());
+    copy.setNumberOf(group.getNumberOf());
+    return copy;
+  }
+
+  private static XsdWarningsByAttribute copy(final XsdWarningsByAttribute byAttribute) {
+    final XsdWarningsByAttribute copy = new XsdWarningsByAttribute();
+    copy.setAttributeName(byAttribute.getAttributeName());
+    copy.setAttributeDescription(byAttribute.getAttributeDescription());
+    copy.setWarningInfo(byAttribute.getWarningInfo());
+    copy.setNumberOf(byAttribute.getNumberOf());
+    return copy;
+  }
+
+  private static XsdArchitectureViolation copy(final XsdArchitectureViolation violation) {
+    final XsdArchitectureViolation copy = new XsdArchitectureViolation();
+    copy.setArchitectureViolation(violation.getArchitectureViolation());
+    copy.setExplanation(violation.getExplanation());
+    copy.setDimension(violation.getDimension());
+    copy.setNumberOfViolatingTypeRelations(violation.getNumberOfViolatingTypeRelations());
+    return copy;
+  }
+
+  private static <K, V> void add(final Map<K, List<V>> map, final K key, final V value) {
+    List<V> values = map.get(key);
+    if (values == null) {
+      values = new ArrayList<>();
+      map.put(key, values);
+    }
+    values.add(value);
+  }
+
+  private static String encode(final String buildUnitName) {
+    try {
+      return URLEncoder.encode(buildUnitName, ENCODING) + BinaryReportFormat.FILE_EXTENSION;
+    } catch (final UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return the build unit name of the shard file or null if the file is not a shard
+   */
+  private static String decode(final String fileName) {
+    if (!fileName.endsWith(BinaryReportFormat.FILE_EXTENSION)) {
+      return null;
+    }
+    try {
+      return URLDecoder.decode(fileName.substring(0, fileName.length() - BinaryReportFormat.FILE_EXTENSION.length()), ENCODING);
+    } catch (final UnsupportedEncodingException | IllegalArgumentException e) {
+      LOG.debug("Ignoring file " + fileName, e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.BuildUnitIdTable;
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Settings;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the Sonargraph report with a StAX stream reader instead of the JAXB unmarshaller. The resulting report model is identical, but
+ * neither a JAXB context nor the intermediate structures of the unmarshaller are needed.
+ * <p>
+ * If {@link SonargraphPluginBase#REPORT_SECTION_INDEX} is set, the report is read section by section at the offsets recorded in its
+ * {@link ReportSectionIndex}.
+ * <p>
+ * Unless the complete report model is needed for the binary report or the shards, the tasks, warnings, type relations and cycle groups are
+ * passed to the {@link ReportIndex} as soon as they have been parsed, so they are never collected in the lists of the report model.
+ */
+public class StaxReportFileReader extends ReportFileReader {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StaxReportFileReader.class);
+
+  public StaxReportFileReader() {
+    this(null);
+  }
+
+  /**
+   * @param reportCache cache shared by all modules of the analysis, may be null
+   */
+  public StaxReportFileReader(final ReportCache reportCache) {
+    super(reportCache);
+  }
+
+  /**
+   * @param reportCache cache shared by all modules of the analysis, may be null
+   * @param sectionFilter sections of the report that are needed, the others are skipped while parsing
+   */
+  public StaxReportFileReader(final ReportCache reportCache, final ReportSectionFilter sectionFilter) {
+    super(reportCache, sectionFilter);
+  }
+
+  @Override
+  protected ReportContext readReport(final File reportFile, final Settings settings, final ReportSectionFilter filter) throws XMLStreamException,
+    IOException {
+    final ReportContext report = new ReportContext();
+    read(reportFile, settings, filter, new StaxReportParser(filter), report);
+    return report;
+  }
+
+  @Override
+  protected ReportIndex readReportIndex(final File reportFile, final Settings settings, final ReportSectionFilter filter) throws XMLStreamException,
+    IOException {
+    final ReportIndex.Builder builder = new ReportIndex.Builder(new BuildUnitIdTable());
+    read(reportFile, settings, filter, new StaxReportParser(filter, builder), builder.getReport());
+    return builder.build();
+  }
+
+  /**
+   * Reads the report file into the given report, either completely or section by section.
+   */
+  private void read(final File reportFile, final Settings settings, final ReportSectionFilter filter, final StaxReportParser parser,
+    final ReportContext report) throws XMLStreamException, IOException {
+    final long start = System.currentTimeMillis();
+    boolean sectionsRead = false;
+    long skippedBytes = 0;
+    if (settings != null && SonargraphUtilities.isSectionIndexEnabled(settings)) {
+      final ReportSectionIndex index = ReportSectionIndex.getOrCreate(reportFile);
+      if (index != null && canMapSections(index)) {
+        readSections(reportFile, index, parser, report);
+        sectionsRead = true;
+        skippedBytes = getSkippedBytes(index, filter);
+      } else {
+        LOG.info("Sonargraph report " + reportFile.getPath() + " cannot be read by sections, reading it completely");
+      }
+    }
+    if (!sectionsRead) {
+      try (InputStream input = openReport(reportFile, settings)) {
+        parser.parse(input, report);
+      }
+    }
+    getDiagnostics().addAll(parser.getDiagnostics());
+
+    if (!filter.isAll()) {
+      logSkipped(reportFile, parser.getSkippedElements(), parser.getSkippedCharacters(), skippedBytes, System.currentTimeMillis() - start);
+    }
+  }
+
+  static void logSkipped(final File reportFile, final int skippedElements, final long skippedCharacters, final long skippedBytes, final long duration) {
+    final long skipped = skippedBytes + skippedCharacters;
+    final long read = reportFile.length() - skipped;
+    final StringBuilder message = new StringBuilder("Sonargraph: Skipped report sections not needed by the active rules (");
+    message.append(skippedBytes).append(" bytes not read, ").append(skippedElements).append(" elements with ").append(skippedCharacters)
+      .append(" characters not processed), report read in ").append(duration).append(" ms");
+    if (skipped > 0 && read > 0) {
+      // Estimated from the time needed for the processed part of the report
+      message.append(", about ").append(duration * skipped / read).append(" ms saved");
+    }
+    LOG.info(message.toString());
+  }
+
+  static boolean canMapSections(final ReportSectionIndex index) {
+    for (final ReportSectionIndex.Section section : index.getSections()) {
+      if (section.getLength() > ByteBufferInputStream.MAX_MAPPED_SIZE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static long getSkippedBytes(final ReportSectionIndex index, final ReportSectionFilter filter) {
+    long skipped = 0;
+    for (final ReportSectionIndex.Section section : index.getSections()) {
+      if (!filter.includesSection(section.getName())) {
+        skipped += section.getLength();
+      }
+    }
+    return skipped;
+  }
+
+  /**
+   * Parses each needed section from a fragment consisting of the mapped prolog of the report and the mapped bytes of the section. The
+   * other sections are not read at all.
+   */
+  private static void readSections(final File reportFile, final ReportSectionIndex index, final StaxReportParser parser, final ReportContext report)
+    throws XMLStreamException, IOException {
+    try (RandomAccessFile file = new RandomAccessFile(reportFile, "r"); FileChannel channel = file.getChannel()) {
+      final ByteBuffer prolog = channel.map(FileChannel.MapMode.READ_ONLY, 0, index.getPrologEnd());
+      for (final ReportSectionIndex.Section section : index.getSections()) {
+        if (!parser.includesSection(section.getName())) {
+          continue;
+        }
+        final ByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, section.getStart(), section.getLength());
+        try (InputStream fragment = new SequenceInputStream(new ByteBufferInputStream(prolog.duplicate()), new ByteBufferInputStream(content))) {
+          parser.parseSection(fragment, report);
+        }
+      }
+    }
+  }
+
+  @Override
+  protected ReportContext unmarshal(final InputStream input) throws XMLStreamException {
+    final StaxReportParser parser = new StaxReportParser();
+    final ReportContext report = parser.parse(input);
+    getDiagnostics().addAll(parser.getDiagnostics());
+    return report;
+  }
+}
@@ -0,0 +1,632 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeCategory;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import com.hello2morrow.sonarplugin.xsd.XsdBuildUnits;
+import com.hello2morrow.sonarplugin.xsd.XsdConfiguration;
+import com.hello2morrow.sonarplugin.xsd.XsdConfigurations;
+import com.hello2morrow.sonarplugin.xsd.XsdConsistencyProblems;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroups;
+import com.hello2morrow.sonarplugin.xsd.XsdCyclePath;
+import com.hello2morrow.sonarplugin.xsd.XsdDependencyProblem;
+import com.hello2morrow.sonarplugin.xsd.XsdElementProblem;
+import com.hello2morrow.sonarplugin.xsd.XsdExclusions;
+import com.hello2morrow.sonarplugin.xsd.XsdMetric;
+import com.hello2morrow.sonarplugin.xsd.XsdMetricSort;
+import com.hello2morrow.sonarplugin.xsd.XsdMetrics;
+import com.hello2morrow.sonarplugin.xsd.XsdPosition;
+import com.hello2morrow.sonarplugin.xsd.XsdProblemCategory;
+import com.hello2morrow.sonarplugin.xsd.XsdProjects;
+import com.hello2morrow.sonarplugin.xsd.XsdTask;
+import com.hello2morrow.sonarplugin.xsd.XsdTasks;
+import com.hello2morrow.sonarplugin.xsd.XsdTypeRelation;
+import com.hello2morrow.sonarplugin.xsd.XsdViolations;
+import com.hello2morrow.sonarplugin.xsd.XsdWarning;
+import com.hello2morrow.sonarplugin.xsd.XsdWarnings;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdWorkspace;
+import com.hello2morrow.sonarplugin.xsd.XsdWorkspacePath;
+import com.hello2morrow.sonarplugin.xsd.XsdWorkspaces;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Pulls the Sonargraph report through a StAX stream reader and creates the report model element by element, without the reflection based
+ * binding of JAXB. Unknown elements are skipped, just like the JAXB unmarshaller does.
+ * <p>
+ * If a {@link ReportRecordHandler} is given, tasks, warnings, type relations and cycle groups are passed to it as soon as they have been
+ * read and are not added to the report.
+ */
+final class StaxReportParser {
+
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+  private static final String REPORT_CONTEXT = "reportContext";
+  private static final String ATTRIBUTE = "attribute";
+  private static final String POSITION = "position";
+  private static final String NAME = "name";
+  private static final String DESCRIPTION = "description";
+  private static final String NUMBER_OF = "numberOf";
+  private static final String PARENT = "parent";
+  private static final String PROJECT = "project";
+
+  private final ReportSectionFilter filter;
+  /** Receives the records instead of the report, null if the records are added to the report */
+  private final ReportRecordHandler handler;
+  private final ReportDiagnostics diagnostics = new ReportDiagnostics();
+  /** Line numbers within a section fragment do not match the lines of the report */
+  private boolean readingFragment;
+  private int skippedElements;
+  private long skippedCharacters;
+
+  StaxReportParser() {
+    this(ReportSectionFilter.ALL);
+  }
+
+  /**
+   * @param filter sections that are not included are skipped without creating model objects for them
+   */
+  StaxReportParser(final ReportSectionFilter filter) {
+    this(filter, null);
+  }
+
+  /**
+   * @param filter sections that are not included are skipped without creating model objects for them
+   * @param handler receives the records of the report instead of the report itself
+   */
+  StaxReportParser(final ReportSectionFilter filter, final ReportRecordHandler handler) {
+    this.filter = filter;
+    this.handler = handler;
+  }
+
+  boolean includesSection(final String section) {
+    return filter.includesSection(section);
+  }
+
+  /**
+   * @return the malformed values found so far
+   */
+  ReportDiagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
+  /**
+   * @return number of sections and warning groups skipped because of the filter
+   */
+  int getSkippedElements() {
+    return skippedElements;
+  }
+
+  /**
+   * @return number of characters of the skipped sections and warning groups, as far as reported by the StAX implementation
+   */
+  long getSkippedCharacters() {
+    return skippedCharacters;
+  }
+
+  private static XMLInputFactory createInputFactory() {
+    final XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    return factory;
+  }
+
+  ReportContext parse(final InputStream input) throws XMLStreamException {
+    final ReportContext report = new ReportContext();
+    parse(input, report);
+    return report;
+  }
+
+  /**
+   * Reads the complete report into the given report.
+   */
+  void parse(final InputStream input, final ReportContext report) throws XMLStreamException {
+    final XMLStreamReader reader = createReader(input);
+    try {
+      readReportContext(reader, report);
+      while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+        readSection(reader, report);
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Reads a report fragment consisting of the start tag of the root element followed by a single top-level section into the given
+   * report. The end tag of the root element is not expected.
+   */
+  void parseSection(final InputStream fragment, final ReportContext report) throws XMLStreamException {
+    readingFragment = true;
+    final XMLStreamReader reader = createReader(fragment);
+    try {
+      readReportContext(reader, report);
+      if (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+        readSection(reader, report);
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static void readReportContext(final XMLStreamReader reader, final ReportContext report) throws XMLStreamException {
+    reader.nextTag();
+    if (!REPORT_CONTEXT.equals(reader.getLocalName())) {
+      throw new XMLStreamException("Unexpected root element '" + reader.getLocalName() + "', expected '" + REPORT_CONTEXT + "'", reader.getLocation());
+    }
+    report.setProductFamily(attribute(reader, "productFamily"));
+    report.setName(attribute(reader, NAME));
+  }
+
+  static XMLStreamReader createReader(final InputStream input) throws XMLStreamException {
+    return INPUT_FACTORY.createXMLStreamReader(input);
+  }
+
+  /**
+   * Reads the top-level section the reader is positioned on into the given report.
+   */
+  void readSection(final XMLStreamReader reader, final ReportContext report) throws XMLStreamException {
+    final String section = reader.getLocalName();
+    if (!filter.includesSection(section)) {
+      skipFiltered(reader);
+    } else if ("general".equals(section)) {
+      report.setGeneral(readAttributeRoot(reader));
+    } else if ("attributes".equals(section)) {
+      report.setAttributes(readAttributeRoot(reader));
+    } else if ("projects".equals(section)) {
+      report.setProjects(readProjects(reader));
+    } else if ("buildUnits".equals(section)) {
+      report.setBuildUnits(readBuildUnits(reader));
+    } else if ("configurations".equals(section)) {
+      report.setConfigurations(readConfigurations(reader));
+    } else if ("workspaces".equals(section)) {
+      report.setWorkspaces(readWorkspaces(reader));
+    } else if ("violations".equals(section)) {
+      report.setViolations(readViolations(reader));
+    } else if ("consistencyProblems".equals(section)) {
+      report.setConsistencyProblems(readConsistencyProblems(reader));
+    } else if ("cycleGroups".equals(section)) {
+      report.setCycleGroups(readCycleGroups(reader));
+    } else if ("warnings".equals(section)) {
+      report.setWarnings(readWarnings(reader));
+    } else if ("tasks".equals(section)) {
+      report.setTasks(readTasks(reader));
+    } else if ("exclusions".equals(section)) {
+      report.getExclusions().add(readExclusions(reader));
+    } else if ("metrics".equals(section)) {
+      report.getMetrics().add(readMetrics(reader));
+    } else {
+      skipElement(reader);
+    }
+  }
+
+  private XsdAttributeRoot readAttributeRoot(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdAttributeRoot root = new XsdAttributeRoot();
+    root.setName(attribute(reader, NAME));
+    root.setDescription(attribute(reader, DESCRIPTION));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      final String element = reader.getLocalName();
+      if (ATTRIBUTE.equals(element)) {
+        root.getAttribute().add(readAttribute(reader));
+      } else if ("attributeCategory".equals(element)) {
+        root.getAttributeCategory().add(readAttributeCategory(reader));
+      } else {
+        skipElement(reader);
+      }
+    }
+    return root;
+  }
+
+  private XsdAttributeCategory readAttributeCategory(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdAttributeCategory category = new XsdAttributeCategory();
+    category.setName(attribute(reader, NAME));
+    readAttributes(reader, category.getAttribute(), null);
+    return category;
+  }
+
+  private XsdAttribute readAttribute(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdAttribute attribute = new XsdAttribute();
+    attribute.setDescription(attribute(reader, DESCRIPTION));
+    attribute.setValue(attribute(reader, "value"));
+    attribute.setName(attribute(reader, NAME));
+    attribute.setStandardName(attribute(reader, "standardName"));
+    skipElement(reader);
+    return attribute;
+  }
+
+  private XsdPosition readPosition(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdPosition position = new XsdPosition();
+    position.setDir(attribute(reader, "dir"));
+    position.setFile(attribute(reader, "file"));
+    position.setLine(integerAttribute(reader, "line"));
+    position.setOffset(integerAttribute(reader, "offset"));
+    position.setType(attribute(reader, "type"));
+    skipElement(reader);
+    return position;
+  }
+
+  /**
+   * Reads the "attribute" and - if a list is provided - "position" children of the current element.
+   */
+  private void readAttributes(final XMLStreamReader reader, final List<XsdAttribute> attributes, final List<XsdPosition> positions) throws XMLStreamException {
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      final String element = reader.getLocalName();
+      if (ATTRIBUTE.equals(element)) {
+        attributes.add(readAttribute(reader));
+      } else if (positions != null && POSITION.equals(element)) {
+        positions.add(readPosition(reader));
+      } else {
+        skipElement(reader);
+      }
+    }
+  }
+
+  private XsdProjects readProjects(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdProjects projects = new XsdProjects();
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if (PROJECT.equals(reader.getLocalName())) {
+        projects.getProject().add(readAttributeRoot(reader));
+      } else {
+        skipElement(reader);
+      }
+    }
+    return projects;
+  }
+
+  private XsdBuildUnits readBuildUnits(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdBuildUnits buildUnits = new XsdBuildUnits();
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("buildUnit".equals(reader.getLocalName())) {
+        buildUnits.getBuildUnit().add(readAttributeRoot(reader));
+      } else {
+        skipElement(reader);
+      }
+    }
+    return buildUnits;
+  }
+
+  private XsdConfigurations readConfigurations(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdConfigurations configurations = new XsdConfigurations();
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("configuration".equals(reader.getLocalName())) {
+        final XsdConfiguration configuration = new XsdConfiguration();
+        configuration.setProject(attribute(reader, PROJECT));
+        configuration.setParseSourceFiles(attribute(reader, "parseSourceFiles"));
+        configuration.setAsymetricAnalysis(attribute(reader, "asymetricAnalysis"));
+        configuration.setNamespaceWarnings(attribute(reader, "namespaceWarnings"));
+        configuration.setSourcefileWarnings(attribute(reader, "sourcefileWarnings"));
+        configurations.getConfiguration().add(configuration);
+      }
+      skipElement(reader);
+    }
+    return configurations;
+  }
+
+  private XsdWorkspaces readWorkspaces(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdWorkspaces workspaces = new XsdWorkspaces();
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("workspace".equals(reader.getLocalName())) {
+        workspaces.getWorkspace().add(readWorkspace(reader));
+      } else {
+        skipElement(reader);
+      }
+    }
+    return workspaces;
+  }
+
+  private XsdWorkspace readWorkspace(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdWorkspace workspace = new XsdWorkspace();
+    workspace.setProject(attribute(reader, PROJECT));
+    workspace.setBuildUnit(attribute(reader, "buildUnit"));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("workspacePath".equals(reader.getLocalName())) {
+        final XsdWorkspacePath path = new XsdWorkspacePath();
+        path.setPath(attribute(reader, "path"));
+        path.setDescription(attribute(reader, DESCRIPTION));
+        workspace.getWorkspacePath().add(path);
+      }
+      skipElement(reader);
+    }
+    return workspace;
+  }
+
+  private XsdViolations readViolations(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdViolations violations = new XsdViolations();
+    violations.setNumberOf(integerAttribute(reader, NUMBER_OF));
+    violations.setNumberOfTypeRelations(integerAttribute(reader, "numberOfTypeRelations"));
+    violations.setNumberOfViolatingTypeRelations(integerAttribute(reader, "numberOfViolatingTypeRelations"));
+    violations.setPercentageOfViolatingTypeRelations(attribute(reader, "percentageOfViolatingTypeRelations"));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("architectureViolations".equals(reader.getLocalName())) {
+        violations.getArchitectureViolations().add(readArchitectureViolation(reader));
+      } else {
+        skipElement(reader);
+      }
+    }
+    return violations;
+  }
+
+  private XsdArchitectureViolation readArchitectureViolation(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdArchitectureViolation violation = new XsdArchitectureViolation();
+    violation.setExplanation(attribute(reader, "explanation"));
+    violation.setNumberOfViolatingTypeRelations(integerAttribute(reader, "numberOfViolatingTypeRelations"));
+    violation.setDimension(attribute(reader, "dimension"));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      final String element = reader.getLocalName();
+      if ("architectureViolation".equals(element)) {
+        violation.setArchitectureViolation(readAttributeRoot(reader));
+      } else if ("typeRelation".equals(element)) {
+        final XsdTypeRelation relation = new XsdTypeRelation();
+        readAttributes(reader, relation.getAttribute(), relation.getPosition());
+        if (handler != null) {
+          handler.typeRelation(violation, relation);
+        } else {
+          violation.getTypeRelation().add(relation);
+        }
+      } else {
+        skipElement(reader);
+      }
+    }
+    return violation;
+  }
+
+  private XsdConsistencyProblems readConsistencyProblems(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdConsistencyProblems problems = new XsdConsistencyProblems();
+    problems.setNumberOf(integerAttribute(reader, NUMBER_OF));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("categories".equals(reader.getLocalName())) {
+        problems.getCategories().add(readProblemCategory(reader));
+      } else {
+        skipElement(reader);
+      }
+    }
+    return problems;
+  }
+
+  private XsdProblemCategory readProblemCategory(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdProblemCategory category = new XsdProblemCategory();
+    category.setNumberOf(integerAttribute(reader, NUMBER_OF));
+    category.setName(attribute(reader, NAME));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      final String element = reader.getLocalName();
+      if ("elementProblems".equals(element)) {
+        final XsdElementProblem problem = new XsdElementProblem();
+        problem.setScope(attribute(reader, "scope"));
+        problem.setElement(attribute(reader, "element"));
+        problem.setDescription(attribute(reader, DESCRIPTION));
+        category.getElementProblems().add(problem);
+      } else if ("dependencyProblems".equals(element)) {
+        final XsdDependencyProblem problem = new XsdDependencyProblem();
+        problem.setFromScope(attribute(reader, "fromScope"));
+        problem.setFromElement(attribute(reader, "fromElement"));
+        problem.setToScope(attribute(reader, "toScope"));
+        problem.setToElement(attribute(reader, "toElement"));
+        problem.setDescription(attribute(reader, DESCRIPTION));
+        category.getDependencyProblems().add(problem);
+      }
+      skipElement(reader);
+    }
+    return category;
+  }
+
+  private XsdCycleGroups readCycleGroups(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdCycleGroups cycleGroups = new XsdCycleGroups();
+    cycleGroups.setNumberOf(integerAttribute(reader, NUMBER_OF));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("cycleGroup".equals(reader.getLocalName())) {
+        final XsdCycleGroup group = readCycleGroup(reader);
+        if (handler != null) {
+          handler.cycleGroup(group);
+        } else {
+          cycleGroups.getCycleGroup().add(group);
+        }
+      } else {
+        skipElement(reader);
+      }
+    }
+    return cycleGroups;
+  }
+
+  private XsdCycleGroup readCycleGroup(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdCycleGroup group = new XsdCycleGroup();
+    group.setElementScope(attribute(reader, "elementScope"));
+    group.setParent(attribute(reader, PARENT));
+    group.setDescription(attribute(reader, DESCRIPTION));
+    group.setNamedElementGroup(attribute(reader, "namedElementGroup"));
+    readCyclePaths(reader, "cyclePath", group.getCyclePath());
+    return group;
+  }
+
+  private void readCyclePaths(final XMLStreamReader reader, final String elementName, final List<XsdCyclePath> paths) throws XMLStreamException {
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if (elementName.equals(reader.getLocalName())) {
+        final XsdCyclePath path = new XsdCyclePath();
+        path.setNumberOfEfferentTypeRelationsInCycleGroup(integerAttribute(reader, "numberOfEfferentTypeRelationsInCycleGroup"));
+        path.setDescription(attribute(reader, DESCRIPTION));
+        path.setParent(attribute(reader, PARENT));
+        readCyclePaths(reader, "children", path.getChildren());
+        paths.add(path);
+      } else {
+        skipElement(reader);
+      }
+    }
+  }
+
+  private XsdWarnings readWarnings(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdWarnings warnings = new XsdWarnings();
+    warnings.setNumberOf(integerAttribute(reader, NUMBER_OF));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if (!"warningsByAttributeGroup".equals(reader.getLocalName())) {
+        skipElement(reader);
+      } else if (!filter.includesWarnings(attribute(reader, "attributeGroup"))) {
+        skipFiltered(reader);
+      } else {
+        warnings.getWarningsByAttributeGroup().add(readWarningsByAttributeGroup(reader));
+      }
+    }
+    return warnings;
+  }
+
+  private XsdWarningsByAttributeGroup readWarningsByAttributeGroup(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdWarningsByAttributeGroup group = new XsdWarningsByAttributeGroup();
+    group.setNumberOf(integerAttribute(reader, NUMBER_OF));
+    group.setAttributeGroup(attribute(reader, "attributeGroup"));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("warningsByAttribute".equals(reader.getLocalName())) {
+        group.getWarningsByAttribute().add(readWarningsByAttribute(reader, group.getAttributeGroup()));
+      } else {
+        skipElement(reader);
+      }
+    }
+    return group;
+  }
+
+  private XsdWarningsByAttribute readWarningsByAttribute(final XMLStreamReader reader, final String attributeGroup) throws XMLStreamException {
+    final XsdWarningsByAttribute warningsByAttribute = new XsdWarningsByAttribute();
+    warningsByAttribute.setNumberOf(integerAttribute(reader, NUMBER_OF));
+    warningsByAttribute.setAttributeName(attribute(reader, "attributeName"));
+    warningsByAttribute.setAttributeDescription(attribute(reader, "attributeDescription"));
+    warningsByAttribute.setWarningInfo(attribute(reader, "warningInfo"));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("warning".equals(reader.getLocalName())) {
+        final XsdWarning warning = new XsdWarning();
+        readAttributes(reader, warning.getAttribute(), warning.getPosition());
+        if (handler != null) {
+          handler.warning(attributeGroup, warningsByAttribute.getAttributeName(), warning);
+        } else {
+          warningsByAttribute.getWarning().add(warning);
+        }
+      } else {
+        skipElement(reader);
+      }
+    }
+    return warningsByAttribute;
+  }
+
+  private XsdTasks readTasks(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdTasks tasks = new XsdTasks();
+    tasks.setNumberOf(integerAttribute(reader, NUMBER_OF));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("task".equals(reader.getLocalName())) {
+        final XsdTask task = new XsdTask();
+        readAttributes(reader, task.getAttribute(), task.getPosition());
+        if (handler != null) {
+          handler.task(task);
+        } else {
+          tasks.getTask().add(task);
+        }
+      } else {
+        skipElement(reader);
+      }
+    }
+    return tasks;
+  }
+
+  private XsdExclusions readExclusions(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdExclusions exclusions = new XsdExclusions();
+    exclusions.setName(attribute(reader, NAME));
+    exclusions.setNumberOf(integerAttribute(reader, NUMBER_OF));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("excludedType".equals(reader.getLocalName())) {
+        exclusions.getExcludedType().add(readAttributeRoot(reader));
+      } else {
+        skipElement(reader);
+      }
+    }
+    return exclusions;
+  }
+
+  private XsdMetrics readMetrics(final XMLStreamReader reader) throws XMLStreamException {
+    final XsdMetrics metrics = new XsdMetrics();
+    metrics.setName(attribute(reader, NAME));
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("metric".equals(reader.getLocalName())) {
+        final XsdMetric metric = new XsdMetric();
+        final String sort = attribute(reader, "sort");
+        if (sort != null) {
+          metric.setSort(XsdMetricSort.fromValue(sort));
+        }
+        metric.setProjectDescription(attribute(reader, "projectDescription"));
+        metric.setSystemDescription(attribute(reader, "systemDescription"));
+        metric.setName(attribute(reader, NAME));
+        metric.setStandardName(attribute(reader, "standardName"));
+        metrics.getMetric().add(metric);
+      }
+      skipElement(reader);
+    }
+    return metrics;
+  }
+
+  private static String attribute(final XMLStreamReader reader, final String name) {
+    return reader.getAttributeValue(null, name);
+  }
+
+  /**
+   * @return the value of the attribute, null if the attribute is missing or not a valid integer
+   */
+  private Integer integerAttribute(final XMLStreamReader reader, final String name) {
+    final String value = attribute(reader, name);
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(PersistenceUtilities.parseInteger(value));
+    } catch (final NumberFormatException e) {
+      diagnostics.addMalformedNumber(reader.getLocalName(), name, value, readingFragment ? -1 : reader.getLocation().getLineNumber());
+      return null;
+    }
+  }
+
+  /**
+   * Skips the remainder of the current element including all of its children. Afterwards the reader is positioned on the end tag.
+   */
+  private void skipFiltered(final XMLStreamReader reader) throws XMLStreamException {
+    final int start = reader.getLocation().getCharacterOffset();
+    skipElement(reader);
+    final int end = reader.getLocation().getCharacterOffset();
+    skippedElements++;
+    if (start >= 0 && end >= start) {
+      skippedCharacters += end - start;
+    }
+  }
+
+  static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      final int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Names of the record attributes (of tasks, warnings and type relations) that are read by the plugin. Each attribute has a fixed slot
+ * (its ordinal) in {@link RecordAttributes}.
+ */
+public enum WellKnownAttribute {
+  BUILD_UNIT(SonargraphUtilities.BUILD_UNIT),
+  FROM_BUILD_UNIT("From build unit"),
+  PROJECT(SonargraphUtilities.PROJECT),
+  ELEMENT(SonargraphUtilities.ELEMENT),
+  ELEMENT_TYPE(SonargraphUtilities.ELEMENT_TYPE),
+  ATTRIBUTE_VALUE(SonargraphUtilities.ATTRIBUTE_VALUE),
+  START_LINE(SonargraphUtilities.START_LINE),
+  BLOCK_ID(SonargraphUtilities.BLOCK_ID),
+  TO("To"),
+  EXPLANATION("Explanation"),
+  PRIORITY("Priority"),
+  DESCRIPTION("Description"),
+  ASSIGNED_TO("Assigned to");
+
+  private static final Map<String, WellKnownAttribute> BY_NAME = new HashMap<>();
+
+  static {
+    for (final WellKnownAttribute next : values()) {
+      BY_NAME.put(next.getName(), next);
+    }
+  }
+
+  private final String name;
+
+  private WellKnownAttribute(final String name) {
+    this.name = name;
+  }
+
+  /**
+   * @return the attribute name as used in the report
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the well-known attribute with the given report name, null if the plugin does not read it
+   */
+  public static WellKnownAttribute forName(final String name) {
+    return BY_NAME.get(name);
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.processor;
+
+import com.hello2morrow.sonarplugin.foundation.InputFileIndex;
+import com.hello2morrow.sonarplugin.foundation.SonarQubeUtilities;
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
+import com.hello2morrow.sonarplugin.foundation.WorkspacePathResolver;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.InputPath;
+import org.sonar.api.batch.rule.ActiveRule;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * State shared by the processors of a single module analysis: the active Sonargraph rules by rule key, the analysed build unit and the
+ * resolved paths of the report. The session is created once per analysis and may be used by processors running
+ * concurrently.
+ */
+public final class AnalysisSession {
+
+  private final SensorContext sensorContext;
+  private final InputFileIndex inputFileIndex;
+  private final WorkspacePathResolver workspacePathResolver;
+  private final XsdAttributeRoot buildUnit;
+  private final Map<String, ActiveRule> activeRules;
+  private final ConcurrentMap<String, ResolvedPath> relativePaths = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ResolvedPath> absolutePaths = new ConcurrentHashMap<>();
+  private final AtomicInteger pathLookups = new AtomicInteger();
+  private final AtomicInteger cachedPathLookups = new AtomicInteger();
+
+  /**
+   * @param buildUnit the analysed build unit, null if it is only known when processing
+   * @param workspacePaths workspace paths of the build unit, see {@link WorkspacePathResolver}
+   */
+  public AnalysisSession(final SensorContext sensorContext, final InputFileIndex inputFileIndex, final XsdAttributeRoot buildUnit,
+    final List<String> workspacePaths) {
+    this.sensorContext = sensorContext;
+    this.inputFileIndex = inputFileIndex;
+    this.workspacePathResolver = new WorkspacePathResolver(inputFileIndex, workspacePaths);
+    this.buildUnit = buildUnit;
+    this.activeRules = createActiveRules(sensorContext);
+  }
+
+  private static Map<String, ActiveRule> createActiveRules(final SensorContext sensorContext) {
+    final Map<String, ActiveRule> rules = new HashMap<>();
+    final Collection<ActiveRule> activeSonargraphRules = sensorContext.activeRules().findByRepository(SonargraphPluginBase.PLUGIN_KEY);
+    for (final ActiveRule next : activeSonargraphRules) {
+      final String ruleKey = next.ruleKey().rule();
+      if (!rules.containsKey(ruleKey)) {
+        rules.put(ruleKey, next);
+      }
+    }
+    return rules;
+  }
+
+  public SensorContext getSensorContext() {
+    return sensorContext;
+  }
+
+  public InputFileIndex getInputFileIndex() {
+    return inputFileIndex;
+  }
+
+  /**
+   * @param ruleKey key of the Sonargraph rule, e.g. {@link SonargraphPluginBase#ARCH_RULE_KEY}
+   * @return the active rule or null if the rule is not active in the current profile
+   */
+  public ActiveRule getActiveRule(final String ruleKey) {
+    return activeRules.get(ruleKey);
+  }
+
+  public WorkspacePathResolver getWorkspacePathResolver() {
+    return workspacePathResolver;
+  }
+
+  /**
+   * Resolves the path like {@link SonarQubeUtilities#getInputPath(InputFileIndex, String)}, but only once per path and session. Relative
+   * file paths are first looked up below the source roots of the workspace of the build unit. Paths
+   * that cannot be resolved are remembered as well, together with the number of times they have been looked up, see
+   * {@link #getUnresolvedPathSummary(int)}.
+   */
+  public InputPath getInputPath(final String fqName) {
+    return getInputPath(fqName, false);
+  }
+
+  /**
+   * @see #getInputPath(String)
+   */
+  public InputPath getInputPath(final String fqName, final boolean useAbsolutePath) {
+    pathLookups.incrementAndGet();
+    final ConcurrentMap<String, ResolvedPath> paths = useAbsolutePath ? absolutePaths : relativePaths;
+    final ResolvedPath cached = paths.get(fqName);
+    if (cached != null) {
+      cachedPathLookups.incrementAndGet();
+      return cached.lookup();
+    }
+
+    final ResolvedPath resolved = new ResolvedPath(fqName, resolve(fqName, useAbsolutePath));
+    final ResolvedPath previous = paths.putIfAbsent(fqName, resolved);
+    return previous != null ? previous.lookup() : resolved.lookup();
+  }
+
+  private InputPath resolve(final String fqName, final boolean useAbsolutePath) {
+    if (!useAbsolutePath && SonarQubeUtilities.isSourceFile(fqName)) {
+      final InputFile inputFile = workspacePathResolver.find(fqName);
+      if (inputFile != null) {
+        return inputFile;
+      }
+    }
+    return SonarQubeUtilities.getInputPath(inputFileIndex, fqName, useAbsolutePath);
+  }
+
+  public int getPathLookups() {
+    return pathLookups.get();
+  }
+
+  public int getCachedPathLookups() {
+    return cachedPathLookups.get();
+  }
+
+  /**
+   * @return number of distinct paths that could not be resolved
+   */
+  public int getUnresolvedPaths() {
+    return countUnresolved(relativePaths) + countUnresolved(absolutePaths);
+  }
+
+  private static int countUnresolved(final Map<String, ResolvedPath> paths) {
+    int count = 0;
+    for (final ResolvedPath next : paths.values()) {
+      if (next.path == null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @param maxPaths maximum number of paths to be listed
+   * @return the number of paths that could not be resolved and the most frequently looked up of them with their number of lookups, null
+   *         if all paths have been resolved
+   */
+  public String getUnresolvedPathSummary(final int maxPaths) {
+    final List<ResolvedPath> unresolved = new ArrayList<>();
+    final int occurrences = collectUnresolved(relativePaths, unresolved) + collectUnresolved(absolutePaths, unresolved);
+    if (unresolved.isEmpty()) {
+      return null;
+    }
+
+    Collections.sort(unresolved, new Comparator<ResolvedPath>() {
+      @Override
+      public int compare(final ResolvedPath first, final ResolvedPath second) {
+        final int lookups = Integer.compare(second.lookups.get(), first.lookups.get());
+        return lookups != 0 ? lookups : first.fqName.compareTo(second.fqName);
+      }
+    });
+    final StringBuilder summary = new StringBuilder();
+    summary.append(unresolved.size()).append(" paths of the report could not be resolved (").append(occurrences).append(" occurrences)");
+    for (int i = 0; i < unresolved.size() && i < maxPaths; i++) {
+      final ResolvedPath next = unresolved.get(i);
+      summary.append(i == 0 ? ": " : ", ").append('\'').append(next.fqName).append("' (").append(next.lookups.get()).append(')');
+    }
+    if (unresolved.size() > maxPaths) {
+      summary.append(", ...");
+    }
+    return summary.toString();
+  }
+
+  /**
+   * @return the number of lookups of the collected paths
+   */
+  private static int collectUnresolved(final Map<String, ResolvedPath> paths, final List<ResolvedPath> unresolved) {
+    int occurrences = 0;
+    for (final ResolvedPath next : paths.values()) {
+      if (next.path == null) {
+        unresolved.add(next);
+        occurrences += next.lookups.get();
+      }
+    }
+    return occurrences;
+  }
+
+  @Override
+  public String toString() {
+    return "Analysis session [buildUnit=" + (buildUnit != null ? SonargraphUtilities.getBuildUnitName(buildUnit.getName()) : null) + ", activeRules=" + activeRules.size() + ", pathLookups=" + getPathLookups()
+      + ", cachedPathLookups=" + getCachedPathLookups() + ", unresolvedPaths=" + getUnresolvedPaths() + ", " + workspacePathResolver + ", " + inputFileIndex.getDirectoryResolver() + "]";
+  }
+
+  /**
+   * Result of a path lookup; the path is null if it could not be resolved.
+   */
+  private static final class ResolvedPath {
+    private final String fqName;
+    private final InputPath path;
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    ResolvedPath(final String fqName, final InputPath path) {
+      this.fqName = fqName;
+      this.path = path;
+    }
+
+    InputPath lookup() {
+      lookups.incrementAndGet();
+      return path;
+    }
+  }
+}
@@ -17,25 +17,20 @@
  */
 package com.hello2morrow.sonarplugin.processor;
 
-import com.hello2morrow.sonarplugin.foundation.SonarQubeUtilities;
+import com.hello2morrow.sonarplugin.foundation.DirectoryResolver;
 import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
-import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
 import com.hello2morrow.sonarplugin.persistence.PersistenceUtilities;
-import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex;
 import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
 import com.hello2morrow.sonarplugin.xsd.XsdCycleGroup;
-import com.hello2morrow.sonarplugin.xsd.XsdCycleGroups;
 import com.hello2morrow.sonarplugin.xsd.XsdCyclePath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.InputDir;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputPath;
 import org.sonar.api.batch.rule.ActiveRule;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -45,53 +40,40 @@ public class CycleGroupProcessor implements IProcessor {
   private static final String PHYSICAL_PACKAGE_NAMED_ELEMENT_GROUP = "Physical package";
   private static final String DIRECTORY_NAMED_ELEMENT_GROUP = "Directory";
 
-  private double cyclicity = 0;
-  private double biggestCycleGroupSize = 0;
-  private double cyclicPackages = 0;
-  private String sonargraphBasePath;
-  private final SensorContext sensorContext;
+  private volatile Statistics statistics = new Statistics();
+  private final AnalysisSession session;
+  private final IIssueSink issueSink;
 
-  public CycleGroupProcessor(final SensorContext context) {
-    this.sensorContext = context;
+  public CycleGroupProcessor(final AnalysisSession session, final IIssueSink issueSink) {
+    this.session = session;
+    this.issueSink = issueSink;
   }
 
-  public double getCyclicity() {
-    return cyclicity;
-  }
-
-  public double getBiggestCycleGroupSize() {
-    return biggestCycleGroupSize;
-  }
-
-  public double getCyclicPackages() {
-    return cyclicPackages;
+  /**
+   * @return the statistics of the physical package cycle groups of the last processed build unit
+   */
+  public Statistics getStatistics() {
+    return statistics;
   }
 
   @Override
-  public void process(final ReportContext report, final XsdAttributeRoot buildUnit) {
-    final ActiveRule rule = SonarQubeUtilities.findActiveSonargraphRule(sensorContext, SonargraphPluginBase.CYCLE_GROUP_RULE_KEY);
+  public void process(final ReportIndex index, final XsdAttributeRoot buildUnit) {
+    final ActiveRule rule = session.getActiveRule(SonargraphPluginBase.CYCLE_GROUP_RULE_KEY);
     if (rule == null) {
       LOG.info("Sonargraph cycle group rule not active in current profile");
       return;
     }
 
-    this.sonargraphBasePath = PersistenceUtilities.getSonargraphBasePath(report);
+    final String sonargraphBasePath = PersistenceUtilities.getSonargraphBasePath(index.getReport());
 
-    cyclicity = 0;
-    biggestCycleGroupSize = 0;
-    cyclicPackages = 0;
+    final Statistics groupStatistics = new Statistics();
     boolean packageNotFound = false;
 
-    final XsdCycleGroups cycleGroups = report.getCycleGroups();
-
-    for (final XsdCycleGroup group : cycleGroups.getCycleGroup()) {
-      if (!PersistenceUtilities.getBuildUnitName(group).equals(SonargraphUtilities.getBuildUnitName(buildUnit.getName()))) {
-        continue;
-      }
-
+    for (final XsdCycleGroup group : index.getCycleGroups(index.getBuildUnitId(buildUnit))) {
       final String namedElementGroup = group.getNamedElementGroup();
-      packageNotFound = !createCycleGroupIssue(group, namedElementGroup, rule) || packageNotFound;
+      packageNotFound = !createCycleGroupIssue(group, namedElementGroup, rule, groupStatistics, sonargraphBasePath) || packageNotFound;
     }
+    this.statistics = groupStatistics;
 
     if (packageNotFound) {
       LOG.warn("Issues not created for all packages involved in cycles. "
@@ -101,17 +83,14 @@ public class CycleGroupProcessor implements IProcessor {
 
   /**
    * @param rule 
+   * @param sonargraphBasePath base path of the Sonargraph system the directories of the cycle group are relative to
    * @return true if issue is created for all elements, false otherwise
    */
-  private boolean createCycleGroupIssue(final XsdCycleGroup group, final String namedElementGroup, final ActiveRule rule) {
+  private boolean createCycleGroupIssue(final XsdCycleGroup group, final String namedElementGroup, final ActiveRule rule, final Statistics groupStatistics,
+    final String sonargraphBasePath) {
     if (PHYSICAL_PACKAGE_NAMED_ELEMENT_GROUP.equals(namedElementGroup)) {
-      final int groupSize = group.getCyclePath().size();
-      cyclicPackages += groupSize;
-      cyclicity += groupSize * groupSize;
-      if (groupSize > biggestCycleGroupSize) {
-        biggestCycleGroupSize = groupSize;
-      }
-    } else if (DIRECTORY_NAMED_ELEMENT_GROUP.equals(namedElementGroup) && !handleSrcDirectoryCycleGroup(group, rule)) {
+      groupStatistics.addPackageCycleGroup(group.getCyclePath().size());
+    } else if (DIRECTORY_NAMED_ELEMENT_GROUP.equals(namedElementGroup) && !handleSrcDirectoryCycleGroup(group, rule, sonargraphBasePath)) {
       return false;
     } else if ("Source file".equals(namedElementGroup)) {
       handleSourceFileGroup(group, rule);
@@ -136,9 +115,9 @@ public class CycleGroupProcessor implements IProcessor {
         continue;
       }
 
-      final InputPath inputPath = SonarQubeUtilities.getInputPath(sensorContext.fileSystem(), cyclicFilePathRelative);
+      final InputPath inputPath = session.getInputPath(cyclicFilePathRelative);
       if (inputPath == null) {
-        LOG.error("Failed to determine path for '" + cyclicFilePathRelative + "'");
+        LOG.debug("Failed to determine path for '" + cyclicFilePathRelative + "'");
       } else {
         assert inputPath.isFile() : "inputFile must be a file";
         srcFiles.add((InputFile) inputPath);
@@ -148,8 +127,8 @@ public class CycleGroupProcessor implements IProcessor {
     return srcFiles;
   }
 
-  private boolean handleSrcDirectoryCycleGroup(final XsdCycleGroup group, final ActiveRule rule) {
-    final List<InputPath> srcDirectories = determineCyclicSrcDirectories(group);
+  private boolean handleSrcDirectoryCycleGroup(final XsdCycleGroup group, final ActiveRule rule, final String sonargraphBasePath) {
+    final List<InputPath> srcDirectories = determineCyclicSrcDirectories(group, sonargraphBasePath);
     if (srcDirectories.isEmpty()) {
       return true;
     }
@@ -164,24 +143,28 @@ public class CycleGroupProcessor implements IProcessor {
   }
 
   /**
-   * Determines the relative path, since class directories of Sonargraph workspace might be different from Maven class directories 
+   * Determines the relative path, since class directories of Sonargraph workspace might be different from Maven class directories.
+   * The paths are resolved by the {@link DirectoryResolver} of the module, so that packages contained in several cycle groups do not
+   * access the file system again.
    * @param group
+   * @param sonargraphBasePath base path of the Sonargraph system
    * @return
    */
-  private List<InputPath> determineCyclicSrcDirectories(final XsdCycleGroup group) {
+  private List<InputPath> determineCyclicSrcDirectories(final XsdCycleGroup group, final String sonargraphBasePath) {
+    final DirectoryResolver directoryResolver = session.getInputFileIndex().getDirectoryResolver();
     final List<InputPath> packages = new ArrayList<>();
     for (final XsdCyclePath pathElement : group.getCyclePath()) {
       final String cyclicPath = pathElement.getParent();
-      try {
-        final String absolutePath = new File(sonargraphBasePath, cyclicPath).getCanonicalPath().replace('\\', '/');
-        final InputPath srcDir = SonarQubeUtilities.getInputPath(sensorContext.fileSystem(), absolutePath, true);
-        if (srcDir != null) {
-          packages.add(srcDir);
-        } else {
-          LOG.error("Could not locate directory for '" + cyclicPath + "'.");
-        }
-      } catch (final IOException e) {
-        LOG.error("Failed to determine absolute path for '" + cyclicPath + "'.", e);
+      final String absolutePath = directoryResolver.getAbsolutePath(sonargraphBasePath, cyclicPath);
+      if (absolutePath == null) {
+        LOG.error("Failed to determine absolute path for '" + cyclicPath + "'.");
+        continue;
+      }
+      final InputPath srcDir = session.getInputPath(absolutePath, true);
+      if (srcDir != null) {
+        packages.add(srcDir);
+      } else {
+        LOG.debug("Could not locate directory for '" + cyclicPath + "'.");
       }
     }
     return packages;
@@ -216,9 +199,9 @@ public class CycleGroupProcessor implements IProcessor {
     }
 
     if (resource.isFile()) {
-      SonarQubeUtilities.saveViolation(sensorContext, (InputFile) resource, rule, null, 1, builder.toString());
+      issueSink.saveIssue((InputFile) resource, rule, null, 1, builder.toString());
     } else {
-      SonarQubeUtilities.saveViolation(sensorContext, (InputDir) resource, rule, null, builder.toString());
+      issueSink.saveIssue((InputDir) resource, rule, null, builder.toString());
     }
     LOG.debug("Saved cycle group issue [rule=" + rule.internalKey() + ", path=" + resource.relativePath() + ", description=" + builder.toString());
     // An issue is attached to each of the packages involved in the cycle group.
@@ -227,4 +210,34 @@ public class CycleGroupProcessor implements IProcessor {
 
     return true;
   }
+
+  /**
+   * Cyclicity of the physical packages of a build unit. Instances are only modified by the invocation of
+   * {@link CycleGroupProcessor#process(ReportIndex, XsdAttributeRoot)} that creates them.
+   */
+  public static final class Statistics {
+    private double cyclicity;
+    private double biggestCycleGroupSize;
+    private double cyclicPackages;
+
+    void addPackageCycleGroup(final int groupSize) {
+      cyclicPackages += groupSize;
+      cyclicity += groupSize * groupSize;
+      if (groupSize > biggestCycleGroupSize) {
+        biggestCycleGroupSize = groupSize;
+      }
+    }
+
+    public double getCyclicity() {
+      return cyclicity;
+    }
+
+    public double getBiggestCycleGroupSize() {
+      return biggestCycleGroupSize;
+    }
+
+    public double getCyclicPackages() {
+      return cyclicPackages;
+    }
+  }
 }
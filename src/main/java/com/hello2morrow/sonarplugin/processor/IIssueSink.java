@@ -0,0 +1,44 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.processor;
+
+import com.hello2morrow.sonarplugin.foundation.AlertThreshold;
+import org.sonar.api.batch.fs.InputDir;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.Severity;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Resource;
+
+import java.io.Serializable;
+
+/**
+ * Receives the issues and measures created by a processor. The processors never write to the sensor context directly, so that they can
+ * run on other threads than the sensor (see {@link ProcessorRunner}).
+ */
+public interface IIssueSink {
+  void saveIssue(InputFile file, ActiveRule rule, Severity severity, int line, String message);
+
+  void saveIssue(InputDir dir, ActiveRule rule, Severity severity, String message);
+
+  /**
+   * @see com.hello2morrow.sonarplugin.foundation.SonarQubeUtilities#saveMeasure(Resource, org.sonar.api.batch.SensorContext, Metric, double,
+   *      AlertThreshold, double)
+   */
+  void saveMeasure(Resource resource, Metric<Serializable> metric, double value, AlertThreshold threshold, double thresholdMetricValue);
+}
@@ -17,9 +17,9 @@
  */
 package com.hello2morrow.sonarplugin.processor;
 
-import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex;
 import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
 
 public interface IProcessor {
-  void process(ReportContext report, XsdAttributeRoot buildUnit);
+  void process(ReportIndex index, XsdAttributeRoot buildUnit);
 }
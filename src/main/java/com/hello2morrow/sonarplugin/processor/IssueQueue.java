@@ -0,0 +1,202 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.processor;
+
+import com.hello2morrow.sonarplugin.foundation.AlertThreshold;
+import org.sonar.api.batch.fs.InputDir;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.Severity;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Resource;
+
+import java.io.Serializable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue of the writes of a single processor that are passed on to the sensor by a single consumer thread. The queue is a ring
+ * buffer for one producer and one consumer that gets along without locks: the producer only advances the tail and the consumer only
+ * advances the head. A producer waits while the queue is full, the consumer waits while it is empty and not yet closed.
+ */
+final class IssueQueue implements IIssueSink {
+
+  private static final long WAIT_NANOS = 50000L;
+
+  private final AtomicReferenceArray<PendingWrite> slots;
+  private final int mask;
+  /** Index of the next write to be taken, only advanced by the consumer */
+  private final AtomicLong head = new AtomicLong();
+  /** Index of the next write to be added, only advanced by the producer */
+  private final AtomicLong tail = new AtomicLong();
+  private volatile boolean closed;
+  private volatile boolean aborted;
+
+  /**
+   * @param capacity maximum number of pending writes, rounded up to the next power of two
+   */
+  IssueQueue(final int capacity) {
+    final int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    slots = new AtomicReferenceArray<>(size);
+    mask = size - 1;
+  }
+
+  int getCapacity() {
+    return slots.length();
+  }
+
+  @Override
+  public void saveIssue(final InputFile file, final ActiveRule rule, final Severity severity, final int line, final String message) {
+    offer(new FileIssue(file, rule, severity, line, message));
+  }
+
+  @Override
+  public void saveIssue(final InputDir dir, final ActiveRule rule, final Severity severity, final String message) {
+    offer(new DirectoryIssue(dir, rule, severity, message));
+  }
+
+  @Override
+  public void saveMeasure(final Resource resource, final Metric<Serializable> metric, final double value, final AlertThreshold threshold,
+    final double thresholdMetricValue) {
+    offer(new MeasureWrite(resource, metric, value, threshold, thresholdMetricValue));
+  }
+
+  /**
+   * Called by the producer after its last write.
+   */
+  void close() {
+    closed = true;
+  }
+
+  /**
+   * Called if the writes will not be consumed anymore. A producer waiting for space fails with a {@link CancellationException}.
+   */
+  void abort() {
+    aborted = true;
+  }
+
+  private void offer(final PendingWrite write) {
+    final long index = tail.get();
+    while (index - head.get() >= slots.length()) {
+      if (aborted) {
+        throw new CancellationException("Writes of processor are not consumed anymore");
+      }
+      LockSupport.parkNanos(WAIT_NANOS);
+    }
+    slots.lazySet((int) index & mask, write);
+    tail.lazySet(index + 1);
+  }
+
+  /**
+   * Passes the writes in the order they have been added to the target until the queue is closed and empty.
+   *
+   * @return number of writes passed to the target
+   */
+  int drainTo(final IIssueSink target) {
+    int count = 0;
+    while (true) {
+      final long index = head.get();
+      if (index == tail.get()) {
+        if (closed) {
+          // The tail does not change anymore once the queue is closed
+          if (index == tail.get()) {
+            return count;
+          }
+        } else {
+          LockSupport.parkNanos(WAIT_NANOS);
+        }
+        continue;
+      }
+
+      final int slot = (int) index & mask;
+      final PendingWrite write = slots.get(slot);
+      slots.lazySet(slot, null);
+      head.lazySet(index + 1);
+      write.writeTo(target);
+      count++;
+    }
+  }
+
+  private abstract static class PendingWrite {
+    abstract void writeTo(IIssueSink target);
+  }
+
+  private static final class FileIssue extends PendingWrite {
+    private final InputFile file;
+    private final ActiveRule rule;
+    private final Severity severity;
+    private final int line;
+    private final String message;
+
+    FileIssue(final InputFile file, final ActiveRule rule, final Severity severity, final int line, final String message) {
+      this.file = file;
+      this.rule = rule;
+      this.severity = severity;
+      this.line = line;
+      this.message = message;
+    }
+
+    @Override
+    void writeTo(final IIssueSink target) {
+      target.saveIssue(file, rule, severity, line, message);
+    }
+  }
+
+  private static final class DirectoryIssue extends PendingWrite {
+    private final InputDir dir;
+    private final ActiveRule rule;
+    private final Severity severity;
+    private final String message;
+
+    DirectoryIssue(final InputDir dir, final ActiveRule rule, final Severity severity, final String message) {
+      this.dir = dir;
+      this.rule = rule;
+      this.severity = severity;
+      this.message = message;
+    }
+
+    @Override
+    void writeTo(final IIssueSink target) {
+      target.saveIssue(dir, rule, severity, message);
+    }
+  }
+
+  private static final class MeasureWrite extends PendingWrite {
+    private final Resource resource;
+    private final Metric<Serializable> metric;
+    private final double value;
+    private final AlertThreshold threshold;
+    private final double thresholdMetricValue;
+
+    MeasureWrite(final Resource resource, final Metric<Serializable> metric, final double value, final AlertThreshold threshold,
+      final double thresholdMetricValue) {
+      this.resource = resource;
+      this.metric = metric;
+      this.value = value;
+      this.threshold = threshold;
+      this.thresholdMetricValue = thresholdMetricValue;
+    }
+
+    @Override
+    void writeTo(final IIssueSink target) {
+      target.saveMeasure(resource, metric, value, threshold, thresholdMetricValue);
+    }
+  }
+}
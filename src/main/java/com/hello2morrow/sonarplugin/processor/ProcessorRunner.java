@@ -0,0 +1,177 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.processor;
+
+import com.hello2morrow.sonarplugin.persistence.ReportIndex;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.SensorContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the processors of a module, either one after another on the thread of the sensor or concurrently on a thread pool. The processors
+ * only read the report, the input file index and the active rules. In concurrent mode each processor writes into its own bounded
+ * {@link IssueQueue} and the thread of the sensor is the only one that passes the issues and measures on to the sensor context, which is
+ * not thread-safe. The queues are drained in the order the processors have been added, so the issues are saved in the same order as if the
+ * processors had run one after another.
+ * <p>
+ * Usage: create the sink for each processor with {@link #createSink()} and add the processor together with its sink.
+ */
+public final class ProcessorRunner {
+
+  static final int QUEUE_CAPACITY = 1024;
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProcessorRunner.class);
+
+  private final IIssueSink sensorSink;
+  private final int parallelism;
+  private final List<IProcessor> processors = new ArrayList<>();
+  private final List<IIssueSink> sinks = new ArrayList<>();
+
+  /**
+   * @param parallelism maximum number of processors running at the same time, processors are run on the thread of the sensor if 1
+   */
+  public ProcessorRunner(final SensorContext sensorContext, final int parallelism) {
+    this(new SensorContextIssueSink(sensorContext), parallelism);
+  }
+
+  /* package access to ease testing */
+  ProcessorRunner(final IIssueSink sensorSink, final int parallelism) {
+    this.sensorSink = sensorSink;
+    this.parallelism = parallelism;
+  }
+
+  public boolean isConcurrent() {
+    return parallelism > 1;
+  }
+
+  /**
+   * @return the sink to be passed to the next processor
+   */
+  public IIssueSink createSink() {
+    return isConcurrent() ? new IssueQueue(QUEUE_CAPACITY) : sensorSink;
+  }
+
+  /**
+   * @param sink the sink passed to the processor, created by {@link #createSink()}
+   */
+  public void add(final IProcessor processor, final IIssueSink sink) {
+    assert !isConcurrent() || sink instanceof IssueQueue : "Sink must be created by the runner";
+    processors.add(processor);
+    sinks.add(sink);
+  }
+
+  public void run(final ReportIndex index, final XsdAttributeRoot buildUnit) {
+    if (!isConcurrent() || processors.isEmpty()) {
+      for (final IProcessor next : processors) {
+        next.process(index, buildUnit);
+      }
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+    final int threads = Math.min(parallelism, processors.size());
+    final ExecutorService executor = Executors.newFixedThreadPool(threads, new ProcessorThreadFactory());
+    boolean completed = false;
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < processors.size(); i++) {
+        futures.add(executor.submit(new ProcessorTask(processors.get(i), (IssueQueue) sinks.get(i), index, buildUnit)));
+      }
+
+      int writes = 0;
+      for (final IIssueSink next : sinks) {
+        writes += ((IssueQueue) next).drainTo(sensorSink);
+      }
+      for (final Future<?> next : futures) {
+        waitFor(next);
+      }
+      completed = true;
+      LOG.debug("Sonargraph: Ran " + processors.size() + " processors on " + threads + " threads, " + writes + " issues and measures saved in "
+        + (System.currentTimeMillis() - start) + " ms");
+    } finally {
+      if (!completed) {
+        for (final IIssueSink next : sinks) {
+          ((IssueQueue) next).abort();
+        }
+      }
+      executor.shutdownNow();
+    }
+  }
+
+  private static void waitFor(final Future<?> future) {
+    try {
+      future.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for processor", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Processor failed", cause);
+    }
+  }
+
+  private static final class ProcessorTask implements Runnable {
+    private final IProcessor processor;
+    private final IssueQueue queue;
+    private final ReportIndex index;
+    private final XsdAttributeRoot buildUnit;
+
+    ProcessorTask(final IProcessor processor, final IssueQueue queue, final ReportIndex index, final XsdAttributeRoot buildUnit) {
+      this.processor = processor;
+      this.queue = queue;
+      this.index = index;
+      this.buildUnit = buildUnit;
+    }
+
+    @Override
+    public void run() {
+      try {
+        processor.process(index, buildUnit);
+      } finally {
+        queue.close();
+      }
+    }
+  }
+
+  private static final class ProcessorThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread = new Thread(runnable, "Sonargraph processor " + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
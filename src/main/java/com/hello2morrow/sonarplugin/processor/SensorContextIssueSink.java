@@ -0,0 +1,58 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.processor;
+
+import com.hello2morrow.sonarplugin.foundation.AlertThreshold;
+import com.hello2morrow.sonarplugin.foundation.SonarQubeUtilities;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.InputDir;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.Severity;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Resource;
+
+import java.io.Serializable;
+
+/**
+ * Saves issues and measures immediately to the sensor context. Must only be used on the thread of the sensor.
+ */
+public final class SensorContextIssueSink implements IIssueSink {
+
+  private final SensorContext sensorContext;
+
+  public SensorContextIssueSink(final SensorContext sensorContext) {
+    this.sensorContext = sensorContext;
+  }
+
+  @Override
+  public void saveIssue(final InputFile file, final ActiveRule rule, final Severity severity, final int line, final String message) {
+    SonarQubeUtilities.saveViolation(sensorContext, file, rule, severity, line, message);
+  }
+
+  @Override
+  public void saveIssue(final InputDir dir, final ActiveRule rule, final Severity severity, final String message) {
+    SonarQubeUtilities.saveViolation(sensorContext, dir, rule, severity, message);
+  }
+
+  @Override
+  public void saveMeasure(final Resource resource, final Metric<Serializable> metric, final double value, final AlertThreshold threshold,
+    final double thresholdMetricValue) {
+    SonarQubeUtilities.saveMeasure(resource, sensorContext, metric, value, threshold, thresholdMetricValue);
+  }
+}
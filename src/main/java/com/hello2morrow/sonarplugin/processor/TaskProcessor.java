@@ -20,18 +20,16 @@ package com.hello2morrow.sonarplugin.processor;
 import com.hello2morrow.sonarplugin.foundation.AlertThreshold;
 import com.hello2morrow.sonarplugin.foundation.SonarQubeUtilities;
 import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
-import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
 import com.hello2morrow.sonarplugin.metric.SonargraphAlertThresholds;
 import com.hello2morrow.sonarplugin.metric.SonargraphSimpleMetrics;
 import com.hello2morrow.sonarplugin.persistence.PersistenceUtilities;
-import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.persistence.RecordAttributes;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex.IndexedTask;
 import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
 import com.hello2morrow.sonarplugin.xsd.XsdPosition;
-import com.hello2morrow.sonarplugin.xsd.XsdTask;
-import com.hello2morrow.sonarplugin.xsd.XsdTasks;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.InputDir;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputPath;
@@ -51,28 +49,29 @@ public class TaskProcessor implements IProcessor {
 
   private static final Logger LOG = LoggerFactory.getLogger(WarningProcessor.class);
   private static final String PACKAGE = " package";
-  private final SensorContext sensorContext;
+  private final AnalysisSession session;
   private final Resource project;
   private final int numberOfTasks;
+  private final IIssueSink issueSink;
 
-  public TaskProcessor(final Project project, final SensorContext sensorContext, final int tasks) {
+  public TaskProcessor(final Project project, final AnalysisSession session, final int tasks, final IIssueSink issueSink) {
     this.project = project;
-    this.sensorContext = sensorContext;
+    this.session = session;
     this.numberOfTasks = tasks;
+    this.issueSink = issueSink;
   }
 
   /*
    * (non-Javadoc)
    * 
-   * @see com.hello2morrow.sonarplugin.handler.IProcessor#process(com.hello2morrow.sonarplugin.xsd.ReportContext,
+   * @see com.hello2morrow.sonarplugin.handler.IProcessor#process(com.hello2morrow.sonarplugin.persistence.ReportIndex,
    * com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot)
    */
   @Override
-  public void process(final ReportContext report, final XsdAttributeRoot buildUnit) {
+  public void process(final ReportIndex index, final XsdAttributeRoot buildUnit) {
     LOG.debug("Analysing tasks of buildUnit: " + buildUnit.getName());
 
-    final XsdTasks tasks = report.getTasks();
-    final ActiveRule rule = SonarQubeUtilities.findActiveSonargraphRule(sensorContext, SonargraphPluginBase.TASK_RULE_KEY);
+    final ActiveRule rule = session.getActiveRule(SonargraphPluginBase.TASK_RULE_KEY);
     int taskReferenceCount = 0;
 
     if (rule == null) {
@@ -80,23 +79,21 @@ public class TaskProcessor implements IProcessor {
       return;
     }
 
-    for (final XsdTask task : tasks.getTask()) {
-      final String buildUnitFromTask = SonargraphUtilities.getBuildUnitName(PersistenceUtilities.getAttribute(task.getAttribute(), "Build unit"));
-      if (buildUnitFromTask.equals(SonargraphUtilities.getBuildUnitName(buildUnit.getName()))) {
-        taskReferenceCount += handleTask(rule, task);
-      }
+    for (final IndexedTask task : index.getTasks(index.getBuildUnitId(buildUnit))) {
+      taskReferenceCount += handleTask(rule, task);
     }
 
     final Metric<Serializable> connectedMetric = SonargraphAlertThresholds.getConnectedMetric(SonargraphSimpleMetrics.TASK_REFS);
     final AlertThreshold threshold = SonargraphAlertThresholds.getThreshold(connectedMetric != null ? connectedMetric : SonargraphSimpleMetrics.TASK_REFS);
 
-    SonarQubeUtilities.saveMeasure(project, sensorContext, SonargraphSimpleMetrics.TASK_REFS, taskReferenceCount, threshold, this.numberOfTasks);
+    issueSink.saveMeasure(project, SonargraphSimpleMetrics.TASK_REFS, taskReferenceCount, threshold, this.numberOfTasks);
   }
 
-  private int handleTask(final ActiveRule rule, final XsdTask task) {
-    final Severity severity = SonarQubeUtilities.convertToSeverity(PersistenceUtilities.getAttribute(task.getAttribute(), "Priority"));
-    final String description = PersistenceUtilities.getAttribute(task.getAttribute(), "Description");
-    final String assignedTo = PersistenceUtilities.getAttribute(task.getAttribute(), "Assigned to");
+  private int handleTask(final ActiveRule rule, final IndexedTask task) {
+    final RecordAttributes attributes = task.getAttributes();
+    final Severity severity = SonarQubeUtilities.convertToSeverity(attributes.getPriority());
+    final String description = attributes.getDescription();
+    final String assignedTo = attributes.getAssignedTo();
 
     // This should not be needed, but the current description sucks
     String descriptionText = handleDescription(description);
@@ -112,7 +109,7 @@ public class TaskProcessor implements IProcessor {
       if (assignedTo != null && assignedTo.trim().length() > 0) {
         descriptionText += " [" + assignedTo.trim() + "]";
       }
-      for (final XsdPosition pos : task.getPosition()) {
+      for (final XsdPosition pos : task.getTask().getPosition()) {
         processTaskPosition(rule, severity, descriptionText, pos);
         counter++;
       }
@@ -124,20 +121,20 @@ public class TaskProcessor implements IProcessor {
     final String relFileName = pos.getFile();
 
     if (relFileName != null) {
-      int line = Integer.parseInt(pos.getLine());
+      int line = PersistenceUtilities.getLine(pos);
       if (line == 0) {
         line = 1;
       }
-      final InputPath path = SonarQubeUtilities.getInputPath(sensorContext.fileSystem(), relFileName);
+      final InputPath path = session.getInputPath(relFileName);
       if (path != null) {
         if (path.isFile()) {
-          SonarQubeUtilities.saveViolation(sensorContext, (InputFile) path, rule, severity, line, description);
+          issueSink.saveIssue((InputFile) path, rule, severity, line, description);
         } else {
-          SonarQubeUtilities.saveViolation(sensorContext, (InputDir) path, rule, severity, description);
+          issueSink.saveIssue((InputDir) path, rule, severity, description);
         }
         LOG.debug("Saved task [rule=" + rule.internalKey() + ", severity=" + severity + ", path=" + relFileName + ", description=" + description);
       } else {
-        LOG.warn("Failed to find path '" + relFileName + "'");
+        LOG.debug("Failed to find path '" + relFileName + "'");
       }
     }
   }
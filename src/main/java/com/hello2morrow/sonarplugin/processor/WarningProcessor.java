@@ -18,31 +18,27 @@
 
 package com.hello2morrow.sonarplugin.processor;
 
+import com.hello2morrow.sonarplugin.foundation.BuildUnitId;
 import com.hello2morrow.sonarplugin.foundation.DuplicateCodeBlock;
-import com.hello2morrow.sonarplugin.foundation.SonarQubeUtilities;
 import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
 import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
 import com.hello2morrow.sonarplugin.persistence.PersistenceUtilities;
-import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex.IndexedWarning;
 import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
 import com.hello2morrow.sonarplugin.xsd.XsdPosition;
 import com.hello2morrow.sonarplugin.xsd.XsdWarning;
 import com.hello2morrow.sonarplugin.xsd.XsdWarnings;
-import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttribute;
 import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.InputDir;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputPath;
 import org.sonar.api.batch.rule.ActiveRule;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
 /**
  * @author Ingmar
@@ -52,63 +48,65 @@ public class WarningProcessor implements IProcessor {
 
   private static final String FAILED_TO_LOCATE_FILE = "Failed to locate file";
   private static final Logger LOG = LoggerFactory.getLogger(WarningProcessor.class);
-  private final SensorContext sensorContext;
+  private final AnalysisSession session;
+  private final IIssueSink issueSink;
 
-  public WarningProcessor(final SensorContext sensorContext) {
-    this.sensorContext = sensorContext;
+  public WarningProcessor(final AnalysisSession session, final IIssueSink issueSink) {
+    this.session = session;
+    this.issueSink = issueSink;
   }
 
   @Override
-  public void process(final ReportContext report, final XsdAttributeRoot processedBuildUnit) {
+  public void process(final ReportIndex index, final XsdAttributeRoot processedBuildUnit) {
     LOG.debug("Analysing warnings of buildUnit: " + processedBuildUnit.getName());
 
-    final XsdWarnings warnings = report.getWarnings();
+    final XsdWarnings warnings = index.getReport().getWarnings();
+    if (warnings == null) {
+      LOG.debug("No warnings in report");
+      return;
+    }
+    final BuildUnitId buildUnit = index.getBuildUnitId(processedBuildUnit);
     for (final XsdWarningsByAttributeGroup warningGroup : warnings.getWarningsByAttributeGroup()) {
 
       final String key = SonargraphPluginBase.getRuleKey(warningGroup.getAttributeGroup());
       if (key != null) {
-        final ActiveRule rule = SonarQubeUtilities.findActiveSonargraphRule(sensorContext, key);
+        final ActiveRule rule = session.getActiveRule(key);
         if (rule == null) {
           LOG.info("Sonargraph rule '" + key + "' not active in current profile");
-        } else if ("Duplicate code".equals(warningGroup.getAttributeGroup())) {
-          handleDuplicateCodeBlocks(warningGroup, rule, processedBuildUnit);
+        } else if (ReportIndex.DUPLICATE_CODE_GROUP.equals(warningGroup.getAttributeGroup())) {
+          handleDuplicateCodeBlocks(index, rule, buildUnit);
         } else {
-          processWarning(processedBuildUnit, warningGroup, rule);
+          processWarning(index, buildUnit, warningGroup, rule);
         }
       }
     }
   }
 
-  private void processWarning(final XsdAttributeRoot processedBuildUnit, final XsdWarningsByAttributeGroup warningGroup, final ActiveRule rule) {
-    for (final XsdWarningsByAttribute warningByAttribute : warningGroup.getWarningsByAttribute()) {
-      final String attrName = warningByAttribute.getAttributeName();
-      for (final XsdWarning warning : warningByAttribute.getWarning()) {
-        final String msg = attrName + "=" + PersistenceUtilities.getAttribute(warning.getAttribute(), "Attribute value");
-        final String warningBuildUnit = SonargraphUtilities.getBuildUnitName(PersistenceUtilities.getAttribute(warning.getAttribute(), "Build unit"));
-        if (warningBuildUnit.equals(SonargraphUtilities.getBuildUnitName(processedBuildUnit.getName()))) {
-          processPosition(rule, warning, msg);
-        }
-      }
+  private void processWarning(final ReportIndex index, final BuildUnitId buildUnit, final XsdWarningsByAttributeGroup warningGroup, final ActiveRule rule) {
+    for (final IndexedWarning entry : index.getWarnings(buildUnit, warningGroup.getAttributeGroup())) {
+      final String msg = entry.getAttributeName() + "=" + entry.getAttributes().getAttributeValue();
+      processPosition(rule, entry, msg);
     }
   }
 
-  private void processPosition(final ActiveRule rule, final XsdWarning warning, final String msg) {
+  private void processPosition(final ActiveRule rule, final IndexedWarning entry, final String msg) {
+    final XsdWarning warning = entry.getWarning();
     if (!warning.getPosition().isEmpty()) {
       for (final XsdPosition pos : warning.getPosition()) {
         saveViolation(rule, msg, pos);
       }
     } else {
-      final String elemType = PersistenceUtilities.getAttribute(warning.getAttribute(), "Element type");
+      final String elemType = entry.getAttributes().getElementType();
 
       if ("Class file".equals(elemType) || "Source file".equals(elemType)) {
         // Attach a violation at line 1
-        final String fileName = PersistenceUtilities.getAttribute(warning.getAttribute(), "Element");
+        final String fileName = entry.getAttributes().getElement();
         final String fqName = fileName.substring(0, fileName.lastIndexOf('.')).replace('/', '.');
-        final InputPath path = SonarQubeUtilities.getInputPath(sensorContext.fileSystem(), fqName);
+        final InputPath path = session.getInputPath(fqName);
         if (path != null) {
-          SonarQubeUtilities.saveViolation(sensorContext, (InputFile) path, rule, null, 1, msg);
+          issueSink.saveIssue((InputFile) path, rule, null, 1, msg);
         } else {
-          LOG.warn(FAILED_TO_LOCATE_FILE + " '" + fqName + "'");
+          LOG.debug(FAILED_TO_LOCATE_FILE + " '" + fqName + "'");
         }
       }
     }
@@ -117,64 +115,44 @@ public class WarningProcessor implements IProcessor {
   private void saveViolation(final ActiveRule rule, final String msg, final XsdPosition pos) {
     final String relFileName = pos.getFile();
     if (relFileName != null) {
-      final InputPath path = SonarQubeUtilities.getInputPath(sensorContext.fileSystem(), relFileName);
+      final InputPath path = session.getInputPath(relFileName);
       if (path != null) {
         saveViolationToPath(rule, msg, pos, path);
         LOG.debug("Saved warning issue [rule=" + rule.internalKey() + ", path=" + relFileName + ", description=" + msg);
       } else {
-        LOG.warn(FAILED_TO_LOCATE_FILE + " '" + relFileName + "'");
+        LOG.debug(FAILED_TO_LOCATE_FILE + " '" + relFileName + "'");
       }
     }
   }
 
   private void saveViolationToPath(final ActiveRule rule, final String msg, final XsdPosition pos, final InputPath path) {
     if (path.isFile()) {
-      final int line = Integer.parseInt(pos.getLine());
-      SonarQubeUtilities.saveViolation(sensorContext, (InputFile) path, rule, null, line > 0 ? line : 1, msg);
+      final int line = PersistenceUtilities.getLine(pos);
+      issueSink.saveIssue((InputFile) path, rule, null, line > 0 ? line : 1, msg);
     } else {
-      SonarQubeUtilities.saveViolation(sensorContext, (InputDir) path, rule, null, msg);
+      issueSink.saveIssue((InputDir) path, rule, null, msg);
     }
   }
 
-  private void handleDuplicateCodeBlocks(final XsdWarningsByAttributeGroup warningGroup, final ActiveRule rule, final XsdAttributeRoot processedBuildUnit) {
+  private void handleDuplicateCodeBlocks(final ReportIndex index, final ActiveRule rule, final BuildUnitId buildUnit) {
     LOG.debug("Analysing duplicate code blocks");
 
-    final Map<Integer, List<DuplicateCodeBlock>> duplicateCodeBlocks = new HashMap<>();
-
-    for (final XsdWarningsByAttribute warnings : warningGroup.getWarningsByAttribute()) {
-      for (final XsdWarning warning : warnings.getWarning()) {
-        final DuplicateCodeBlock block = PersistenceUtilities.createDuplicateCodeBlock(warning);
-        if (null == block) {
-          continue;
-        }
-        if (!duplicateCodeBlocks.containsKey(block.getBlockId())) {
-          duplicateCodeBlocks.put(block.getBlockId(), new ArrayList<DuplicateCodeBlock>());
-        }
-        duplicateCodeBlocks.get(block.getBlockId()).add(block);
-      }
-    }
-
-    for (final Entry<Integer, List<DuplicateCodeBlock>> entry : duplicateCodeBlocks.entrySet()) {
-      for (final DuplicateCodeBlock block : entry.getValue()) {
-        saveDuplicateBlockIssue(rule, processedBuildUnit, entry, block);
-      }
+    for (final DuplicateCodeBlock block : index.getDuplicateCodeBlocks(buildUnit)) {
+      saveDuplicateBlockIssue(rule, index.getDuplicateCodeBlockGroup(block.getBlockId()), block);
     }
   }
 
-  private void saveDuplicateBlockIssue(final ActiveRule rule, final XsdAttributeRoot processedBuildUnit, final Entry<Integer, List<DuplicateCodeBlock>> entry,
-    final DuplicateCodeBlock block) {
-    final List<DuplicateCodeBlock> otherBlocks = new ArrayList<>(entry.getValue());
+  private void saveDuplicateBlockIssue(final ActiveRule rule, final List<DuplicateCodeBlock> blockGroup, final DuplicateCodeBlock block) {
+    final List<DuplicateCodeBlock> otherBlocks = new ArrayList<>(blockGroup);
     otherBlocks.remove(block);
     final String message = SonargraphUtilities.generateDuplicateCodeBlockMessage(block, otherBlocks);
     final String fqName = block.getElementName();
-    if (SonargraphUtilities.getBuildUnitName(processedBuildUnit.getName()).equals(SonargraphUtilities.getBuildUnitName(block.getBuildUnitName()))) {
-      final InputPath path = SonarQubeUtilities.getInputPath(sensorContext.fileSystem(), fqName);
-      if (path != null) {
-        SonarQubeUtilities.saveViolation(sensorContext, (InputFile) path, rule, null, block.getStartLine(), message);
-        LOG.debug("Saved duplicate issue [rule=" + rule.internalKey() + ", path=" + path.relativePath() + ", description=" + message);
-      } else {
-        LOG.warn(FAILED_TO_LOCATE_FILE + " '" + fqName + "'");
-      }
+    final InputPath path = session.getInputPath(fqName);
+    if (path != null) {
+      issueSink.saveIssue((InputFile) path, rule, null, block.getStartLine(), message);
+      LOG.debug("Saved duplicate issue [rule=" + rule.internalKey() + ", path=" + path.relativePath() + ", description=" + message);
+    } else {
+      LOG.debug(FAILED_TO_LOCATE_FILE + " '" + fqName + "'");
     }
   }
 }
@@ -0,0 +1,87 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.api;
+
+import com.hello2morrow.sonarplugin.foundation.MetricValues;
+import com.hello2morrow.sonarplugin.foundation.SonargraphMetricKey;
+import com.hello2morrow.sonarplugin.metric.SonargraphDerivedMetrics;
+import com.hello2morrow.sonarplugin.metric.SonargraphSimpleMetrics;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class MeasureWriterTest {
+
+  @Test
+  public void testValueWithoutThreshold() {
+    final Project project = new Project("Test", null, "Test");
+    final SensorContext context = mock(SensorContext.class);
+    final MetricValues values = new MetricValues();
+    values.set(SonargraphMetricKey.JAVA_FILES, 12);
+
+    new MeasureWriter(project, context).write(new MeasureMapping[] { MeasureMapping.value(SonargraphMetricKey.JAVA_FILES, SonargraphSimpleMetrics.JAVA_FILES) },
+      values);
+
+    verify(context).saveMeasure(project, SonargraphSimpleMetrics.JAVA_FILES, 12.0);
+    verify(context, never()).saveMeasure(eq(project), any(Measure.class));
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Test
+  public void testAlertLevelIsSaved() {
+    final Project project = new Project("Test", null, "Test");
+    final SensorContext context = mock(SensorContext.class);
+    final MetricValues values = new MetricValues();
+    values.set(SonargraphMetricKey.ALL_WARNINGS, 20);
+
+    new MeasureWriter(project, context).write(
+      new MeasureMapping[] { MeasureMapping.value(SonargraphMetricKey.ALL_WARNINGS, SonargraphSimpleMetrics.ALL_WARNINGS) }, values);
+
+    final ArgumentCaptor<Measure> measure = ArgumentCaptor.forClass(Measure.class);
+    verify(context).saveMeasure(eq(project), measure.capture());
+    assertEquals(SonargraphSimpleMetrics.ALL_WARNINGS, measure.getValue().getMetric());
+    assertEquals(20.0, measure.getValue().getValue(), 0.0);
+    assertEquals(Metric.Level.ERROR, measure.getValue().getAlertStatus());
+  }
+
+  @Test
+  public void testPercentOfBase() {
+    final MetricValues values = new MetricValues();
+    values.set(SonargraphMetricKey.VIOLATING_TYPES, 3);
+    values.set(SonargraphMetricKey.INTERNAL_TYPES, 12);
+
+    final MeasureMapping mapping = MeasureMapping.percent(SonargraphMetricKey.VIOLATING_TYPES, SonargraphMetricKey.INTERNAL_TYPES,
+      SonargraphDerivedMetrics.VIOLATING_TYPES_PERCENT);
+    assertNull("No threshold defined for metric", mapping.getThreshold());
+    assertEquals(25.0, mapping.derive(values), 0.0);
+
+    values.set(SonargraphMetricKey.INTERNAL_TYPES, 0);
+    assertEquals(0.0, mapping.derive(values), 0.0);
+  }
+}
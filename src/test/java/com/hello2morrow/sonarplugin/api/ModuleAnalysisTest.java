@@ -0,0 +1,158 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.api;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphMetricKey;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeCategory;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ModuleAnalysisTest {
+
+  private static final int BUILD_UNITS = 64;
+  private static final int THREADS = 8;
+
+  /**
+   * Analyses many synthetic build units with the same sensor instance, first one after another and then concurrently, and checks that
+   * every build unit gets bit for bit the same measures in both runs.
+   */
+  @Test
+  public void testConcurrentAnalysisOfBuildUnits() throws Exception {
+    final SonargraphSensor sensor = new SonargraphSensor(TestHelper.initSettings(TestHelper.REPORT_PATH));
+    final Random random = new Random(4711);
+    final List<BuildUnitAnalysis> analyses = new ArrayList<>();
+    for (int i = 0; i < BUILD_UNITS; i++) {
+      analyses.add(new BuildUnitAnalysis(sensor, i, random));
+    }
+
+    final List<Map<String, Long>> expected = new ArrayList<>();
+    for (final BuildUnitAnalysis next : analyses) {
+      expected.add(next.call());
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      for (int round = 0; round < 4; round++) {
+        final List<Future<Map<String, Long>>> results = executor.invokeAll(analyses);
+        for (int i = 0; i < BUILD_UNITS; i++) {
+          assertEquals("Measures of build unit " + i, expected.get(i), results.get(i).get());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertFalse(expected.get(0).isEmpty());
+  }
+
+  private static final class BuildUnitAnalysis implements Callable<Map<String, Long>> {
+    private final SonargraphSensor sensor;
+    private final Project project;
+    private final SensorContext sensorContext;
+    private final ReportIndex index;
+    private final XsdAttributeRoot buildUnit;
+    private final Map<String, Long> measures = new TreeMap<>();
+
+    BuildUnitAnalysis(final SonargraphSensor sensor, final int number, final Random random) {
+      this.sensor = sensor;
+      project = new Project("group:module" + number, null, "module" + number);
+      buildUnit = createAttributes("module" + number, random);
+      final ReportContext report = new ReportContext();
+      report.setAttributes(createAttributes("System", random));
+      index = ReportIndex.create(report);
+
+      sensorContext = mock(SensorContext.class);
+      when(sensorContext.fileSystem()).thenReturn(TestHelper.initFileSystem(null));
+      when(sensorContext.activeRules()).thenReturn(new ActiveRulesBuilder().build());
+      final Answer<Measure<?>> recorder = new Answer<Measure<?>>() {
+        @Override
+        public Measure<?> answer(final InvocationOnMock invocation) throws Throwable {
+          final Object[] arguments = invocation.getArguments();
+          final Object last = arguments[arguments.length - 1];
+          if (last instanceof Measure) {
+            final Measure<?> measure = (Measure<?>) last;
+            record(measure.getMetricKey() + " " + measure.getAlertStatus(), measure.getValue());
+          } else {
+            record(((Metric<?>) arguments[arguments.length - 2]).getKey(), (Double) last);
+          }
+          return null;
+        }
+      };
+      when(sensorContext.saveMeasure(any(Metric.class), any(Double.class))).thenAnswer(recorder);
+      when(sensorContext.saveMeasure(any(Resource.class), any(Metric.class), any(Double.class))).thenAnswer(recorder);
+      when(sensorContext.saveMeasure(any(Resource.class), any(Measure.class))).thenAnswer(recorder);
+    }
+
+    private void record(final String key, final Double value) {
+      measures.put(key, Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public Map<String, Long> call() {
+      measures.clear();
+      sensor.analyseBuildUnit(project, sensorContext, index, buildUnit);
+      return new TreeMap<>(measures);
+    }
+  }
+
+  private static XsdAttributeRoot createAttributes(final String name, final Random random) {
+    final XsdAttributeRoot root = new XsdAttributeRoot();
+    root.setName(name);
+    final XsdAttributeCategory category = new XsdAttributeCategory();
+    root.getAttributeCategory().add(category);
+    for (final SonargraphMetricKey key : SonargraphMetricKey.values()) {
+      final XsdAttribute attribute = new XsdAttribute();
+      attribute.setStandardName(key.getStandardName());
+      if (key == SonargraphMetricKey.ACD || key == SonargraphMetricKey.RELATIVE_ACD || key == SonargraphMetricKey.NCCD) {
+        attribute.setValue(String.format(Locale.ENGLISH, "%.2f", random.nextDouble() * 50));
+      } else {
+        attribute.setValue(Integer.toString(1 + random.nextInt(5000)));
+      }
+      category.getAttribute().add(attribute);
+    }
+    return root;
+  }
+}
@@ -24,6 +24,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputDir;
@@ -44,6 +45,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -131,14 +133,9 @@ public class SonargraphSensorTest {
     final Settings settings = TestHelper.initSettings(TestHelper.REPORT_PATH2);
     final SonargraphSensor sensor = new SonargraphSensor(settings);
 
-    when(fileSystem.inputFile(any(FilePredicate.class))).thenAnswer(new Answer<InputFile>() {
-      @Override
-      public InputFile answer(final InvocationOnMock invocation) throws Throwable {
-        final Object arg = invocation.getArguments()[0];
-        final FilePredicate predicate = (FilePredicate) arg;
-        return findFile(baseDir, baseDir, predicate);
-      }
-    });
+    when(fileSystem.predicates()).thenReturn(mock(FilePredicates.class));
+    final List<InputFile> inputFiles = collectFiles(baseDir, baseDir, new ArrayList<InputFile>());
+    when(fileSystem.inputFiles(any(FilePredicate.class))).thenReturn(inputFiles);
     when(fileSystem.inputDir(any(File.class))).thenAnswer(new Answer<InputDir>() {
       @Override
       public InputDir answer(final InvocationOnMock invocation) throws Throwable {
@@ -165,13 +162,11 @@ public class SonargraphSensorTest {
     assertEquals("Wrong total number of issues", 31, sensorStorage.getNumberOfIssues());
   }
 
-  private InputFile findFile(final File baseDir, final File currentDir, final FilePredicate predicate) throws IOException {
+  private List<InputFile> collectFiles(final File baseDir, final File currentDir, final List<InputFile> files) throws IOException {
     for (final File next : currentDir.listFiles()) {
       if (next.isDirectory()) {
-        final InputFile match = findFile(baseDir, next, predicate);
-        if (match != null) {
-          return match;
-        }
+        collectFiles(baseDir, next, files);
+        continue;
       }
       final InputFile mocked = mock(InputFile.class);
       final String canonicalPath = next.getCanonicalPath();
@@ -180,11 +175,9 @@ public class SonargraphSensorTest {
       when(mocked.relativePath()).thenReturn(pathRelative.toString().replace("\\", "/"));
       when(mocked.file()).thenReturn(next);
       when(mocked.isFile()).thenReturn(true);
-      if (predicate.apply(mocked)) {
-        return mocked;
-      }
+      files.add(mocked);
     }
-    return null;
+    return files;
   }
 
   private Path calculateRelativePath(final File baseDir, final String canonicalPath) throws IOException {
@@ -0,0 +1,64 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class BuildUnitIdTableTest {
+
+  @Test
+  public void testInterning() {
+    final BuildUnitIdTable table = new BuildUnitIdTable();
+    assertSame(table.intern("AlarmClock"), table.intern(new String("AlarmClock")));
+    assertNotSame(table.intern("AlarmClock"), table.intern("Foundation"));
+    assertEquals("AlarmClock", table.intern("AlarmClock").getName());
+    assertNotSame("Tables of different reports must not share ids", table.intern("AlarmClock"), new BuildUnitIdTable().intern("AlarmClock"));
+  }
+
+  @Test
+  public void testSameAsNormalizedName() {
+    final BuildUnitIdTable table = new BuildUnitIdTable();
+    final String[] fqNames = { "AlarmClock::AlarmClock", "Workspace::Foundation", "Old Sonarj Version::(Default Build Unit)", "AlarmClock-AlarmClock",
+      null };
+    for (final String fqName : fqNames) {
+      final BuildUnitId id = table.internFqName(fqName);
+      assertEquals(SonargraphUtilities.getBuildUnitName(fqName), id.getName());
+      assertSame(table.intern(SonargraphUtilities.getBuildUnitName(fqName)), id);
+      assertSame(id, table.internFqName(fqName != null ? new String(fqName) : null));
+      assertSame(id, table.findFqName(fqName != null ? new String(fqName) : null));
+    }
+  }
+
+  @Test
+  public void testLookupDoesNotIntern() {
+    final BuildUnitIdTable table = new BuildUnitIdTable();
+    final BuildUnitId alarmClock = table.internFqName("Workspace::AlarmClock");
+
+    assertSame(alarmClock, table.find("AlarmClock"));
+    assertSame("Other fully qualified names with the same build unit name", alarmClock, table.findFqName("Other::AlarmClock"));
+    assertNull(table.find("Foundation"));
+    assertNull(table.findFqName("Workspace::Foundation"));
+    assertNull(table.find(null));
+    assertEquals(1, table.size());
+  }
+}
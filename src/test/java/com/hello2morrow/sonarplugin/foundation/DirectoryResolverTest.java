@@ -0,0 +1,105 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirectoryResolverTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testNormalize() {
+    assertEquals("/home/user/project", DirectoryResolver.normalize("/home/user/project/"));
+    assertEquals("/home/user/project/com/h2m", DirectoryResolver.normalize("/home/user/./project//src/../com/h2m"));
+    assertEquals("/com", DirectoryResolver.normalize("/../com"));
+    assertEquals("C:/workspace/com/h2m", DirectoryResolver.normalize("C:\\workspace\\src\\..\\com\\h2m"));
+    assertEquals("../com", DirectoryResolver.normalize("src/../../com"));
+    assertEquals("/", DirectoryResolver.normalize("/"));
+    assertEquals("", DirectoryResolver.normalize(""));
+    assertEquals("", DirectoryResolver.normalize("./"));
+  }
+
+  @Test
+  public void testGetAbsolutePath() throws IOException {
+    final File baseDir = createDirectories();
+    final DirectoryResolver resolver = new DirectoryResolver(baseDir);
+    final String basePath = new File(baseDir, "src/../src").getPath();
+
+    for (final String next : new String[] { "main/java/com/h2m", "./main/java/../java/com", "main\\java\\com\\h2m\\alarm" }) {
+      assertEquals(new File(basePath, next).getCanonicalPath().replace('\\', '/'), resolver.getAbsolutePath(basePath, next));
+    }
+    assertEquals("Canonical path of the base path must only be determined once", 1, resolver.getFileSystemAccesses());
+  }
+
+  @Test
+  public void testIsDirectory() throws IOException {
+    final File baseDir = createDirectories();
+    final DirectoryResolver resolver = new DirectoryResolver(baseDir);
+
+    final String[] paths = { "src/main/java/com/h2m/alarm", "src/main/java/com/h2m", "src/main/java/com/h2m/alarm/AlarmClock.java",
+        "src/main/java/com/h2m/unknown", "src/main/java/com/h2m/unknown/model", "src/test/java/com/h2m", "src/main/java/com/h2m/alarm" };
+    for (final String next : paths) {
+      final File dir = new File(baseDir, next);
+      assertEquals(next, dir.isDirectory(), resolver.isDirectory(dir));
+    }
+
+    assertEquals(paths.length, resolver.getLookups());
+    assertEquals("Each existing directory on the way and the file must be read once", 12, resolver.getFileSystemAccesses());
+    assertEquals("Missing directories and repeated lookups must be answered from the walk", 4, resolver.getCachedLookups());
+  }
+
+  @Test
+  public void testDifferentCase() throws IOException {
+    final File baseDir = createDirectories();
+    final DirectoryResolver resolver = new DirectoryResolver(baseDir);
+
+    final File dir = new File(baseDir, "src/Main/java");
+    assertEquals("The file system must decide about a name differing in case", dir.isDirectory(), resolver.isDirectory(dir));
+    assertFalse(resolver.isDirectory(new File(baseDir, "src/other")));
+  }
+
+  @Test
+  public void testOutsideOfBaseDir() throws IOException {
+    final File root = createDirectories();
+    final DirectoryResolver resolver = new DirectoryResolver(new File(root, "src/main"));
+
+    assertTrue(resolver.isDirectory(new File(root, "src/test/java")));
+    assertTrue(resolver.isDirectory(new File(root, "src/test/java")));
+    assertFalse(resolver.isDirectory(new File(root, "src/test/unknown")));
+    assertEquals(2, resolver.getFileSystemAccesses());
+  }
+
+  private File createDirectories() throws IOException {
+    final File root = folder.newFolder("project");
+    assertTrue(new File(root, "src/main/java/com/h2m/alarm").mkdirs());
+    assertTrue(new File(root, "src/test/java/com/h2m").mkdirs());
+    assertTrue(new File(root, "src/main/java/com/h2m/alarm/AlarmClock.java").createNewFile());
+    return root;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import org.junit.Test;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class InputFileIndexTest {
+
+  @Test
+  public void testFind() {
+    final InputFile alarmClock = TestHelper.createInputFile("AlarmClock/src/main/java/com/h2m/alarm/model/AlarmClock.java");
+    final InputFile main = TestHelper.createInputFile("AlarmClock/src/main/java/com/h2m/alarm/presentation/Main.java");
+    final InputFile observable = TestHelper.createInputFile("Foundation/src/main/java/com/h2m/common/observer/Observable.java");
+    final FileSystem fileSystem = TestHelper.initFileSystemWithInputFiles(Arrays.asList(alarmClock, main, observable));
+    final InputFileIndex index = new InputFileIndex(fileSystem);
+
+    assertSame(alarmClock, index.find("com/h2m/alarm/model/AlarmClock.java", false));
+    assertSame(alarmClock, index.find("AlarmClock/src/main/java/com/h2m/alarm/model/AlarmClock.java", false));
+    assertSame("Leftmost segment may be partial", main, index.find("m/alarm/presentation/Main.java", false));
+    assertSame(observable, index.find("Observable.java", false));
+    assertSame(observable, index.find(TestHelper.MODULE_BASE_DIR + "Foundation/src/main/java/com/h2m/common/observer/Observable.java", true));
+    assertNull(index.find("com/h2m/alarm/model/Unknown.java", false));
+    assertNull(index.find("other/com/h2m/alarm/model/AlarmClock.java", false));
+    assertNull("Absolute path must not match relative paths", index.find(TestHelper.MODULE_BASE_DIR + "Foundation/src/main/java/com/h2m/common/observer/Observable.java", false));
+
+    verify(fileSystem, never()).inputFile(any(FilePredicate.class));
+  }
+
+  @Test
+  public void testAmbiguousPath() {
+    final InputFile first = TestHelper.createInputFile("First/src/main/java/com/h2m/Util.java");
+    final InputFile second = TestHelper.createInputFile("Second/src/main/java/com/h2m/Util.java");
+    final InputFileIndex index = new InputFileIndex(TestHelper.initFileSystemWithInputFiles(Arrays.asList(first, second)));
+
+    assertNull(index.find("com/h2m/Util.java", false));
+    assertNull(index.find("java/com/h2m/Util.java", false));
+    assertSame(first, index.find("First/src/main/java/com/h2m/Util.java", false));
+    assertSame(second, index.find("d/src/main/java/com/h2m/Util.java", false));
+  }
+
+  @Test
+  public void testExactLookup() {
+    final InputFile alarmClock = TestHelper.createInputFile("AlarmClock/src/main/java/com/h2m/alarm/model/AlarmClock.java");
+    final InputFileIndex index = new InputFileIndex(TestHelper.initFileSystemWithInputFiles(Arrays.asList(alarmClock)));
+
+    assertSame(alarmClock, index.findExact("AlarmClock/src/main/java/com/h2m/alarm/model/AlarmClock.java"));
+    assertNull(index.findExact("src/main/java/com/h2m/alarm/model/AlarmClock.java"));
+    assertTrue(index.isDirectory("AlarmClock"));
+    assertTrue(index.isDirectory("AlarmClock/src/main/java"));
+    assertFalse(index.isDirectory("src/main/java"));
+    assertFalse("Files are no directories", index.isDirectory("AlarmClock/src/main/java/com/h2m/alarm/model/AlarmClock.java"));
+  }
+
+  @Test
+  public void testSameResultAsSuffixScan() {
+    final String[] segments = { "com", "xcom", "h2m", "m", "src", "main", "java", "A.java", "BA.java", "" };
+    final Random random = new Random(4711);
+
+    for (int round = 0; round < 50; round++) {
+      final List<InputFile> inputFiles = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        inputFiles.add(TestHelper.createInputFile(createPath(random, segments)));
+      }
+      final InputFileIndex index = new InputFileIndex(TestHelper.initFileSystemWithInputFiles(inputFiles));
+
+      for (int i = 0; i < 100; i++) {
+        String path = createPath(random, segments);
+        path = path.substring(random.nextInt(path.length() + 1));
+        final boolean useAbsolutePath = random.nextBoolean();
+        assertSame("Lookup of '" + path + "'", scan(inputFiles, path, useAbsolutePath), index.find(path, useAbsolutePath));
+      }
+    }
+  }
+
+  private static String createPath(final Random random, final String[] segments) {
+    final StringBuilder path = new StringBuilder();
+    final int length = 1 + random.nextInt(5);
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        path.append('/');
+      }
+      path.append(segments[random.nextInt(segments.length)]);
+    }
+    return path.toString();
+  }
+
+  /**
+   * The lookup as done by a predicate on the file system: the only file whose path ends with the given path.
+   */
+  private static InputFile scan(final List<InputFile> inputFiles, final String path, final boolean useAbsolutePath) {
+    InputFile match = null;
+    int count = 0;
+    for (final InputFile inputFile : inputFiles) {
+      if ((useAbsolutePath ? inputFile.absolutePath() : inputFile.relativePath()).endsWith(path)) {
+        match = inputFile;
+        count++;
+      }
+    }
+    return count == 1 ? match : null;
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import com.hello2morrow.sonarplugin.persistence.PersistenceUtilities;
+import com.hello2morrow.sonarplugin.xsd.XsdAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeCategory;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricValuesTest {
+
+  @Test
+  public void testSetGetClear() {
+    final MetricValues values = new MetricValues();
+    assertTrue(values.isEmpty());
+    assertFalse(values.contains(SonargraphMetricKey.ACD));
+    assertEquals(0.0, values.get(SonargraphMetricKey.ACD), 0.0);
+
+    values.set(SonargraphMetricKey.ACD, 3.5);
+    values.set(SonargraphMetricKey.INSTRUCTIONS, 0.0);
+    assertFalse(values.isEmpty());
+    assertTrue(values.contains(SonargraphMetricKey.ACD));
+    assertTrue(values.contains(SonargraphMetricKey.INSTRUCTIONS));
+    assertFalse(values.contains(SonargraphMetricKey.NCCD));
+    assertEquals(3.5, values.get(SonargraphMetricKey.ACD), 0.0);
+
+    values.clear();
+    assertTrue(values.isEmpty());
+    assertFalse(values.contains(SonargraphMetricKey.ACD));
+    assertEquals(0.0, values.get(SonargraphMetricKey.ACD), 0.0);
+  }
+
+  @Test
+  public void testForStandardName() {
+    for (final SonargraphMetricKey key : SonargraphMetricKey.values()) {
+      assertSame(key, SonargraphMetricKey.forStandardName(key.getStandardName()));
+    }
+    assertNull(SonargraphMetricKey.forStandardName("Not a metric"));
+  }
+
+  @Test
+  public void testReadMetricValues() {
+    final XsdAttributeRoot root = new XsdAttributeRoot();
+    final XsdAttributeCategory category = new XsdAttributeCategory();
+    root.getAttributeCategory().add(category);
+    category.getAttribute().add(createAttribute(SonargraphMetricKey.ACD.getStandardName(), "12.50"));
+    category.getAttribute().add(createAttribute(SonargraphMetricKey.RELATIVE_ACD.getStandardName(), "< 0.01"));
+    category.getAttribute().add(createAttribute(SonargraphMetricKey.NCCD.getStandardName(), "n/a"));
+    category.getAttribute().add(createAttribute("Unknown metric", "1"));
+
+    final MetricValues values = new MetricValues();
+    values.set(SonargraphMetricKey.INSTRUCTIONS, 1);
+    PersistenceUtilities.readMetricValues(root, values);
+
+    assertEquals(12.5, values.get(SonargraphMetricKey.ACD), 0.0);
+    assertTrue(values.contains(SonargraphMetricKey.RELATIVE_ACD));
+    assertEquals(0.0, values.get(SonargraphMetricKey.RELATIVE_ACD), 0.0);
+    assertFalse("Unparseable values are skipped", values.contains(SonargraphMetricKey.NCCD));
+    assertFalse("Values of a previous read are cleared", values.contains(SonargraphMetricKey.INSTRUCTIONS));
+  }
+
+  private static XsdAttribute createAttribute(final String standardName, final String value) {
+    final XsdAttribute attribute = new XsdAttribute();
+    attribute.setStandardName(standardName);
+    attribute.setValue(value);
+    return attribute;
+  }
+}
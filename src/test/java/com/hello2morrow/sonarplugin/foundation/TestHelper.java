@@ -17,6 +17,20 @@
  */
 package com.hello2morrow.sonarplugin.foundation;
 
+import com.hello2morrow.sonarplugin.persistence.ReportFileReader;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex.IndexedTask;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex.IndexedTypeRelation;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex.IndexedWarning;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroups;
+import com.hello2morrow.sonarplugin.xsd.XsdTasks;
+import com.hello2morrow.sonarplugin.xsd.XsdViolations;
+import com.hello2morrow.sonarplugin.xsd.XsdWarnings;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
@@ -30,16 +44,25 @@ import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
 import org.sonar.api.batch.sensor.internal.SensorStorage;
 import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
 import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.rule.RuleKey;
 
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
 import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
+import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -48,6 +71,10 @@ public class TestHelper {
 
   public static final String REPORT_PATH = "./src/test/resources/sonargraph-sonar-report.xml";
   public static final String REPORT_PATH2 = "./src/test/resources/sonargraph-sonar-report2.xml";
+  /** Base directory of the input files created by {@link #createInputFile(String)} */
+  public static final String MODULE_BASE_DIR = "/home/user/project/";
+
+  private static JAXBContext jaxbContext;
 
   public static Settings initSettings(final String reportPath) {
     final Settings settings = new Settings();
@@ -56,6 +83,93 @@ public class TestHelper {
     return settings;
   }
 
+  /**
+   * Reads the report configured in the settings for the AlarmClock project.
+   *
+   * @return the report model, which must have been read
+   */
+  public static ReportContext readReport(final ReportFileReader reader, final Settings settings) {
+    reader.readSonargraphReport(new Project("hello2morrow:AlarmClock"), null, settings);
+    assertNotNull(reader.getReport());
+    return reader.getReport();
+  }
+
+  /**
+   * Copies the report into the given directory, so that files can be written next to it.
+   */
+  public static File copyReport(final String reportPath, final File directory) throws IOException {
+    final File source = new File(reportPath);
+    final File target = new File(directory, source.getName());
+    Files.copy(source.toPath(), target.toPath());
+    return target;
+  }
+
+  /**
+   * @return the report as formatted XML, for comparing the report models created by the different readers
+   */
+  public static String marshal(final ReportContext report) throws JAXBException {
+    final Marshaller marshaller = getJaxbContext().createMarshaller();
+    marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+    final StringWriter writer = new StringWriter();
+    marshaller.marshal(report, writer);
+    return writer.toString();
+  }
+
+  /**
+   * The readers passing the records directly to the index do not keep them in the report model, so their results are compared by the
+   * records of their indexes.
+   *
+   * @return the tasks, type relations, cycle groups and warnings of the index as formatted XML, ordered by build unit
+   */
+  public static String marshalRecords(final ReportIndex index) throws JAXBException {
+    final ReportContext records = new ReportContext();
+    records.setTasks(new XsdTasks());
+    records.setViolations(new XsdViolations());
+    records.setCycleGroups(new XsdCycleGroups());
+    records.setWarnings(new XsdWarnings());
+    final XsdWarnings warnings = index.getReport().getWarnings();
+    for (final XsdAttributeRoot buildUnit : index.getReport().getBuildUnits().getBuildUnit()) {
+      final BuildUnitId id = index.getBuildUnitId(buildUnit);
+      for (final IndexedTask task : index.getTasks(id)) {
+        records.getTasks().getTask().add(task.getTask());
+      }
+      for (final IndexedTypeRelation relation : index.getTypeRelations(id)) {
+        final XsdArchitectureViolation violation = new XsdArchitectureViolation();
+        violation.setArchitectureViolation(relation.getViolation().getArchitectureViolation());
+        violation.setDimension(relation.getViolation().getDimension());
+        violation.setExplanation(relation.getViolation().getExplanation());
+        violation.getTypeRelation().add(relation.getTypeRelation());
+        records.getViolations().getArchitectureViolations().add(violation);
+      }
+      records.getCycleGroups().getCycleGroup().addAll(index.getCycleGroups(id));
+      if (warnings != null) {
+        for (final XsdWarningsByAttributeGroup group : warnings.getWarningsByAttributeGroup()) {
+          records.getWarnings().getWarningsByAttributeGroup().add(getIndexedWarnings(index, id, group.getAttributeGroup()));
+        }
+      }
+    }
+    return marshal(records);
+  }
+
+  private static XsdWarningsByAttributeGroup getIndexedWarnings(final ReportIndex index, final BuildUnitId buildUnit, final String attributeGroup) {
+    final XsdWarningsByAttributeGroup group = new XsdWarningsByAttributeGroup();
+    group.setAttributeGroup(attributeGroup);
+    for (final IndexedWarning warning : index.getWarnings(buildUnit, attributeGroup)) {
+      final XsdWarningsByAttribute warningsByAttribute = new XsdWarningsByAttribute();
+      warningsByAttribute.setAttributeName(warning.getAttributeName());
+      warningsByAttribute.getWarning().add(warning.getWarning());
+      group.getWarningsByAttribute().add(warningsByAttribute);
+    }
+    return group;
+  }
+
+  private static synchronized JAXBContext getJaxbContext() throws JAXBException {
+    if (jaxbContext == null) {
+      jaxbContext = JAXBContext.newInstance(ReportContext.class);
+    }
+    return jaxbContext;
+  }
+
   public static SensorContext initSensorContext(final FileSystem fileSystem, final SensorStorage sensorStorage) {
     return initSensorContext(fileSystem, sensorStorage, true);
   }
@@ -105,6 +219,26 @@ public class TestHelper {
     return sensorContext;
   }
 
+  /**
+   * @param relativePath path of the file relative to {@link #MODULE_BASE_DIR}
+   */
+  public static InputFile createInputFile(final String relativePath) {
+    final InputFile inputFile = mock(InputFile.class);
+    when(inputFile.relativePath()).thenReturn(relativePath);
+    when(inputFile.absolutePath()).thenReturn(MODULE_BASE_DIR + relativePath);
+    when(inputFile.isFile()).thenReturn(true);
+    return inputFile;
+  }
+
+  /**
+   * @return a file system as created by {@link #initFileSystem(Set)} that contains the given input files
+   */
+  public static FileSystem initFileSystemWithInputFiles(final List<InputFile> inputFiles) {
+    final FileSystem fileSystem = initFileSystem(null);
+    when(fileSystem.inputFiles(any(FilePredicate.class))).thenReturn(inputFiles);
+    return fileSystem;
+  }
+
   public static FileSystem initFileSystem(final Set<String> languages) {
     final FileSystem fileSystem = mock(FileSystem.class);
 
@@ -0,0 +1,101 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.foundation;
+
+import org.junit.Test;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class WorkspacePathResolverTest {
+
+  private static final List<String> WORKSPACE_PATHS = Arrays.asList("AlarmClock/src/main/java", "AlarmClock/target/classes");
+
+  @Test
+  public void testFindInModule() {
+    final InputFile alarmClock = TestHelper.createInputFile("src/main/java/com/h2m/alarm/model/AlarmClock.java");
+    final InputFile alarmClockTest = TestHelper.createInputFile("src/test/java/com/h2m/alarm/model/AlarmClock.java");
+    final WorkspacePathResolver resolver = new WorkspacePathResolver(initInputFileIndex(Arrays.asList(alarmClock, alarmClockTest)), WORKSPACE_PATHS);
+
+    assertEquals(Arrays.asList("src/main/java"), resolver.getSourceRoots());
+    assertSame("Files with the same suffix in other source roots must be ignored", alarmClock, resolver.find("com/h2m/alarm/model/AlarmClock.java"));
+    assertNull(resolver.find("com/h2m/alarm/model/Unknown.java"));
+    assertNull(resolver.find("alarm/model/AlarmClock.java"));
+
+    assertEquals(1, resolver.getDirectLookups());
+    assertEquals(2, resolver.getFallbackLookups());
+  }
+
+  @Test
+  public void testFindInSystemDirectory() {
+    final InputFile alarmClock = TestHelper.createInputFile("AlarmClock/src/main/java/com/h2m/alarm/model/AlarmClock.java");
+    final InputFile observable = TestHelper.createInputFile("Foundation/src/main/java/com/h2m/common/observer/Observable.java");
+    final WorkspacePathResolver resolver = new WorkspacePathResolver(initInputFileIndex(Arrays.asList(alarmClock, observable)), Arrays.asList(
+      "./AlarmClock/src/main/java/", "Foundation\\src\\main\\java"));
+
+    assertEquals(Arrays.asList("AlarmClock/src/main/java", "Foundation/src/main/java"), resolver.getSourceRoots());
+    assertSame(alarmClock, resolver.find("com/h2m/alarm/model/AlarmClock.java"));
+    assertSame(observable, resolver.find("com/h2m/common/observer/Observable.java"));
+  }
+
+  @Test
+  public void testAmbiguousPath() {
+    final InputFile first = TestHelper.createInputFile("src/main/java/com/h2m/Util.java");
+    final InputFile second = TestHelper.createInputFile("src/generated/java/com/h2m/Util.java");
+    final WorkspacePathResolver resolver = new WorkspacePathResolver(initInputFileIndex(Arrays.asList(first, second)), Arrays.asList(
+      "AlarmClock/src/main/java", "AlarmClock/src/generated/java"));
+
+    assertNull(resolver.find("com/h2m/Util.java"));
+    assertEquals(1, resolver.getFallbackLookups());
+  }
+
+  @Test
+  public void testEmptyWorkspacePath() {
+    final InputFile util = TestHelper.createInputFile("src/main/java/com/h2m/Util.java");
+    final WorkspacePathResolver resolver = new WorkspacePathResolver(initInputFileIndex(Arrays.asList(util)), Arrays.asList("", ".",
+      "AlarmClock/src/main/java"));
+
+    assertEquals(Arrays.asList("src/main/java"), resolver.getSourceRoots());
+    assertSame(util, resolver.find("com/h2m/Util.java"));
+  }
+
+  @Test
+  public void testNoWorkspace() {
+    final FileSystem fileSystem = TestHelper.initFileSystemWithInputFiles(Arrays.asList(TestHelper.createInputFile("src/main/java/com/h2m/Util.java")));
+    final WorkspacePathResolver resolver = new WorkspacePathResolver(new InputFileIndex(fileSystem), Collections.<String> emptyList());
+
+    assertNull(resolver.find("com/h2m/Util.java"));
+    assertEquals(1, resolver.getFallbackLookups());
+    verify(fileSystem, never()).inputFiles(any(FilePredicate.class));
+  }
+
+  private static InputFileIndex initInputFileIndex(final List<InputFile> inputFiles) {
+    return new InputFileIndex(TestHelper.initFileSystemWithInputFiles(inputFiles));
+  }
+}
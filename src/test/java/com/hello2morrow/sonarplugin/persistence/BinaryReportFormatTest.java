@@ -0,0 +1,130 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+
+import javax.xml.bind.JAXBException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryReportFormatTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws IOException, JAXBException {
+    assertRoundTrip("src/test/resources/infoglue21-report.xml");
+    assertRoundTrip(TestHelper.REPORT_PATH);
+    assertRoundTrip(TestHelper.REPORT_PATH2);
+  }
+
+  @Test
+  public void testModifiedReportIsNotReadFromBinary() throws IOException, JAXBException {
+    final File reportFile = copyReport(TestHelper.REPORT_PATH);
+    BinaryReportConverter.convert(reportFile);
+    assertNotNull(BinaryReportReader.readSidecar(reportFile));
+
+    assertTrue(reportFile.setLastModified(reportFile.lastModified() - 10000));
+    assertNull(BinaryReportReader.readSidecar(reportFile));
+  }
+
+  @Test
+  public void testCorruptBinaryIsNotRead() throws IOException, JAXBException {
+    final File reportFile = copyReport(TestHelper.REPORT_PATH);
+    final File sidecar = BinaryReportConverter.convert(reportFile);
+
+    try (RandomAccessFile file = new RandomAccessFile(sidecar, "rw")) {
+      final long position = file.length() / 2;
+      file.seek(position);
+      final int value = file.read();
+      file.seek(position);
+      file.write(value ^ 0xFF);
+    }
+    assertNull(BinaryReportReader.readSidecar(reportFile));
+  }
+
+  @Test
+  public void testConverterCountsFailures() throws IOException {
+    final File reportFile = copyReport(TestHelper.REPORT_PATH);
+    final File missingFile = new File(reportFile.getParentFile(), "missing-report.xml");
+
+    assertEquals(1, BinaryReportConverter.convert(reportFile.getPath(), missingFile.getPath()));
+    assertNotNull(BinaryReportReader.readSidecar(reportFile));
+    assertFalse(BinaryReportFormat.getSidecarFile(missingFile).exists());
+    assertEquals(0, BinaryReportConverter.convert(reportFile.getPath()));
+  }
+
+  @Test
+  public void testReaderUsesBinaryWhenEnabled() throws IOException, JAXBException {
+    final File reportFile = copyReport(TestHelper.REPORT_PATH);
+    final File sidecar = BinaryReportFormat.getSidecarFile(reportFile);
+    final Settings settings = TestHelper.initSettings(reportFile.getPath());
+    final Project project = new Project("hello2morrow:AlarmClock");
+
+    final ReportFileReader reader = new ReportFileReader();
+    reader.readSonargraphReport(project, null, settings);
+    assertFalse("Binary report must only be written if enabled", sidecar.exists());
+
+    settings.setProperty(SonargraphPluginBase.REPORT_BINARY, true);
+    reader.readSonargraphReport(project, null, settings);
+    assertTrue(sidecar.exists());
+    final String expected = TestHelper.marshal(reader.getReport());
+
+    final ReportFileReader binaryReader = new ReportFileReader();
+    binaryReader.readSonargraphReport(project, null, settings);
+    assertNotNull(binaryReader.getReportIndex());
+    assertEquals(expected, TestHelper.marshal(binaryReader.getReport()));
+  }
+
+  private void assertRoundTrip(final String reportPath) throws IOException, JAXBException {
+    final File reportFile = copyReport(reportPath);
+    final ReportContext expected;
+    try (InputStream input = new FileInputStream(reportFile)) {
+      expected = JaxbUnmarshallerPool.getInstance().unmarshal(input);
+    }
+
+    final File sidecar = BinaryReportConverter.convert(reportFile);
+    assertTrue(sidecar.length() < reportFile.length());
+    final ReportContext actual = BinaryReportReader.readSidecar(reportFile);
+    assertNotNull(actual);
+    assertEquals("Reports of " + reportPath + " differ", TestHelper.marshal(expected), TestHelper.marshal(actual));
+  }
+
+  private File copyReport(final String reportPath) throws IOException {
+    return TestHelper.copyReport(reportPath, folder.newFolder("report-" + System.nanoTime()));
+  }
+}
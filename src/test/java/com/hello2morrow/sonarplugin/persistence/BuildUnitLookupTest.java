@@ -0,0 +1,138 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonarQubeUtilities;
+import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import org.junit.Test;
+import org.sonar.api.resources.Project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BuildUnitLookupTest {
+
+  @Test
+  public void testAcceptedNames() {
+    final XsdAttributeRoot core = createBuildUnit("Sonargraph::sonargraph.core");
+    final XsdAttributeRoot longName = createBuildUnit("Sonargraph::Sonargraph.UI[com.hello2morrow]");
+    final XsdAttributeRoot groupArtifact = createBuildUnit("Sonargraph::com.hello2morrow:sonargraph.plugin");
+    final XsdAttributeRoot abbreviated = createBuildUnit("Sonargraph::...hello2morrow:sonargraph.report");
+    final BuildUnitLookup lookup = BuildUnitLookup.create(Arrays.asList(core, longName, groupArtifact, abbreviated));
+
+    assertEquals(Arrays.asList(core), lookup.findAll(new Project("com.hello2morrow:sonargraph.core")));
+    assertEquals(Arrays.asList(core), lookup.findAll(new Project("com.hello2morrow:sonargraph.core", "architect-branch_7.1.8", "test")));
+    assertEquals(Arrays.asList(longName), lookup.findAll(new Project("com.hello2morrow:sonargraph.ui")));
+    assertEquals(Arrays.asList(groupArtifact), lookup.findAll(new Project("com.hello2morrow:sonargraph.plugin")));
+    assertEquals(Arrays.asList(abbreviated), lookup.findAll(new Project("com.hello2morrow:sonargraph.report")));
+    assertTrue(lookup.findAll(new Project("com.hello2morrow:sonargraph.unknown")).isEmpty());
+  }
+
+  @Test
+  public void testAmbiguousNames() {
+    final XsdAttributeRoot first = createBuildUnit("First::module");
+    final XsdAttributeRoot other = createBuildUnit("First::other");
+    final XsdAttributeRoot second = createBuildUnit("Second::Module");
+    final BuildUnitLookup lookup = BuildUnitLookup.create(Arrays.asList(first, other, second));
+
+    final List<XsdAttributeRoot> matches = lookup.findAll(new Project("group:module"));
+    assertEquals(Arrays.asList(first, second), matches);
+  }
+
+  @Test
+  public void testLookupByNames() {
+    final BuildUnitLookup lookup = BuildUnitLookup.createForNames(Arrays.asList("module", "other", "Module", "...h2m:report"));
+
+    assertEquals(Arrays.asList(0, 2), lookup.findPositions(new Project("group:module")));
+    assertEquals(Arrays.asList(1), lookup.findPositions(new Project("group:other")));
+    assertEquals(Arrays.asList(3), lookup.findPositions(new Project("com.h2m:report")));
+    assertTrue(lookup.findPositions(new Project("group:unknown")).isEmpty());
+  }
+
+  @Test
+  public void testSameResultAsMatchingEveryBuildUnit() {
+    final String[] segments = { "com", "h2m", "core", "Core", "ui", "..." };
+    final Random random = new Random(4711);
+
+    for (int round = 0; round < 50; round++) {
+      final List<XsdAttributeRoot> buildUnits = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        buildUnits.add(createBuildUnit("Project::" + createName(random, segments)));
+      }
+      final BuildUnitLookup lookup = BuildUnitLookup.create(buildUnits);
+
+      for (int i = 0; i < 50; i++) {
+        final String key = createKey(random, segments);
+        final Project project = random.nextBoolean() ? new Project(key) : new Project(key, "branch", key);
+        assertEquals("Lookup of '" + project.getKey() + "'", scan(buildUnits, project), lookup.findAll(project));
+      }
+    }
+  }
+
+  private static List<XsdAttributeRoot> scan(final List<XsdAttributeRoot> buildUnits, final Project project) {
+    final List<XsdAttributeRoot> matches = new ArrayList<>();
+    for (final XsdAttributeRoot next : buildUnits) {
+      if (SonarQubeUtilities.buildUnitMatchesAnalyzedProject(SonargraphUtilities.getBuildUnitName(next.getName()), project)) {
+        matches.add(next);
+      }
+    }
+    return matches;
+  }
+
+  private static String createName(final Random random, final String[] segments) {
+    switch (random.nextInt(4)) {
+      case 0:
+        return createSegments(random, segments);
+      case 1:
+        return createSegments(random, segments) + "[" + createSegments(random, segments) + "]";
+      case 2:
+        return createKey(random, segments);
+      default:
+        return "..." + createKey(random, segments);
+    }
+  }
+
+  private static String createKey(final Random random, final String[] segments) {
+    return createSegments(random, segments) + ":" + createSegments(random, segments);
+  }
+
+  private static String createSegments(final Random random, final String[] segments) {
+    final StringBuilder name = new StringBuilder();
+    final int length = 1 + random.nextInt(3);
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        name.append('.');
+      }
+      name.append(segments[random.nextInt(segments.length - 1)]);
+    }
+    return name.toString();
+  }
+
+  private static XsdAttributeRoot createBuildUnit(final String name) {
+    final XsdAttributeRoot buildUnit = new XsdAttributeRoot();
+    buildUnit.setName(name);
+    return buildUnit;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+
+import javax.xml.bind.JAXBException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ByteBufferInputStreamTest {
+
+  @Test
+  public void testRead() {
+    final ByteBufferInputStream input = new ByteBufferInputStream(ByteBuffer.wrap(new byte[] { 1, (byte) 0xFF, 3, 4, 5 }));
+    assertEquals(5, input.available());
+    assertEquals(1, input.read());
+    assertEquals(0xFF, input.read());
+    assertEquals(1, input.skip(1));
+
+    final byte[] bytes = new byte[4];
+    assertEquals(0, input.read(bytes, 0, 0));
+    assertEquals(2, input.read(bytes, 1, 3));
+    assertArrayEquals(new byte[] { 0, 4, 5, 0 }, bytes);
+    assertEquals(-1, input.read());
+    assertEquals(-1, input.read(bytes, 0, 4));
+    assertEquals(0, input.skip(10));
+  }
+
+  @Test
+  public void testMappedFileIsReadCompletely() throws IOException {
+    final File file = new File(TestHelper.REPORT_PATH);
+    try (InputStream input = ByteBufferInputStream.map(file)) {
+      assertNotNull(input);
+      long count = 0;
+      final byte[] bytes = new byte[4096];
+      int read;
+      while ((read = input.read(bytes, 0, bytes.length)) != -1) {
+        count += read;
+      }
+      assertEquals(file.length(), count);
+    }
+  }
+
+  @Test
+  public void testMemoryMappedReportIsEquivalentToStreamedReport() throws JAXBException {
+    final Project project = new Project("hello2morrow:AlarmClock");
+    final Settings settings = TestHelper.initSettings(TestHelper.REPORT_PATH);
+    final ReportFileReader streamReader = new StaxReportFileReader();
+    streamReader.readSonargraphReport(project, null, settings);
+
+    settings.setProperty(SonargraphPluginBase.REPORT_MEMORY_MAPPED, true);
+    final ReportFileReader mappedReader = new StaxReportFileReader();
+    mappedReader.readSonargraphReport(project, null, settings);
+
+    assertNotNull(mappedReader.getReport());
+    assertEquals(TestHelper.marshal(streamReader.getReport()), TestHelper.marshal(mappedReader.getReport()));
+    assertEquals(TestHelper.marshalRecords(streamReader.getReportIndex()), TestHelper.marshalRecords(mappedReader.getReportIndex()));
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JaxbUnmarshallerPoolTest {
+
+  private static final String[] REPORTS = { "src/test/resources/infoglue21-report.xml", TestHelper.REPORT_PATH, TestHelper.REPORT_PATH2 };
+
+  @Test
+  public void testContextIsCreatedOnce() throws JAXBException {
+    final JaxbUnmarshallerPool pool = new JaxbUnmarshallerPool(getClass().getClassLoader());
+    assertSame(pool.getContext(), pool.getContext());
+    assertSame(JaxbUnmarshallerPool.getInstance(), JaxbUnmarshallerPool.getInstance());
+  }
+
+  @Test
+  public void testUnmarshallerIsReused() throws JAXBException, IOException {
+    final JaxbUnmarshallerPool pool = new JaxbUnmarshallerPool(getClass().getClassLoader());
+    assertNotNull(unmarshal(pool, TestHelper.REPORT_PATH));
+    assertEquals(1, pool.getPoolSize());
+    final Unmarshaller unmarshaller = pool.acquire();
+    assertEquals(0, pool.getPoolSize());
+    pool.release(unmarshaller);
+    assertNotNull(unmarshal(pool, TestHelper.REPORT_PATH2));
+    assertEquals(1, pool.getPoolSize());
+  }
+
+  @Test
+  public void testConcurrentUnmarshalling() throws InterruptedException, ExecutionException {
+    final JaxbUnmarshallerPool pool = new JaxbUnmarshallerPool(getClass().getClassLoader());
+    final int threads = 4;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<ReportContext>> results = new ArrayList<>();
+      for (int i = 0; i < threads * 3; i++) {
+        final String report = REPORTS[i % REPORTS.length];
+        results.add(executor.submit(new Callable<ReportContext>() {
+          @Override
+          public ReportContext call() throws Exception {
+            return unmarshal(pool, report);
+          }
+        }));
+      }
+      for (final Future<ReportContext> result : results) {
+        assertNotNull(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue("Unmarshallers must be returned to the pool", pool.getPoolSize() >= 1 && pool.getPoolSize() <= threads);
+  }
+
+  private static ReportContext unmarshal(final JaxbUnmarshallerPool pool, final String report) throws JAXBException, IOException {
+    try (InputStream input = new FileInputStream(report)) {
+      return pool.unmarshal(input);
+    }
+  }
+}
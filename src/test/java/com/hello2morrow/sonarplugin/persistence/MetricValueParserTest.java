@@ -0,0 +1,111 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import org.junit.Test;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricValueParserTest {
+
+  private static final String ALPHABET = "0123456789,.-< ";
+
+  private final DecimalFormat floatFormat = createFormat("###,##0.00", false);
+  private final DecimalFormat integerFormat = createFormat("###,##0", true);
+
+  @Test
+  public void testReportValues() {
+    assertEquals(1185.0, MetricValueParser.parse("1,185"), 0.0);
+    assertEquals(0.0, MetricValueParser.parse("0.00"), 0.0);
+    assertEquals(0.75, MetricValueParser.parse("0.75"), 0.0);
+    assertEquals(1234567.89, MetricValueParser.parse("1,234,567.89"), 0.0);
+    assertEquals(0.0, MetricValueParser.parse("< 0.01"), 0.0);
+    assertEquals(-3.5, MetricValueParser.parse("-3.5"), 0.0);
+    assertEquals(12.0, MetricValueParser.parse("12 lines"), 0.0);
+    assertEquals(42.0, MetricValueParser.parse("x42", 1, 3), 0.0);
+    assertTrue(Double.isNaN(MetricValueParser.parse("")));
+    assertTrue(Double.isNaN(MetricValueParser.parse("n/a")));
+    assertTrue(Double.isNaN(MetricValueParser.parse("-.")));
+  }
+
+  @Test
+  public void testManyDigits() {
+    assertSameAsDecimalFormat("12345678901234567890");
+    assertSameAsDecimalFormat("0.1234567890123456789");
+    assertSameAsDecimalFormat("0.000000000000000000000001");
+    assertSameAsDecimalFormat("9,007,199,254,740,993");
+  }
+
+  @Test
+  public void testFormattedValuesAgainstDecimalFormat() {
+    final Random random = new Random(4711);
+    for (int i = 0; i < 100000; i++) {
+      final double value = (random.nextDouble() - 0.1) * Math.pow(10, random.nextInt(12));
+      assertSameAsDecimalFormat(floatFormat.format(value));
+      assertSameAsDecimalFormat(integerFormat.format(value));
+    }
+  }
+
+  @Test
+  public void testRandomInputAgainstDecimalFormat() {
+    final Random random = new Random(815);
+    final StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 200000; i++) {
+      value.setLength(0);
+      final int length = random.nextInt(24);
+      for (int j = 0; j < length; j++) {
+        value.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+      }
+      assertSameAsDecimalFormat(value.toString());
+    }
+  }
+
+  /**
+   * Compares the parser with the former parsing through the shared decimal formats. The sign of zero is not compared, the decimal format
+   * returns a negative zero for "-0.00" but not for "-0".
+   */
+  private void assertSameAsDecimalFormat(final String value) {
+    double expected;
+    if (value.startsWith(MetricValueParser.LESS_THAN_MINIMUM)) {
+      expected = 0.0;
+    } else {
+      try {
+        expected = (value.contains(".") ? floatFormat : integerFormat).parse(value).doubleValue() + 0.0;
+      } catch (final ParseException e) {
+        expected = Double.NaN;
+      }
+    }
+    assertEquals("'" + value + "'", Double.doubleToLongBits(expected), Double.doubleToLongBits(MetricValueParser.parse(value)));
+  }
+
+  private static DecimalFormat createFormat(final String pattern, final boolean integerOnly) {
+    final DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.ENGLISH);
+    symbols.setGroupingSeparator(',');
+    symbols.setDecimalSeparator('.');
+    final DecimalFormat format = new DecimalFormat(pattern, symbols);
+    format.setParseIntegerOnly(integerOnly);
+    return format;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+
+import javax.xml.bind.JAXBException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelReportFileReaderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testParallelReaderIsEquivalentToJaxbReader() throws IOException, JAXBException {
+    for (final String reportPath : new String[] { "src/test/resources/infoglue21-report.xml", TestHelper.REPORT_PATH, TestHelper.REPORT_PATH2 }) {
+      final File reportFile = copyReport(reportPath);
+      final String expected = TestHelper.marshal(read(new ReportFileReader(), reportFile, 1));
+      for (final int parallelism : new int[] { 1, 2, 4 }) {
+        final ReportContext report = read(new ParallelReportFileReader(), reportFile, parallelism);
+        assertEquals(reportPath + " with parallelism " + parallelism, expected, TestHelper.marshal(report));
+      }
+    }
+  }
+
+  @Test
+  public void testFilteredSectionsAreSkipped() throws IOException, JAXBException {
+    final File reportFile = copyReport(TestHelper.REPORT_PATH);
+    final ReportSectionFilter filter = ReportSectionFilter.forActiveRules(Arrays.asList(SonargraphPluginBase.ARCH_RULE_KEY,
+      SonargraphPluginBase.WORKSPACE_RULE_KEY));
+    final ReportContext expected = read(new ReportFileReader(null, filter), reportFile, 1);
+    assertEquals(TestHelper.marshal(expected), TestHelper.marshal(read(new ParallelReportFileReader(null, filter), reportFile, 4)));
+  }
+
+  @Test
+  public void testReaderIsSelectedByProperty() {
+    final Settings settings = TestHelper.initSettings(TestHelper.REPORT_PATH);
+    settings.setProperty(SonargraphPluginBase.REPORT_READER, SonargraphPluginBase.REPORT_READER_PARALLEL);
+    assertTrue(ReportFileReader.createReader(settings, null) instanceof ParallelReportFileReader);
+  }
+
+  private static ReportContext read(final ReportFileReader reader, final File reportFile, final int parallelism) {
+    final Settings settings = TestHelper.initSettings(reportFile.getPath());
+    settings.setProperty(SonargraphPluginBase.REPORT_PARALLELISM, parallelism);
+    return TestHelper.readReport(reader, settings);
+  }
+
+  private File copyReport(final String reportPath) throws IOException {
+    return TestHelper.copyReport(reportPath, folder.newFolder("parallel-" + System.nanoTime()));
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdTask;
+import com.hello2morrow.sonarplugin.xsd.XsdTypeRelation;
+import com.hello2morrow.sonarplugin.xsd.XsdWarning;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
+import org.junit.Test;
+import org.sonar.api.resources.Project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RecordAttributesTest {
+
+  @Test
+  public void testResolve() {
+    final List<XsdAttribute> list = new ArrayList<>();
+    PersistenceUtilities.addAttributeToList(list, "Build unit", "AlarmClock::AlarmClock");
+    PersistenceUtilities.addAttributeToList(list, "Priority", "High");
+    PersistenceUtilities.addAttributeToList(list, "Unknown", "value");
+    PersistenceUtilities.addAttributeToList(list, "Priority", "Low");
+
+    final RecordAttributes attributes = RecordAttributes.resolve(list);
+    assertEquals("AlarmClock::AlarmClock", attributes.getBuildUnit());
+    assertEquals("High", attributes.getPriority());
+    assertEquals("High", attributes.get(WellKnownAttribute.PRIORITY));
+    assertNull(attributes.getDescription());
+  }
+
+  @Test
+  public void testForName() {
+    for (final WellKnownAttribute next : WellKnownAttribute.values()) {
+      assertSame(next, WellKnownAttribute.forName(next.getName()));
+    }
+    assertNull(WellKnownAttribute.forName("Unknown"));
+  }
+
+  @Test
+  public void testResolveIsEquivalentToGetAttribute() {
+    for (final String reportPath : new String[] { "src/test/resources/infoglue21-report.xml", TestHelper.REPORT_PATH, TestHelper.REPORT_PATH2 }) {
+      final List<List<XsdAttribute>> records = collectRecords(reportPath);
+      assertFalse(records.isEmpty());
+      for (final List<XsdAttribute> record : records) {
+        final RecordAttributes attributes = RecordAttributes.resolve(record);
+        for (final WellKnownAttribute next : WellKnownAttribute.values()) {
+          assertEquals(PersistenceUtilities.getAttribute(record, next.getName()), attributes.get(next));
+        }
+      }
+    }
+  }
+
+  private static List<List<XsdAttribute>> collectRecords(final String reportPath) {
+    final ReportFileReader reader = new ReportFileReader();
+    reader.readSonargraphReport(new Project("hello2morrow:AlarmClock"), null, TestHelper.initSettings(reportPath));
+    final ReportContext report = reader.getReport();
+
+    final List<List<XsdAttribute>> records = new ArrayList<>();
+    for (final XsdTask task : report.getTasks().getTask()) {
+      records.add(task.getAttribute());
+    }
+    for (final XsdArchitectureViolation violation : report.getViolations().getArchitectureViolations()) {
+      for (final XsdTypeRelation relation : violation.getTypeRelation()) {
+        records.add(relation.getAttribute());
+      }
+    }
+    for (final XsdWarningsByAttributeGroup group : report.getWarnings().getWarningsByAttributeGroup()) {
+      for (final XsdWarningsByAttribute warningsByAttribute : group.getWarningsByAttribute()) {
+        for (final XsdWarning warning : warningsByAttribute.getWarning()) {
+          records.add(warning.getAttribute());
+        }
+      }
+    }
+    return records;
+  }
+}
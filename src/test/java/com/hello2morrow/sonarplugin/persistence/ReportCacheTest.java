@@ -0,0 +1,72 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class ReportCacheTest {
+
+  @Test
+  public void testReportIsParsedOnlyOnce() {
+    final ReportCache cache = new ReportCache();
+    final Settings settings = TestHelper.initSettings(TestHelper.REPORT_PATH2);
+
+    final Project parent = new Project("hello2morrow:AlarmClockMain");
+    final Project alarmClock = new Project("hello2morrow:AlarmClock");
+    alarmClock.setParent(parent);
+    final Project foundation = new Project("hello2morrow:Foundation");
+    foundation.setParent(parent);
+
+    final ReportFileReader reader1 = new ReportFileReader(cache);
+    reader1.readSonargraphReport(alarmClock, null, settings);
+    assertNotNull(reader1.getReport());
+    cache.moduleFinished(alarmClock);
+
+    final ReportFileReader reader2 = new ReportFileReader(cache);
+    reader2.readSonargraphReport(foundation, null, settings);
+    assertSame("Report must be taken from cache", reader1.getReport(), reader2.getReport());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    cache.moduleFinished(foundation);
+    assertEquals(1, cache.size());
+
+    cache.moduleFinished(parent);
+    assertEquals("Cache must be evicted after the last module", 0, cache.size());
+    assertEquals(0, cache.getHits());
+  }
+
+  @Test
+  public void testMissingReportIsNotCached() {
+    final ReportCache cache = new ReportCache();
+    final Settings settings = TestHelper.initSettings("fakeDir/ReporFileName.xml");
+    final ReportFileReader reader = new ReportFileReader(cache);
+    reader.readSonargraphReport(new Project("test"), null, settings);
+    assertEquals(0, cache.size());
+    assertEquals(1, cache.getMisses());
+
+    cache.moduleFinished(new Project("test"));
+    assertEquals(0, cache.getMisses());
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex.IndexedTypeRelation;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import com.hello2morrow.sonarplugin.xsd.XsdPosition;
+import com.hello2morrow.sonarplugin.xsd.XsdTypeRelation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReportDiagnosticsTest {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final Project PROJECT = new Project("hello2morrow:AlarmClock");
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testValuesAreParsedAsIntegers() {
+    final ReportFileReader reader = new ReportFileReader();
+    reader.readSonargraphReport(PROJECT, null, TestHelper.initSettings(TestHelper.REPORT_PATH));
+    final ReportContext report = reader.getReport();
+    assertNotNull(report);
+    assertTrue(reader.getDiagnostics().isEmpty());
+
+    assertEquals(Integer.valueOf(7), getFirstPosition(reader).getLine());
+    assertNotNull(report.getViolations().getNumberOf());
+    assertNotNull(report.getTasks().getNumberOf());
+  }
+
+  @Test
+  public void testMalformedValuesAreCollectedByJaxbReader() throws IOException {
+    assertMalformedValuesAreCollected(SonargraphPluginBase.REPORT_READER_JAXB);
+  }
+
+  @Test
+  public void testMalformedValuesAreCollectedByStaxReader() throws IOException {
+    assertMalformedValuesAreCollected(SonargraphPluginBase.REPORT_READER_STAX);
+  }
+
+  @Test
+  public void testMalformedValuesAreCollectedByParallelReader() throws IOException {
+    assertMalformedValuesAreCollected(SonargraphPluginBase.REPORT_READER_PARALLEL);
+  }
+
+  @Test
+  public void testMalformedValuesAreKeptNullInBinaryReport() throws IOException {
+    final File reportFile = createMalformedReport();
+    final Settings settings = TestHelper.initSettings(reportFile.getPath());
+    settings.setProperty(SonargraphPluginBase.REPORT_BINARY, Boolean.TRUE);
+
+    final ReportFileReader xmlReader = new ReportFileReader();
+    xmlReader.readSonargraphReport(PROJECT, null, settings);
+    assertFalse(xmlReader.getDiagnostics().isEmpty());
+
+    final ReportFileReader binaryReader = new ReportFileReader();
+    binaryReader.readSonargraphReport(PROJECT, null, settings);
+    assertTrue(binaryReader.getDiagnostics().isEmpty());
+    assertNull(getFirstPosition(binaryReader).getLine());
+    assertEquals(Integer.valueOf(13), getSecondPosition(binaryReader).getLine());
+  }
+
+  private void assertMalformedValuesAreCollected(final String readerName) throws IOException {
+    final File reportFile = createMalformedReport();
+    final Settings settings = TestHelper.initSettings(reportFile.getPath());
+    settings.setProperty(SonargraphPluginBase.REPORT_READER, readerName);
+    settings.setProperty(SonargraphPluginBase.REPORT_SECTION_INDEX, Boolean.TRUE);
+
+    final ReportFileReader reader = ReportFileReader.createReader(settings, null);
+    reader.readSonargraphReport(PROJECT, null, settings);
+    final ReportContext report = reader.getReport();
+    assertNotNull(readerName, report);
+
+    assertNull(readerName, getFirstPosition(reader).getLine());
+    assertEquals(readerName, 0, PersistenceUtilities.getLine(getFirstPosition(reader)));
+    assertEquals(readerName, Integer.valueOf(13), getSecondPosition(reader).getLine());
+    assertNull(readerName, report.getTasks().getNumberOf());
+    assertEquals(readerName, 2, reader.getDiagnostics().getMessages().size());
+  }
+
+  /**
+   * @return a copy of the test report with a malformed line of the first position and a malformed number of tasks
+   */
+  private File createMalformedReport() throws IOException {
+    String content = new String(Files.readAllBytes(new File(TestHelper.REPORT_PATH).toPath()), UTF8);
+    content = content.replaceFirst("line=\"7\"", "line=\"7a\"");
+    content = content.replaceFirst("<tasks numberOf=\"(\\d+)\"", "<tasks numberOf=\"x$1\"");
+    final File reportFile = new File(folder.newFolder("diagnostics-" + System.nanoTime()), "report.xml");
+    Files.write(reportFile.toPath(), content.getBytes(UTF8));
+    return reportFile;
+  }
+
+  private static XsdPosition getFirstPosition(final ReportFileReader reader) {
+    return getFirstTypeRelation(reader).getPosition().get(0);
+  }
+
+  private static XsdPosition getSecondPosition(final ReportFileReader reader) {
+    return getFirstTypeRelation(reader).getPosition().get(1);
+  }
+
+  private static XsdTypeRelation getFirstTypeRelation(final ReportFileReader reader) {
+    final XsdArchitectureViolation violation = reader.getReport().getViolations().getArchitectureViolations().get(0);
+    if (!violation.getTypeRelation().isEmpty()) {
+      return violation.getTypeRelation().get(0);
+    }
+
+    // The StAX reader only keeps the type relations in the index
+    final ReportIndex index = reader.getReportIndex();
+    for (final XsdAttributeRoot buildUnit : reader.getReport().getBuildUnits().getBuildUnit()) {
+      for (final IndexedTypeRelation relation : index.getTypeRelations(index.getBuildUnitId(buildUnit))) {
+        if (relation.getViolation() == violation) {
+          return relation.getTypeRelation();
+        }
+      }
+    }
+    throw new AssertionError("No type relation of the first violation");
+  }
+}
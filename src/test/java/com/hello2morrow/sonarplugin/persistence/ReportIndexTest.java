@@ -0,0 +1,186 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.BuildUnitId;
+import com.hello2morrow.sonarplugin.foundation.DuplicateCodeBlock;
+import com.hello2morrow.sonarplugin.foundation.SonargraphUtilities;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex.IndexedTask;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex.IndexedTypeRelation;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex.IndexedWarning;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import com.hello2morrow.sonarplugin.xsd.XsdCycleGroup;
+import com.hello2morrow.sonarplugin.xsd.XsdTask;
+import com.hello2morrow.sonarplugin.xsd.XsdTypeRelation;
+import com.hello2morrow.sonarplugin.xsd.XsdWarning;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
+import org.junit.Test;
+import org.sonar.api.resources.Project;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ReportIndexTest {
+
+  @Test
+  public void testIndexContainsEveryElementOnce() {
+    checkIndex("src/test/resources/infoglue21-report.xml");
+    checkIndex(TestHelper.REPORT_PATH);
+    checkIndex(TestHelper.REPORT_PATH2);
+  }
+
+  @Test
+  public void testIndexOfMultiModuleReport() {
+    final ReportIndex index = readIndex(TestHelper.REPORT_PATH2);
+    assertEquals(1, index.getTasks("AlarmClock").size() + index.getTasks("Foundation").size());
+    assertEquals(0, index.getTasks("unknown").size());
+    assertEquals(0, index.getWarnings("unknown", ReportIndex.DUPLICATE_CODE_GROUP).size());
+    final BuildUnitId alarmClock = index.getBuildUnitIds().find("AlarmClock");
+    assertEquals(Arrays.asList("AlarmClock/src/main/java", "AlarmClock/target/classes"), index.getWorkspacePaths(alarmClock));
+    assertNull("Names looked up by the getters must not be interned", index.getBuildUnitIds().find("unknown"));
+    for (final XsdAttributeRoot next : index.getReport().getBuildUnits().getBuildUnit()) {
+      assertSame(index.getBuildUnitIds().find(SonargraphUtilities.getBuildUnitName(next.getName())), index.getBuildUnitId(next));
+    }
+  }
+
+  @Test
+  public void testNoReport() {
+    assertNull(ReportIndex.create(null));
+  }
+
+  private static ReportIndex readIndex(final String reportPath) {
+    final ReportFileReader reader = new ReportFileReader();
+    reader.readSonargraphReport(new Project("hello2morrow:AlarmClock"), null, TestHelper.initSettings(reportPath));
+    final ReportIndex index = reader.getReportIndex();
+    assertNotNull(index);
+    assertSame(reader.getReport(), index.getReport());
+    return index;
+  }
+
+  private static void checkIndex(final String reportPath) {
+    final ReportIndex index = readIndex(reportPath);
+    final ReportContext report = index.getReport();
+
+    final Set<String> buildUnits = new HashSet<>();
+    for (final XsdAttributeRoot buildUnit : report.getBuildUnits().getBuildUnit()) {
+      buildUnits.add(SonargraphUtilities.getBuildUnitName(buildUnit.getName()));
+    }
+
+    int tasks = 0;
+    for (final XsdTask task : report.getTasks().getTask()) {
+      final String buildUnit = SonargraphUtilities.getBuildUnitName(PersistenceUtilities.getAttribute(task.getAttribute(), SonargraphUtilities.BUILD_UNIT));
+      if (buildUnits.contains(buildUnit)) {
+        tasks++;
+        int found = 0;
+        for (final IndexedTask entry : index.getTasks(buildUnit)) {
+          if (entry.getTask() == task) {
+            found++;
+          }
+        }
+        assertEquals(1, found);
+      }
+    }
+
+    int relations = 0;
+    for (final XsdArchitectureViolation violation : report.getViolations().getArchitectureViolations()) {
+      for (final XsdTypeRelation relation : violation.getTypeRelation()) {
+        final String buildUnit = SonargraphUtilities.getBuildUnitName(PersistenceUtilities.getAttribute(relation.getAttribute(), "From build unit"));
+        if (buildUnits.contains(buildUnit)) {
+          relations++;
+          int found = 0;
+          for (final IndexedTypeRelation entry : index.getTypeRelations(buildUnit)) {
+            if (entry.getTypeRelation() == relation) {
+              assertSame(violation, entry.getViolation());
+              found++;
+            }
+          }
+          assertEquals(1, found);
+        }
+      }
+    }
+
+    int warnings = 0;
+    for (final XsdWarningsByAttributeGroup group : report.getWarnings().getWarningsByAttributeGroup()) {
+      for (final XsdWarningsByAttribute warningsByAttribute : group.getWarningsByAttribute()) {
+        for (final XsdWarning warning : warningsByAttribute.getWarning()) {
+          final String buildUnit = SonargraphUtilities.getBuildUnitName(PersistenceUtilities.getAttribute(warning.getAttribute(), SonargraphUtilities.BUILD_UNIT));
+          if (buildUnits.contains(buildUnit)) {
+            warnings++;
+            int found = 0;
+            for (final IndexedWarning entry : index.getWarnings(buildUnit, group.getAttributeGroup())) {
+              if (entry.getWarning() == warning) {
+                assertEquals(warningsByAttribute.getAttributeName(), entry.getAttributeName());
+                found++;
+              }
+            }
+            assertEquals(1, found);
+          }
+        }
+      }
+    }
+
+    int cycleGroups = 0;
+    for (final XsdCycleGroup group : report.getCycleGroups().getCycleGroup()) {
+      final String buildUnit = PersistenceUtilities.getBuildUnitName(group);
+      if (buildUnits.contains(buildUnit)) {
+        cycleGroups++;
+        assertEquals(1, count(index.getCycleGroups(buildUnit), group));
+      }
+    }
+
+    int indexedTasks = 0;
+    int indexedRelations = 0;
+    int indexedWarnings = 0;
+    int indexedCycleGroups = 0;
+    for (final String buildUnit : buildUnits) {
+      indexedTasks += index.getTasks(buildUnit).size();
+      indexedRelations += index.getTypeRelations(buildUnit).size();
+      indexedCycleGroups += index.getCycleGroups(buildUnit).size();
+      for (final XsdWarningsByAttributeGroup group : report.getWarnings().getWarningsByAttributeGroup()) {
+        indexedWarnings += index.getWarnings(buildUnit, group.getAttributeGroup()).size();
+      }
+      for (final DuplicateCodeBlock block : index.getDuplicateCodeBlocks(buildUnit)) {
+        assertEquals(1, count(index.getDuplicateCodeBlockGroup(block.getBlockId()), block));
+      }
+    }
+    assertEquals(tasks, indexedTasks);
+    assertEquals(relations, indexedRelations);
+    assertEquals(warnings, indexedWarnings);
+    assertEquals(cycleGroups, indexedCycleGroups);
+  }
+
+  private static int count(final Iterable<?> elements, final Object element) {
+    int count = 0;
+    for (final Object next : elements) {
+      if (next == element) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
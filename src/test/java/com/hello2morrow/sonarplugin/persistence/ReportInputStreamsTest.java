@@ -0,0 +1,136 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Settings;
+
+import javax.xml.bind.JAXBException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReportInputStreamsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testCompressedReportsAreEquivalentToRawReport() throws IOException, JAXBException {
+    final File raw = new File(TestHelper.REPORT_PATH);
+    final String expected = read(new ReportFileReader(), raw, false);
+
+    for (final File compressed : compress(raw)) {
+      assertTrue(compressed.length() < raw.length());
+      assertEquals(compressed.getName(), expected, read(new ReportFileReader(), compressed, false));
+      assertEquals(compressed.getName(), expected, read(new StaxReportFileReader(), compressed, false));
+      assertEquals(compressed.getName(), expected, read(new StaxReportFileReader(), compressed, true));
+    }
+  }
+
+  @Test
+  public void testConverterReadsCompressedReports() throws IOException, JAXBException {
+    final File raw = new File(TestHelper.REPORT_PATH);
+    final String expected;
+    try (InputStream input = new FileInputStream(raw)) {
+      expected = TestHelper.marshal(JaxbUnmarshallerPool.getInstance().unmarshal(input));
+    }
+
+    for (final File compressed : compress(raw)) {
+      assertEquals(compressed.getName(), 0, BinaryReportConverter.convert(compressed.getPath()));
+      assertEquals(compressed.getName(), expected, TestHelper.marshal(BinaryReportReader.readSidecar(compressed)));
+    }
+  }
+
+  @Test
+  public void testArchiveWithoutReport() throws IOException {
+    final File zip = new File(folder.getRoot(), "report.zip");
+    try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip))) {
+      output.putNextEntry(new ZipEntry("readme.txt"));
+      output.write("Sonargraph report".getBytes("UTF-8"));
+    }
+
+    try {
+      ReportInputStreams.open(zip, false);
+      fail("Archive without XML report must not be accepted");
+    } catch (final IOException e) {
+      assertTrue(e.getMessage().contains("readme.txt"));
+    }
+  }
+
+  @Test
+  public void testDefaultReportNameAcceptsCompressedReport() throws IOException {
+    final File reportDir = folder.newFolder("sonargraph-sonar-plugin");
+    final FileSystem fileSystem = mock(FileSystem.class);
+    final File workDir = new File(folder.getRoot(), "work");
+    when(fileSystem.workDir()).thenReturn(workDir);
+    final Settings settings = new Settings();
+
+    assertFalse(ReportFileReader.hasSonargraphReport(fileSystem, settings));
+    assertTrue(new File(reportDir, "sonargraph-sonar-report.zip").createNewFile());
+    assertTrue(ReportFileReader.hasSonargraphReport(fileSystem, settings));
+  }
+
+  /**
+   * @return the gzip and the zip archive of the raw report
+   */
+  private File[] compress(final File raw) throws IOException {
+    final File gzip = new File(folder.getRoot(), "report.xml.gz");
+    try (OutputStream output = new GZIPOutputStream(new FileOutputStream(gzip))) {
+      Files.copy(raw.toPath(), output);
+    }
+    final File zip = new File(folder.getRoot(), "report.zip");
+    try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip))) {
+      output.putNextEntry(new ZipEntry("readme.txt"));
+      output.write("Sonargraph report".getBytes("UTF-8"));
+      output.putNextEntry(new ZipEntry("reports/sonargraph-sonar-report.xml"));
+      Files.copy(raw.toPath(), output);
+    }
+    return new File[] { gzip, zip };
+  }
+
+  /**
+   * @return the indexed records of the report as XML
+   */
+  private static String read(final ReportFileReader reader, final File reportFile, final boolean memoryMapped) throws JAXBException {
+    final Settings settings = TestHelper.initSettings(reportFile.getPath());
+    settings.setProperty(SonargraphPluginBase.REPORT_MEMORY_MAPPED, memoryMapped);
+    TestHelper.readReport(reader, settings);
+    return TestHelper.marshalRecords(reader.getReportIndex());
+  }
+}
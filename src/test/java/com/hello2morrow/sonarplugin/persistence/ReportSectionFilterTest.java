@@ -0,0 +1,133 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+
+import javax.xml.bind.JAXBException;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReportSectionFilterTest {
+
+  @Test
+  public void testOnlyViolationsAreReadForArchitectureRule() throws JAXBException {
+    final ReportSectionFilter filter = ReportSectionFilter.forActiveRules(Arrays.asList(SonargraphPluginBase.ARCH_RULE_KEY));
+    final ReportFileReader reader = new StaxReportFileReader(null, filter);
+    final ReportContext report = TestHelper.readReport(reader, TestHelper.initSettings(TestHelper.REPORT_PATH));
+
+    assertNotNull(report.getGeneral());
+    assertNotNull(report.getBuildUnits());
+    assertNotNull(report.getViolations());
+    assertNull(report.getWarnings());
+    assertNull(report.getTasks());
+    assertNull(report.getCycleGroups());
+    assertNull(report.getConsistencyProblems());
+    assertTrue(report.getExclusions().isEmpty());
+    assertTrue(report.getMetrics().isEmpty());
+
+    assertSameAsFilteredReport(filter, reader.getReportIndex());
+  }
+
+  @Test
+  public void testOnlyWarningsOfActiveRulesAreRead() throws JAXBException {
+    final ReportSectionFilter filter = ReportSectionFilter.forActiveRules(Arrays.asList(SonargraphPluginBase.DUPLICATE_RULE_KEY,
+      SonargraphPluginBase.TASK_RULE_KEY));
+    final ReportFileReader reader = new StaxReportFileReader(null, filter);
+    final ReportContext report = TestHelper.readReport(reader, TestHelper.initSettings(TestHelper.REPORT_PATH));
+
+    assertNull(report.getViolations());
+    assertNotNull(report.getTasks());
+    assertEquals(1, report.getWarnings().getWarningsByAttributeGroup().size());
+    assertEquals(ReportIndex.DUPLICATE_CODE_GROUP, report.getWarnings().getWarningsByAttributeGroup().get(0).getAttributeGroup());
+
+    assertSameAsFilteredReport(filter, reader.getReportIndex());
+  }
+
+  @Test
+  public void testSectionIndexSkipsSections() throws JAXBException {
+    final ReportSectionFilter filter = ReportSectionFilter.forActiveRules(Arrays.asList(SonargraphPluginBase.CYCLE_GROUP_RULE_KEY,
+      SonargraphPluginBase.THRESHOLD_RULE_KEY));
+    final Settings settings = TestHelper.initSettings(TestHelper.REPORT_PATH2);
+    final ReportFileReader streamedReader = new StaxReportFileReader(null, filter);
+    final ReportContext streamed = TestHelper.readReport(streamedReader, settings);
+
+    settings.setProperty(SonargraphPluginBase.REPORT_SECTION_INDEX, true);
+    try {
+      final ReportFileReader indexedReader = new StaxReportFileReader(null, filter);
+      final ReportContext indexed = TestHelper.readReport(indexedReader, settings);
+      assertNotNull(indexed.getCycleGroups());
+      assertEquals(TestHelper.marshal(streamed), TestHelper.marshal(indexed));
+      assertEquals(TestHelper.marshalRecords(streamedReader.getReportIndex()), TestHelper.marshalRecords(indexedReader.getReportIndex()));
+    } finally {
+      new File(TestHelper.REPORT_PATH2 + ReportSectionIndex.FILE_EXTENSION).delete();
+    }
+  }
+
+  @Test
+  public void testFilterIsPartOfCacheKey() {
+    final ReportCache cache = new ReportCache();
+    final Settings settings = TestHelper.initSettings(TestHelper.REPORT_PATH);
+    final ReportSectionFilter architecture = ReportSectionFilter.forActiveRules(Arrays.asList(SonargraphPluginBase.ARCH_RULE_KEY));
+
+    final ReportContext filtered = TestHelper.readReport(new StaxReportFileReader(cache, architecture), settings);
+    final ReportContext complete = TestHelper.readReport(new StaxReportFileReader(cache, ReportSectionFilter.ALL), settings);
+    assertNull(filtered.getTasks());
+    assertNotNull(complete.getTasks());
+    assertEquals(2, cache.getMisses());
+
+    final ReportSectionFilter sameFilter = ReportSectionFilter.forActiveRules(Arrays.asList(SonargraphPluginBase.ARCH_RULE_KEY));
+    TestHelper.readReport(new StaxReportFileReader(cache, sameFilter), settings);
+    assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  public void testAllIncludesEverySection() {
+    assertTrue(ReportSectionFilter.ALL.isAll());
+    assertTrue(ReportSectionFilter.ALL.includesSection("metrics"));
+    assertTrue(ReportSectionFilter.ALL.includesWarnings("Unknown"));
+    final ReportSectionFilter none = ReportSectionFilter.forActiveRules(Arrays.<String> asList());
+    assertFalse(none.isAll());
+    assertTrue(none.includesSection("buildUnits"));
+    assertFalse(none.includesSection("warnings"));
+    assertFalse(none.includesWarnings("Threshold"));
+  }
+
+  /**
+   * The StAX reader skips while parsing, the JAXB reader removes the sections afterwards; both must yield the same records.
+   */
+  private static void assertSameAsFilteredReport(final ReportSectionFilter filter, final ReportIndex index) throws JAXBException {
+    final Settings settings = TestHelper.initSettings(TestHelper.REPORT_PATH);
+    final ReportFileReader filteredReader = new ReportFileReader(null, filter);
+    TestHelper.readReport(filteredReader, settings);
+    assertEquals(TestHelper.marshalRecords(filteredReader.getReportIndex()), TestHelper.marshalRecords(index));
+    final ReportContext complete = TestHelper.readReport(new ReportFileReader(), settings);
+    assertEquals(TestHelper.marshalRecords(ReportIndex.create(filter.apply(complete))), TestHelper.marshalRecords(index));
+  }
+}
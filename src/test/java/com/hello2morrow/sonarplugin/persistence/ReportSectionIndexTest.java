@@ -0,0 +1,140 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+
+import javax.xml.bind.JAXBException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReportSectionIndexTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSectionsOfReport() throws IOException {
+    final File reportFile = TestHelper.copyReport(TestHelper.REPORT_PATH, folder.getRoot());
+    final ReportSectionIndex index = ReportSectionIndex.create(reportFile);
+    assertNotNull(index);
+
+    final String content = new String(Files.readAllBytes(reportFile.toPath()), "UTF-8");
+    assertTrue(content.substring(0, (int) index.getPrologEnd()).endsWith(">"));
+    assertTrue(content.substring(0, (int) index.getPrologEnd()).contains("<reportContext"));
+    assertEquals("general", index.getSections().get(0).getName());
+    for (final ReportSectionIndex.Section section : index.getSections()) {
+      final String text = content.substring((int) section.getStart(), (int) section.getEnd());
+      assertTrue(text, text.startsWith("<" + section.getName()));
+      assertTrue(text, text.endsWith("</" + section.getName() + ">") || text.endsWith("/>"));
+    }
+  }
+
+  @Test
+  public void testMarkupInsideCommentsAndAttributes() throws IOException {
+    final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- <tasks> --->\n<reportContext name=\"a>b\">"
+      + "<general description='&lt;/general&gt;'><![CDATA[</general>]]]></general><tasks/>"
+      + "<warnings><!----><warningsByAttributeGroup attributeGroup=\"/>\"></warningsByAttributeGroup></warnings></reportContext>";
+    final File reportFile = new File(folder.getRoot(), "report.xml");
+    try (OutputStream output = new FileOutputStream(reportFile)) {
+      output.write(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF });
+      output.write(xml.getBytes("UTF-8"));
+    }
+
+    final ReportSectionIndex index = ReportSectionIndex.create(reportFile);
+    assertNotNull(index);
+    final byte[] content = Files.readAllBytes(reportFile.toPath());
+    final String[] expected = { "general", "tasks", "warnings" };
+    assertEquals(expected.length, index.getSections().size());
+    for (int i = 0; i < expected.length; i++) {
+      final ReportSectionIndex.Section section = index.getSections().get(i);
+      assertEquals(expected[i], section.getName());
+      final String text = new String(content, (int) section.getStart(), (int) section.getLength(), "UTF-8");
+      assertTrue(text, text.startsWith("<" + expected[i]));
+      assertTrue(text, text.endsWith("</" + expected[i] + ">") || text.endsWith("/>"));
+    }
+  }
+
+  @Test
+  public void testIndexIsPersistedUntilReportChanges() throws IOException {
+    final File reportFile = TestHelper.copyReport(TestHelper.REPORT_PATH, folder.getRoot());
+    assertNull(ReportSectionIndex.load(reportFile));
+
+    final ReportSectionIndex created = ReportSectionIndex.getOrCreate(reportFile);
+    assertTrue(ReportSectionIndex.getIndexFile(reportFile).isFile());
+    final ReportSectionIndex loaded = ReportSectionIndex.load(reportFile);
+    assertNotNull(loaded);
+    assertEquals(created.getPrologEnd(), loaded.getPrologEnd());
+    assertEquals(created.getSections().size(), loaded.getSections().size());
+    for (int i = 0; i < created.getSections().size(); i++) {
+      assertEquals(created.getSections().get(i).getName(), loaded.getSections().get(i).getName());
+      assertEquals(created.getSections().get(i).getStart(), loaded.getSections().get(i).getStart());
+      assertEquals(created.getSections().get(i).getEnd(), loaded.getSections().get(i).getEnd());
+    }
+
+    assertTrue(reportFile.setLastModified(reportFile.lastModified() - 10000));
+    assertNull(ReportSectionIndex.load(reportFile));
+  }
+
+  @Test
+  public void testCompressedReportIsNotIndexed() throws IOException {
+    final File reportFile = new File(folder.getRoot(), "report.xml.gz");
+    try (OutputStream output = new GZIPOutputStream(new FileOutputStream(reportFile))) {
+      Files.copy(new File(TestHelper.REPORT_PATH).toPath(), output);
+    }
+    assertNull(ReportSectionIndex.create(reportFile));
+  }
+
+  @Test
+  public void testReadingSectionsIsEquivalentToReadingReport() throws IOException, JAXBException {
+    for (final String reportPath : new String[] { "src/test/resources/infoglue21-report.xml", TestHelper.REPORT_PATH, TestHelper.REPORT_PATH2 }) {
+      final File reportFile = TestHelper.copyReport(reportPath, folder.newFolder("sections-" + System.nanoTime()));
+      final String expected = read(reportFile, false);
+      assertEquals(reportPath, expected, read(reportFile, true));
+      assertTrue(ReportSectionIndex.getIndexFile(reportFile).isFile());
+      assertEquals(reportPath, expected, read(reportFile, true));
+    }
+  }
+
+  /**
+   * @return the report model and the indexed records as XML
+   */
+  private static String read(final File reportFile, final boolean sectionIndex) throws JAXBException {
+    final Settings settings = TestHelper.initSettings(reportFile.getPath());
+    settings.setProperty(SonargraphPluginBase.REPORT_SECTION_INDEX, sectionIndex);
+    final ReportFileReader reader = new StaxReportFileReader();
+    final ReportContext report = TestHelper.readReport(reader, settings);
+    return TestHelper.marshal(report) + TestHelper.marshalRecords(reader.getReportIndex());
+  }
+}
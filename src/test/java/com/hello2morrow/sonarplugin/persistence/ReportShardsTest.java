@@ -0,0 +1,178 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.BuildUnitId;
+import com.hello2morrow.sonarplugin.foundation.BuildUnitIdTable;
+import com.hello2morrow.sonarplugin.foundation.DuplicateCodeBlock;
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import com.hello2morrow.sonarplugin.xsd.XsdBuildUnits;
+import com.hello2morrow.sonarplugin.xsd.XsdTask;
+import com.hello2morrow.sonarplugin.xsd.XsdTasks;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReportShardsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testShardsContainTheElementsOfTheirBuildUnit() throws IOException, JAXBException {
+    final ReportIndex complete = ReportIndex.create(unmarshal(new File(TestHelper.REPORT_PATH2)));
+    final Map<BuildUnitId, ReportContext> shards = ReportShards.partition(unmarshal(new File(TestHelper.REPORT_PATH2)), new BuildUnitIdTable());
+    assertEquals(2, shards.size());
+
+    for (final Map.Entry<BuildUnitId, ReportContext> next : shards.entrySet()) {
+      final String buildUnit = next.getKey().getName();
+      final ReportIndex shard = ReportIndex.create(next.getValue());
+      assertEquals(1, next.getValue().getBuildUnits().getBuildUnit().size());
+      assertEquals(complete.getTasks(buildUnit).size(), shard.getTasks(buildUnit).size());
+      assertEquals(complete.getTypeRelations(buildUnit).size(), shard.getTypeRelations(buildUnit).size());
+      assertEquals(complete.getCycleGroups(buildUnit).size(), shard.getCycleGroups(buildUnit).size());
+      for (final XsdWarningsByAttributeGroup group : complete.getReport().getWarnings().getWarningsByAttributeGroup()) {
+        assertEquals(complete.getWarnings(buildUnit, group.getAttributeGroup()).size(), shard.getWarnings(buildUnit, group.getAttributeGroup()).size());
+      }
+      assertEquals(complete.getDuplicateCodeBlocks(buildUnit).size(), shard.getDuplicateCodeBlocks(buildUnit).size());
+      for (final DuplicateCodeBlock block : shard.getDuplicateCodeBlocks(buildUnit)) {
+        assertEquals("Duplicate code blocks of other build units must be kept", complete.getDuplicateCodeBlockGroup(block.getBlockId()).size(), shard
+          .getDuplicateCodeBlockGroup(block.getBlockId()).size());
+      }
+    }
+  }
+
+  @Test
+  public void testReaderUsesShardWhenEnabled() throws IOException {
+    final File reportFile = copyReport(TestHelper.REPORT_PATH2);
+    final Settings settings = TestHelper.initSettings(reportFile.getPath());
+    final Project project = new Project("hello2morrow:AlarmClock");
+
+    new ReportFileReader().readSonargraphReport(project, null, settings);
+    assertFalse("Shards must only be written if enabled", ReportShards.getShardDirectory(reportFile).exists());
+
+    settings.setProperty(SonargraphPluginBase.REPORT_SHARDS, true);
+    final ReportFileReader reader = new ReportFileReader();
+    reader.readSonargraphReport(project, null, settings);
+    assertEquals(2, reader.getReport().getBuildUnits().getBuildUnit().size());
+    assertEquals(2, ReportShards.getShardDirectory(reportFile).list().length);
+
+    final ReportFileReader shardReader = new ReportFileReader();
+    shardReader.readSonargraphReport(project, null, settings);
+    assertEquals(1, shardReader.getReport().getBuildUnits().getBuildUnit().size());
+    assertNotNull(shardReader.retrieveBuildUnit(project));
+    assertEquals(reader.getReportIndex().getTasks("AlarmClock").size(), shardReader.getReportIndex().getTasks("AlarmClock").size());
+
+    assertTrue(reportFile.setLastModified(reportFile.lastModified() - 10000));
+    assertNull("Shards of a modified report must not be used", ReportShards.read(reportFile, project));
+  }
+
+  /**
+   * Every module of a reactor must find its tasks in a synthetic report with many build units, whether it reads the complete report, the
+   * cached report or its shard.
+   */
+  @Test
+  public void testReactor() throws IOException, JAXBException {
+    final int buildUnits = 10;
+    final int tasksPerBuildUnit = 5;
+    final File reportFile = new File(folder.newFolder("synthetic"), "report.xml");
+    marshal(createSyntheticReport(buildUnits, tasksPerBuildUnit), reportFile);
+    final Settings settings = TestHelper.initSettings(reportFile.getPath());
+
+    readReactor(settings, buildUnits, tasksPerBuildUnit, null);
+    readReactor(settings, buildUnits, tasksPerBuildUnit, new ReportCache());
+    settings.setProperty(SonargraphPluginBase.REPORT_SHARDS, true);
+    new ReportFileReader().readSonargraphReport(new Project("synthetic:Module0"), null, settings);
+    assertEquals(buildUnits, ReportShards.getShardDirectory(reportFile).list().length);
+    readReactor(settings, buildUnits, tasksPerBuildUnit, null);
+  }
+
+  private static void readReactor(final Settings settings, final int buildUnits, final int tasksPerBuildUnit, final ReportCache cache) {
+    for (int i = 0; i < buildUnits; i++) {
+      final Project project = new Project("synthetic:Module" + i);
+      final ReportFileReader reader = new ReportFileReader(cache);
+      reader.readSonargraphReport(project, null, settings);
+      assertNotNull(reader.retrieveBuildUnit(project));
+      assertEquals(tasksPerBuildUnit, reader.getReportIndex().getTasks("Module" + i).size());
+    }
+  }
+
+  private static ReportContext createSyntheticReport(final int buildUnits, final int tasksPerBuildUnit) {
+    final ReportContext report = new ReportContext();
+    report.setName("Synthetic");
+    final XsdAttributeRoot general = new XsdAttributeRoot();
+    PersistenceUtilities.addAttributeToList(general.getAttribute(), "Base Path", ".");
+    report.setGeneral(general);
+    report.setBuildUnits(new XsdBuildUnits());
+    report.setTasks(new XsdTasks());
+
+    for (int i = 0; i < buildUnits; i++) {
+      final XsdAttributeRoot buildUnit = new XsdAttributeRoot();
+      buildUnit.setName("Synthetic::Module" + i);
+      report.getBuildUnits().getBuildUnit().add(buildUnit);
+      for (int j = 0; j < tasksPerBuildUnit; j++) {
+        final XsdTask task = new XsdTask();
+        PersistenceUtilities.addAttributeToList(task.getAttribute(), "Build unit", buildUnit.getName());
+        PersistenceUtilities.addAttributeToList(task.getAttribute(), "Priority", "Medium");
+        PersistenceUtilities.addAttributeToList(task.getAttribute(), "Description", "Task " + j + " of module " + i);
+        report.getTasks().getTask().add(task);
+      }
+    }
+    return report;
+  }
+
+  private static ReportContext unmarshal(final File reportFile) throws IOException, JAXBException {
+    try (InputStream input = new FileInputStream(reportFile)) {
+      return JaxbUnmarshallerPool.getInstance().unmarshal(input);
+    }
+  }
+
+  private static void marshal(final ReportContext report, final File reportFile) throws IOException, JAXBException {
+    final Marshaller marshaller = JaxbUnmarshallerPool.getInstance().getContext().createMarshaller();
+    try (OutputStream output = new FileOutputStream(reportFile)) {
+      marshaller.marshal(report, output);
+    }
+  }
+
+  private File copyReport(final String reportPath) throws IOException {
+    return TestHelper.copyReport(reportPath, folder.newFolder("report-" + System.nanoTime()));
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.persistence;
+
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.xsd.ReportContext;
+import com.hello2morrow.sonarplugin.xsd.XsdArchitectureViolation;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttribute;
+import com.hello2morrow.sonarplugin.xsd.XsdWarningsByAttributeGroup;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StaxReportFileReaderTest {
+
+  @Test
+  public void testStaxReaderIsEquivalentToJaxbReader() throws JAXBException, XMLStreamException, IOException {
+    assertSameReport("src/test/resources/infoglue21-report.xml");
+    assertSameReport(TestHelper.REPORT_PATH);
+    assertSameReport(TestHelper.REPORT_PATH2);
+  }
+
+  @Test
+  public void testReaderIsSelectedByProperty() {
+    final Settings settings = TestHelper.initSettings(TestHelper.REPORT_PATH);
+    assertEquals(ReportFileReader.class, ReportFileReader.createReader(settings, null).getClass());
+
+    settings.setProperty(SonargraphPluginBase.REPORT_READER, SonargraphPluginBase.REPORT_READER_STAX);
+    assertTrue(ReportFileReader.createReader(settings, null) instanceof StaxReportFileReader);
+  }
+
+  @Test
+  public void testRecordsAreOnlyKeptByIndex() {
+    final ReportFileReader reader = new StaxReportFileReader();
+    final ReportContext report = TestHelper.readReport(reader, TestHelper.initSettings(TestHelper.REPORT_PATH2));
+    assertTrue(report.getTasks().getTask().isEmpty());
+    assertTrue(report.getCycleGroups().getCycleGroup().isEmpty());
+    assertFalse(report.getViolations().getArchitectureViolations().isEmpty());
+    for (final XsdArchitectureViolation violation : report.getViolations().getArchitectureViolations()) {
+      assertTrue(violation.getTypeRelation().isEmpty());
+    }
+    assertFalse(report.getWarnings().getWarningsByAttributeGroup().isEmpty());
+    for (final XsdWarningsByAttributeGroup group : report.getWarnings().getWarningsByAttributeGroup()) {
+      for (final XsdWarningsByAttribute warningsByAttribute : group.getWarningsByAttribute()) {
+        assertTrue(warningsByAttribute.getWarning().isEmpty());
+      }
+    }
+    assertEquals(1, reader.getReportIndex().getTasks("AlarmClock").size() + reader.getReportIndex().getTasks("Foundation").size());
+  }
+
+  private static void assertSameReport(final String reportPath) throws JAXBException, XMLStreamException, IOException {
+    final Settings settings = TestHelper.initSettings(reportPath);
+    final ReportFileReader jaxbReader = new ReportFileReader();
+    final ReportContext expected = TestHelper.readReport(jaxbReader, settings);
+
+    final StaxReportFileReader staxReader = new StaxReportFileReader();
+    final ReportContext complete = staxReader.readReport(new File(reportPath), settings, ReportSectionFilter.ALL);
+    assertEquals("Reports of " + reportPath + " differ", TestHelper.marshal(expected), TestHelper.marshal(complete));
+
+    TestHelper.readReport(staxReader, settings);
+    assertEquals("Indexed records of " + reportPath + " differ", TestHelper.marshalRecords(jaxbReader.getReportIndex()),
+      TestHelper.marshalRecords(staxReader.getReportIndex()));
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.processor;
+
+import com.hello2morrow.sonarplugin.foundation.InputFileIndex;
+import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.foundation.WorkspacePathResolver;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import org.junit.Test;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AnalysisSessionTest {
+
+  @Test
+  public void testActiveRulesAreReadOnce() {
+    final SensorContext sensorContext = TestHelper.initSensorContext(TestHelper.initFileSystem(null), null);
+    final AnalysisSession session = new AnalysisSession(sensorContext, new InputFileIndex(sensorContext.fileSystem()), null,
+      Collections.<String> emptyList());
+
+    assertNotNull(session.getActiveRule(SonargraphPluginBase.ARCH_RULE_KEY));
+    assertNotNull(session.getActiveRule(SonargraphPluginBase.TASK_RULE_KEY));
+    assertNull(session.getActiveRule(SonargraphPluginBase.DUPLICATE_RULE_KEY + "-unknown"));
+    assertEquals(SonargraphPluginBase.ARCH_RULE_KEY, session.getActiveRule(SonargraphPluginBase.ARCH_RULE_KEY).ruleKey().rule());
+
+    verify(sensorContext, times(1)).activeRules();
+  }
+
+  @Test
+  public void testPathsAreResolvedOnce() {
+    final InputFile alarmClock = mock(InputFile.class);
+    when(alarmClock.relativePath()).thenReturn("AlarmClock/src/main/java/com/h2m/alarm/model/AlarmClock.java");
+    when(alarmClock.absolutePath()).thenReturn("/home/user/project/AlarmClock/src/main/java/com/h2m/alarm/model/AlarmClock.java");
+    final FileSystem fileSystem = TestHelper.initFileSystem(null);
+    when(fileSystem.inputFiles(any(FilePredicate.class))).thenReturn(Arrays.asList(alarmClock));
+
+    final SensorContext sensorContext = TestHelper.initSensorContext(fileSystem, null);
+    final AnalysisSession session = new AnalysisSession(sensorContext, new InputFileIndex(sensorContext.fileSystem()), null,
+      Collections.<String> emptyList());
+
+    for (int i = 0; i < 3; i++) {
+      assertSame(alarmClock, session.getInputPath("com/h2m/alarm/model/AlarmClock.java"));
+      assertNull(session.getInputPath("com/h2m/alarm/model/Unknown.java"));
+    }
+    assertSame(alarmClock, session.getInputPath("/home/user/project/AlarmClock/src/main/java/com/h2m/alarm/model/AlarmClock.java", true));
+
+    assertEquals(7, session.getPathLookups());
+    assertEquals(4, session.getCachedPathLookups());
+    assertEquals(1, session.getUnresolvedPaths());
+  }
+
+  @Test
+  public void testDirectoriesAreNotResolvedByWorkspace() {
+    final InputFile alarmClock = TestHelper.createInputFile("AlarmClock/src/main/java/com/h2m/alarm/model/AlarmClock.java");
+    final SensorContext sensorContext = TestHelper.initSensorContext(TestHelper.initFileSystemWithInputFiles(Arrays.asList(alarmClock)), null);
+    final AnalysisSession session = new AnalysisSession(sensorContext, new InputFileIndex(sensorContext.fileSystem()), null,
+      Arrays.asList("AlarmClock/src/main/java"));
+
+    assertSame(alarmClock, session.getInputPath("com/h2m/alarm/model/AlarmClock.java"));
+    session.getInputPath("com/h2m/alarm/model");
+
+    final WorkspacePathResolver resolver = session.getWorkspacePathResolver();
+    assertEquals(1, resolver.getDirectLookups());
+    assertEquals("Directory lookups must not be counted as fallback lookups", 0, resolver.getFallbackLookups());
+  }
+
+  @Test
+  public void testUnresolvedPathSummary() {
+    final FileSystem fileSystem = TestHelper.initFileSystem(null);
+    when(fileSystem.inputFiles(any(FilePredicate.class))).thenReturn(Arrays.<InputFile> asList());
+    final SensorContext sensorContext = TestHelper.initSensorContext(fileSystem, null);
+    final AnalysisSession session = new AnalysisSession(sensorContext, new InputFileIndex(sensorContext.fileSystem()), null,
+      Collections.<String> emptyList());
+    assertNull(session.getUnresolvedPathSummary(2));
+
+    for (int i = 0; i < 5; i++) {
+      assertNull(session.getInputPath("com/h2m/Frequent.java"));
+    }
+    for (int i = 0; i < 3; i++) {
+      assertNull(session.getInputPath("com/h2m/Medium.java"));
+    }
+    assertNull(session.getInputPath("com/h2m/Rare.java"));
+
+    assertEquals("3 paths of the report could not be resolved (9 occurrences): 'com/h2m/Frequent.java' (5), 'com/h2m/Medium.java' (3), ...",
+      session.getUnresolvedPathSummary(2));
+    verify(fileSystem, times(1)).inputFiles(any(FilePredicate.class));
+  }
+}
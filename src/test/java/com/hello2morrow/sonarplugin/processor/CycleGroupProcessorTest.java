@@ -17,6 +17,7 @@
  */
 package com.hello2morrow.sonarplugin.processor;
 
+import com.hello2morrow.sonarplugin.foundation.InputFileIndex;
 import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
 import com.hello2morrow.sonarplugin.foundation.TestHelper;
 import com.hello2morrow.sonarplugin.persistence.ReportFileReader;
@@ -37,6 +38,7 @@ import org.sonar.api.rule.RuleKey;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
@@ -89,11 +91,13 @@ public class CycleGroupProcessorTest {
 
     final ReportContext report = reader.getReport();
     final XsdAttributeRoot processedBuildUnit = report.getBuildUnits().getBuildUnit().get(0);
-    final CycleGroupProcessor processor = new CycleGroupProcessor(sensorContext);
-    processor.process(report, processedBuildUnit);
+    final AnalysisSession session = new AnalysisSession(sensorContext, new InputFileIndex(sensorContext.fileSystem()), null,
+      Collections.<String> emptyList());
+    final CycleGroupProcessor processor = new CycleGroupProcessor(session, new SensorContextIssueSink(sensorContext));
+    processor.process(reader.getReportIndex(), processedBuildUnit);
 
-    assertEquals(2.0, processor.getBiggestCycleGroupSize(), 0.1);
-    assertEquals(2.0, processor.getCyclicPackages(), 0.1);
+    assertEquals(2.0, processor.getStatistics().getBiggestCycleGroupSize(), 0.1);
+    assertEquals(2.0, processor.getStatistics().getCyclicPackages(), 0.1);
 
     verify(issue).save();
   }
@@ -0,0 +1,119 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.processor;
+
+import com.hello2morrow.sonarplugin.foundation.AlertThreshold;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputDir;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.Severity;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Resource;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IssueQueueTest {
+
+  @Test
+  public void testCapacity() {
+    assertEquals(1, new IssueQueue(1).getCapacity());
+    assertEquals(4, new IssueQueue(3).getCapacity());
+    assertEquals(1024, new IssueQueue(1024).getCapacity());
+  }
+
+  @Test
+  public void testDrainKeepsOrderOfProducer() throws InterruptedException {
+    final IssueQueue queue = new IssueQueue(8);
+    final int writes = 10000;
+    final Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < writes; i++) {
+          queue.saveIssue((InputFile) null, null, null, i, "issue " + i);
+        }
+        queue.close();
+      }
+    });
+    producer.start();
+
+    final RecordingSink sink = new RecordingSink();
+    assertEquals(writes, queue.drainTo(sink));
+    producer.join();
+
+    assertEquals(writes, sink.messages.size());
+    for (int i = 0; i < writes; i++) {
+      assertEquals("issue " + i, sink.messages.get(i));
+    }
+  }
+
+  @Test
+  public void testAbortReleasesWaitingProducer() throws InterruptedException {
+    final IssueQueue queue = new IssueQueue(2);
+    final List<Throwable> failures = new ArrayList<>();
+    final Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          for (int i = 0; i < 3; i++) {
+            queue.saveIssue((InputDir) null, null, null, "issue " + i);
+          }
+        } catch (final CancellationException e) {
+          failures.add(e);
+        }
+      }
+    });
+    producer.start();
+    producer.join(200);
+    assertTrue("Producer must wait while the queue is full", producer.isAlive());
+
+    queue.abort();
+    producer.join(5000);
+    if (producer.isAlive()) {
+      fail("Producer not released");
+    }
+    assertEquals(1, failures.size());
+  }
+
+  static final class RecordingSink implements IIssueSink {
+    final List<String> messages = new ArrayList<>();
+
+    @Override
+    public void saveIssue(final InputFile file, final ActiveRule rule, final Severity severity, final int line, final String message) {
+      messages.add(message);
+    }
+
+    @Override
+    public void saveIssue(final InputDir dir, final ActiveRule rule, final Severity severity, final String message) {
+      messages.add(message);
+    }
+
+    @Override
+    public void saveMeasure(final Resource resource, final Metric<Serializable> metric, final double value, final AlertThreshold threshold,
+      final double thresholdMetricValue) {
+      messages.add("measure " + value);
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Sonar Sonargraph Plugin
+ * Copyright (C) 2009, 2010, 2011 hello2morrow GmbH
+ * mailto: info AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonarplugin.processor;
+
+import com.hello2morrow.sonarplugin.foundation.AlertThreshold;
+import com.hello2morrow.sonarplugin.foundation.InputFileIndex;
+import com.hello2morrow.sonarplugin.foundation.TestHelper;
+import com.hello2morrow.sonarplugin.persistence.ReportFileReader;
+import com.hello2morrow.sonarplugin.persistence.ReportIndex;
+import com.hello2morrow.sonarplugin.processor.IssueQueueTest.RecordingSink;
+import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
+import org.junit.Test;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputDir;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.Severity;
+import org.sonar.api.batch.sensor.internal.SensorStorage;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProcessorRunnerTest {
+
+  @Test
+  public void testConcurrentRunKeepsSequentialOrder() {
+    final RecordingSink sequential = new RecordingSink();
+    run(new ProcessorRunner(sequential, 1), 4, 5000);
+
+    final RecordingSink concurrent = new RecordingSink();
+    final ProcessorRunner runner = new ProcessorRunner(concurrent, 4);
+    assertTrue(runner.isConcurrent());
+    run(runner, 4, 5000);
+
+    assertEquals(4 * 5000, sequential.messages.size());
+    assertEquals(sequential.messages, concurrent.messages);
+  }
+
+  @Test
+  public void testFewerThreadsThanProcessors() {
+    final RecordingSink sequential = new RecordingSink();
+    run(new ProcessorRunner(sequential, 1), 4, 3000);
+
+    final RecordingSink concurrent = new RecordingSink();
+    run(new ProcessorRunner(concurrent, 2), 4, 3000);
+
+    assertEquals(sequential.messages, concurrent.messages);
+  }
+
+  @Test
+  public void testFailingProcessor() {
+    final RecordingSink sink = new RecordingSink();
+    final ProcessorRunner runner = new ProcessorRunner(sink, 2);
+    final IIssueSink first = runner.createSink();
+    runner.add(new GeneratingProcessor(first, "first", 2000), first);
+    final IIssueSink failing = runner.createSink();
+    runner.add(new IProcessor() {
+      @Override
+      public void process(final ReportIndex index, final XsdAttributeRoot buildUnit) {
+        throw new IllegalArgumentException("Processor failed");
+      }
+    }, failing);
+
+    try {
+      runner.run(null, null);
+      fail("Exception of processor expected");
+    } catch (final IllegalArgumentException e) {
+      assertEquals("Processor failed", e.getMessage());
+    }
+    assertEquals("Issues of the other processor are saved", 2000, sink.messages.size());
+  }
+
+  /**
+   * Runs the processors on the bundled report sequentially and concurrently, both runs must save the same issues in the same order.
+   */
+  @Test
+  public void testProcessorsOnReport() throws IOException {
+    final File baseDir = new File("src/test/AlarmClockMain").getCanonicalFile();
+    final FileSystem fileSystem = TestHelper.initFileSystem(null);
+    when(fileSystem.baseDir()).thenReturn(baseDir);
+    when(fileSystem.inputFiles(any(FilePredicate.class))).thenReturn(collectFiles(baseDir, baseDir, new ArrayList<InputFile>()));
+    final SensorContext sensorContext = TestHelper.initSensorContext(fileSystem, mock(SensorStorage.class));
+
+    final Settings settings = TestHelper.initSettings(TestHelper.REPORT_PATH2);
+    final ReportFileReader reader = new ReportFileReader();
+    final Project project = new Project("hello2morrow:AlarmClock", null, "AlarmClock");
+    reader.readSonargraphReport(project, fileSystem, settings);
+    final XsdAttributeRoot buildUnit = reader.getReport().getBuildUnits().getBuildUnit().get(0);
+
+    final List<String> sequential = new ArrayList<>();
+    runReportProcessors(new ProcessorRunner(new DescribingSink(sequential), 1), project, sensorContext, fileSystem, reader.getReportIndex(), buildUnit);
+    final List<String> concurrent = new ArrayList<>();
+    runReportProcessors(new ProcessorRunner(new DescribingSink(concurrent), 4), project, sensorContext, fileSystem, reader.getReportIndex(), buildUnit);
+
+    assertFalse("Issues expected", sequential.isEmpty());
+    assertEquals(sequential, concurrent);
+  }
+
+  private static void runReportProcessors(final ProcessorRunner runner, final Project project, final SensorContext sensorContext, final FileSystem fileSystem,
+    final ReportIndex index, final XsdAttributeRoot buildUnit) {
+    final AnalysisSession session = new AnalysisSession(sensorContext, new InputFileIndex(fileSystem), buildUnit, Collections.<String> emptyList());
+    final IIssueSink taskSink = runner.createSink();
+    runner.add(new TaskProcessor(project, session, 2, taskSink), taskSink);
+    final IIssueSink cycleGroupSink = runner.createSink();
+    runner.add(new CycleGroupProcessor(session, cycleGroupSink), cycleGroupSink);
+    final IIssueSink architectureSink = runner.createSink();
+    runner.add(new ArchitectureViolationProcessor(session, architectureSink), architectureSink);
+    final IIssueSink warningSink = runner.createSink();
+    runner.add(new WarningProcessor(session, warningSink), warningSink);
+    runner.run(index, buildUnit);
+  }
+
+  private static List<InputFile> collectFiles(final File baseDir, final File currentDir, final List<InputFile> files) throws IOException {
+    for (final File next : currentDir.listFiles()) {
+      if (next.isDirectory()) {
+        collectFiles(baseDir, next, files);
+        continue;
+      }
+      final InputFile mocked = mock(InputFile.class);
+      final String canonicalPath = next.getCanonicalPath().replace('\\', '/');
+      when(mocked.absolutePath()).thenReturn(canonicalPath);
+      when(mocked.relativePath()).thenReturn(canonicalPath.substring(baseDir.getCanonicalPath().length() + 1));
+      when(mocked.file()).thenReturn(next);
+      when(mocked.isFile()).thenReturn(true);
+      files.add(mocked);
+    }
+    return files;
+  }
+
+  private static void run(final ProcessorRunner runner, final int processors, final int issues) {
+    for (int i = 0; i < processors; i++) {
+      final IIssueSink sink = runner.createSink();
+      runner.add(new GeneratingProcessor(sink, "processor " + i, issues), sink);
+    }
+    runner.run(null, null);
+  }
+
+  private static final class GeneratingProcessor implements IProcessor {
+    private final IIssueSink sink;
+    private final String name;
+    private final int issues;
+
+    GeneratingProcessor(final IIssueSink sink, final String name, final int issues) {
+      this.sink = sink;
+      this.name = name;
+      this.issues = issues;
+    }
+
+    @Override
+    public void process(final ReportIndex index, final XsdAttributeRoot buildUnit) {
+      for (int i = 0; i < issues; i++) {
+        sink.saveIssue((InputFile) null, null, null, i, name + " issue " + i);
+      }
+    }
+  }
+
+  private static final class DescribingSink implements IIssueSink {
+    private final List<String> issues;
+
+    DescribingSink(final List<String> issues) {
+      this.issues = issues;
+    }
+
+    @Override
+    public void saveIssue(final InputFile file, final ActiveRule rule, final Severity severity, final int line, final String message) {
+      issues.add(file.relativePath() + ":" + line + " " + rule.ruleKey() + " " + message);
+    }
+
+    @Override
+    public void saveIssue(final InputDir dir, final ActiveRule rule, final Severity severity, final String message) {
+      issues.add(dir.relativePath() + " " + rule.ruleKey() + " " + message);
+    }
+
+    @Override
+    public void saveMeasure(final Resource resource, final Metric<Serializable> metric, final double value, final AlertThreshold threshold,
+      final double thresholdMetricValue) {
+      issues.add(metric.getKey() + "=" + value);
+    }
+  }
+}
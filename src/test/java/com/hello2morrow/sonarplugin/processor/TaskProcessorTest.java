@@ -18,6 +18,7 @@
 package com.hello2morrow.sonarplugin.processor;
 
 import com.hello2morrow.sonarplugin.foundation.InMemorySensorStorage;
+import com.hello2morrow.sonarplugin.foundation.InputFileIndex;
 import com.hello2morrow.sonarplugin.foundation.TestHelper;
 import com.hello2morrow.sonarplugin.persistence.ReportFileReader;
 import org.junit.Test;
@@ -31,6 +32,9 @@ import org.sonar.api.batch.sensor.issue.NewIssueLocation;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -49,7 +53,7 @@ public class TaskProcessorTest {
     when(file.relativePath()).thenReturn("com/h2m/alarm/model/AlarmClock.java");
     when(file.isFile()).thenReturn(true);
     final FileSystem fileSystem = TestHelper.initFileSystem(null);
-    when(fileSystem.inputFile(any(FilePredicate.class))).thenReturn(file);
+    when(fileSystem.inputFiles(any(FilePredicate.class))).thenReturn(Arrays.asList(file));
 
     final NewIssueLocation location = mock(NewIssueLocation.class);
     when(location.on(file)).thenReturn(location);
@@ -62,11 +66,13 @@ public class TaskProcessorTest {
     final SensorContext context = TestHelper.initSensorContext(fileSystem, sensorStorage);
     when(context.newIssue()).thenReturn(issue);
 
-    final TaskProcessor processor = new TaskProcessor(project, context, 2);
+    final AnalysisSession session = new AnalysisSession(context, new InputFileIndex(context.fileSystem()), null,
+      Collections.<String> emptyList());
+    final TaskProcessor processor = new TaskProcessor(project, session, 2, new SensorContextIssueSink(context));
     final ReportFileReader reader = new ReportFileReader();
     final Settings settings = TestHelper.initSettings(TestHelper.REPORT_PATH2);
     reader.readSonargraphReport(project, fileSystem, settings);
-    processor.process(reader.getReport(), reader.retrieveBuildUnit(project));
+    processor.process(reader.getReportIndex(), reader.retrieveBuildUnit(project));
 
     verify(location, times(2)).message("Cut dependency to 'com.h2m.common.observer.Observable' [Tester]");
   }
@@ -17,14 +17,13 @@
  */
 package com.hello2morrow.sonarplugin.processor;
 
+import com.hello2morrow.sonarplugin.foundation.InputFileIndex;
 import com.hello2morrow.sonarplugin.foundation.SonargraphPluginBase;
 import com.hello2morrow.sonarplugin.foundation.TestHelper;
 import com.hello2morrow.sonarplugin.persistence.ReportFileReader;
 import com.hello2morrow.sonarplugin.xsd.ReportContext;
 import com.hello2morrow.sonarplugin.xsd.XsdAttributeRoot;
 import org.junit.Test;
-import org.mockito.invocation.InvocationOnMock;
-import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.FileSystem;
@@ -38,6 +37,7 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.rule.RuleKey;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.mockito.Matchers.any;
@@ -62,19 +62,7 @@ public class WarningProcessorTest {
 
     final List<InputFile> files = Arrays.asList(alarmClockFile, mainFile);
 
-    when(fileSystem.inputFile(any(FilePredicate.class))).thenAnswer(new Answer<InputFile>() {
-      @Override
-      public InputFile answer(final InvocationOnMock invocation) throws Throwable {
-        final Object arg = invocation.getArguments()[0];
-        final FilePredicate predicate = (FilePredicate) arg;
-        for (final InputFile file : files) {
-          if (predicate.apply(file)) {
-            return file;
-          }
-        }
-        return null;
-      }
-    });
+    when(fileSystem.inputFiles(any(FilePredicate.class))).thenReturn(files);
 
     final NewIssueLocation locationAlarm = mock(NewIssueLocation.class);
     final NewIssueLocation locationMain = mock(NewIssueLocation.class);
@@ -113,8 +101,10 @@ public class WarningProcessorTest {
     final ReportContext report = reader.getReport();
 
     final XsdAttributeRoot processedBuildUnit = report.getBuildUnits().getBuildUnit().get(0);
-    final IProcessor processor = new WarningProcessor(sensorContext);
-    processor.process(report, processedBuildUnit);
+    final AnalysisSession session = new AnalysisSession(sensorContext, new InputFileIndex(sensorContext.fileSystem()), null,
+      Collections.<String> emptyList());
+    final IProcessor processor = new WarningProcessor(session, new SensorContextIssueSink(sensorContext));
+    processor.process(reader.getReportIndex(), processedBuildUnit);
 
     verify(issue).save();
     verify(issue2).save();
@@ -131,19 +121,7 @@ public class WarningProcessorTest {
 
     final List<InputFile> files = Arrays.asList(alarmClockFile);
 
-    when(fileSystem.inputFile(any(FilePredicate.class))).thenAnswer(new Answer<InputFile>() {
-      @Override
-      public InputFile answer(final InvocationOnMock invocation) throws Throwable {
-        final Object arg = invocation.getArguments()[0];
-        final FilePredicate predicate = (FilePredicate) arg;
-        for (final InputFile file : files) {
-          if (predicate.apply(file)) {
-            return file;
-          }
-        }
-        return null;
-      }
-    });
+    when(fileSystem.inputFiles(any(FilePredicate.class))).thenReturn(files);
 
     final NewIssueLocation locationAlarm = mock(NewIssueLocation.class);
 
@@ -175,8 +153,10 @@ public class WarningProcessorTest {
     final ReportContext report = reader.getReport();
 
     final XsdAttributeRoot processedBuildUnit = report.getBuildUnits().getBuildUnit().get(0);
-    final WarningProcessor processor = new WarningProcessor(sensorContext);
-    processor.process(report, processedBuildUnit);
+    final AnalysisSession session = new AnalysisSession(sensorContext, new InputFileIndex(sensorContext.fileSystem()), null,
+      Collections.<String> emptyList());
+    final WarningProcessor processor = new WarningProcessor(session, new SensorContextIssueSink(sensorContext));
+    processor.process(reader.getReportIndex(), processedBuildUnit);
 
     verify(issue).save();
   }